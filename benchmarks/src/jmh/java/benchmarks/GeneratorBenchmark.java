@@ -0,0 +1,73 @@
+package benchmarks;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the generators of {@link ConcreteImageModel}. The generated images are as wide as
+ * the size being measured, and the megapixels counted are the ones of the generated image, whose
+ * height depends on the generator.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+
+  /**
+   * Generate an image in a new model and count its pixels.
+   * 
+   * @param counter the counter of the megapixels processed
+   * @param generator the generator to apply
+   * @return the generated pixels
+   */
+  private static PixelBuffer generate(PixelCounter counter,
+      Consumer<ConcreteImageModel> generator) {
+    ConcreteImageModel model = ImageState.newEmptyModel();
+    generator.accept(model);
+    PixelBuffer pixels = model.getPixelBuffer();
+    counter.count(pixels.getWidth(), pixels.getHeight());
+    return pixels;
+  }
+
+  @Benchmark
+  public PixelBuffer horizontalRainbow(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateRainbow(image.size, image.size, 0));
+  }
+
+  @Benchmark
+  public PixelBuffer verticalRainbow(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateRainbow(image.size, image.size, 1));
+  }
+
+  @Benchmark
+  public PixelBuffer checkerBoard(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateCheckerBoard(image.size, 8,
+        new int[] {0, 0, 0}, new int[] {255, 255, 255}));
+  }
+
+  @Benchmark
+  public PixelBuffer flagOfNorway(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateNationalFlagOfNorway(image.size));
+  }
+
+  @Benchmark
+  public PixelBuffer flagOfGreece(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateNationalFlagOfGreece(image.size));
+  }
+
+  @Benchmark
+  public PixelBuffer flagOfSwitzerland(ImageState image, PixelCounter counter) {
+    return generate(counter, model -> model.generateNationalFlagOfSwizerland(image.size));
+  }
+}
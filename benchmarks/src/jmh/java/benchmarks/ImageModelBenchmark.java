@@ -0,0 +1,86 @@
+package benchmarks;
+
+import images.ConcreteImageModel;
+import images.ImageModel;
+import images.PixelBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the operations of {@link ConcreteImageModel} that change a loaded image. Every
+ * invocation applies one operation to a new model holding the image of the size being measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageModelBenchmark {
+
+  /**
+   * Apply an operation to a new model holding the image and count its pixels.
+   * 
+   * @param image the image to apply the operation to
+   * @param counter the counter of the megapixels processed
+   * @param operation the operation to apply
+   * @return the pixels of the model after the operation
+   */
+  private static PixelBuffer apply(ImageState image, PixelCounter counter,
+      Consumer<ConcreteImageModel> operation) {
+    ConcreteImageModel model = image.newModel();
+    operation.accept(model);
+    counter.count(image.size, image.size);
+    return model.getPixelBuffer();
+  }
+
+  @Benchmark
+  public PixelBuffer blur(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applyBlur);
+  }
+
+  @Benchmark
+  public PixelBuffer sharpen(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applySharpen);
+  }
+
+  @Benchmark
+  public PixelBuffer greyscale(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applyGreyscale);
+  }
+
+  @Benchmark
+  public PixelBuffer sepia(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applySepia);
+  }
+
+  @Benchmark
+  public PixelBuffer dither(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applyDither);
+  }
+
+  @Benchmark
+  public PixelBuffer edgeDetection(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applyEdgeDetection);
+  }
+
+  @Benchmark
+  public PixelBuffer greyscaleEnhancement(ImageState image, PixelCounter counter) {
+    return apply(image, counter, ConcreteImageModel::applyGreyscaleEnhancement);
+  }
+
+  @Benchmark
+  public ImageModel crop(ImageState image, PixelCounter counter) {
+    ConcreteImageModel model = image.newModel();
+    int half = image.size / 2;
+    ImageModel cropped = model.applyImageCropping(half / 2, half / 2, half, half);
+    counter.count(half, half);
+    return cropped;
+  }
+}
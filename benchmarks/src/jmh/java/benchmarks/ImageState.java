@@ -0,0 +1,83 @@
+package benchmarks;
+
+import images.ConcreteImageModel;
+import images.EditHistory;
+import images.PixelBuffer;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The image the benchmarks apply their operations to. The image is square, and its side is one of
+ * the sizes of the benchmark matrix. Its pixels are random, so that the operations that depend on
+ * the colors, like dithering, do as much work as on a photograph.
+ */
+@State(Scope.Benchmark)
+public class ImageState {
+  /**
+   * The width and height of the image.
+   */
+  @Param({"256", "1024", "2048", "4096", "8192"})
+  public int size;
+
+  private PixelBuffer source;
+  private double megapixels;
+
+  /**
+   * Build the image once for every size.
+   */
+  @Setup
+  public void setUp() {
+    this.source = new PixelBuffer(this.size, this.size);
+    int[] data = this.source.getData();
+    Random random = new Random(42);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = random.nextInt() & 0xFFFFFF;
+    }
+    this.megapixels = data.length / 1e6;
+  }
+
+  /**
+   * Return a new image model holding the image. The operations never change the pixels of the
+   * image in place, so every model starts from the same pixels without copying them. The models
+   * keep no history, so that the benchmarks measure the operations alone.
+   * 
+   * @return a new image model holding the image
+   */
+  public ConcreteImageModel newModel() {
+    ConcreteImageModel model = new ConcreteImageModel(this.source);
+    model.setEditHistory(new EditHistory(0));
+    return model;
+  }
+
+  /**
+   * Return a new image model without an image, for the generators.
+   * 
+   * @return a new empty image model
+   */
+  public static ConcreteImageModel newEmptyModel() {
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.setEditHistory(new EditHistory(0));
+    return model;
+  }
+
+  /**
+   * Return the pixels of the image.
+   * 
+   * @return the pixels of the image, which must not be changed
+   */
+  public PixelBuffer getSource() {
+    return this.source;
+  }
+
+  /**
+   * Return the number of megapixels of the image.
+   * 
+   * @return the number of megapixels of the image
+   */
+  public double getMegapixels() {
+    return this.megapixels;
+  }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import images.ImageUtilities;
+import images.PixelBuffer;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of reading, writing and converting images with {@link ImageUtilities}. The image is
+ * written once as a png file to a temporary folder, which the reading benchmarks read again and
+ * again and the writing benchmark overwrites.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageUtilitiesBenchmark {
+  private File folder;
+  private String readFile;
+  private String writeFile;
+
+  /**
+   * Write the image that the reading benchmarks read.
+   * 
+   * @param image the image of the size being measured
+   * @throws IOException if the temporary folder cannot be made
+   */
+  @Setup
+  public void setUp(ImageState image) throws IOException {
+    this.folder = Files.createTempDirectory("image-benchmark").toFile();
+    this.readFile = new File(this.folder, "read.png").getPath();
+    this.writeFile = new File(this.folder, "write.png").getPath();
+    ImageUtilities.writeImage(image.getSource(), this.readFile);
+  }
+
+  /**
+   * Delete the temporary folder.
+   */
+  @TearDown
+  public void tearDown() {
+    new File(this.readFile).delete();
+    new File(this.writeFile).delete();
+    this.folder.delete();
+  }
+
+  @Benchmark
+  public int[][][] readImage(ImageState image, PixelCounter counter) {
+    counter.count(image.size, image.size);
+    return ImageUtilities.readImage(this.readFile);
+  }
+
+  @Benchmark
+  public PixelBuffer readPixels(ImageState image, PixelCounter counter) {
+    counter.count(image.size, image.size);
+    return ImageUtilities.readPixels(this.readFile);
+  }
+
+  @Benchmark
+  public void writeImage(ImageState image, PixelCounter counter) {
+    counter.count(image.size, image.size);
+    ImageUtilities.writeImage(image.getSource(), this.writeFile);
+  }
+
+  @Benchmark
+  public BufferedImage convertImage(ImageState image, PixelCounter counter) {
+    counter.count(image.size, image.size);
+    return ImageUtilities.convertImage(image.getSource());
+  }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the mosaic operation, whose cost depends on the number of seeds as well as on the
+ * size of the image. The seeds are spread by a generator with a fixed seed, so every invocation
+ * paints the same cells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MosaicBenchmark {
+  /**
+   * The number of seeds of the mosaic.
+   */
+  @Param({"1000", "4000", "8000", "15000"})
+  public int seeds;
+
+  @Benchmark
+  public PixelBuffer mosaic(ImageState image, PixelCounter counter) {
+    ConcreteImageModel model = image.newModel();
+    model.applyMosaic(this.seeds, new SeedGenerator(42));
+    counter.count(image.size, image.size);
+    return model.getPixelBuffer();
+  }
+}
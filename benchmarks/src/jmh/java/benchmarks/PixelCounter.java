@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A counter of the megapixels processed by a benchmark. JMH reports it next to the operations per
+ * second as a rate, which is the throughput in megapixels per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PixelCounter {
+  /**
+   * The number of megapixels processed during the iteration.
+   */
+  public double megapixels;
+
+  /**
+   * Reset the counter before every iteration.
+   */
+  @Setup(Level.Iteration)
+  public void reset() {
+    this.megapixels = 0;
+  }
+
+  /**
+   * Count the pixels of an image.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   */
+  public void count(int width, int height) {
+    this.megapixels += (double) width * height / 1e6;
+  }
+}
@@ -0,0 +1,181 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * A point operation that multiplies the color of every pixel by a 3 x 3 matrix. Each new channel
+ * value is the weighted sum of the red, green and blue values truncated to an integer and clamped
+ * to be between 0 and 255.
+ * 
+ * <p>The weights are compiled into fixed point integers, so a channel costs three integer
+ * multiplications, two additions and a shift. Each compiled weight is off by at most half a unit,
+ * so a channel value of at most 255 moves a sum by at most {@value #ERROR_BOUND} units, and a sum
+ * that close to a whole number could be truncated the wrong way. Those sums are computed again in
+ * floating point, which keeps the results equal to the floating point sums for every color. A
+ * matrix whose rows are all the same, like the greyscale matrix, computes one channel per pixel.
+ */
+public class ColorMatrix implements PointOperation {
+  /**
+   * The largest number of fractional bits of the fixed point weights.
+   */
+  private static final int MAXIMUM_FRACTION_BITS = 20;
+
+  /**
+   * The smallest number of fractional bits worth using fixed point for.
+   */
+  private static final int MINIMUM_FRACTION_BITS = 12;
+
+  /**
+   * The largest difference in units between a fixed point sum and the exact sum.
+   */
+  private static final int ERROR_BOUND = 384;
+
+  private final double[][] matrix;
+  private final int[][] weights;
+  private final int fractionBits;
+  private final boolean grey;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param matrix the matrix whose row i holds the weights of red, green and blue in the new value
+   *        of channel i
+   * @throws IllegalArgumentException if the matrix is not 3 x 3
+   */
+  public ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("The color matrix should be 3 x 3.");
+    }
+    this.matrix = new double[3][];
+    double largestSum = 0;
+    for (int c = 0; c < 3; c++) {
+      if (matrix[c] == null || matrix[c].length != 3) {
+        throw new IllegalArgumentException("The color matrix should be 3 x 3.");
+      }
+      this.matrix[c] = matrix[c].clone();
+      largestSum = Math.max(largestSum, 255 * (Math.abs(matrix[c][0]) + Math.abs(matrix[c][1])
+          + Math.abs(matrix[c][2])) + 1);
+    }
+    // Use as many fractional bits as the largest sum leaves room for in an int
+    int bits = MAXIMUM_FRACTION_BITS;
+    while (bits >= MINIMUM_FRACTION_BITS && largestSum * (1 << bits) >= (1 << 30)) {
+      bits--;
+    }
+    this.fractionBits = bits >= MINIMUM_FRACTION_BITS ? bits : 0;
+    this.grey = Arrays.equals(this.matrix[0], this.matrix[1])
+        && Arrays.equals(this.matrix[0], this.matrix[2]);
+    this.weights = new int[3][3];
+    if (this.fractionBits > 0) {
+      for (int c = 0; c < 3; c++) {
+        for (int k = 0; k < 3; k++) {
+          this.weights[c][k] = (int) Math.round(this.matrix[c][k] * (1 << this.fractionBits));
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the new value of one channel computed in floating point, truncated but not clamped.
+   * 
+   * @param c the channel to compute
+   * @param red the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue the blue value of the pixel
+   * @return the new value of the channel
+   */
+  private int exactChannel(int c, int red, int green, int blue) {
+    double[] row = this.matrix[c];
+    return (int) (red * row[0] + green * row[1] + blue * row[2]);
+  }
+
+  /**
+   * Return the new value of one channel, truncated but not clamped.
+   * 
+   * @param c the channel to compute
+   * @param red the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue the blue value of the pixel
+   * @return the new value of the channel
+   */
+  private int channel(int c, int red, int green, int blue) {
+    int bits = this.fractionBits;
+    if (bits > 0) {
+      int[] row = this.weights[c];
+      int sum = red * row[0] + green * row[1] + blue * row[2];
+      if (((sum + ERROR_BOUND) & ((1 << bits) - 1)) >= 2 * ERROR_BOUND) {
+        return sum >> bits;
+      }
+    }
+    return this.exactChannel(c, red, green, blue);
+  }
+
+  @Override
+  public int applyToPixel(int rgb) {
+    int red = PixelBuffer.red(rgb);
+    int green = PixelBuffer.green(rgb);
+    int blue = PixelBuffer.blue(rgb);
+    return PixelBuffer.packClamped(this.channel(0, red, green, blue),
+        this.channel(1, red, green, blue), this.channel(2, red, green, blue));
+  }
+
+  @Override
+  public void applyToRow(int[] source, int sourceOffset, int[] target, int targetOffset,
+      int length) {
+    int bits = this.fractionBits;
+    if (bits == 0) {
+      for (int i = 0; i < length; i++) {
+        int rgb = source[sourceOffset + i];
+        int red = PixelBuffer.red(rgb);
+        int green = PixelBuffer.green(rgb);
+        int blue = PixelBuffer.blue(rgb);
+        target[targetOffset + i] = PixelBuffer.packClamped(this.exactChannel(0, red, green, blue),
+            this.exactChannel(1, red, green, blue), this.exactChannel(2, red, green, blue));
+      }
+      return;
+    }
+    // Keep every weight in a local variable so that the loop does not read the fields again
+    int redFromRed = this.weights[0][0];
+    int redFromGreen = this.weights[0][1];
+    int redFromBlue = this.weights[0][2];
+    int greenFromRed = this.weights[1][0];
+    int greenFromGreen = this.weights[1][1];
+    int greenFromBlue = this.weights[1][2];
+    int blueFromRed = this.weights[2][0];
+    int blueFromGreen = this.weights[2][1];
+    int blueFromBlue = this.weights[2][2];
+    int mask = (1 << bits) - 1;
+    if (this.grey) {
+      // All three rows are the same, so one channel is computed and copied to the other two
+      for (int i = 0; i < length; i++) {
+        int rgb = source[sourceOffset + i];
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        int value = red * redFromRed + green * redFromGreen + blue * redFromBlue;
+        value = PixelBuffer.clamp(((value + ERROR_BOUND) & mask) >= 2 * ERROR_BOUND
+            ? value >> bits : this.exactChannel(0, red, green, blue));
+        target[targetOffset + i] = PixelBuffer.pack(value, value, value);
+      }
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      int rgb = source[sourceOffset + i];
+      int red = (rgb >> 16) & 0xFF;
+      int green = (rgb >> 8) & 0xFF;
+      int blue = rgb & 0xFF;
+      int newRed = red * redFromRed + green * redFromGreen + blue * redFromBlue;
+      int newGreen = red * greenFromRed + green * greenFromGreen + blue * greenFromBlue;
+      int newBlue = red * blueFromRed + green * blueFromGreen + blue * blueFromBlue;
+      // A sum at least the error bound away from a whole number is truncated the same way as the
+      // exact sum. A negative sum is rounded down instead of towards zero, which is clamped to 0
+      // anyway
+      newRed = ((newRed + ERROR_BOUND) & mask) >= 2 * ERROR_BOUND ? newRed >> bits
+          : this.exactChannel(0, red, green, blue);
+      newGreen = ((newGreen + ERROR_BOUND) & mask) >= 2 * ERROR_BOUND ? newGreen >> bits
+          : this.exactChannel(1, red, green, blue);
+      newBlue = ((newBlue + ERROR_BOUND) & mask) >= 2 * ERROR_BOUND ? newBlue >> bits
+          : this.exactChannel(2, red, green, blue);
+      target[targetOffset + i] = PixelBuffer.packClamped(newRed, newGreen, newBlue);
+    }
+  }
+}
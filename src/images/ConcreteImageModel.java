@@ -1,17 +1,36 @@
 package images;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * A concrete image model class that contains methods to load, modify and save images.
+ * A concrete image model class that contains methods to load, modify and save images. The pixels
+ * are kept in a {@link PixelBuffer} so that every operation walks one contiguous array, and the
+ * operations split the rows into bands that a {@link TileScheduler} processes in parallel.
+ * 
+ * <p>In lazy mode the color transformations, filters and edge detection are only recorded in an
+ * {@link OperationPipeline}, which fuses them and runs them when the pixels are needed: when the
+ * image data or the image is read, when the image is saved or cropped, or before an operation
+ * that needs the whole image, like dithering.
+ * 
+ * <p>With an {@link OperationContext} the operations report their progress and check between small
+ * groups of rows whether they have been cancelled. A cancelled operation keeps the pixels and the
+ * recorded operations this model had before it.
  */
 public class ConcreteImageModel implements ImageModel {
-  private int[][][] arrayOfImage;
+  private TileScheduler scheduler = TileScheduler.getDefault();
+  private OperationContext context;
+  private EditHistory history = new EditHistory(EditHistory.getDefaultCapacity());
+  private int operationDepth;
+  private TileScheduler operationScheduler = this.scheduler;
+  private ConvolutionEngine convolutionEngine = new ConvolutionEngine(this.scheduler);
+  private final OperationPipeline pending = new OperationPipeline();
+  private DecodedImageCache imageCache = DecodedImageCache.getDefault();
+  private boolean lazy;
+  private PixelBuffer buffer;
+  private ImageSnapshot snapshot;
+  private PixelBuffer snapshotSource;
 
   /**
    * A constructor that takes no arguments.
@@ -25,7 +44,32 @@ public class ConcreteImageModel implements ImageModel {
    *        an image
    */
   public ConcreteImageModel(int[][][] arrayOfImage) {
-    this.arrayOfImage = arrayOfImage;
+    if (arrayOfImage != null) {
+      this.buffer = PixelBuffer.fromArray(arrayOfImage);
+    }
+  }
+
+  /**
+   * A constructor that takes the pixels of an image.
+   * 
+   * @param buffer the pixels of an image
+   */
+  public ConcreteImageModel(PixelBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * A constructor that takes a snapshot of an image. The snapshot is copied into new pixels, so
+   * this model can change them without changing the snapshot.
+   * 
+   * @param snapshot the snapshot of an image
+   */
+  public ConcreteImageModel(ImageSnapshot snapshot) {
+    if (snapshot != null) {
+      this.buffer = snapshot.toPixelBuffer();
+      this.snapshot = snapshot;
+      this.snapshotSource = this.buffer;
+    }
   }
 
   /**
@@ -40,7 +84,13 @@ public class ConcreteImageModel implements ImageModel {
     if (filename == null) {
       throw new IllegalArgumentException("Invalid file name passed to model when loading.");
     }
-    this.arrayOfImage = ImageUtilities.readImage(filename);
+    this.applyOperation("load", filename, () -> {
+      ImageSnapshot loaded = this.imageCache.load(filename);
+      this.buffer = loaded.toPixelBuffer();
+      this.snapshot = loaded;
+      this.snapshotSource = this.buffer;
+      this.pending.clear();
+    });
   }
 
   /**
@@ -55,89 +105,350 @@ public class ConcreteImageModel implements ImageModel {
     if (filename == null) {
       throw new IllegalArgumentException("Invalid file name passed to model when saving.");
     }
-    ImageUtilities.writeImage(this.arrayOfImage, filename);
+    ImageOperationEvent event = new ImageOperationEvent();
+    event.begin();
+    this.materialize();
+    ImageUtilities.writeImage(this.buffer, filename);
+    this.imageCache.invalidate(filename);
+    event.finish("save", filename, null, this.buffer, this.lazy, false);
   }
 
   /**
-   * Return the data of this image model.
+   * Return the data of this image model. The array is a copy of the pixels of this model, so
+   * building it is slow for large images and changing it does not change this model.
    */
   public int[][][] getImageData() {
-    return this.arrayOfImage;
+    this.materialize();
+    if (this.buffer == null) {
+      return null;
+    }
+    return this.buffer.toArray();
   }
 
   /**
-   * A method that helps implement clamping.
+   * Return an image backed by the pixels of this image model, so no pixels are copied. The pixels
+   * are never shared with the image cache or a snapshot, so changing the image changes only this
+   * model.
    * 
-   * @param value the value to be clamped to be between 0 and 255
+   * @return an image backed by the pixels of this model, or null if no image has been loaded
    */
-  private int clampValue(int value) {
-    if (value < 0) {
-      return 0;
+  @Override
+  public BufferedImage getImage() {
+    this.materialize();
+    if (this.buffer == null) {
+      return null;
     }
-    if (value > 255) {
-      return 255;
+    // The caller may change the pixels, so the next snapshot compares them again
+    this.snapshotSource = null;
+    return this.buffer.toBufferedImage();
+  }
+
+  /**
+   * Return the pixels of this image model. The pixels are never shared with the image cache or a
+   * snapshot, so changing them changes only this model.
+   * 
+   * @return the pixels of this image model, or null if no image has been loaded
+   */
+  public PixelBuffer getPixelBuffer() {
+    this.materialize();
+    this.snapshotSource = null;
+    return this.buffer;
+  }
+
+  /**
+   * Return an immutable snapshot of the pixels of this image model, which can be kept or handed to
+   * another thread while this model goes on changing. The snapshot is built again only after the
+   * pixels may have changed, and then it shares every tile whose pixels did not change with the
+   * previous snapshot. Right after a load it is the snapshot kept by the image cache.
+   * 
+   * @return a snapshot of the pixels of this model, or null if no image has been loaded
+   */
+  public ImageSnapshot getSnapshot() {
+    this.materialize();
+    if (this.buffer == null) {
+      return null;
+    }
+    if (this.snapshotSource != this.buffer) {
+      this.snapshot = ImageSnapshot.of(this.buffer, this.snapshot, this.scheduler);
+      this.snapshotSource = this.buffer;
     }
-    return value;
+    return this.snapshot;
   }
 
   /**
-   * Return the data created by filtering the three dimensional array of an image with the kernel
-   * provided.
-   *
-   * @param arrayOfImage the three dimensional array of an image to be filtered
-   * @param kernel the kernel matrix to be used in filtering
-   * @return the data created by filtering the original data of the model with the kernel provided
+   * Return the width of the image of this model without running the recorded operations, none of
+   * which changes the size of the image.
+   * 
+   * @return the width of the image, or 0 if no image has been loaded
    */
-  private int[][][] filterImage(int[][][] arrayOfImage, double[][] kernel) {
-    // Create a three-dimension array whose default values are 0
-    int[][][] arrayOfFilteredImage = new int[arrayOfImage.length][arrayOfImage[0].length][3];
-    int[][][] outputData = new int[arrayOfImage.length][arrayOfImage[0].length][3];
-    int radiusOfKernel = kernel.length / 2;
-    for (int i = radiusOfKernel; i < arrayOfImage.length - radiusOfKernel; i++) {
-      for (int j = radiusOfKernel; j < arrayOfImage[0].length - radiusOfKernel; j++) {
-        for (int k1 = 0; k1 < kernel.length; k1++) {
-          for (int k2 = 0; k2 < kernel[0].length; k2++) {
-            int[] correspondingPixel =
-                arrayOfImage[i - radiusOfKernel + k1][j - radiusOfKernel + k2];
-            arrayOfFilteredImage[i][j][0] += (int) (correspondingPixel[0] * kernel[k1][k2]);
-            arrayOfFilteredImage[i][j][1] += (int) (correspondingPixel[1] * kernel[k1][k2]);
-            arrayOfFilteredImage[i][j][2] += (int) (correspondingPixel[2] * kernel[k1][k2]);
-          }
-        }
-        outputData[i][j][0] = this.clampValue(arrayOfFilteredImage[i][j][0]);
-        outputData[i][j][1] = this.clampValue(arrayOfFilteredImage[i][j][1]);
-        outputData[i][j][2] = this.clampValue(arrayOfFilteredImage[i][j][2]);
-      }
+  @Override
+  public int getImageWidth() {
+    return this.buffer == null ? 0 : this.buffer.getWidth();
+  }
+
+  /**
+   * Return the height of the image of this model without running the recorded operations.
+   * 
+   * @return the height of the image, or 0 if no image has been loaded
+   */
+  @Override
+  public int getImageHeight() {
+    return this.buffer == null ? 0 : this.buffer.getHeight();
+  }
+
+  /**
+   * Return the number of pixels of the image of this model without running the recorded
+   * operations, none of which changes the size of the image.
+   * 
+   * @return the number of pixels, or 0 if no image has been loaded
+   */
+  public long getPixelCount() {
+    return this.buffer == null ? 0 : (long) this.buffer.getWidth() * this.buffer.getHeight();
+  }
+
+  /**
+   * Return the scheduler that runs the operations of this image model.
+   * 
+   * @return the scheduler of this image model
+   */
+  public TileScheduler getTileScheduler() {
+    return this.scheduler;
+  }
+
+  /**
+   * Set the scheduler that runs the operations of this image model. Its parallelism does not
+   * change the results of the operations, only how many threads compute them.
+   * 
+   * @param scheduler the scheduler to run the operations on
+   * @throws IllegalArgumentException if the scheduler is null
+   */
+  public void setTileScheduler(TileScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("The scheduler should not be null.");
     }
-    return outputData;
-  }
-
-  /**
-   * Return the data created by filtering the three dimensional array of an image with the kernel
-   * provided and the resulting values are not clamped.
-   *
-   * @param arrayOfImage the three dimensional array of an image to be filtered
-   * @param kernel the kernel matrix to be used in filtering
-   * @return the data created by filtering the original data of the model with the kernel provided
-   */
-  private int[][][] filterImageWithoutClamping(int[][][] arrayOfImage, double[][] kernel) {
-    // Create a three-dimension array whose default values are 0
-    int[][][] arrayOfFilteredImage = new int[arrayOfImage.length][arrayOfImage[0].length][3];
-    int radiusOfKernel = kernel.length / 2;
-    for (int i = radiusOfKernel; i < arrayOfImage.length - radiusOfKernel; i++) {
-      for (int j = radiusOfKernel; j < arrayOfImage[0].length - radiusOfKernel; j++) {
-        for (int k1 = 0; k1 < kernel.length; k1++) {
-          for (int k2 = 0; k2 < kernel[0].length; k2++) {
-            int[] correspondingPixel =
-                arrayOfImage[i - radiusOfKernel + k1][j - radiusOfKernel + k2];
-            arrayOfFilteredImage[i][j][0] += (int) (correspondingPixel[0] * kernel[k1][k2]);
-            arrayOfFilteredImage[i][j][1] += (int) (correspondingPixel[1] * kernel[k1][k2]);
-            arrayOfFilteredImage[i][j][2] += (int) (correspondingPixel[2] * kernel[k1][k2]);
-          }
-        }
+    this.scheduler = scheduler;
+    this.bindScheduler();
+  }
+
+  /**
+   * Set the context the operations of this image model run in.
+   * 
+   * @param context the context of the operations, or null to run them without a context
+   */
+  @Override
+  public void setOperationContext(OperationContext context) {
+    this.context = context;
+    this.bindScheduler();
+  }
+
+  /**
+   * Return the context the operations of this image model run in.
+   * 
+   * @return the context of the operations, or null if they run without a context
+   */
+  public OperationContext getOperationContext() {
+    return this.context;
+  }
+
+  /**
+   * Bind the scheduler running the operations to the context of this image model.
+   */
+  private void bindScheduler() {
+    this.operationScheduler =
+        this.context == null ? this.scheduler : this.scheduler.withContext(this.context);
+    this.convolutionEngine = new ConvolutionEngine(this.operationScheduler);
+  }
+
+  /**
+   * Apply an operation so that cancelling it leaves this image model as it was before, and record
+   * it in the history of this model. The pixels of this model are never changed in place before
+   * the last check for cancellation, so keeping the previous buffer and the previous recorded
+   * operations is enough to undo it. An operation made of other operations is recorded once, but
+   * every operation gets its own flight recorder event.
+   * 
+   * @param name the name of the operation in its flight recorder event
+   * @param parameters the parameters of the operation in its event, or null if it has none
+   * @param operation the operation to apply
+   * @throws CancellationException if the operation is cancelled
+   */
+  private void applyOperation(String name, String parameters, Runnable operation)
+      throws CancellationException {
+    ImageOperationEvent event = new ImageOperationEvent();
+    event.begin();
+    PixelBuffer previousBuffer = this.buffer;
+    OperationPipeline previousPending = this.pending.copy();
+    this.operationDepth++;
+    try {
+      operation.run();
+    } catch (CancellationException e) {
+      this.buffer = previousBuffer;
+      this.pending.replaceWith(previousPending);
+      event.finish(name, parameters, previousBuffer, previousBuffer, this.lazy, true);
+      throw e;
+    } finally {
+      this.operationDepth--;
+    }
+    event.finish(name, parameters, previousBuffer, this.buffer, this.lazy, false);
+    if (this.buffer == previousBuffer) {
+      // An operation that keeps its pixels may have changed them in place
+      this.snapshotSource = null;
+    }
+    if (this.operationDepth == 0) {
+      this.history.record(previousBuffer, previousPending, this.buffer, this.scheduler);
+    }
+  }
+
+  /**
+   * Undo the last operation applied to this image model, including loading and generating images.
+   * 
+   * @return true if an operation was undone, or false if there is no operation to undo
+   */
+  @Override
+  public boolean undo() {
+    return this.restore(this.history.undo(this.buffer, this.pending, this.scheduler));
+  }
+
+  /**
+   * Apply again the last operation that was undone.
+   * 
+   * @return true if an operation was redone, or false if there is no operation to redo
+   */
+  @Override
+  public boolean redo() {
+    return this.restore(this.history.redo(this.buffer, this.pending, this.scheduler));
+  }
+
+  /**
+   * Change the pixels and the recorded operations of this image model to a state of its history.
+   * 
+   * @param state the state to change to, or null to keep this model as it is
+   * @return true if the state was not null
+   */
+  private boolean restore(EditHistory.State state) {
+    if (state == null) {
+      return false;
+    }
+    this.buffer = state.getBuffer();
+    this.pending.replaceWith(state.getPending());
+    return true;
+  }
+
+  /**
+   * Return the undo and redo history of this image model.
+   * 
+   * @return the history of this image model
+   */
+  public EditHistory getEditHistory() {
+    return this.history;
+  }
+
+  /**
+   * Set the undo and redo history of this image model, for example to give it another capacity. A
+   * history with a capacity of 0 records nothing.
+   * 
+   * @param history the history to record the operations in
+   * @throws IllegalArgumentException if the history is null
+   */
+  public void setEditHistory(EditHistory history) throws IllegalArgumentException {
+    if (history == null) {
+      throw new IllegalArgumentException("The history should not be null.");
+    }
+    this.history = history;
+  }
+
+  /**
+   * Return the cache that loaded images are read through.
+   * 
+   * @return the image cache of this image model
+   */
+  public DecodedImageCache getImageCache() {
+    return this.imageCache;
+  }
+
+  /**
+   * Set the cache that loaded images are read through. A cache with a capacity of 0 decodes every
+   * image again.
+   * 
+   * @param imageCache the cache to read images through
+   * @throws IllegalArgumentException if the cache is null
+   */
+  public void setImageCache(DecodedImageCache imageCache) throws IllegalArgumentException {
+    if (imageCache == null) {
+      throw new IllegalArgumentException("The image cache should not be null.");
+    }
+    this.imageCache = imageCache;
+  }
+
+  /**
+   * Return whether the operations of this image model are recorded and run when the pixels are
+   * needed.
+   * 
+   * @return true if this image model is in lazy mode
+   */
+  public boolean isLazy() {
+    return this.lazy;
+  }
+
+  /**
+   * Set whether the operations of this image model are recorded and run when the pixels are
+   * needed. Leaving lazy mode runs the recorded operations.
+   * 
+   * @param lazy true to record the operations, false to run every operation when it is applied
+   */
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+    if (!lazy) {
+      this.materialize();
+    }
+  }
+
+  /**
+   * Run the recorded operations of this image model.
+   */
+  private void materialize() {
+    if (!this.pending.isEmpty()) {
+      // In lazy mode the recorded operations only touch the pixels here, so they get an event of
+      // their own
+      ImageOperationEvent event = this.lazy ? new ImageOperationEvent() : null;
+      if (event != null) {
+        event.begin();
+      }
+      PixelBuffer recorded = this.buffer;
+      this.buffer =
+          this.pending.execute(this.buffer, this.convolutionEngine, this.operationScheduler);
+      if (event != null) {
+        event.finish("runRecorded", null, recorded, this.buffer, true, false);
+      }
+      if (this.operationDepth == 0) {
+        // The neighboring steps of the history lead from the pixels before the recorded operations
+        // ran, so they are moved to the new pixels
+        this.history.rebase(recorded, this.buffer, this.scheduler);
       }
     }
-    return arrayOfFilteredImage;
+  }
+
+  /**
+   * Stop the running operation if it has been cancelled, and report how far it has got. Operations
+   * that do not run on the scheduler call this after every row.
+   * 
+   * @param rowsDone the number of rows that are done
+   * @param totalRows the number of rows of the image
+   * @throws CancellationException if the operation has been cancelled
+   */
+  private void checkpoint(int rowsDone, int totalRows) throws CancellationException {
+    if (this.context != null) {
+      this.context.checkpoint();
+      this.context.reportProgress(rowsDone, totalRows);
+    }
+  }
+
+  /**
+   * Run the recorded operations of this image model unless it is in lazy mode.
+   */
+  private void materializeUnlessLazy() {
+    if (!this.lazy) {
+      this.materialize();
+    }
   }
 
   /**
@@ -145,9 +456,39 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyBlur() {
+    this.applyOperation("blur", null, () -> {
+      this.pending.addConvolution(blurKernel());
+      this.materializeUnlessLazy();
+    });
+  }
+
+  /**
+   * Apply a Gaussian blur of the given radius to the data in the image model. The kernel is
+   * separable, so its weighted sums are truncated once rather than after every product like the
+   * blur filter.
+   * 
+   * @param radius the number of pixels on each side of a pixel that are blurred into it
+   * @throws IllegalArgumentException if the radius is not between 1 and
+   *         {@value Kernel#MAX_GAUSSIAN_RADIUS}
+   */
+  @Override
+  public void applyGaussianBlur(int radius) throws IllegalArgumentException {
+    Kernel kernel = Kernel.gaussian(radius);
+    this.applyOperation("gaussianBlur", "radius=" + radius, () -> {
+      this.pending.addConvolution(kernel);
+      this.materializeUnlessLazy();
+    });
+  }
+
+  /**
+   * Return the kernel of the blur filter.
+   * 
+   * @return the blur kernel
+   */
+  static Kernel blurKernel() {
     double[][] kernel = {{1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0}, {1.0 / 8.0, 1.0 / 4.0, 1.0 / 8.0},
         {1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0}};
-    this.arrayOfImage = this.filterImage(this.arrayOfImage, kernel);
+    return new Kernel(kernel);
   }
 
   /**
@@ -155,41 +496,37 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySharpen() {
+    this.applyOperation("sharpen", null, () -> {
+      this.pending.addConvolution(sharpenKernel());
+      this.materializeUnlessLazy();
+    });
+  }
+
+  /**
+   * Return the kernel of the sharpen filter.
+   * 
+   * @return the sharpen kernel
+   */
+  static Kernel sharpenKernel() {
     double[][] kernel = {{-1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0},
         {-1.0 / 8.0, 1.0 / 4.0, 1.0 / 4.0, 1.0 / 4.0, -1.0 / 8.0},
         {-1.0 / 8.0, 1.0 / 4.0, 1.0, 1.0 / 4.0, -1.0 / 8.0},
         {-1.0 / 8.0, 1.0 / 4.0, 1.0 / 4.0, 1.0 / 4.0, -1.0 / 8.0},
         {-1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0}};
-    this.arrayOfImage = this.filterImage(this.arrayOfImage, kernel);
+    return new Kernel(kernel);
   }
 
   /**
    * Apply color transformations to the data in the image model.
    * 
-   * @param kernel the kernel matrix to be used in color transformations
-   */
-  private void transformColorOfImage(double[][] kernel) {
-    // Create a three-dimension array whose default values are 0
-    int[][][] arrayOfColorTransformedImage =
-        new int[this.arrayOfImage.length][this.arrayOfImage[0].length][3];
-    for (int i = 0; i < this.arrayOfImage.length; i++) {
-      for (int j = 0; j < this.arrayOfImage[0].length; j++) {
-
-        arrayOfColorTransformedImage[i][j][0] = (int) (this.arrayOfImage[i][j][0] * kernel[0][0]
-            + this.arrayOfImage[i][j][1] * kernel[0][1]
-            + this.arrayOfImage[i][j][2] * kernel[0][2]);
-        arrayOfColorTransformedImage[i][j][1] = (int) (this.arrayOfImage[i][j][0] * kernel[1][0]
-            + this.arrayOfImage[i][j][1] * kernel[1][1]
-            + this.arrayOfImage[i][j][2] * kernel[1][2]);
-        arrayOfColorTransformedImage[i][j][2] = (int) (this.arrayOfImage[i][j][0] * kernel[2][0]
-            + this.arrayOfImage[i][j][1] * kernel[2][1]
-            + this.arrayOfImage[i][j][2] * kernel[2][2]);
-
-        this.arrayOfImage[i][j][0] = this.clampValue(arrayOfColorTransformedImage[i][j][0]);
-        this.arrayOfImage[i][j][1] = this.clampValue(arrayOfColorTransformedImage[i][j][1]);
-        this.arrayOfImage[i][j][2] = this.clampValue(arrayOfColorTransformedImage[i][j][2]);
-      }
-    }
+   * @param name the name of the transformation
+   * @param operation the point operation to be used in color transformations
+   */
+  private void transformColorOfImage(String name, PointOperation operation) {
+    this.applyOperation(name, null, () -> {
+      this.pending.addPointOperation(operation);
+      this.materializeUnlessLazy();
+    });
   }
 
   /**
@@ -197,9 +534,18 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyGreyscale() {
+    this.transformColorOfImage("greyscale", greyscale());
+  }
+
+  /**
+   * Return the greyscale color transformation.
+   * 
+   * @return the point operation turning colors into greys
+   */
+  static PointOperation greyscale() {
     double[][] kernel =
       {{0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}};
-    this.transformColorOfImage(kernel);
+    return new ColorMatrix(kernel);
   }
 
   /**
@@ -207,8 +553,17 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySepia() {
+    this.transformColorOfImage("sepia", sepia());
+  }
+
+  /**
+   * Return the sepia color transformation.
+   * 
+   * @return the point operation turning colors into sepia tones
+   */
+  static PointOperation sepia() {
     double[][] kernel = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}};
-    this.transformColorOfImage(kernel);
+    return new ColorMatrix(kernel);
   }
 
   /**
@@ -216,14 +571,27 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyDither() {
-    // Apply the first step of dithering
-    this.applyGreyscale();
-
-    // Apply the second step of dithering
-    for (int i = 1; i < this.arrayOfImage.length - 1; i++) {
-      for (int j = 1; j < this.arrayOfImage[0].length - 1; j++) {
-        for (int c = 0; c < 3; c++) {
-          int oldColor = this.arrayOfImage[i][j][c];
+    this.applyOperation("dither", null, () -> {
+      // Apply the first step of dithering
+      this.applyGreyscale();
+      this.materialize();
+
+      // After the greyscale step the three channels are equal, so the error is diffused on one
+      // channel that is allowed to leave the range of 0 to 255 until it is written back
+      int width = this.buffer.getWidth();
+      int height = this.buffer.getHeight();
+      int[] data = this.buffer.getData();
+      int[] grey = new int[width * height];
+      for (int i = 0; i < grey.length; i++) {
+        grey[i] = PixelBuffer.blue(data[i]);
+      }
+
+      // Apply the second step of dithering. Every pixel depends on the error of the pixels before
+      // it, so this step runs on one thread
+      for (int i = 1; i < height - 1; i++) {
+        for (int j = 1; j < width - 1; j++) {
+          int index = i * width + j;
+          int oldColor = grey[index];
           int newColor;
           // Set the new color for this pixel
           if (oldColor <= 127) {
@@ -231,158 +599,129 @@ public class ConcreteImageModel implements ImageModel {
           } else {
             newColor = 255;
           }
-          this.arrayOfImage[i][j][c] = newColor;
+          grey[index] = newColor;
           // Modify the color for surrounding pixels
           int colorError = oldColor - newColor;
-          this.arrayOfImage[i][j + 1][c] += (int) (colorError * 7.0 / 16.0);
-          this.arrayOfImage[i + 1][j - 1][c] += (int) (colorError * 3.0 / 16.0);
-          this.arrayOfImage[i + 1][j][c] += (int) (colorError * 5.0 / 16.0);
-          this.arrayOfImage[i + 1][j + 1][c] += (int) (colorError * 1.0 / 16.0);
+          grey[index + 1] += (int) (colorError * 7.0 / 16.0);
+          grey[index + width - 1] += (int) (colorError * 3.0 / 16.0);
+          grey[index + width] += (int) (colorError * 5.0 / 16.0);
+          grey[index + width + 1] += (int) (colorError * 1.0 / 16.0);
         }
+        this.checkpoint(i + 1, height);
       }
-    }
+      for (int i = 0; i < grey.length; i++) {
+        data[i] = PixelBuffer.packClamped(grey[i], grey[i], grey[i]);
+      }
+    });
   }
 
   /**
-   * Calculate and return the distance between two points.
+   * Apply the mosaic effect to the data in the image model. The seeds are chosen at random, so
+   * every call gives a different mosaic.
    * 
-   * @param row1 the row number of the first point
-   * @param column1 the column number of the first point
-   * @param row2 the row number of the second point
-   * @param column2 the column number of the second point
-   * @return the distance between two points
+   * @param seeds the number of seeds to use in the mosaic
+   * @throws IllegalArgumentException if the number of seeds is not positive
    */
-  private double calculateDistance(int row1, int column1, int row2, int column2) {
-    return Math.sqrt((row1 - row2) * (row1 - row2) + (column1 - column2) * (column1 - column2));
+  @Override
+  public void applyMosaic(int seeds) throws IllegalArgumentException {
+    this.applyMosaic(seeds, new SeedGenerator(ThreadLocalRandom.current().nextLong()));
   }
 
   /**
-   * Apply the mosaic effect to the data in the image model.
+   * Apply the mosaic effect to the data in the image model with seeds chosen by a generator. The
+   * same generator always chooses the same seeds for an image of the same size.
    * 
-   * @param seeds the number of seeds to use in the mosaic
-   * @throws IllegalArgumentException if the number of seeds is not positive
+   * @param seeds the number of seeds to use in the mosaic, reduced to the number of pixels if it
+   *        is larger
+   * @param generator the generator choosing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive or the generator is
+   *         null
    */
-  @Override
-  public void applyMosaic(int seeds) throws IllegalArgumentException {
+  public void applyMosaic(int seeds, SeedGenerator generator) throws IllegalArgumentException {
     if (seeds < 1) {
       throw new IllegalArgumentException("The number of seeds should be positive.");
     }
-    // create a list containing randomly selected and distinct points as the seeds
-    ArrayList<int[]> selectedPoints = new ArrayList<int[]>();
-    int count = 0;
-    while (count < seeds) {
-      int randomRow = (int) (Math.random() * ((this.arrayOfImage.length - 1) - 0 + 1) + 0);
-      int randomColumn = (int) (Math.random() * ((this.arrayOfImage[0].length - 1) - 0 + 1) + 0);
-      int[] randomPoint = {randomRow, randomColumn};
-      if (!selectedPoints.contains(randomPoint)) {
-        selectedPoints.add(randomPoint);
-        count++;
-      }
-    }
-    // find the closest seed for each pixel and change the color of each pixel to the color of its
-    // closest seed
-    for (int i = 0; i < this.arrayOfImage.length; i++) {
-      for (int j = 0; j < this.arrayOfImage[0].length; j++) {
-        // get the location of the closest seed for each pixel
-        double minimumDistanceBetweenSeedAndPixel = Double.POSITIVE_INFINITY;
-        int[] locationOfClosestSeed = new int[2];
-        for (int k = 0; k < selectedPoints.size(); k++) {
-          double distanceBetweenSeedAndPixel =
-              this.calculateDistance(i, j, selectedPoints.get(k)[0], selectedPoints.get(k)[1]);
-          if (distanceBetweenSeedAndPixel < minimumDistanceBetweenSeedAndPixel) {
-            minimumDistanceBetweenSeedAndPixel = distanceBetweenSeedAndPixel;
-            locationOfClosestSeed = selectedPoints.get(k);
-          }
-        }
-        // change the color of each pixel to the color of its closest seed
-        for (int m = 0; m < 3; m++) {
-          this.arrayOfImage[i][j][m] =
-              this.arrayOfImage[locationOfClosestSeed[0]][locationOfClosestSeed[1]][m];
-        }
-      }
+    if (generator == null) {
+      throw new IllegalArgumentException("The seed generator should not be null.");
     }
+    this.applyOperation("mosaic", "seeds=" + seeds, () -> {
+      this.materialize();
+      int width = this.buffer.getWidth();
+      int height = this.buffer.getHeight();
+      // create randomly selected and distinct points as the seeds
+      int[] seedPixels = generator.generate(width, height, seeds);
+      // find the closest seed for each pixel and change the color of each pixel to the color of its
+      // closest seed
+      this.buffer = this.paintVoronoiCells(new SeedGrid(width, height, seedPixels));
+    });
   }
 
   /**
-   * Find the maximum color values of the three dimensional array of an image model.
+   * Return the pixels created by changing the color of each pixel of this image to the color of
+   * its closest seed.
    * 
-   * @return the maximum color values of the three dimensional array of an image model
+   * @param grid the grid holding the seeds of the mosaic
+   * @return the pixels of the mosaic
    */
-  private int[] findMax(int[][][] data) {
-    int[] maximumValues = new int[] {0, 0, 0};
-    for (int c = 0; c < 3; c++) {
-      for (int i = 0; i < data.length; i++) {
-        for (int j = 0; j < data[0].length; j++) {
-          if (data[i][j][c] > maximumValues[c]) {
-            maximumValues[c] = data[i][j][c];
-          }
+  private PixelBuffer paintVoronoiCells(SeedGrid grid) {
+    int width = this.buffer.getWidth();
+    int height = this.buffer.getHeight();
+    int[] seedColors = new int[grid.getSeedCount()];
+    for (int k = 0; k < seedColors.length; k++) {
+      int seed = grid.getSeed(k);
+      seedColors[k] = this.buffer.getRGB(seed % width, seed / width);
+    }
+    PixelBuffer mosaic = new PixelBuffer(width, height);
+    int[] output = mosaic.getData();
+    this.operationScheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int j = 0; j < width; j++) {
+          output[i * width + j] = seedColors[grid.findClosestSeed(j, i)];
         }
       }
-    }
-    return maximumValues;
+    });
+    return mosaic;
   }
 
   /**
-   * Find the minimum color values of the three dimensional array of an image model.
-   * 
-   * @return the minimum color values of the three dimensional array of an image model
+   * Apply edge detection to this image.
    */
-  private int[] findMin(int[][][] data) {
-    int[] minimumValues = new int[] {255, 255, 255};
-    for (int c = 0; c < 3; c++) {
-      for (int i = 0; i < data.length; i++) {
-        for (int j = 0; j < data[0].length; j++) {
-          if (data[i][j][c] < minimumValues[c]) {
-            minimumValues[c] = data[i][j][c];
-          }
-        }
-      }
-    }
-    return minimumValues;
+  public void applyEdgeDetection() {
+    // The gradients are found in one pass and then normalized and turned into greyscale in another
+    this.applyOperation("edgeDetection", null, () -> {
+      this.pending.addEdgeDetection(greyscale());
+      this.materializeUnlessLazy();
+    });
   }
 
   /**
-   * Apply edge detection filtering to the data of an image.
+   * Count how many pixels of a band of rows have each grey value.
    * 
-   * @param data the data of an image
-   * @param kx the array of the first kernel
-   * @param ky the array of the second kernel
-   * @return a three dimension array of the model after edge detection filtering
+   * @param data the pixels of a greyscale image
+   * @param start the index of the first pixel of the band
+   * @param end the index after the last pixel of the band
+   * @return the number of pixels with each of the 256 grey values
    */
-  private int[][][] edgeDetectionFilter(int[][][] data, double[][] kx, double[][] ky) {
-    int[][][] gx = this.filterImageWithoutClamping(data, kx);
-    int[][][] gy = this.filterImageWithoutClamping(data, ky);
-    int[][][] gxy = new int[data.length][data[0].length][3];
-    for (int i = 0; i < data.length; i++) {
-      for (int j = 0; j < data[0].length; j++) {
-        for (int c = 0; c < 3; c++) {
-          gxy[i][j][c] = (int) Math.sqrt(gx[i][j][c] * gx[i][j][c] + gy[i][j][c] * gy[i][j][c]);
-        }
-      }
+  private static int[] countGreyValues(int[] data, int start, int end) {
+    int[] histogram = new int[256];
+    for (int i = start; i < end; i++) {
+      histogram[PixelBuffer.red(data[i])]++;
     }
-    return gxy;
+    return histogram;
   }
 
   /**
-   * Apply edge detection to this image.
+   * Add up the histograms of two bands of rows.
+   * 
+   * @param first the histogram of the first band
+   * @param second the histogram of the second band
+   * @return the histogram of both bands
    */
-  public void applyEdgeDetection() {
-    double[][] kx = {{1.0, 0.0, -1.0}, {2.0, 0.0, -2.0}, {1.0, 0.0, -1.0}};
-    double[][] ky = {{1.0, 2.0, 1.0}, {0.0, 0.0, 0.0}, {-1.0, -2.0, -1.0}};
-    int[][][] gxy = this.edgeDetectionFilter(arrayOfImage, kx, ky);
-    int[] maximumValues = this.findMax(gxy);
-    int[] minimumValues = this.findMin(gxy);
-    int[][][] tempData = new int[gxy.length][gxy[0].length][3];
-    for (int i = 0; i < gxy.length; i++) {
-      for (int j = 0; j < gxy[0].length; j++) {
-        for (int c = 0; c < 3; c++) {
-          tempData[i][j][c] =
-              (gxy[i][j][c] - minimumValues[c]) * 255 / (maximumValues[c] - minimumValues[c]);
-        }
-      }
+  private static int[] mergeHistograms(int[] first, int[] second) {
+    for (int i = 0; i < 256; i++) {
+      first[i] += second[i];
     }
-    arrayOfImage = tempData;
-    this.applyGreyscale();
+    return first;
   }
 
   /**
@@ -390,58 +729,31 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyGreyscaleEnhancement() {
-    this.applyGreyscale();
-    // Create a map to store the grey values and their corresponding occurrences in the image
-    TreeMap<Integer, Integer> map1 = new TreeMap<Integer, Integer>();
-    for (int i = 0; i < arrayOfImage.length; i++) {
-      for (int j = 0; j < arrayOfImage[0].length; j++) {
-        if (map1.containsKey(arrayOfImage[i][j][0])) {
-          int newValue = map1.get(arrayOfImage[i][j][0]) + 1;
-          map1.put(arrayOfImage[i][j][0], newValue);
-        } else {
-          map1.put(arrayOfImage[i][j][0], 1);
-        }
-      }
-    }
-    // Create a map to store the grey values and their frequency of occurrence
-    TreeMap<Integer, Double> map2 = new TreeMap<Integer, Double>();
-    int totalPixels = arrayOfImage.length * arrayOfImage[0].length;
-    for (Map.Entry<Integer, Integer> entry : map1.entrySet()) {
-      Integer newKey = entry.getKey();
-      Double newValue = ((double) entry.getValue()) / totalPixels;
-      map2.put(newKey, newValue);
-    }
-    // Create a map to store the grey values and their cumulative frequency of occurrence
-    TreeMap<Integer, Double> map3 = new TreeMap<Integer, Double>();
-    ArrayList<Integer> greyValues =
-        (ArrayList<Integer>) map2.keySet().stream().collect(Collectors.toList());
-
-    map3.put(greyValues.get(0), map2.get(greyValues.get(0)));
-    for (int i = 1; i < greyValues.size(); i++) {
-      Double newValue = 0.0;
-      for (int j = 0; j <= i; j++) {
-        newValue += map2.get(greyValues.get(j));
-      }
-      map3.put(greyValues.get(i), newValue);
-    }
-    // Create a map to store the grey values and their enhanced output values
-    int greyLevel = 255;
-    TreeMap<Integer, Integer> map4 = new TreeMap<Integer, Integer>();
-    for (Map.Entry<Integer, Double> entry : map3.entrySet()) {
-      int outputValues = (int) Math.round(entry.getValue() * greyLevel);
-      map4.put(entry.getKey(), outputValues);
-    }
-    // Replace the original grey values of this model with the enhanced ones
-    int[][][] enhancedValues = new int[arrayOfImage.length][arrayOfImage[0].length][3];
-    for (int i = 0; i < arrayOfImage.length; i++) {
-      for (int j = 0; j < arrayOfImage[0].length; j++) {
-        for (int c = 0; c < 3; c++) {
-          int enhancedValue = map4.get(arrayOfImage[i][j][0]);
-          enhancedValues[i][j][c] = enhancedValue;
+    this.applyOperation("greyscaleEnhancement", null, () -> {
+      this.applyGreyscale();
+      this.materialize();
+      int width = this.buffer.getWidth();
+      int height = this.buffer.getHeight();
+      int[] data = this.buffer.getData();
+      // Count the occurrences of every grey value, with one histogram per band of rows
+      int[] histogram = this.operationScheduler.reduceRowBands(width, height,
+          (rowStart, rowEnd) -> countGreyValues(data, rowStart * width, rowEnd * width),
+          ConcreteImageModel::mergeHistograms);
+      // Add up the frequencies of the grey values in increasing order to get their cumulative
+      // frequencies, and turn those into the enhanced output values
+      int greyLevel = 255;
+      int totalPixels = data.length;
+      int[] enhancedValues = new int[256];
+      double cumulativeFrequency = 0.0;
+      for (int grey = 0; grey < 256; grey++) {
+        if (histogram[grey] > 0) {
+          cumulativeFrequency += ((double) histogram[grey]) / totalPixels;
+          enhancedValues[grey] = (int) Math.round(cumulativeFrequency * greyLevel);
         }
       }
-    }
-    this.arrayOfImage = enhancedValues;
+      // Replace the original grey values of this model with the enhanced ones
+      this.transformColorOfImage("lookupTable", new LookupTable(enhancedValues));
+    });
   }
 
   /**
@@ -455,58 +767,77 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public ImageModel applyImageCropping(int x, int y, int width, int height) {
-    BufferedImage bufferedImage =
-        ImageUtilities.convertImage(this.arrayOfImage).getSubimage(x, y, width, height);
-
-    int[][][] newData = new int[bufferedImage.getHeight()][bufferedImage.getWidth()][3];
+    ImageOperationEvent event = new ImageOperationEvent();
+    event.begin();
+    this.materialize();
+    ConcreteImageModel croppedImage =
+        new ConcreteImageModel(this.buffer.copyRegion(x, y, width, height));
+    croppedImage.setTileScheduler(this.scheduler);
+    croppedImage.setOperationContext(this.context);
+    // The cropped model carries on a copy of the history, so undoing brings back the whole image,
+    // and this model keeps its own history in case the crop is given up
+    croppedImage.history = this.history.copy();
+    croppedImage.history.record(this.buffer, this.pending, croppedImage.buffer, this.scheduler);
+    event.finish("crop", "x=" + x + ", y=" + y + ", width=" + width + ", height=" + height,
+        this.buffer, croppedImage.buffer, this.lazy, false);
+    return croppedImage;
+  }
 
-    for (int i = 0; i < bufferedImage.getHeight(); i++) {
-      for (int j = 0; j < bufferedImage.getWidth(); j++) {
-        Color c = new Color(bufferedImage.getRGB(j, i));
-        newData[i][j][0] = c.getRed();
-        newData[i][j][1] = c.getGreen();
-        newData[i][j][2] = c.getBlue();
+  /**
+   * Return the pixels of an image painted with a list of rectangles. Every band of rows is painted
+   * with all the rectangles in order, so later rectangles cover earlier ones.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param rectangles the rectangles to paint, each given as its first column, first row, column
+   *        after its last column, row after its last row and packed color
+   * @return the pixels of the painted image
+   */
+  private PixelBuffer paintRectangles(int width, int height, int[][] rectangles) {
+    PixelBuffer image = new PixelBuffer(width, height);
+    this.operationScheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      for (int[] rectangle : rectangles) {
+        image.fill(rectangle[0], Math.max(rowStart, rectangle[1]), rectangle[2],
+            Math.min(rowEnd, rectangle[3]), rectangle[4]);
       }
-    }
-    return new ConcreteImageModel(newData);
+    });
+    return image;
   }
 
   /**
-   * Return an array containing the RGB values of red, orange, yellow, green, blue, indigo, and
-   * violet.
+   * Return an array containing the packed RGB values of red, orange, yellow, green, blue, indigo,
+   * and violet.
    * 
-   * @return an array containing the RGB values of red, orange, yellow, green, blue, indigo, and
-   *         violet
+   * @return an array containing the packed RGB values of red, orange, yellow, green, blue, indigo,
+   *         and violet
    */
-  private int[][] rainbowColors() {
-    int[][] colors = new int[7][3];
+  private int[] rainbowColors() {
+    int[] colors = new int[7];
     // Red
-    colors[0] = new int[] {255, 0, 0};
+    colors[0] = PixelBuffer.pack(255, 0, 0);
     // Orange
-    colors[1] = new int[] {255, 127, 0};
+    colors[1] = PixelBuffer.pack(255, 127, 0);
     // Yellow
-    colors[2] = new int[] {255, 255, 0};
+    colors[2] = PixelBuffer.pack(255, 255, 0);
     // Green
-    colors[3] = new int[] {0, 255, 0};
+    colors[3] = PixelBuffer.pack(0, 255, 0);
     // Blue
-    colors[4] = new int[] {0, 0, 255};
+    colors[4] = PixelBuffer.pack(0, 0, 255);
     // Indigo
-    colors[5] = new int[] {75, 0, 130};
+    colors[5] = PixelBuffer.pack(75, 0, 130);
     // Violet
-    colors[6] = new int[] {148, 0, 211};
+    colors[6] = PixelBuffer.pack(148, 0, 211);
     return colors;
   }
 
   /**
-   * Return a three-dimensional array containing the data for a horizontal stripped rainbow with the
-   * specified width and height.
+   * Return the pixels of a horizontal stripped rainbow with the specified width and height.
    * 
    * @param width the width of the rainbow
    * @param height the height of the rainbow
-   * @return a three-dimensional array containing the data for a horizontal stripped rainbow with
-   *         the specified width and height.
+   * @return the pixels of a horizontal stripped rainbow with the specified width and height.
    */
-  private int[][][] horizontalStrippedRainbow(int width, int height) {
+  private PixelBuffer horizontalStrippedRainbow(int width, int height) {
     if (width < 1 || height < 7) {
       throw new IllegalArgumentException(
           "Invalid input: width should be at least 1 pixel and height should be at least 7 piexls"
@@ -516,29 +847,23 @@ public class ConcreteImageModel implements ImageModel {
     int stripThickness = (int) Math.round(height / 7.0);
     int row = 7 * stripThickness;
     int column = width;
-    int[][] colors = this.rainbowColors();
-    int[][][] arrayOfHorizontalStrippedRainbows = new int[row][column][3];
+    int[] colors = this.rainbowColors();
+    int[][] strips = new int[7][];
 
     for (int m = 0; m < 7; m++) {
-      for (int r = stripThickness * m; r < stripThickness * (m + 1); r++) {
-        for (int c = 0; c < column; c++) {
-          arrayOfHorizontalStrippedRainbows[r][c] = colors[m];
-        }
-      }
+      strips[m] = new int[] {0, stripThickness * m, column, stripThickness * (m + 1), colors[m]};
     }
-    return arrayOfHorizontalStrippedRainbows;
+    return this.paintRectangles(column, row, strips);
   }
 
   /**
-   * Return a three-dimensional array containing the data for a vertical stripped rainbow with the
-   * specified width and height.
+   * Return the pixels of a vertical stripped rainbow with the specified width and height.
    * 
    * @param width the width of the rainbow
    * @param height the height of the rainbow
-   * @return a three-dimensional array containing the data for a vertical stripped rainbow with the
-   *         specified width and height.
+   * @return the pixels of a vertical stripped rainbow with the specified width and height.
    */
-  private int[][][] verticalStrippedRainbow(int width, int height) {
+  private PixelBuffer verticalStrippedRainbow(int width, int height) {
     if (width < 7 || height < 1) {
       throw new IllegalArgumentException(
           "Invalid input: width should be at least 7 pixels and height should be at least 1 piexl"
@@ -547,17 +872,13 @@ public class ConcreteImageModel implements ImageModel {
     int row = height;
     int stripWidth = (int) Math.round(width / 7.0);
     int column = 7 * stripWidth;
-    int[][] colors = this.rainbowColors();
-    int[][][] arrayOfVerticalStrippedRainbows = new int[row][column][3];
+    int[] colors = this.rainbowColors();
+    int[][] strips = new int[7][];
 
-    for (int r = 0; r < height; r++) {
-      for (int m = 0; m < 7; m++) {
-        for (int c = stripWidth * m; c < stripWidth * (m + 1); c++) {
-          arrayOfVerticalStrippedRainbows[r][c] = colors[m];
-        }
-      }
+    for (int m = 0; m < 7; m++) {
+      strips[m] = new int[] {stripWidth * m, 0, stripWidth * (m + 1), row, colors[m]};
     }
-    return arrayOfVerticalStrippedRainbows;
+    return this.paintRectangles(column, row, strips);
   }
 
   /**
@@ -571,21 +892,32 @@ public class ConcreteImageModel implements ImageModel {
   @Override
   public void generateRainbow(int width, int height, int rainbowType) {
     if (rainbowType == 0) {
-      this.arrayOfImage = this.horizontalStrippedRainbow(width, height);
+      this.applyOperation("rainbow", "horizontal " + width + "x" + height, () -> {
+        this.buffer = this.horizontalStrippedRainbow(width, height);
+        this.pending.clear();
+      });
     } else if (rainbowType == 1) {
-      this.arrayOfImage = this.verticalStrippedRainbow(width, height);
+      this.applyOperation("rainbow", "vertical " + width + "x" + height, () -> {
+        this.buffer = this.verticalStrippedRainbow(width, height);
+        this.pending.clear();
+      });
     } else {
       throw new IllegalArgumentException("Can only accept 0 or 1 for rainbowType.");
     }
   }
 
   /**
-   * Change the data of this model to the data of a check board.
+   * Change the data of this model to the data of a check board. The height of a square is the
+   * total height divided by the number of squares, rounded to the nearest integer, so the board
+   * may be a little smaller or larger than the total height asked for.
    * 
    * @param totalHeight the total height of the check board
    * @param numberOfSquares the number of squares of the check board
    * @param firstColor the first color of the check board
    * @param secondColor the second color of the check board
+   * @throws IllegalArgumentException if the height or the number of squares is not positive, a
+   *         color is null, or the squares would be less than one pixel high once rounded, which
+   *         would leave an empty image
    */
   @Override
   public void generateCheckerBoard(int totalHeight, int numberOfSquares, int[] firstColor,
@@ -594,30 +926,28 @@ public class ConcreteImageModel implements ImageModel {
       throw new IllegalArgumentException("Invalid argument for the generateCheckerBoard method.");
     }
 
-    int[][] colors = new int[][] {firstColor, secondColor};
+    int[] colors = new int[] {
+        PixelBuffer.packClamped(firstColor[0], firstColor[1], firstColor[2]),
+        PixelBuffer.packClamped(secondColor[0], secondColor[1], secondColor[2])};
     int squareHeight = (int) Math.round((double) totalHeight / numberOfSquares);
     int actualChceckBoardHeight = squareHeight * numberOfSquares;
-    this.arrayOfImage = new int[actualChceckBoardHeight][actualChceckBoardHeight][3];
-
-    for (int m = 0; m < numberOfSquares; m += 2) {
-      // The even rows of the checkboard
-      for (int row = m * squareHeight; row < (m + 1) * squareHeight; row++) {
-        for (int n = 0; n < numberOfSquares; n++) {
-          for (int column = n * squareHeight; column < (n + 1) * squareHeight; column++) {
-            this.arrayOfImage[row][column] = colors[n % 2];
-          }
-        }
-      }
-      // The odd rows of the checkboard
-      for (int row = (m + 1) * squareHeight; row < (m + 2) * squareHeight
-          && row < actualChceckBoardHeight; row++) {
-        for (int n = 0; n < numberOfSquares; n++) {
-          for (int column = n * squareHeight; column < (n + 1) * squareHeight; column++) {
-            this.arrayOfImage[row][column] = colors[(n + 1) % 2];
-          }
-        }
+    if (actualChceckBoardHeight < 1) {
+      throw new IllegalArgumentException("Invalid argument for the generateCheckerBoard method.");
+    }
+    int[][] squares = new int[numberOfSquares * numberOfSquares][];
+
+    for (int m = 0; m < numberOfSquares; m++) {
+      for (int n = 0; n < numberOfSquares; n++) {
+        // Even rows of the checkboard start with the first color and odd rows with the second
+        squares[m * numberOfSquares + n] = new int[] {n * squareHeight, m * squareHeight,
+            (n + 1) * squareHeight, (m + 1) * squareHeight, colors[(m + n) % 2]};
       }
     }
+    this.applyOperation("checkerBoard", "squares=" + numberOfSquares, () -> {
+      this.buffer =
+          this.paintRectangles(actualChceckBoardHeight, actualChceckBoardHeight, squares);
+      this.pending.clear();
+    });
   }
 
   /**
@@ -631,39 +961,24 @@ public class ConcreteImageModel implements ImageModel {
       throw new IllegalArgumentException("Width should be at least 22.");
     }
     // The colors of the flag(red, white, blue)
-    int[][] colors = new int[][] {{186, 12, 47}, {255, 255, 255}, {0, 32, 91}};
+    int[] colors = new int[] {PixelBuffer.pack(186, 12, 47), PixelBuffer.pack(255, 255, 255),
+        PixelBuffer.pack(0, 32, 91)};
     int scale = (int) Math.round(width / 22.0);
     int actualWidth = scale * 22;
     int actualHeight = scale * 16;
-    this.arrayOfImage = new int[actualHeight][actualWidth][3];
-    // Paint the red color
-    for (int row = 0; row < actualHeight; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[0];
-      }
-    }
-    // Paint the vertical and horizontal white stripes
-    for (int row = 0; row < actualHeight; row++) {
-      for (int column = 6 * scale; column < 10 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 6 * scale; row < 10 * scale; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    // Paint the vertical and horizontal blue stripes
-    for (int row = 0; row < actualHeight; row++) {
-      for (int column = 7 * scale; column < 9 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[2];
-      }
-    }
-    for (int row = 7 * scale; row < 9 * scale; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[2];
-      }
-    }
+    int[][] flag = new int[][] {
+        // Paint the red color
+        {0, 0, actualWidth, actualHeight, colors[0]},
+        // Paint the vertical and horizontal white stripes
+        {6 * scale, 0, 10 * scale, actualHeight, colors[1]},
+        {0, 6 * scale, actualWidth, 10 * scale, colors[1]},
+        // Paint the vertical and horizontal blue stripes
+        {7 * scale, 0, 9 * scale, actualHeight, colors[2]},
+        {0, 7 * scale, actualWidth, 9 * scale, colors[2]}};
+    this.applyOperation("flag", "Norway", () -> {
+      this.buffer = this.paintRectangles(actualWidth, actualHeight, flag);
+      this.pending.clear();
+    });
   }
 
   /**
@@ -677,49 +992,25 @@ public class ConcreteImageModel implements ImageModel {
       throw new IllegalArgumentException("Width should be at least 27.");
     }
     // The colors of the flag(cyan, white)
-    int[][] colors = new int[][] {{0, 20, 137}, {255, 255, 255}};
+    int[] colors = new int[] {PixelBuffer.pack(0, 20, 137), PixelBuffer.pack(255, 255, 255)};
     int scale = (int) Math.round(width / 27.0);
     int actualWidth = scale * 27;
     int actualHeight = scale * 18;
-    this.arrayOfImage = new int[actualHeight][actualWidth][3];
-    // Paint the cyan color
-    for (int row = 0; row < actualHeight; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[0];
-      }
-    }
-    // Paint the vertical white stripe
-    for (int row = 0; row < 10 * scale; row++) {
-      for (int column = 4 * scale; column < 6 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    // Paint the horizontal white stripes
-    for (int row = 2 * scale; row < 4 * scale; row++) {
-      for (int column = 10 * scale; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 4 * scale; row < 6 * scale; row++) {
-      for (int column = 0; column < 10 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 6 * scale; row < 8 * scale; row++) {
-      for (int column = 10 * scale; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 10 * scale; row < 12 * scale; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 14 * scale; row < 16 * scale; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
+    int[][] flag = new int[][] {
+        // Paint the cyan color
+        {0, 0, actualWidth, actualHeight, colors[0]},
+        // Paint the vertical white stripe
+        {4 * scale, 0, 6 * scale, 10 * scale, colors[1]},
+        // Paint the horizontal white stripes
+        {10 * scale, 2 * scale, actualWidth, 4 * scale, colors[1]},
+        {0, 4 * scale, 10 * scale, 6 * scale, colors[1]},
+        {10 * scale, 6 * scale, actualWidth, 8 * scale, colors[1]},
+        {0, 10 * scale, actualWidth, 12 * scale, colors[1]},
+        {0, 14 * scale, actualWidth, 16 * scale, colors[1]}};
+    this.applyOperation("flag", "Greece", () -> {
+      this.buffer = this.paintRectangles(actualWidth, actualHeight, flag);
+      this.pending.clear();
+    });
   }
 
   /**
@@ -733,27 +1024,19 @@ public class ConcreteImageModel implements ImageModel {
       throw new IllegalArgumentException("Width should be at least 32.");
     }
     // The colors of the flag(red, white)
-    int[][] colors = new int[][] {{218, 41, 28}, {255, 255, 255}};
+    int[] colors = new int[] {PixelBuffer.pack(218, 41, 28), PixelBuffer.pack(255, 255, 255)};
     int scale = (int) Math.round(width / 32.0);
     int actualWidth = scale * 32;
     int actualHeight = scale * 32;
-    this.arrayOfImage = new int[actualHeight][actualWidth][3];
-    // Paint the red color
-    for (int row = 0; row < actualHeight; row++) {
-      for (int column = 0; column < actualWidth; column++) {
-        this.arrayOfImage[row][column] = colors[0];
-      }
-    }
-    // Paint the white crossing
-    for (int row = 6 * scale; row < 26 * scale; row++) {
-      for (int column = 13 * scale; column < 19 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
-    for (int row = 13 * scale; row < 19 * scale; row++) {
-      for (int column = 6 * scale; column < 26 * scale; column++) {
-        this.arrayOfImage[row][column] = colors[1];
-      }
-    }
+    int[][] flag = new int[][] {
+        // Paint the red color
+        {0, 0, actualWidth, actualHeight, colors[0]},
+        // Paint the white crossing
+        {13 * scale, 6 * scale, 19 * scale, 26 * scale, colors[1]},
+        {6 * scale, 13 * scale, 26 * scale, 19 * scale, colors[1]}};
+    this.applyOperation("flag", "Switzerland", () -> {
+      this.buffer = this.paintRectangles(actualWidth, actualHeight, flag);
+      this.pending.clear();
+    });
   }
 }
@@ -0,0 +1,269 @@
+package images;
+
+/**
+ * An engine that filters the pixels of an image with a convolution kernel. Kernels built from two
+ * vectors are applied as a horizontal pass followed by a vertical pass, which costs 2K instead of
+ * K x K multiplications per pixel for a kernel of size K. The horizontal results are kept in a
+ * ring of K rows that is reused for every row of the image and for every call made on the same
+ * thread.
+ * 
+ * <p>The rows of the output are split into bands that a {@link TileScheduler} filters in parallel.
+ * Each band reads the rows around it from the source, which is never written, and every thread
+ * keeps its own ring, so the result is the same for every parallelism.
+ * 
+ * <p>A kernel given as a matrix is applied in one pass, and every product of a weight and a pixel
+ * is truncated before it is added, exactly like the original filters of the program, so blur and
+ * sharpen keep giving the same pixels. The two passes of a separable kernel cannot truncate each
+ * product, so their weighted sum is computed exactly and truncated once. Pixels closer to the
+ * border than the radius of the kernel have no full neighborhood and are left at 0.
+ */
+public class ConvolutionEngine {
+  private final TileScheduler scheduler;
+  private final ThreadLocal<double[]> scratch = ThreadLocal.withInitial(() -> new double[0]);
+
+  /**
+   * A constructor that runs the bands on the default scheduler.
+   */
+  public ConvolutionEngine() {
+    this(TileScheduler.getDefault());
+  }
+
+  /**
+   * A constructor that takes the scheduler running the bands.
+   * 
+   * @param scheduler the scheduler running the bands of rows
+   * @throws IllegalArgumentException if the scheduler is null
+   */
+  public ConvolutionEngine(TileScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("The scheduler should not be null.");
+    }
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Return the pixels created by filtering an image with a kernel. The resulting values are
+   * clamped to be between 0 and 255.
+   * 
+   * @param source the pixels of the image to be filtered
+   * @param kernel the kernel to be used in filtering
+   * @return a new buffer holding the filtered pixels
+   */
+  public PixelBuffer convolve(PixelBuffer source, Kernel kernel) {
+    return this.convolve(source, kernel, null);
+  }
+
+  /**
+   * Return the pixels created by filtering an image with a kernel and then running a point
+   * operation on every filtered row while it is still in the cache.
+   * 
+   * @param source the pixels of the image to be filtered
+   * @param kernel the kernel to be used in filtering
+   * @param tail the point operation run on the clamped filtered rows, or null for none
+   * @return a new buffer holding the resulting pixels
+   */
+  public PixelBuffer convolve(PixelBuffer source, Kernel kernel, PointOperation tail) {
+    int width = source.getWidth();
+    PixelBuffer output = new PixelBuffer(width, source.getHeight());
+    int[] outputData = output.getData();
+    this.scheduler.forEachRowBand(width, source.getHeight(), (rowStart, rowEnd) -> {
+      this.filterRows(source, kernel, rowStart, rowEnd, (row, red, green, blue) -> {
+        int offset = row * width;
+        for (int j = 0; j < width; j++) {
+          outputData[offset + j] = PixelBuffer.packClamped(red[j], green[j], blue[j]);
+        }
+        if (tail != null) {
+          tail.applyToRow(outputData, offset, outputData, offset, width);
+        }
+      });
+    });
+    return output;
+  }
+
+  /**
+   * Filter a band of rows of an image and hand every filtered row to a consumer. Rows of the band
+   * outside of the image, or closer to the border than the radius of the kernel, are passed on as
+   * zeros.
+   * 
+   * @param source the pixels of the image to be filtered
+   * @param kernel the kernel to be used in filtering
+   * @param rowStart the first row of the band
+   * @param rowEnd the row after the last row of the band
+   * @param consumer the consumer of the filtered rows
+   */
+  void filterRows(PixelBuffer source, Kernel kernel, int rowStart, int rowEnd,
+      RowConsumer consumer) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int radius = kernel.getRadius();
+    // The band is split into the rows above the interior, the interior and the rows below it
+    int interiorStart = Math.max(rowStart, radius);
+    int interiorEnd = Math.max(interiorStart, Math.min(rowEnd, height - radius));
+    int[] zeros = new int[width];
+    int[][] sums = new int[3][width];
+    for (int i = rowStart; i < Math.min(rowEnd, interiorStart); i++) {
+      consumer.accept(i, zeros, zeros, zeros);
+    }
+    if (kernel.isSeparable()) {
+      this.filterRowsSeparably(source, kernel, interiorStart, interiorEnd, sums, consumer);
+    } else {
+      for (int i = interiorStart; i < interiorEnd; i++) {
+        this.filterRowDirectly(source, kernel, i, sums);
+        consumer.accept(i, sums[0], sums[1], sums[2]);
+      }
+    }
+    for (int i = Math.max(rowStart, interiorEnd); i < rowEnd; i++) {
+      consumer.accept(i, zeros, zeros, zeros);
+    }
+  }
+
+  /**
+   * Filter one row of an image with the full two-dimensional kernel, truncating every product.
+   * 
+   * @param source the pixels of the image to be filtered
+   * @param kernel the kernel to be used in filtering
+   * @param row the row to be filtered
+   * @param sums the arrays receiving the red, green and blue values of the row
+   */
+  private void filterRowDirectly(PixelBuffer source, Kernel kernel, int row, int[][] sums) {
+    int width = source.getWidth();
+    int radius = kernel.getRadius();
+    int size = kernel.getSize();
+    int[] data = source.getData();
+    for (int j = radius; j < width - radius; j++) {
+      int red = 0;
+      int green = 0;
+      int blue = 0;
+      for (int k1 = 0; k1 < size; k1++) {
+        int offset = source.indexOf(j - radius, row - radius + k1);
+        for (int k2 = 0; k2 < size; k2++) {
+          int correspondingPixel = data[offset + k2];
+          double weight = kernel.getWeight(k1, k2);
+          red += (int) (PixelBuffer.red(correspondingPixel) * weight);
+          green += (int) (PixelBuffer.green(correspondingPixel) * weight);
+          blue += (int) (PixelBuffer.blue(correspondingPixel) * weight);
+        }
+      }
+      sums[0][j] = red;
+      sums[1][j] = green;
+      sums[2][j] = blue;
+    }
+  }
+
+  /**
+   * Filter a band of interior rows with a separable kernel. Each source row is filtered
+   * horizontally once into the ring of rows, and each output row is the vertical sum of the K
+   * horizontally filtered rows around it.
+   * 
+   * @param source the pixels of the image to be filtered
+   * @param kernel the separable kernel to be used in filtering
+   * @param rowStart the first interior row of the band
+   * @param rowEnd the row after the last interior row of the band
+   * @param sums the arrays receiving the red, green and blue values of each row
+   * @param consumer the consumer of the filtered rows
+   */
+  private void filterRowsSeparably(PixelBuffer source, Kernel kernel, int rowStart, int rowEnd,
+      int[][] sums, RowConsumer consumer) {
+    if (rowStart >= rowEnd) {
+      return;
+    }
+    int width = source.getWidth();
+    int radius = kernel.getRadius();
+    int size = kernel.getSize();
+    double[] columnVector = kernel.getColumnVector();
+    double[] rowVector = kernel.getRowVector();
+    int rowLength = 3 * width;
+    double[] ring = this.scratch(size * rowLength);
+    int[] data = source.getData();
+
+    // Filter the rows above the first output row that its neighborhood needs
+    int nextRow = rowStart - radius;
+    for (; nextRow < rowStart + radius; nextRow++) {
+      this.filterRowHorizontally(data, source.indexOf(0, nextRow), width, radius, rowVector, ring,
+          (nextRow % size) * rowLength);
+    }
+    for (int i = rowStart; i < rowEnd; i++) {
+      this.filterRowHorizontally(data, source.indexOf(0, nextRow), width, radius, rowVector, ring,
+          (nextRow % size) * rowLength);
+      nextRow++;
+      for (int j = radius; j < width - radius; j++) {
+        double red = 0;
+        double green = 0;
+        double blue = 0;
+        for (int k = 0; k < size; k++) {
+          int offset = ((i - radius + k) % size) * rowLength + j;
+          double weight = columnVector[k];
+          red += ring[offset] * weight;
+          green += ring[offset + width] * weight;
+          blue += ring[offset + 2 * width] * weight;
+        }
+        sums[0][j] = (int) red;
+        sums[1][j] = (int) green;
+        sums[2][j] = (int) blue;
+      }
+      consumer.accept(i, sums[0], sums[1], sums[2]);
+    }
+  }
+
+  /**
+   * Filter one row of packed pixels with the row vector of a separable kernel and store the red,
+   * green and blue results one after another in the ring.
+   * 
+   * @param data the packed pixels of the image
+   * @param offset the index of the first pixel of the row
+   * @param width the width of the image
+   * @param radius the radius of the kernel
+   * @param rowVector the weights applied along the row
+   * @param ring the ring of horizontally filtered rows
+   * @param ringOffset the index in the ring where this row starts
+   */
+  private void filterRowHorizontally(int[] data, int offset, int width, int radius,
+      double[] rowVector, double[] ring, int ringOffset) {
+    for (int j = radius; j < width - radius; j++) {
+      double red = 0;
+      double green = 0;
+      double blue = 0;
+      int start = offset + j - radius;
+      for (int k = 0; k < rowVector.length; k++) {
+        int pixel = data[start + k];
+        red += PixelBuffer.red(pixel) * rowVector[k];
+        green += PixelBuffer.green(pixel) * rowVector[k];
+        blue += PixelBuffer.blue(pixel) * rowVector[k];
+      }
+      ring[ringOffset + j] = red;
+      ring[ringOffset + width + j] = green;
+      ring[ringOffset + 2 * width + j] = blue;
+    }
+  }
+
+  /**
+   * Return the scratch array of the calling thread, growing it if it is smaller than needed.
+   * 
+   * @param length the number of values needed
+   * @return a scratch array with at least the given length
+   */
+  private double[] scratch(int length) {
+    double[] scratch = this.scratch.get();
+    if (scratch.length < length) {
+      scratch = new double[length];
+      this.scratch.set(scratch);
+    }
+    return scratch;
+  }
+
+  /**
+   * A consumer of the rows produced by filtering an image.
+   */
+  interface RowConsumer {
+    /**
+     * Accept one filtered row. The arrays are reused for the next row, so they must be copied if
+     * they are needed later.
+     * 
+     * @param row the row of the image
+     * @param red the red values of the row
+     * @param green the green values of the row
+     * @param blue the blue values of the row
+     */
+    void accept(int row, int[] red, int[] green, int[] blue);
+  }
+}
@@ -0,0 +1,280 @@
+package images;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of decoded images, so that loading the same file again does not decode it again. An
+ * entry is found by the canonical path of the file together with its modification time and size,
+ * so a file that changed on disk is decoded again. The cache holds at most a given number of bytes
+ * of pixels and evicts the least recently used images first.
+ * 
+ * <p>The cache keeps every image as an {@link ImageSnapshot} and hands it out as it is. A snapshot
+ * cannot be changed, so the cached image always keeps the pixels of the file, and whoever needs to
+ * change the pixels takes a copy of them.
+ */
+public class DecodedImageCache {
+  /**
+   * The name of the system property that sets the number of bytes the default cache holds.
+   */
+  public static final String CAPACITY_PROPERTY = "images.cacheBytes";
+
+  /**
+   * The number of bytes the default cache holds when the system property is not set.
+   */
+  public static final long DEFAULT_CAPACITY = 128L << 20;
+
+  private static DecodedImageCache defaultCache;
+
+  private final long capacity;
+  private final LinkedHashMap<Key, ImageSnapshot> entries =
+      new LinkedHashMap<Key, ImageSnapshot>(16, 0.75f, true);
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param capacity the largest number of bytes of pixels to keep, where 0 keeps nothing
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public DecodedImageCache(long capacity) throws IllegalArgumentException {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The capacity of the cache should not be negative.");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Return the cache shared by the image models that are not given one. Its capacity is read from
+   * the system property {@value #CAPACITY_PROPERTY} and defaults to {@value #DEFAULT_CAPACITY}
+   * bytes.
+   * 
+   * @return the default cache
+   */
+  public static synchronized DecodedImageCache getDefault() {
+    if (defaultCache == null) {
+      long capacity = DEFAULT_CAPACITY;
+      try {
+        capacity = Long.parseLong(
+            System.getProperty(CAPACITY_PROPERTY, Long.toString(capacity)));
+      } catch (NumberFormatException e) {
+        // keep the default capacity
+      }
+      defaultCache = new DecodedImageCache(Math.max(0, capacity));
+    }
+    return defaultCache;
+  }
+
+  /**
+   * Return the pixels of an image file, decoding the file only if it is not in the cache.
+   * 
+   * @param filename the name of the file to be read
+   * @return a snapshot of the pixels of the image
+   * @throws IllegalArgumentException if the filename provided does not contain an image
+   */
+  public ImageSnapshot load(String filename) throws IllegalArgumentException {
+    Key key = Key.of(filename);
+    if (key != null) {
+      synchronized (this) {
+        ImageSnapshot cached = this.entries.get(key);
+        if (cached != null) {
+          this.hitCount++;
+          return cached;
+        }
+        this.missCount++;
+      }
+    }
+    // Decode outside of the lock so that different files can be decoded at the same time
+    ImageSnapshot pixels = ImageSnapshot.of(ImageUtilities.readPixels(filename));
+    if (key != null) {
+      synchronized (this) {
+        this.put(key, pixels);
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Remove every image of a file from the cache, for example because the file is being written.
+   * 
+   * @param filename the name of the file
+   */
+  public synchronized void invalidate(String filename) {
+    Key key = Key.of(filename);
+    if (key != null) {
+      this.removePath(key.path);
+    }
+  }
+
+  /**
+   * Remove every image from the cache. The counters are kept.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.size = 0;
+  }
+
+  /**
+   * Return the largest number of bytes of pixels this cache keeps.
+   * 
+   * @return the capacity in bytes
+   */
+  public long getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Return the number of bytes of pixels in this cache.
+   * 
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Return the number of images in this cache.
+   * 
+   * @return the number of images
+   */
+  public synchronized int getEntryCount() {
+    return this.entries.size();
+  }
+
+  /**
+   * Return the number of loads that found their image in this cache.
+   * 
+   * @return the number of hits
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Return the number of loads that had to decode their file.
+   * 
+   * @return the number of misses
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Return the number of images removed from this cache to make room for others.
+   * 
+   * @return the number of evictions
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Add a decoded image to this cache and evict the least recently used images until the cache
+   * fits in its capacity. An image larger than the capacity is not kept.
+   * 
+   * @param key the key of the file
+   * @param pixels the decoded pixels
+   */
+  private void put(Key key, ImageSnapshot pixels) {
+    long bytes = pixels.getByteCount();
+    if (bytes > this.capacity) {
+      return;
+    }
+    // Older versions of the same file will not be asked for again
+    this.removePath(key.path);
+    this.entries.put(key, pixels);
+    this.size += bytes;
+    Iterator<Map.Entry<Key, ImageSnapshot>> iterator = this.entries.entrySet().iterator();
+    while (this.size > this.capacity && iterator.hasNext()) {
+      this.size -= iterator.next().getValue().getByteCount();
+      iterator.remove();
+      this.evictionCount++;
+    }
+  }
+
+  /**
+   * Remove every image of a canonical path from this cache.
+   * 
+   * @param path the canonical path of the file
+   */
+  private void removePath(String path) {
+    Iterator<Map.Entry<Key, ImageSnapshot>> iterator = this.entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, ImageSnapshot> entry = iterator.next();
+      if (entry.getKey().path.equals(path)) {
+        this.size -= entry.getValue().getByteCount();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * The canonical path, modification time and size of a file, which together tell whether a
+   * cached image still matches the file.
+   */
+  private static class Key {
+    private final String path;
+    private final long modifiedTime;
+    private final long length;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param path the canonical path of the file
+     * @param modifiedTime the modification time of the file in nanoseconds
+     * @param length the size of the file in bytes
+     */
+    Key(String path, long modifiedTime, long length) {
+      this.path = path;
+      this.modifiedTime = modifiedTime;
+      this.length = length;
+    }
+
+    /**
+     * Return the key of a file.
+     * 
+     * @param filename the name of the file
+     * @return the key of the file, or null if the file cannot be read
+     */
+    static Key of(String filename) {
+      if (filename == null || "".equals(filename)) {
+        return null;
+      }
+      try {
+        File file = new File(filename).getCanonicalFile();
+        if (!file.isFile()) {
+          return null;
+        }
+        long modifiedTime =
+            Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+        return new Key(file.getPath(), modifiedTime, file.length());
+      } catch (IOException | SecurityException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) other;
+      return this.path.equals(that.path) && this.modifiedTime == that.modifiedTime
+          && this.length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.path, this.modifiedTime, this.length);
+    }
+  }
+}
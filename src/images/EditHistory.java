@@ -0,0 +1,560 @@
+package images;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The undo and redo history of an image model. The history does not keep copies of the images.
+ * Every step stores only the tiles of {@value #TILE_SIZE} x {@value #TILE_SIZE} pixels that differ
+ * between the image before and after the step, compressed, together with the operations that were
+ * recorded in lazy mode. Undoing a step rebuilds the previous image from the current one and keeps
+ * the tiles needed to redo it.
+ * 
+ * <p>The history holds at most a given number of bytes of compressed tiles and forgets the oldest
+ * steps first. The step pushed last is never forgotten, so the last operation can always be undone
+ * even when its tiles alone take more than the capacity; the history then holds that one step and
+ * goes over its capacity until the next step is pushed. A history with a capacity of 0 records
+ * nothing, so recording costs no time.
+ */
+public class EditHistory {
+  /**
+   * The name of the system property that sets the number of bytes a new history holds.
+   */
+  public static final String CAPACITY_PROPERTY = "images.historyBytes";
+
+  /**
+   * The number of bytes a new history holds when the system property is not set.
+   */
+  public static final long DEFAULT_CAPACITY = 64L << 20;
+
+  /**
+   * The width and height of the tiles the images are compared in.
+   */
+  public static final int TILE_SIZE = 64;
+
+  /**
+   * The number of bytes counted for every step besides its compressed tiles.
+   */
+  private static final int STEP_OVERHEAD = 64;
+
+  private final long capacity;
+  private final Deque<Step> undoSteps = new ArrayDeque<Step>();
+  private final Deque<Step> redoSteps = new ArrayDeque<Step>();
+  private long size;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param capacity the largest number of bytes of compressed tiles to keep, where 0 keeps nothing
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public EditHistory(long capacity) throws IllegalArgumentException {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The capacity of the history should not be negative.");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Return the capacity of the histories of image models that are not given one. It is read from
+   * the system property {@value #CAPACITY_PROPERTY} and defaults to {@value #DEFAULT_CAPACITY}
+   * bytes.
+   * 
+   * @return the default capacity in bytes
+   */
+  public static long getDefaultCapacity() {
+    try {
+      return Math.max(0, Long.parseLong(
+          System.getProperty(CAPACITY_PROPERTY, Long.toString(DEFAULT_CAPACITY))));
+    } catch (NumberFormatException e) {
+      return DEFAULT_CAPACITY;
+    }
+  }
+
+  /**
+   * Return the largest number of bytes this history keeps.
+   * 
+   * @return the capacity in bytes
+   */
+  public long getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Return the number of bytes kept by this history.
+   * 
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Return the number of steps that can be undone.
+   * 
+   * @return the number of steps that can be undone
+   */
+  public synchronized int getUndoCount() {
+    return this.undoSteps.size();
+  }
+
+  /**
+   * Return the number of steps that can be redone.
+   * 
+   * @return the number of steps that can be redone
+   */
+  public synchronized int getRedoCount() {
+    return this.redoSteps.size();
+  }
+
+  /**
+   * Return a history holding the same steps as this one, which goes on separately from it. The
+   * steps are never changed once they are made, so they are shared rather than copied.
+   * 
+   * @return the copy of this history
+   */
+  synchronized EditHistory copy() {
+    EditHistory copy = new EditHistory(this.capacity);
+    copy.undoSteps.addAll(this.undoSteps);
+    copy.redoSteps.addAll(this.redoSteps);
+    copy.size = this.size;
+    return copy;
+  }
+
+  /**
+   * Forget every step of this history.
+   */
+  public synchronized void clear() {
+    this.undoSteps.clear();
+    this.redoSteps.clear();
+    this.size = 0;
+  }
+
+  /**
+   * Record a step that changed the pixels and the recorded operations of an image model. The steps
+   * that could be redone are forgotten.
+   * 
+   * @param before the pixels before the step, or null if there was no image
+   * @param pendingBefore the operations recorded before the step
+   * @param after the pixels after the step
+   * @param scheduler the scheduler comparing and compressing the tiles
+   */
+  synchronized void record(PixelBuffer before, OperationPipeline pendingBefore, PixelBuffer after,
+      TileScheduler scheduler) {
+    if (this.capacity == 0) {
+      return;
+    }
+    for (Step step : this.redoSteps) {
+      this.size -= step.size();
+    }
+    this.redoSteps.clear();
+    this.push(this.undoSteps, new Step(Delta.between(after, before, scheduler), pendingBefore));
+  }
+
+  /**
+   * Undo the last step of this history.
+   * 
+   * @param current the current pixels
+   * @param pendingCurrent the operations recorded now
+   * @param scheduler the scheduler comparing and compressing the tiles
+   * @return the pixels and the recorded operations before the step, or null if there is no step
+   *         to undo
+   */
+  synchronized State undo(PixelBuffer current, OperationPipeline pendingCurrent,
+      TileScheduler scheduler) {
+    return this.move(this.undoSteps, this.redoSteps, current, pendingCurrent, scheduler);
+  }
+
+  /**
+   * Redo the last step that was undone.
+   * 
+   * @param current the current pixels
+   * @param pendingCurrent the operations recorded now
+   * @param scheduler the scheduler comparing and compressing the tiles
+   * @return the pixels and the recorded operations after the step, or null if there is no step to
+   *         redo
+   */
+  synchronized State redo(PixelBuffer current, OperationPipeline pendingCurrent,
+      TileScheduler scheduler) {
+    return this.move(this.redoSteps, this.undoSteps, current, pendingCurrent, scheduler);
+  }
+
+  /**
+   * Move the neighboring steps of this history to other pixels of the same image, after an image
+   * model in lazy mode ran its recorded operations. The steps were taken from the pixels before the
+   * operations ran, while the model now holds the pixels after them.
+   * 
+   * @param previous the pixels the neighboring steps were taken from
+   * @param current the pixels the image model holds now
+   * @param scheduler the scheduler comparing and compressing the tiles
+   */
+  synchronized void rebase(PixelBuffer previous, PixelBuffer current, TileScheduler scheduler) {
+    if (previous == current) {
+      return;
+    }
+    this.rebaseLast(this.undoSteps, previous, current, scheduler);
+    this.rebaseLast(this.redoSteps, previous, current, scheduler);
+  }
+
+  /**
+   * Move the last step of a stack to other pixels of the same image.
+   * 
+   * @param stack the stack holding the step
+   * @param previous the pixels the step was taken from
+   * @param current the pixels the image model holds now
+   * @param scheduler the scheduler comparing and compressing the tiles
+   */
+  private void rebaseLast(Deque<Step> stack, PixelBuffer previous, PixelBuffer current,
+      TileScheduler scheduler) {
+    Step step = stack.pollLast();
+    if (step == null) {
+      return;
+    }
+    this.size -= step.size();
+    PixelBuffer target = step.delta.applyTo(previous, scheduler);
+    this.push(stack, new Step(Delta.between(current, target, scheduler), step.pending));
+  }
+
+  /**
+   * Take the last step of one stack, apply it to the current image and push the step back to the
+   * current image on the other stack.
+   * 
+   * @param from the stack to take the step from
+   * @param to the stack to push the reverse step on
+   * @param current the current pixels
+   * @param pendingCurrent the operations recorded now
+   * @param scheduler the scheduler comparing and compressing the tiles
+   * @return the pixels and the recorded operations the step leads to, or null if the stack is empty
+   */
+  private State move(Deque<Step> from, Deque<Step> to, PixelBuffer current,
+      OperationPipeline pendingCurrent, TileScheduler scheduler) {
+    Step step = from.pollLast();
+    if (step == null) {
+      return null;
+    }
+    this.size -= step.size();
+    PixelBuffer target = step.delta.applyTo(current, scheduler);
+    this.push(to, new Step(Delta.between(target, current, scheduler), pendingCurrent));
+    return new State(target, step.pending);
+  }
+
+  /**
+   * Push a step on a stack and forget the oldest steps until this history fits in its capacity.
+   * The oldest steps that can be undone are forgotten first, then the steps farthest away to redo.
+   * The step just pushed is kept even if it alone does not fit.
+   * 
+   * @param stack the stack to push the step on
+   * @param step the step to push
+   */
+  private void push(Deque<Step> stack, Step step) {
+    stack.addLast(step);
+    this.size += step.size();
+    while (this.size > this.capacity) {
+      Step forgotten;
+      if (this.undoSteps.size() > (stack == this.undoSteps ? 1 : 0)) {
+        forgotten = this.undoSteps.pollFirst();
+      } else if (this.redoSteps.size() > (stack == this.redoSteps ? 1 : 0)) {
+        forgotten = this.redoSteps.pollFirst();
+      } else {
+        break;
+      }
+      this.size -= forgotten.size();
+    }
+  }
+
+  /**
+   * The pixels and the recorded operations of an image model at one point of its history.
+   */
+  static class State {
+    private final PixelBuffer buffer;
+    private final OperationPipeline pending;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param buffer the pixels, or null if there was no image
+     * @param pending the recorded operations
+     */
+    State(PixelBuffer buffer, OperationPipeline pending) {
+      this.buffer = buffer;
+      this.pending = pending;
+    }
+
+    /**
+     * Return the pixels of this state.
+     * 
+     * @return the pixels, or null if there was no image
+     */
+    PixelBuffer getBuffer() {
+      return this.buffer;
+    }
+
+    /**
+     * Return the recorded operations of this state.
+     * 
+     * @return the recorded operations
+     */
+    OperationPipeline getPending() {
+      return this.pending;
+    }
+  }
+
+  /**
+   * One step of the history, which turns the image after the step into the image before it.
+   */
+  private static class Step {
+    private final Delta delta;
+    private final OperationPipeline pending;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param delta the tiles turning the current image into the image of the step
+     * @param pending the operations recorded at the step
+     */
+    Step(Delta delta, OperationPipeline pending) {
+      this.delta = delta;
+      this.pending = pending.copy();
+    }
+
+    /**
+     * Return the number of bytes this step is counted as.
+     * 
+     * @return the size of this step in bytes
+     */
+    long size() {
+      return this.delta.size + STEP_OVERHEAD;
+    }
+  }
+
+  /**
+   * The compressed tiles that turn one image into another. Tiles that are the same in both images
+   * are not stored. If the images have different sizes, every tile of the target is stored.
+   */
+  private static class Delta {
+    private final int width;
+    private final int height;
+    private final byte[][] tiles;
+    private final long size;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param width the width of the target image, or 0 if there is no target image
+     * @param height the height of the target image, or 0 if there is no target image
+     * @param tiles the compressed tiles of the target that differ from the source, in rows
+     */
+    private Delta(int width, int height, byte[][] tiles) {
+      this.width = width;
+      this.height = height;
+      this.tiles = tiles;
+      long size = 0;
+      for (byte[] tile : tiles) {
+        size += tile == null ? 8 : tile.length + 24;
+      }
+      this.size = size;
+    }
+
+    /**
+     * Return the delta that turns one image into another.
+     * 
+     * @param source the image the delta is applied to
+     * @param target the image the delta leads to, or null if there is no image
+     * @param scheduler the scheduler comparing and compressing the rows of tiles
+     * @return the delta from the source to the target
+     */
+    static Delta between(PixelBuffer source, PixelBuffer target, TileScheduler scheduler) {
+      if (target == null) {
+        return new Delta(0, 0, new byte[0][]);
+      }
+      int width = target.getWidth();
+      int height = target.getHeight();
+      int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+      int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+      byte[][] tiles = new byte[tilesAcross * tilesDown][];
+      if (source == target) {
+        return new Delta(width, height, tiles);
+      }
+      boolean sameSize =
+          source != null && source.getWidth() == width && source.getHeight() == height;
+      // Every row of tiles is a row for the scheduler, so the bands never split a tile
+      scheduler.forEachRowBand(width * TILE_SIZE, tilesDown, (rowStart, rowEnd) -> {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] raw = new byte[TILE_SIZE * TILE_SIZE * 4];
+        byte[] compressed = new byte[raw.length + 64];
+        try {
+          for (int tileRow = rowStart; tileRow < rowEnd; tileRow++) {
+            for (int tileColumn = 0; tileColumn < tilesAcross; tileColumn++) {
+              int x = tileColumn * TILE_SIZE;
+              int y = tileRow * TILE_SIZE;
+              int tileWidth = Math.min(TILE_SIZE, width - x);
+              int tileHeight = Math.min(TILE_SIZE, height - y);
+              if (sameSize && sameTile(source, target, x, y, tileWidth, tileHeight)) {
+                continue;
+              }
+              int length = writeTile(target, x, y, tileWidth, tileHeight, raw);
+              deflater.reset();
+              deflater.setInput(raw, 0, length);
+              deflater.finish();
+              int compressedLength = 0;
+              while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                  compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength,
+                    compressed.length - compressedLength);
+              }
+              tiles[tileRow * tilesAcross + tileColumn] =
+                  Arrays.copyOf(compressed, compressedLength);
+            }
+          }
+        } finally {
+          deflater.end();
+        }
+      });
+      return new Delta(width, height, tiles);
+    }
+
+    /**
+     * Return the image this delta leads to from a source image.
+     * 
+     * @param source the image the delta was computed from
+     * @param scheduler the scheduler decompressing the rows of tiles
+     * @return the target image, which is the source itself if no tile differs
+     */
+    PixelBuffer applyTo(PixelBuffer source, TileScheduler scheduler) {
+      if (this.width == 0) {
+        return null;
+      }
+      boolean changed = false;
+      for (byte[] tile : this.tiles) {
+        changed |= tile != null;
+      }
+      if (!changed) {
+        return source;
+      }
+      PixelBuffer target = source != null && source.getWidth() == this.width
+          && source.getHeight() == this.height ? source.copy()
+              : new PixelBuffer(this.width, this.height);
+      int tilesAcross = (this.width + TILE_SIZE - 1) / TILE_SIZE;
+      int tilesDown = (this.height + TILE_SIZE - 1) / TILE_SIZE;
+      scheduler.forEachRowBand(this.width * TILE_SIZE, tilesDown, (rowStart, rowEnd) -> {
+        Inflater inflater = new Inflater();
+        byte[] raw = new byte[TILE_SIZE * TILE_SIZE * 4];
+        try {
+          for (int tileRow = rowStart; tileRow < rowEnd; tileRow++) {
+            for (int tileColumn = 0; tileColumn < tilesAcross; tileColumn++) {
+              byte[] tile = this.tiles[tileRow * tilesAcross + tileColumn];
+              if (tile == null) {
+                continue;
+              }
+              int x = tileColumn * TILE_SIZE;
+              int y = tileRow * TILE_SIZE;
+              inflater.reset();
+              inflater.setInput(tile);
+              int length = 0;
+              while (!inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                  throw new DataFormatException("The tile ends too early.");
+                }
+                length += inflated;
+              }
+              readTile(target, x, y, Math.min(TILE_SIZE, this.width - x),
+                  Math.min(TILE_SIZE, this.height - y), raw);
+            }
+          }
+        } catch (DataFormatException e) {
+          throw new IllegalStateException("A tile of the history is corrupted.", e);
+        } finally {
+          inflater.end();
+        }
+      });
+      return target;
+    }
+
+    /**
+     * Return whether a tile has the same pixels in two images of the same size.
+     * 
+     * @param first the first image
+     * @param second the second image
+     * @param x the column of the upper left corner of the tile
+     * @param y the row of the upper left corner of the tile
+     * @param tileWidth the width of the tile
+     * @param tileHeight the height of the tile
+     * @return true if every pixel of the tile is the same
+     */
+    private static boolean sameTile(PixelBuffer first, PixelBuffer second, int x, int y,
+        int tileWidth, int tileHeight) {
+      int[] firstData = first.getData();
+      int[] secondData = second.getData();
+      for (int row = y; row < y + tileHeight; row++) {
+        int firstIndex = first.indexOf(x, row);
+        int secondIndex = second.indexOf(x, row);
+        for (int i = 0; i < tileWidth; i++) {
+          if (firstData[firstIndex + i] != secondData[secondIndex + i]) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Write the pixels of a tile into bytes, four bytes per pixel.
+     * 
+     * @param image the image holding the tile
+     * @param x the column of the upper left corner of the tile
+     * @param y the row of the upper left corner of the tile
+     * @param tileWidth the width of the tile
+     * @param tileHeight the height of the tile
+     * @param raw the array receiving the bytes
+     * @return the number of bytes written
+     */
+    private static int writeTile(PixelBuffer image, int x, int y, int tileWidth, int tileHeight,
+        byte[] raw) {
+      int[] data = image.getData();
+      int length = 0;
+      for (int row = y; row < y + tileHeight; row++) {
+        int index = image.indexOf(x, row);
+        for (int i = 0; i < tileWidth; i++) {
+          int pixel = data[index + i];
+          raw[length++] = (byte) (pixel >>> 24);
+          raw[length++] = (byte) (pixel >>> 16);
+          raw[length++] = (byte) (pixel >>> 8);
+          raw[length++] = (byte) pixel;
+        }
+      }
+      return length;
+    }
+
+    /**
+     * Read the pixels of a tile from bytes written by
+     * {@link #writeTile(PixelBuffer, int, int, int, int, byte[])}.
+     * 
+     * @param image the image receiving the tile
+     * @param x the column of the upper left corner of the tile
+     * @param y the row of the upper left corner of the tile
+     * @param tileWidth the width of the tile
+     * @param tileHeight the height of the tile
+     * @param raw the bytes of the tile
+     */
+    private static void readTile(PixelBuffer image, int x, int y, int tileWidth, int tileHeight,
+        byte[] raw) {
+      int[] data = image.getData();
+      int length = 0;
+      for (int row = y; row < y + tileHeight; row++) {
+        int index = image.indexOf(x, row);
+        for (int i = 0; i < tileWidth; i++) {
+          data[index + i] = (raw[length] & 0xFF) << 24 | (raw[length + 1] & 0xFF) << 16
+              | (raw[length + 2] & 0xFF) << 8 | (raw[length + 3] & 0xFF);
+          length += 4;
+        }
+      }
+    }
+  }
+}
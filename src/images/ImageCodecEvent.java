@@ -0,0 +1,81 @@
+package images;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for decoding an image file into pixels or encoding pixels into an image
+ * file with {@link ImageUtilities}. Like {@link ImageOperationEvent}, it is disabled unless the
+ * recording enables it.
+ */
+@Name("images.Codec")
+@Label("Image Codec")
+@Category({"Image Processor"})
+@Description("An image file decoded or encoded")
+@Enabled(false)
+@StackTrace(false)
+public class ImageCodecEvent extends Event {
+  @Label("Direction")
+  @Description("decode or encode")
+  String direction;
+
+  @Label("File")
+  String file;
+
+  @Label("Format")
+  String format;
+
+  @Label("Width")
+  int width;
+
+  @Label("Height")
+  int height;
+
+  @Label("File Size")
+  @DataAmount
+  long fileBytes;
+
+  @Label("Pixel Bytes")
+  @Description("The bytes of pixels produced or consumed")
+  @DataAmount
+  long pixelBytes;
+
+  @Label("Failed")
+  boolean failed;
+
+  /**
+   * End this event and commit it if the recording wants it.
+   * 
+   * @param codecDirection "decode" or "encode"
+   * @param filename the name of the file
+   * @param pixels the pixels decoded or encoded, or null if decoding failed
+   * @param bytes the size of the file in bytes
+   * @param hasFailed whether decoding or encoding failed
+   */
+  void finish(String codecDirection, String filename, PixelBuffer pixels, long bytes,
+      boolean hasFailed) {
+    this.end();
+    if (!this.shouldCommit()) {
+      return;
+    }
+    this.direction = codecDirection;
+    this.file = filename;
+    if (filename != null) {
+      this.format = filename.substring(filename.lastIndexOf(".") + 1);
+    }
+    if (pixels != null) {
+      this.width = pixels.getWidth();
+      this.height = pixels.getHeight();
+      this.pixelBytes = 4L * pixels.getWidth() * pixels.getHeight();
+    }
+    this.fileBytes = bytes;
+    this.failed = hasFailed;
+    this.commit();
+  }
+}
@@ -0,0 +1,94 @@
+package images;
+
+import java.awt.image.ColorModel;
+
+/**
+ * The metadata of an image file: its dimensions, its format, its color model and its bit depth. It
+ * is read from the header of the file without decoding the pixels.
+ */
+public class ImageInfo {
+  private final int width;
+  private final int height;
+  private final String formatName;
+  private final ColorModel colorModel;
+  private final int bitDepth;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param formatName the name of the format of the file, such as "png" or "jpeg"
+   * @param colorModel the color model of the pixels stored in the file, or null if unknown
+   * @param bitDepth the number of bits used to store one pixel, or 0 if unknown
+   */
+  public ImageInfo(int width, int height, String formatName, ColorModel colorModel,
+      int bitDepth) {
+    this.width = width;
+    this.height = height;
+    this.formatName = formatName;
+    this.colorModel = colorModel;
+    this.bitDepth = bitDepth;
+  }
+
+  /**
+   * Return the width of the image.
+   * 
+   * @return the width of the image
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Return the height of the image.
+   * 
+   * @return the height of the image
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Return the name of the format of the file.
+   * 
+   * @return the name of the format of the file, such as "png" or "jpeg"
+   */
+  public String getFormatName() {
+    return this.formatName;
+  }
+
+  /**
+   * Return the color model of the pixels stored in the file.
+   * 
+   * @return the color model of the pixels stored in the file, or null if the reader cannot tell it
+   *         without decoding the image
+   */
+  public ColorModel getColorModel() {
+    return this.colorModel;
+  }
+
+  /**
+   * Return the number of bits used to store one pixel in the file.
+   * 
+   * @return the number of bits per pixel, or 0 if unknown
+   */
+  public int getBitDepth() {
+    return this.bitDepth;
+  }
+
+  /**
+   * Return the number of bytes a pixel buffer holding this image takes.
+   * 
+   * @return the number of bytes needed to hold the decoded image
+   */
+  public long getDecodedSize() {
+    return 4L * this.width * this.height;
+  }
+
+  @Override
+  public String toString() {
+    return this.formatName + " " + this.width + "x" + this.height + ", " + this.bitDepth
+        + " bits per pixel";
+  }
+}
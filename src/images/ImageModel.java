@@ -1,5 +1,7 @@
 package images;
 
+import java.awt.image.BufferedImage;
+
 /**
  * An interface for the model of image modification. It contains the methods that can modify images.
  */
@@ -28,6 +30,16 @@ public interface ImageModel {
    */
   public void applyBlur();
 
+  /**
+   * Apply a Gaussian blur of the given radius to the data in the image model. The blur is applied
+   * as a pass along the rows and a pass down the columns, so a large radius stays affordable.
+   * 
+   * @param radius the number of pixels on each side of a pixel that are blurred into it
+   * @throws IllegalArgumentException if the radius is not between 1 and
+   *         {@value Kernel#MAX_GAUSSIAN_RADIUS}
+   */
+  public void applyGaussianBlur(int radius) throws IllegalArgumentException;
+
   /**
    * Apply the sharpen filter to the data in the image model.
    */
@@ -84,6 +96,28 @@ public interface ImageModel {
    */
   public int[][][] getImageData();
 
+  /**
+   * Return an image showing the data of this image model. The image shares its pixels with the
+   * model wherever the model allows it, so it can be shown after every operation without copying.
+   * 
+   * @return an image showing the data of this model, or null if the model has no data
+   */
+  public BufferedImage getImage();
+
+  /**
+   * Return the width of the image of this model, without copying its pixels.
+   * 
+   * @return the width of the image, or 0 if the model has no data
+   */
+  public int getImageWidth();
+
+  /**
+   * Return the height of the image of this model, without copying its pixels.
+   * 
+   * @return the height of the image, or 0 if the model has no data
+   */
+  public int getImageHeight();
+
   /**
    * Change the data of this model to the data of a rainbow.
    * 
@@ -125,4 +159,27 @@ public interface ImageModel {
    * @param width the width of the flag
    */
   public void generateNationalFlagOfSwizerland(int width);
+
+  /**
+   * Undo the last operation applied to the image model.
+   * 
+   * @return true if an operation was undone, or false if there is no operation to undo
+   */
+  public boolean undo();
+
+  /**
+   * Apply again the last operation that was undone.
+   * 
+   * @return true if an operation was redone, or false if there is no operation to redo
+   */
+  public boolean redo();
+
+  /**
+   * Set the context the operations of this image model run in, which reports their progress and
+   * lets them be cancelled. A cancelled operation leaves the image model unchanged and throws a
+   * CancellationException.
+   * 
+   * @param context the context of the operations, or null to run them without a context
+   */
+  public void setOperationContext(OperationContext context);
 }
@@ -0,0 +1,93 @@
+package images;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for an operation of {@link ConcreteImageModel}, so that a slow
+ * operation can be lined up with the garbage collections and safepoints around it. The event is
+ * disabled unless the recording enables it, for example with the settings in res/images.jfc, and
+ * a disabled event costs a few instructions for every operation.
+ */
+@Name("images.Operation")
+@Label("Image Operation")
+@Category({"Image Processor"})
+@Description("An operation applied to the image of an image model")
+@Enabled(false)
+@StackTrace(false)
+public class ImageOperationEvent extends Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Parameters")
+  @Description("The parameters of the operation, such as the seeds of a mosaic")
+  String parameters;
+
+  @Label("Width")
+  @Description("The width of the image after the operation")
+  int width;
+
+  @Label("Height")
+  @Description("The height of the image after the operation")
+  int height;
+
+  @Label("Bytes Touched")
+  @Description("The bytes of pixels read and written, or 0 for an operation that was only "
+      + "recorded by a lazy model")
+  @DataAmount
+  long bytesTouched;
+
+  @Label("Lazy")
+  @Description("Whether the model only recorded the operation to run it later")
+  boolean lazy;
+
+  @Label("Cancelled")
+  boolean cancelled;
+
+  /**
+   * End this event and commit it if the recording wants it.
+   * 
+   * @param name the name of the operation
+   * @param arguments the parameters of the operation, or null if it has none
+   * @param source the pixels before the operation, or null if there were none
+   * @param result the pixels after the operation, or null if there are none
+   * @param lazyModel whether the model is lazy
+   * @param wasCancelled whether the operation was cancelled
+   */
+  void finish(String name, String arguments, PixelBuffer source, PixelBuffer result,
+      boolean lazyModel, boolean wasCancelled) {
+    this.end();
+    if (!this.shouldCommit()) {
+      return;
+    }
+    this.operation = name;
+    this.parameters = arguments;
+    if (result != null) {
+      this.width = result.getWidth();
+      this.height = result.getHeight();
+    }
+    // An operation that leaves the same buffer in place has not touched the pixels yet
+    if (result != source) {
+      this.bytesTouched = 4 * (pixelsOf(source) + pixelsOf(result));
+    }
+    this.lazy = lazyModel;
+    this.cancelled = wasCancelled;
+    this.commit();
+  }
+
+  /**
+   * Return the number of pixels of a buffer.
+   * 
+   * @param buffer the buffer, or null
+   * @return the number of pixels of the buffer, or 0 if it is null
+   */
+  private static long pixelsOf(PixelBuffer buffer) {
+    return buffer == null ? 0 : (long) buffer.getWidth() * buffer.getHeight();
+  }
+}
@@ -0,0 +1,325 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * An immutable image made of tiles of {@value #TILE_SIZE} x {@value #TILE_SIZE} packed pixels.
+ * Snapshots never change once they are built, so they can be handed to caches, previews, the undo
+ * history or other threads without copying them.
+ * 
+ * <p>Snapshots share the tiles they have in common. A snapshot taken from an image model reuses
+ * every tile of the previous snapshot whose pixels did not change, and an {@link Editor} copies a
+ * tile only the first time it writes to it, so a snapshot that differs in a few tiles costs only
+ * those tiles. The {@link DecodedImageCache} keeps its images as snapshots, so an image model that
+ * loads a cached file starts from the snapshot of the file.
+ */
+public final class ImageSnapshot {
+  /**
+   * The width and height of the tiles.
+   */
+  public static final int TILE_SIZE = 64;
+
+  private final int width;
+  private final int height;
+  private final int tilesAcross;
+  private final int[][] tiles;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param tiles the tiles of the image in rows, each holding {@value #TILE_SIZE} rows of
+   *        {@value #TILE_SIZE} pixels, of which the ones outside of the image are not used
+   */
+  private ImageSnapshot(int width, int height, int[][] tiles) {
+    this.width = width;
+    this.height = height;
+    this.tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    this.tiles = tiles;
+  }
+
+  /**
+   * Return a snapshot of the pixels of a buffer.
+   * 
+   * @param buffer the pixels of the image
+   * @return a snapshot holding a copy of the pixels
+   * @throws IllegalArgumentException if the buffer is null
+   */
+  public static ImageSnapshot of(PixelBuffer buffer) throws IllegalArgumentException {
+    return of(buffer, null, TileScheduler.getDefault());
+  }
+
+  /**
+   * Return a snapshot of the pixels of a buffer that shares the tiles of a previous snapshot whose
+   * pixels are the same.
+   * 
+   * @param buffer the pixels of the image
+   * @param previous the previous snapshot of the image, or null to copy every tile
+   * @param scheduler the scheduler copying the rows of tiles
+   * @return a snapshot of the pixels
+   * @throws IllegalArgumentException if the buffer or the scheduler is null
+   */
+  public static ImageSnapshot of(PixelBuffer buffer, ImageSnapshot previous,
+      TileScheduler scheduler) throws IllegalArgumentException {
+    if (buffer == null || scheduler == null) {
+      throw new IllegalArgumentException("The buffer and the scheduler should not be null.");
+    }
+    int width = buffer.getWidth();
+    int height = buffer.getHeight();
+    int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+    int[][] tiles = new int[tilesAcross * tilesDown][];
+    boolean reuse = previous != null && previous.width == width && previous.height == height;
+    int[] data = buffer.getData();
+    // Every row of tiles is a row for the scheduler, so the bands never split a tile
+    scheduler.forEachRowBand(width * TILE_SIZE, tilesDown, (rowStart, rowEnd) -> {
+      for (int tileRow = rowStart; tileRow < rowEnd; tileRow++) {
+        for (int tileColumn = 0; tileColumn < tilesAcross; tileColumn++) {
+          int index = tileRow * tilesAcross + tileColumn;
+          int x = tileColumn * TILE_SIZE;
+          int y = tileRow * TILE_SIZE;
+          int tileWidth = Math.min(TILE_SIZE, width - x);
+          int tileHeight = Math.min(TILE_SIZE, height - y);
+          if (reuse && previous.tileEquals(index, buffer, x, y, tileWidth, tileHeight)) {
+            tiles[index] = previous.tiles[index];
+            continue;
+          }
+          int[] tile = new int[TILE_SIZE * TILE_SIZE];
+          for (int row = 0; row < tileHeight; row++) {
+            System.arraycopy(data, buffer.indexOf(x, y + row), tile, row * TILE_SIZE, tileWidth);
+          }
+          tiles[index] = tile;
+        }
+      }
+    });
+    return new ImageSnapshot(width, height, tiles);
+  }
+
+  /**
+   * Return whether a tile of this snapshot has the same pixels as a tile of a buffer.
+   * 
+   * @param index the index of the tile
+   * @param buffer the buffer
+   * @param x the column of the upper left corner of the tile
+   * @param y the row of the upper left corner of the tile
+   * @param tileWidth the width of the tile
+   * @param tileHeight the height of the tile
+   * @return true if every pixel of the tile is the same
+   */
+  private boolean tileEquals(int index, PixelBuffer buffer, int x, int y, int tileWidth,
+      int tileHeight) {
+    int[] tile = this.tiles[index];
+    int[] data = buffer.getData();
+    for (int row = 0; row < tileHeight; row++) {
+      int bufferIndex = buffer.indexOf(x, y + row);
+      int tileIndex = row * TILE_SIZE;
+      for (int i = 0; i < tileWidth; i++) {
+        if (tile[tileIndex + i] != data[bufferIndex + i]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return the width of the image.
+   * 
+   * @return the width of the image
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Return the height of the image.
+   * 
+   * @return the height of the image
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Return the number of tiles of this snapshot.
+   * 
+   * @return the number of tiles
+   */
+  public int getTileCount() {
+    return this.tiles.length;
+  }
+
+  /**
+   * Return the number of bytes held by the tiles of this snapshot, counting the tiles it shares
+   * with other snapshots.
+   * 
+   * @return the number of bytes of the tiles
+   */
+  public long getByteCount() {
+    return 4L * TILE_SIZE * TILE_SIZE * this.tiles.length;
+  }
+
+  /**
+   * Return the packed color of the pixel at the given position.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the packed color of the pixel
+   * @throws IllegalArgumentException if the position is outside of the image
+   */
+  public int getRGB(int x, int y) throws IllegalArgumentException {
+    if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+      throw new IllegalArgumentException("The position is outside of the image.");
+    }
+    int[] tile = this.tiles[(y / TILE_SIZE) * this.tilesAcross + x / TILE_SIZE];
+    return tile[(y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE];
+  }
+
+  /**
+   * Return the number of tiles this snapshot shares with another snapshot without copying them.
+   * 
+   * @param other the other snapshot
+   * @return the number of tiles both snapshots share, or 0 if their sizes differ
+   */
+  public int countSharedTiles(ImageSnapshot other) {
+    if (other == null || other.width != this.width || other.height != this.height) {
+      return 0;
+    }
+    int shared = 0;
+    for (int i = 0; i < this.tiles.length; i++) {
+      if (this.tiles[i] == other.tiles[i]) {
+        shared++;
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * Return a new buffer holding the pixels of this snapshot, which can be changed freely.
+   * 
+   * @return a new buffer holding the pixels of this snapshot
+   */
+  public PixelBuffer toPixelBuffer() {
+    PixelBuffer buffer = new PixelBuffer(this.width, this.height);
+    int[] data = buffer.getData();
+    for (int index = 0; index < this.tiles.length; index++) {
+      int x = (index % this.tilesAcross) * TILE_SIZE;
+      int y = (index / this.tilesAcross) * TILE_SIZE;
+      int tileWidth = Math.min(TILE_SIZE, this.width - x);
+      int tileHeight = Math.min(TILE_SIZE, this.height - y);
+      for (int row = 0; row < tileHeight; row++) {
+        System.arraycopy(this.tiles[index], row * TILE_SIZE, data, buffer.indexOf(x, y + row),
+            tileWidth);
+      }
+    }
+    return buffer;
+  }
+
+  /**
+   * Return an editor that builds a changed copy of this snapshot. This snapshot is not changed.
+   * 
+   * @return a new editor starting from the pixels of this snapshot
+   */
+  public Editor edit() {
+    return new Editor(this);
+  }
+
+  /**
+   * An editor that changes the pixels of a snapshot and builds a new snapshot from them. A tile is
+   * copied the first time one of its pixels is written, and the tiles that were never written are
+   * shared with the original snapshot. An editor is meant to be used by one thread.
+   */
+  public static final class Editor {
+    private final ImageSnapshot original;
+    private final int[][] tiles;
+    private final boolean[] copied;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param original the snapshot to start from
+     */
+    private Editor(ImageSnapshot original) {
+      this.original = original;
+      this.tiles = original.tiles.clone();
+      this.copied = new boolean[this.tiles.length];
+    }
+
+    /**
+     * Change the color of one pixel.
+     * 
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @param rgb the packed color of the pixel
+     * @return this editor
+     * @throws IllegalArgumentException if the position is outside of the image
+     */
+    public Editor setRGB(int x, int y, int rgb) throws IllegalArgumentException {
+      if (x < 0 || y < 0 || x >= this.original.width || y >= this.original.height) {
+        throw new IllegalArgumentException("The position is outside of the image.");
+      }
+      int[] tile = this.writableTile((y / TILE_SIZE) * this.original.tilesAcross + x / TILE_SIZE);
+      tile[(y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE] = rgb;
+      return this;
+    }
+
+    /**
+     * Fill a rectangle with one color. The parts of the rectangle outside of the image are left
+     * out.
+     * 
+     * @param x1 the first column of the rectangle
+     * @param y1 the first row of the rectangle
+     * @param x2 the column after the last column of the rectangle
+     * @param y2 the row after the last row of the rectangle
+     * @param rgb the packed color
+     * @return this editor
+     */
+    public Editor fill(int x1, int y1, int x2, int y2, int rgb) {
+      x1 = Math.max(0, x1);
+      y1 = Math.max(0, y1);
+      x2 = Math.min(this.original.width, x2);
+      y2 = Math.min(this.original.height, y2);
+      for (int tileY = y1 - y1 % TILE_SIZE; tileY < y2; tileY += TILE_SIZE) {
+        for (int tileX = x1 - x1 % TILE_SIZE; tileX < x2; tileX += TILE_SIZE) {
+          int[] tile = this.writableTile(
+              (tileY / TILE_SIZE) * this.original.tilesAcross + tileX / TILE_SIZE);
+          int rowStart = Math.max(y1, tileY) - tileY;
+          int rowEnd = Math.min(y2, tileY + TILE_SIZE) - tileY;
+          int columnStart = Math.max(x1, tileX) - tileX;
+          int columnEnd = Math.min(x2, tileX + TILE_SIZE) - tileX;
+          for (int row = rowStart; row < rowEnd; row++) {
+            Arrays.fill(tile, row * TILE_SIZE + columnStart,
+                row * TILE_SIZE + columnEnd, rgb);
+          }
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Return a tile that this editor may write to, copying it the first time.
+     * 
+     * @param index the index of the tile
+     * @return the tile owned by this editor
+     */
+    private int[] writableTile(int index) {
+      if (!this.copied[index]) {
+        this.tiles[index] = this.tiles[index].clone();
+        this.copied[index] = true;
+      }
+      return this.tiles[index];
+    }
+
+    /**
+     * Return a snapshot holding the pixels of this editor. Later changes made through this editor
+     * copy their tiles again, so they do not change the returned snapshot.
+     * 
+     * @return a new snapshot
+     */
+    public ImageSnapshot build() {
+      Arrays.fill(this.copied, false);
+      return new ImageSnapshot(this.original.width, this.original.height, this.tiles.clone());
+    }
+  }
+}
@@ -1,11 +1,28 @@
 package images;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.io.FileInputStream;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * Image utility class that has methods to read an image from file and write to a file.
@@ -24,32 +41,281 @@ public class ImageUtilities {
    * @throws IllegalArgumentException if the filename provided does not contain an image.
    */
   public static int[][][] readImage(String filename) throws IllegalArgumentException {
+    return readPixels(filename).toArray();
+  }
+
+  /**
+   * Read an image from a file into a pixel buffer. Any transparency in the image is dropped.
+   * 
+   * @param filename the name of the file to be read
+   * @return the pixels of the image
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
+   */
+  public static PixelBuffer readPixels(String filename) throws IllegalArgumentException {
+    OperationMetrics metrics = OperationMetrics.getDefault();
+    ImageCodecEvent event = new ImageCodecEvent();
+    event.begin();
+    long start = System.nanoTime();
     if (filename == null || "".equals(filename)) {
+      metrics.recordError("readImage");
+      event.finish("decode", filename, null, 0, true);
       throw new IllegalArgumentException("Invalid filename provided for reading the image file.");
     }
-    int[][][] result = null;
+    File file = new File(filename);
+    PixelBuffer pixels;
     try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
+      if (isPpm(filename)) {
+        pixels = PpmFile.read(filename);
+      } else {
+        BufferedImage input = ImageIO.read(file);
+        pixels = input == null ? null : toPixelBuffer(input);
+      }
+    } catch (IOException ex) {
+      pixels = null;
+    }
+    if (pixels == null) {
+      metrics.recordError("readImage");
+      event.finish("decode", filename, null, file.length(), true);
+      throw new IllegalArgumentException("Something went wrong reading the image file.");
+    }
+    long bytes = file.length();
+    metrics.record("readImage", System.nanoTime() - start,
+        (long) pixels.getWidth() * pixels.getHeight());
+    metrics.addBytesRead(bytes);
+    event.finish("decode", filename, pixels, bytes, false);
+    return pixels;
+  }
 
-      result = new int[input.getHeight()][input.getWidth()][3];
+  /**
+   * Return whether a file is a PPM file, which is read and written without ImageIO.
+   * 
+   * @param filename the name of the file
+   * @return true if the extension of the filename is ppm
+   */
+  private static boolean isPpm(String filename) {
+    return filename.toLowerCase().endsWith(".ppm");
+  }
 
-      for (int i = 0; i < input.getHeight(); i++) {
-        for (int j = 0; j < input.getWidth(); j++) {
-          int color = input.getRGB(j, i);
-          Color c = new Color(color);
-          result[i][j][0] = c.getRed();
-          result[i][j][1] = c.getGreen();
-          result[i][j][2] = c.getBlue();
+  /**
+   * Copy the pixels of a decoded image into a new pixel buffer. The common layouts produced by the
+   * image decoders (packed integer RGB, interleaved byte RGB and BGR, 8-bit grey and indexed
+   * colors) are copied straight out of the data buffer of the raster. Any other layout is
+   * converted one row at a time through the color model of the image.
+   * 
+   * @param image the decoded image
+   * @return a new pixel buffer holding the red, green and blue values of the image
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static PixelBuffer toPixelBuffer(BufferedImage image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Invalid image provided");
+    }
+    PixelBuffer pixels = new PixelBuffer(image.getWidth(), image.getHeight());
+    if (!decodeRaster(image, pixels)) {
+      int width = image.getWidth();
+      int[] output = pixels.getData();
+      for (int i = 0; i < image.getHeight(); i++) {
+        image.getRGB(0, i, width, 1, output, i * width, width);
+        for (int j = i * width; j < (i + 1) * width; j++) {
+          output[j] &= 0xFFFFFF;
         }
       }
+    }
+    return pixels;
+  }
+
+  /**
+   * Copy the pixels of an image straight out of its data buffer when its layout is one of the
+   * layouts this method understands.
+   * 
+   * @param image the decoded image
+   * @param pixels the buffer to copy the pixels into
+   * @return true if the pixels were copied, false if the layout is not supported
+   */
+  private static boolean decodeRaster(BufferedImage image, PixelBuffer pixels) {
+    Raster raster = image.getRaster();
+    if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+        || raster.getDataBuffer().getNumBanks() != 1) {
+      return false;
+    }
+    ColorModel colorModel = image.getColorModel();
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    int width = pixels.getWidth();
+    int height = pixels.getHeight();
+    int[] output = pixels.getData();
+
+    if (colorModel instanceof IndexColorModel && dataBuffer instanceof DataBufferByte) {
+      IndexColorModel indexColorModel = (IndexColorModel) colorModel;
+      int[] palette = new int[256];
+      indexColorModel.getRGBs(palette);
+      return decodeLookup(raster, palette, output, width, height);
+    }
+
+    if (colorModel instanceof DirectColorModel && dataBuffer instanceof DataBufferInt
+        && sampleModel instanceof SinglePixelPackedSampleModel
+        && colorModel.getColorSpace().isCS_sRGB() && !colorModel.isAlphaPremultiplied()) {
+      DirectColorModel directColorModel = (DirectColorModel) colorModel;
+      if (directColorModel.getRedMask() != 0xFF0000 || directColorModel.getGreenMask() != 0xFF00
+          || directColorModel.getBlueMask() != 0xFF) {
+        return false;
+      }
+      int[] data = ((DataBufferInt) dataBuffer).getData();
+      int scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+      int offset = dataBuffer.getOffset();
+      for (int i = 0; i < height; i++) {
+        int source = offset + i * scanlineStride;
+        int target = i * width;
+        for (int j = 0; j < width; j++) {
+          output[target + j] = data[source + j] & 0xFFFFFF;
+        }
+      }
+      return true;
+    }
+
+    if (colorModel instanceof ComponentColorModel && dataBuffer instanceof DataBufferByte
+        && sampleModel instanceof PixelInterleavedSampleModel
+        && !colorModel.isAlphaPremultiplied()) {
+      for (int size : colorModel.getComponentSize()) {
+        if (size != 8) {
+          return false;
+        }
+      }
+      if (colorModel.getNumComponents() == 1) {
+        // Grey images may use a linear color space, so the conversion to sRGB is looked up once
+        // for each of the 256 grey levels
+        int[] lookupTable = new int[256];
+        for (int i = 0; i < 256; i++) {
+          lookupTable[i] = colorModel.getRGB(new byte[] {(byte) i});
+        }
+        return decodeLookup(raster, lookupTable, output, width, height);
+      }
+      if (colorModel.getNumColorComponents() != 3 || !colorModel.getColorSpace().isCS_sRGB()) {
+        return false;
+      }
+      PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+      byte[] data = ((DataBufferByte) dataBuffer).getData();
+      int[] bandOffsets = interleaved.getBandOffsets();
+      int pixelStride = interleaved.getPixelStride();
+      int scanlineStride = interleaved.getScanlineStride();
+      int offset = dataBuffer.getOffset();
+      for (int i = 0; i < height; i++) {
+        int source = offset + i * scanlineStride;
+        int target = i * width;
+        for (int j = 0; j < width; j++) {
+          output[target + j] = PixelBuffer.pack(data[source + bandOffsets[0]] & 0xFF,
+              data[source + bandOffsets[1]] & 0xFF, data[source + bandOffsets[2]] & 0xFF);
+          source += pixelStride;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Copy the pixels of an image whose samples are indices into a table of colors. Both one sample
+   * per byte and several samples packed into each byte are supported.
+   * 
+   * @param raster the raster of the decoded image
+   * @param lookupTable the packed color of each sample value
+   * @param output the array to copy the packed colors into
+   * @param width the width of the image
+   * @param height the height of the image
+   * @return true if the pixels were copied, false if the layout is not supported
+   */
+  private static boolean decodeLookup(Raster raster, int[] lookupTable, int[] output, int width,
+      int height) {
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    byte[] data = ((DataBufferByte) dataBuffer).getData();
+    int offset = dataBuffer.getOffset();
+    if (sampleModel instanceof PixelInterleavedSampleModel && sampleModel.getNumBands() == 1) {
+      PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+      int pixelStride = interleaved.getPixelStride();
+      int scanlineStride = interleaved.getScanlineStride();
+      offset += interleaved.getBandOffsets()[0];
+      for (int i = 0; i < height; i++) {
+        int source = offset + i * scanlineStride;
+        int target = i * width;
+        for (int j = 0; j < width; j++) {
+          output[target + j] = lookupTable[data[source] & 0xFF] & 0xFFFFFF;
+          source += pixelStride;
+        }
+      }
+      return true;
+    }
+    if (sampleModel instanceof MultiPixelPackedSampleModel) {
+      MultiPixelPackedSampleModel packed = (MultiPixelPackedSampleModel) sampleModel;
+      int bitsPerPixel = packed.getPixelBitStride();
+      int mask = (1 << bitsPerPixel) - 1;
+      int scanlineStride = packed.getScanlineStride();
+      int bitOffset = packed.getDataBitOffset();
+      for (int i = 0; i < height; i++) {
+        int rowStart = offset + i * scanlineStride;
+        int target = i * width;
+        for (int j = 0; j < width; j++) {
+          int bit = bitOffset + j * bitsPerPixel;
+          int shift = 8 - bitsPerPixel - (bit & 7);
+          int index = (data[rowStart + (bit >> 3)] >> shift) & mask;
+          output[target + j] = lookupTable[index] & 0xFFFFFF;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Read the metadata of an image file. Only the header of the file is read, the pixels are not
+   * decoded, and the file is closed before this method returns. PPM files are read by
+   * {@link PpmFile}, like when they are loaded, since ImageIO has no reader for them.
+   * 
+   * @param path the path of the image file
+   * @return the dimensions, format, color model and bit depth of the image
+   * @throws IllegalArgumentException if the path is invalid or the file does not contain an image
+   */
+  public static ImageInfo probe(Path path) throws IllegalArgumentException {
+    if (path == null) {
+      throw new IllegalArgumentException("Invalid path provided for reading the image header.");
+    }
+    if (isPpm(path.toString())) {
+      try {
+        return PpmFile.probe(path.toString());
+      } catch (IOException ex) {
+        throw new IllegalArgumentException("Something went wrong reading the image header.");
+      }
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+      if (input == null) {
+        throw new IllegalArgumentException("Something went wrong opening the image file.");
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        throw new IllegalArgumentException("The file does not contain a supported image.");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+          Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+          type = types.hasNext() ? types.next() : null;
+        }
+        ColorModel colorModel = type == null ? null : type.getColorModel();
+        int bitDepth = colorModel == null ? 0 : colorModel.getPixelSize();
+        return new ImageInfo(reader.getWidth(0), reader.getHeight(0),
+            reader.getFormatName().toLowerCase(), colorModel, bitDepth);
+      } finally {
+        reader.dispose();
+      }
     } catch (IOException ex) {
-      throw new IllegalArgumentException("Something went wrong reading the image file.");
+      throw new IllegalArgumentException("Something went wrong reading the image header.");
     }
-    return result;
   }
 
   /**
-   * Return the width of an image in a file.
+   * Return the width of an image in a file. Only the header of the file is read.
    * 
    * @param filename the name of the file containing the image.
    * @return the width of the image in the file
@@ -59,19 +325,11 @@ public class ImageUtilities {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
     }
-    int width = 0;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      width = input.getWidth();
-    } catch (IOException ex) {
-      throw new IllegalArgumentException(
-          "Something went wrong getting the width from the image file");
-    }
-    return width;
+    return probe(Paths.get(filename)).getWidth();
   }
 
   /**
-   * Return the height of an image in a file.
+   * Return the height of an image in a file. Only the header of the file is read.
    * 
    * @param filename the name of the file containing the image.
    * @return the height of the image in the file
@@ -81,15 +339,7 @@ public class ImageUtilities {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
     }
-    int height = 0;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      height = input.getHeight();
-    } catch (IOException ex) {
-      throw new IllegalArgumentException(
-          "Something went wrong getting the height from the image file");
-    }
-    return height;
+    return probe(Paths.get(filename)).getHeight();
   }
 
   /**
@@ -111,33 +361,51 @@ public class ImageUtilities {
     if (rgbData == null) {
       throw new IllegalArgumentException("Invalid image data provided");
     }
+    writeImage(PixelBuffer.fromArray(rgbData), filename);
+  }
+
+  /**
+   * Write the pixels of a pixel buffer to a file. The format of the file is taken from the
+   * extension of the filename.
+   * 
+   * @param pixels the pixels of the image
+   * @param filename the name of the file to write the image to
+   * @throws IllegalArgumentException if the pixels or filename provided was invalid
+   * @throws IllegalArgumentException if something went wrong when writing go the filename
+   */
+  public static void writeImage(PixelBuffer pixels, String filename)
+      throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("Invalid image data provided");
+    }
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided");
     }
+    OperationMetrics metrics = OperationMetrics.getDefault();
+    ImageCodecEvent event = new ImageCodecEvent();
+    event.begin();
+    long start = System.nanoTime();
+    String extension = filename.substring(filename.lastIndexOf(".") + 1);
+    long bytes;
     try {
-      int height = rgbData.length;
-      int width = rgbData[0].length;
-
-      BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          int r = rgbData[i][j][0];
-          int g = rgbData[i][j][1];
-          int b = rgbData[i][j][2];
-
-          // color is stored in 1 integer, with the 4 bytes storing ARGB in that
-          // order. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
-          // So we put them all in one integer by using bit-shifting << as below
-          int color = (r << 16) + (g << 8) + b;
-          output.setRGB(j, i, color);
+      if (isPpm(filename)) {
+        PpmFile.write(pixels, filename);
+        bytes = new File(filename).length();
+      } else {
+        try (FileOutputStream out = new FileOutputStream(filename)) {
+          ImageIO.write(pixels.toBufferedImage(), extension, out);
+          bytes = out.getChannel().position();
         }
       }
-      String extension = filename.substring(filename.indexOf(".") + 1);
-      ImageIO.write(output, extension, new FileOutputStream(filename));
     } catch (IOException ex) {
+      metrics.recordError("writeImage");
+      event.finish("encode", filename, pixels, 0, true);
       throw new IllegalArgumentException("Error occurred writing the data to the file");
     }
+    metrics.record("writeImage", System.nanoTime() - start,
+        (long) pixels.getWidth() * pixels.getHeight());
+    metrics.addBytesWritten(bytes);
+    event.finish("encode", filename, pixels, bytes, false);
   }
 
   /**
@@ -156,20 +424,21 @@ public class ImageUtilities {
     if (rgbData == null) {
       throw new IllegalArgumentException("Invalid image data provided");
     }
-    int height = rgbData.length;
-    int width = rgbData[0].length;
-    BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = rgbData[i][j][0];
-        int g = rgbData[i][j][1];
-        int b = rgbData[i][j][2];
+    return PixelBuffer.fromArray(rgbData).toBufferedImage();
+  }
 
-        int color = (r << 16) + (g << 8) + b;
-        output.setRGB(j, i, color);
-      }
+  /**
+   * Return an image that shows the pixels of a pixel buffer. The image shares the array of the
+   * buffer, so this takes constant time however large the image is.
+   * 
+   * @param pixels the pixels of the image
+   * @return an image backed by the pixels of the buffer
+   * @throws IllegalArgumentException if the pixels provided were invalid
+   */
+  public static BufferedImage convertImage(PixelBuffer pixels) throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("Invalid image data provided");
     }
-    return output;
+    return pixels.toBufferedImage();
   }
 }
@@ -0,0 +1,230 @@
+package images;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+
+/**
+ * An image model that measures the operations of another image model and records them in an
+ * {@link OperationMetrics} registry. Every operation records how long it took and how many pixels
+ * the image had after it, or that it failed. A cancelled operation is not recorded.
+ * 
+ * <p>The pixels are only counted when the measured model is a {@link ConcreteImageModel}, whose
+ * size can be read without running its recorded operations, or a {@link MappedImageModel}. For a
+ * lazy model the recorded operations are measured by the operation that runs them, such as saving
+ * the image.
+ */
+public class InstrumentedImageModel implements ImageModel {
+  private final ImageModel delegate;
+  private final OperationMetrics metrics;
+
+  /**
+   * Constructor for this class that records into the default registry.
+   * 
+   * @param delegate the image model to measure
+   * @throws IllegalArgumentException if the model is null
+   */
+  public InstrumentedImageModel(ImageModel delegate) throws IllegalArgumentException {
+    this(delegate, OperationMetrics.getDefault());
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param delegate the image model to measure
+   * @param metrics the registry to record into
+   * @throws IllegalArgumentException if any of the arguments is null
+   */
+  public InstrumentedImageModel(ImageModel delegate, OperationMetrics metrics)
+      throws IllegalArgumentException {
+    if (delegate == null || metrics == null) {
+      throw new IllegalArgumentException(
+          "The arguments passed to the InstrumentedImageModel constructor are invalid.");
+    }
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Return the image model measured by this model.
+   * 
+   * @return the measured image model
+   */
+  public ImageModel getDelegate() {
+    return this.delegate;
+  }
+
+  /**
+   * Run an operation of the measured model and record it.
+   * 
+   * @param operation the name of the operation
+   * @param action the operation
+   */
+  private void measure(String operation, Runnable action) {
+    long start = System.nanoTime();
+    try {
+      action.run();
+    } catch (CancellationException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      this.metrics.recordError(operation);
+      throw e;
+    }
+    this.metrics.record(operation, System.nanoTime() - start, pixelCount(this.delegate));
+  }
+
+  /**
+   * Return the number of pixels of the image of a model.
+   * 
+   * @param model the image model
+   * @return the number of pixels, or 0 if they cannot be counted cheaply
+   */
+  private static long pixelCount(ImageModel model) {
+    if (model instanceof ConcreteImageModel) {
+      return ((ConcreteImageModel) model).getPixelCount();
+    }
+    return model instanceof MappedImageModel ? ((MappedImageModel) model).getPixelCount() : 0;
+  }
+
+  @Override
+  public void loadImage(String filename) throws IllegalArgumentException {
+    this.measure("load", () -> this.delegate.loadImage(filename));
+  }
+
+  @Override
+  public void saveImage(String filename) throws IllegalArgumentException {
+    this.measure("save", () -> this.delegate.saveImage(filename));
+  }
+
+  @Override
+  public void applyBlur() {
+    this.measure("blur", this.delegate::applyBlur);
+  }
+
+  @Override
+  public void applyGaussianBlur(int radius) throws IllegalArgumentException {
+    this.measure("gaussianBlur", () -> this.delegate.applyGaussianBlur(radius));
+  }
+
+  @Override
+  public void applySharpen() {
+    this.measure("sharpen", this.delegate::applySharpen);
+  }
+
+  @Override
+  public void applyGreyscale() {
+    this.measure("greyscale", this.delegate::applyGreyscale);
+  }
+
+  @Override
+  public void applySepia() {
+    this.measure("sepia", this.delegate::applySepia);
+  }
+
+  @Override
+  public void applyDither() {
+    this.measure("dither", this.delegate::applyDither);
+  }
+
+  @Override
+  public void applyMosaic(int seeds) throws IllegalArgumentException {
+    this.measure("mosaic", () -> this.delegate.applyMosaic(seeds));
+  }
+
+  @Override
+  public void applyEdgeDetection() {
+    this.measure("edgeDetection", this.delegate::applyEdgeDetection);
+  }
+
+  @Override
+  public void applyGreyscaleEnhancement() {
+    this.measure("greyscaleEnhancement", this.delegate::applyGreyscaleEnhancement);
+  }
+
+  /**
+   * Crop the image of the measured model. The cropped model is measured as well, and the pixels
+   * counted are the ones of the cropped image.
+   * 
+   * @param x the x coordinate of the upper left point of the cropping rectangle
+   * @param y the y coordinate of the upper left point of the cropping rectangle
+   * @param width the width of the cropping rectangle
+   * @param height the height of the cropping rectangle
+   * @return the measured model holding the cropped image
+   */
+  @Override
+  public ImageModel applyImageCropping(int x, int y, int width, int height) {
+    long start = System.nanoTime();
+    ImageModel cropped;
+    try {
+      cropped = this.delegate.applyImageCropping(x, y, width, height);
+    } catch (CancellationException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      this.metrics.recordError("crop");
+      throw e;
+    }
+    this.metrics.record("crop", System.nanoTime() - start, pixelCount(cropped));
+    return new InstrumentedImageModel(cropped, this.metrics);
+  }
+
+  @Override
+  public int[][][] getImageData() {
+    return this.delegate.getImageData();
+  }
+
+  @Override
+  public BufferedImage getImage() {
+    return this.delegate.getImage();
+  }
+
+  @Override
+  public int getImageWidth() {
+    return this.delegate.getImageWidth();
+  }
+
+  @Override
+  public int getImageHeight() {
+    return this.delegate.getImageHeight();
+  }
+
+  @Override
+  public void generateRainbow(int width, int height, int rainbowType) {
+    this.measure("rainbow", () -> this.delegate.generateRainbow(width, height, rainbowType));
+  }
+
+  @Override
+  public void generateCheckerBoard(int totalHeight, int numberOfSquares, int[] firstColor,
+      int[] secondColor) {
+    this.measure("checkerBoard", () -> this.delegate.generateCheckerBoard(totalHeight,
+        numberOfSquares, firstColor, secondColor));
+  }
+
+  @Override
+  public void generateNationalFlagOfNorway(int width) {
+    this.measure("flag", () -> this.delegate.generateNationalFlagOfNorway(width));
+  }
+
+  @Override
+  public void generateNationalFlagOfGreece(int width) {
+    this.measure("flag", () -> this.delegate.generateNationalFlagOfGreece(width));
+  }
+
+  @Override
+  public void generateNationalFlagOfSwizerland(int width) {
+    this.measure("flag", () -> this.delegate.generateNationalFlagOfSwizerland(width));
+  }
+
+  @Override
+  public boolean undo() {
+    return this.delegate.undo();
+  }
+
+  @Override
+  public boolean redo() {
+    return this.delegate.redo();
+  }
+
+  @Override
+  public void setOperationContext(OperationContext context) {
+    this.delegate.setOperationContext(context);
+  }
+}
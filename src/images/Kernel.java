@@ -0,0 +1,161 @@
+package images;
+
+/**
+ * A square convolution kernel with an odd size. A kernel built from a column vector and a row
+ * vector is separable, which lets it be applied as two one-dimensional passes instead of one
+ * two-dimensional pass. A kernel given as a matrix is always applied in one pass, truncating every
+ * product like the original filters of the program, even if its weights could be split.
+ */
+public class Kernel {
+  /**
+   * The largest radius of a Gaussian kernel.
+   */
+  public static final int MAX_GAUSSIAN_RADIUS = 100;
+
+  private final double[][] weights;
+  private final double[] columnVector;
+  private final double[] rowVector;
+
+  /**
+   * A constructor that takes the weights of the kernel.
+   * 
+   * @param weights the weights of the kernel, one array per row
+   * @throws IllegalArgumentException if the weights are not a square matrix with an odd size
+   */
+  public Kernel(double[][] weights) throws IllegalArgumentException {
+    this(weights, null, null);
+  }
+
+  /**
+   * A constructor that takes the weights of the kernel and the vectors they are built from.
+   * 
+   * @param weights the weights of the kernel, one array per row
+   * @param columnVector the weights applied down each column, or null if the kernel is applied in
+   *        one pass
+   * @param rowVector the weights applied along each row, or null if the kernel is applied in one
+   *        pass
+   * @throws IllegalArgumentException if the weights are not a square matrix with an odd size
+   */
+  private Kernel(double[][] weights, double[] columnVector, double[] rowVector)
+      throws IllegalArgumentException {
+    if (weights == null || weights.length % 2 == 0) {
+      throw new IllegalArgumentException("The kernel should be a square matrix with an odd size.");
+    }
+    this.weights = new double[weights.length][];
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] == null || weights[i].length != weights.length) {
+        throw new IllegalArgumentException(
+            "The kernel should be a square matrix with an odd size.");
+      }
+      this.weights[i] = weights[i].clone();
+    }
+    this.columnVector = columnVector == null ? null : columnVector.clone();
+    this.rowVector = rowVector == null ? null : rowVector.clone();
+  }
+
+  /**
+   * Return a separable kernel built from a column vector and a row vector.
+   * 
+   * @param columnVector the weights applied down each column
+   * @param rowVector the weights applied along each row
+   * @return the kernel whose weights are the outer product of the two vectors
+   * @throws IllegalArgumentException if the vectors do not have the same odd length
+   */
+  public static Kernel separable(double[] columnVector, double[] rowVector)
+      throws IllegalArgumentException {
+    if (columnVector == null || rowVector == null || columnVector.length != rowVector.length) {
+      throw new IllegalArgumentException("The two vectors should have the same odd length.");
+    }
+    double[][] weights = new double[columnVector.length][rowVector.length];
+    for (int i = 0; i < columnVector.length; i++) {
+      for (int j = 0; j < rowVector.length; j++) {
+        weights[i][j] = columnVector[i] * rowVector[j];
+      }
+    }
+    return new Kernel(weights, columnVector, rowVector);
+  }
+
+  /**
+   * Return a normalized Gaussian blur kernel. The standard deviation is a third of the radius so
+   * that the kernel covers almost all of the bell curve.
+   * 
+   * @param radius the number of pixels on each side of the center pixel
+   * @return a separable Gaussian kernel whose weights add up to 1
+   * @throws IllegalArgumentException if the radius is not between 1 and
+   *         {@value #MAX_GAUSSIAN_RADIUS}
+   */
+  public static Kernel gaussian(int radius) throws IllegalArgumentException {
+    if (radius < 1 || radius > MAX_GAUSSIAN_RADIUS) {
+      throw new IllegalArgumentException(
+          "The radius of the kernel should be between 1 and " + MAX_GAUSSIAN_RADIUS + ".");
+    }
+    double sigma = radius / 3.0;
+    double[] vector = new double[2 * radius + 1];
+    double total = 0;
+    for (int i = -radius; i <= radius; i++) {
+      vector[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+      total += vector[i + radius];
+    }
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] /= total;
+    }
+    return separable(vector, vector);
+  }
+
+  /**
+   * Return the number of rows (and columns) of the kernel.
+   * 
+   * @return the size of the kernel
+   */
+  public int getSize() {
+    return this.weights.length;
+  }
+
+  /**
+   * Return the number of pixels on each side of the center pixel that the kernel reaches.
+   * 
+   * @return the radius of the kernel
+   */
+  public int getRadius() {
+    return this.weights.length / 2;
+  }
+
+  /**
+   * Return one weight of the kernel.
+   * 
+   * @param row the row of the weight
+   * @param column the column of the weight
+   * @return the weight
+   */
+  public double getWeight(int row, int column) {
+    return this.weights[row][column];
+  }
+
+  /**
+   * Return whether the kernel was built from a column vector and a row vector, and is applied as
+   * two one-dimensional passes.
+   * 
+   * @return true if the kernel is separable
+   */
+  public boolean isSeparable() {
+    return this.columnVector != null;
+  }
+
+  /**
+   * Return the weights applied down each column when the kernel is separable.
+   * 
+   * @return a copy of the column vector, or null if the kernel is not separable
+   */
+  public double[] getColumnVector() {
+    return this.columnVector == null ? null : this.columnVector.clone();
+  }
+
+  /**
+   * Return the weights applied along each row when the kernel is separable.
+   * 
+   * @return a copy of the row vector, or null if the kernel is not separable
+   */
+  public double[] getRowVector() {
+    return this.rowVector == null ? null : this.rowVector.clone();
+  }
+}
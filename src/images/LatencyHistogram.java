@@ -0,0 +1,162 @@
+package images;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds that many threads can record into without locking. Like
+ * an HdrHistogram, every power of two is split into {@value #SUB_BUCKETS} buckets of equal width,
+ * so a recorded value is known to within about 3 percent whatever its size, and the histogram
+ * takes the same fixed amount of memory however many values it holds. Recording a value is one
+ * atomic increment and two cheap updates, so a histogram can be left on all the time.
+ * 
+ * <p>The percentiles and the mean are read without stopping the threads that record, so they may
+ * leave out the values recorded while they are computed.
+ */
+public class LatencyHistogram {
+  /**
+   * The number of buckets every power of two is split into.
+   */
+  public static final int SUB_BUCKETS = 32;
+
+  private static final int SUB_BUCKET_BITS = 5;
+  // The values below twice the number of sub buckets have a bucket each, and every power of two
+  // above them up to 2^62 adds SUB_BUCKETS buckets
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+  private static final int BUCKET_COUNT = LINEAR_BUCKETS + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a duration.
+   * 
+   * @param nanos the duration in nanoseconds; negative durations are recorded as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    this.counts.incrementAndGet(bucketOf(value));
+    this.sum.add(value);
+    long current = this.max.get();
+    while (value > current && !this.max.compareAndSet(current, value)) {
+      current = this.max.get();
+    }
+  }
+
+  /**
+   * Return the bucket holding a value.
+   * 
+   * @param value a value that is not negative
+   * @return the index of the bucket holding the value
+   */
+  private static int bucketOf(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int top = (int) (value >>> shift);
+    return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + top - SUB_BUCKETS;
+  }
+
+  /**
+   * Return the largest value a bucket holds.
+   * 
+   * @param bucket the index of the bucket
+   * @return the largest value of the bucket
+   */
+  private static long highestValueOf(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    long top = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((top + 1) << shift) - 1;
+  }
+
+  /**
+   * Return the number of durations recorded.
+   * 
+   * @return the number of durations recorded
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += this.counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Return the duration that the given percentage of the recorded durations do not exceed. The
+   * duration is the largest value of its bucket, but never more than the largest duration
+   * recorded.
+   * 
+   * @param percentile the percentage, from 0 to 100
+   * @return the duration in nanoseconds, or 0 if no duration has been recorded
+   * @throws IllegalArgumentException if the percentage is not between 0 and 100
+   */
+  public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("The percentile should be between 0 and 100.");
+    }
+    long[] snapshot = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = this.counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  /**
+   * Return the mean of the recorded durations.
+   * 
+   * @return the mean in nanoseconds, or 0 if no duration has been recorded
+   */
+  public double getMean() {
+    long count = this.getCount();
+    return count == 0 ? 0 : (double) this.sum.sum() / count;
+  }
+
+  /**
+   * Return the sum of the recorded durations.
+   * 
+   * @return the sum in nanoseconds
+   */
+  public long getSum() {
+    return this.sum.sum();
+  }
+
+  /**
+   * Return the largest recorded duration.
+   * 
+   * @return the largest duration in nanoseconds, or 0 if no duration has been recorded
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Forget every recorded duration. The durations recorded while this runs may be kept in part.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this.counts.set(i, 0);
+    }
+    this.sum.reset();
+    this.max.set(0);
+  }
+}
@@ -0,0 +1,117 @@
+package images;
+
+/**
+ * A point operation that maps every value of each channel through a table of 256 entries. The
+ * tables are stored already shifted to the place of their channel, so a pixel costs three table
+ * reads and two bitwise ors.
+ */
+public class LookupTable implements PointOperation {
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  /**
+   * A constructor that maps all three channels through the same table.
+   * 
+   * @param table the new value of each of the 256 channel values
+   * @throws IllegalArgumentException if the table does not have 256 values between 0 and 255
+   */
+  public LookupTable(int[] table) throws IllegalArgumentException {
+    this(table, table, table);
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param red the new value of each of the 256 red values
+   * @param green the new value of each of the 256 green values
+   * @param blue the new value of each of the 256 blue values
+   * @throws IllegalArgumentException if a table does not have 256 values between 0 and 255
+   */
+  public LookupTable(int[] red, int[] green, int[] blue) throws IllegalArgumentException {
+    this.red = shift(red, 16);
+    this.green = shift(green, 8);
+    this.blue = shift(blue, 0);
+  }
+
+  /**
+   * Return a table whose values are moved to the place of a channel in a packed color.
+   * 
+   * @param table the new value of each of the 256 channel values
+   * @param bits the number of bits to move the values by
+   * @return the shifted table
+   * @throws IllegalArgumentException if the table does not have 256 values between 0 and 255
+   */
+  private static int[] shift(int[] table, int bits) throws IllegalArgumentException {
+    if (table == null || table.length != 256) {
+      throw new IllegalArgumentException("A lookup table should have 256 values.");
+    }
+    int[] shifted = new int[256];
+    for (int i = 0; i < 256; i++) {
+      if (table[i] < 0 || table[i] > 255) {
+        throw new IllegalArgumentException("A lookup table should map to values from 0 to 255.");
+      }
+      shifted[i] = table[i] << bits;
+    }
+    return shifted;
+  }
+
+  /**
+   * Return the new value of one channel value.
+   * 
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param value the channel value
+   * @return the new value of the channel value
+   */
+  public int lookUp(int channel, int value) {
+    switch (channel) {
+      case 0:
+        return this.red[value] >>> 16;
+      case 1:
+        return this.green[value] >>> 8;
+      default:
+        return this.blue[value];
+    }
+  }
+
+  @Override
+  public int applyToPixel(int rgb) {
+    return this.red[PixelBuffer.red(rgb)] | this.green[PixelBuffer.green(rgb)]
+        | this.blue[PixelBuffer.blue(rgb)];
+  }
+
+  @Override
+  public void applyToRow(int[] source, int sourceOffset, int[] target, int targetOffset,
+      int length) {
+    int[] red = this.red;
+    int[] green = this.green;
+    int[] blue = this.blue;
+    for (int i = 0; i < length; i++) {
+      int rgb = source[sourceOffset + i];
+      target[targetOffset + i] = red[(rgb >> 16) & 0xFF] | green[(rgb >> 8) & 0xFF]
+          | blue[rgb & 0xFF];
+    }
+  }
+
+  /**
+   * Return the operation that applies this table and then another operation. Two tables are
+   * combined into a single table.
+   * 
+   * @param next the operation applied after this table
+   * @return the combined operation
+   */
+  @Override
+  public PointOperation andThen(PointOperation next) {
+    if (!(next instanceof LookupTable)) {
+      return PointOperation.super.andThen(next);
+    }
+    LookupTable other = (LookupTable) next;
+    int[][] combined = new int[3][256];
+    for (int c = 0; c < 3; c++) {
+      for (int i = 0; i < 256; i++) {
+        combined[c][i] = other.lookUp(c, this.lookUp(c, i));
+      }
+    }
+    return new LookupTable(combined[0], combined[1], combined[2]);
+  }
+}
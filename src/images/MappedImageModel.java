@@ -0,0 +1,590 @@
+package images;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * An image model that keeps its pixels in a {@link MappedPixelStore} instead of the heap, so that
+ * images of several gigabytes can be processed with a small heap. Every operation gives the same
+ * pixels as {@link ConcreteImageModel}.
+ * 
+ * <p>Every operation writes its result to another store and only replaces the pixels of this model
+ * once it is done, so a cancelled operation leaves the image as it was. The store replaced is kept
+ * as a spare and written by the next operation, so the operations go back and forth between two
+ * stores instead of mapping a new scratch file every time, whose disk space would only be given
+ * back once its store is garbage collected. The disk used by a model is therefore at most twice
+ * the size of its image, 8 bytes a pixel, plus the cropped image while cropping; the spare is
+ * dropped when the image changes size, and a store handed to or returned by the model is never
+ * used as the spare. Blur, sharpen, the color
+ * transformations and edge detection run through a {@link StreamingPipeline}, while dithering,
+ * the mosaic and cropping read and write the store directly, and use memory proportional to the
+ * width of the image or to the number of seeds.
+ * 
+ * <p>Only PPM files are read and written without holding the whole image in the heap; the other
+ * formats, the generated images and the image data and image returned by this model are copied
+ * through the heap. The operations cannot be undone.
+ */
+public class MappedImageModel implements ImageModel {
+  private TileScheduler scheduler = TileScheduler.getDefault();
+  private OperationContext context;
+  private TileScheduler operationScheduler = this.scheduler;
+  private int mappingBytes = MappedPixelStore.DEFAULT_MAPPING_BYTES;
+  private MappedPixelStore store;
+  private boolean storeShared;
+  private MappedPixelStore spare;
+
+  /**
+   * A constructor that takes no arguments.
+   */
+  public MappedImageModel() {}
+
+  /**
+   * A constructor that takes the pixels of an image.
+   * 
+   * @param store the pixels of an image, which this model replaces but never changes
+   */
+  public MappedImageModel(MappedPixelStore store) {
+    this.store = store;
+    this.storeShared = true;
+  }
+
+  /**
+   * Return the pixels of this image model. The store returned is never written by this model.
+   * 
+   * @return the pixels of this model, or null if no image has been loaded
+   */
+  public MappedPixelStore getStore() {
+    this.storeShared = true;
+    return this.store;
+  }
+
+  /**
+   * Set the largest number of bytes of one mapping of the stores this model creates from now on.
+   * 
+   * @param mappingBytes the largest number of bytes of one mapping, which must hold at least one
+   *        tile
+   * @throws IllegalArgumentException if the number of bytes is smaller than one tile
+   */
+  public void setMappingBytes(int mappingBytes) throws IllegalArgumentException {
+    if (mappingBytes < 4 * MappedPixelStore.TILE_SIZE * MappedPixelStore.TILE_SIZE) {
+      throw new IllegalArgumentException("A mapping should hold at least one tile.");
+    }
+    this.mappingBytes = mappingBytes;
+  }
+
+  /**
+   * Return the number of pixels of the image of this model.
+   * 
+   * @return the number of pixels, or 0 if no image has been loaded
+   */
+  public long getPixelCount() {
+    return this.store == null ? 0 : (long) this.store.getWidth() * this.store.getHeight();
+  }
+
+  /**
+   * Set the scheduler that splits the operations of this image model into bands of rows.
+   * 
+   * @param scheduler the scheduler to use
+   * @throws IllegalArgumentException if the scheduler is null
+   */
+  public void setTileScheduler(TileScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("The scheduler should not be null.");
+    }
+    this.scheduler = scheduler;
+    this.bindScheduler();
+  }
+
+  /**
+   * Set the context the operations of this image model run in.
+   * 
+   * @param context the context of the operations, or null to run them without a context
+   */
+  @Override
+  public void setOperationContext(OperationContext context) {
+    this.context = context;
+    this.bindScheduler();
+  }
+
+  /**
+   * Bind the scheduler running the operations to the context of this image model.
+   */
+  private void bindScheduler() {
+    this.operationScheduler =
+        this.context == null ? this.scheduler : this.scheduler.withContext(this.context);
+  }
+
+  /**
+   * Stop the running operation if it has been cancelled, and report how far it has got.
+   * 
+   * @param rowsDone the number of rows that are done
+   * @param totalRows the number of rows of the image
+   * @throws CancellationException if the operation has been cancelled
+   */
+  private void checkpoint(int rowsDone, int totalRows) throws CancellationException {
+    if (this.context != null) {
+      this.context.checkpoint();
+      this.context.reportProgress(rowsDone, totalRows);
+    }
+  }
+
+  /**
+   * Return the pixels of this image model.
+   * 
+   * @return the pixels of this model
+   * @throws IllegalStateException if no image has been loaded
+   */
+  private MappedPixelStore requireStore() throws IllegalStateException {
+    if (this.store == null) {
+      throw new IllegalStateException("No image has been loaded.");
+    }
+    return this.store;
+  }
+
+  /**
+   * Return a store to write the result of an operation on the given pixels into: the spare store
+   * if it has their size, or else a new store.
+   * 
+   * @param source the pixels the operation reads
+   * @return the store to write the result into
+   */
+  private MappedPixelStore targetFor(MappedPixelStore source) {
+    if (this.spare != null && this.spare.getWidth() == source.getWidth()
+        && this.spare.getHeight() == source.getHeight()) {
+      return this.spare;
+    }
+    return new MappedPixelStore(source.getWidth(), source.getHeight(), this.mappingBytes);
+  }
+
+  /**
+   * Replace the pixels of this model. The pixels replaced become the spare store if they have the
+   * size of the new pixels and nobody else has them; otherwise the spare is dropped.
+   * 
+   * @param pixels the new pixels
+   */
+  private void replaceStore(MappedPixelStore pixels) {
+    MappedPixelStore previous = this.store;
+    boolean reusable = previous != null && !this.storeShared
+        && previous.getWidth() == pixels.getWidth() && previous.getHeight() == pixels.getHeight();
+    this.spare = reusable ? previous : null;
+    this.store = pixels;
+    this.storeShared = false;
+  }
+
+  /**
+   * Load an image into the image model. A PPM file is read a strip of rows at a time, and any
+   * other image is decoded into the heap first.
+   * 
+   * @param filename the name of the file containing the image.
+   * @throws IllegalArgumentException if the filename is invalid or if something goes wrong loading
+   *         the image
+   */
+  @Override
+  public void loadImage(String filename) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Invalid file name passed to model when loading.");
+    }
+    if (!filename.toLowerCase().endsWith(".ppm")) {
+      this.replaceStore(MappedPixelStore.of(ImageUtilities.readPixels(filename),
+          this.mappingBytes));
+      return;
+    }
+    try (StreamingPipeline.RowSource source = PpmFile.openReader(filename)) {
+      MappedPixelStore loaded =
+          new MappedPixelStore(source.getWidth(), source.getHeight(), this.mappingBytes);
+      copyRows(source, loaded.rowSink(), source.getWidth(), source.getHeight());
+      this.replaceStore(loaded);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Something went wrong reading the image file: "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Save the data in the image model to a file. A PPM file is written a strip of rows at a time,
+   * and any other image is encoded from a copy in the heap.
+   * 
+   * @param filename the name of the file to save to
+   * @throws IllegalArgumentException if the filename is invalid or if something goes wrong saving
+   *         the file
+   */
+  @Override
+  public void saveImage(String filename) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Invalid file name passed to model when saving.");
+    }
+    MappedPixelStore pixels = this.requireStore();
+    if (!filename.toLowerCase().endsWith(".ppm")) {
+      ImageUtilities.writeImage(pixels.toPixelBuffer(), filename);
+      return;
+    }
+    try (StreamingPipeline.RowSink sink =
+        PpmFile.openWriter(filename, pixels.getWidth(), pixels.getHeight())) {
+      copyRows(pixels.openRows(), sink, pixels.getWidth(), pixels.getHeight());
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error occurred writing the data to the file");
+    }
+  }
+
+  /**
+   * Copy every row of a source to a sink, a strip at a time.
+   * 
+   * @param source the source of the rows
+   * @param sink the sink of the rows
+   * @param width the width of the image
+   * @param height the height of the image
+   * @throws IOException if the rows cannot be read or written
+   */
+  private static void copyRows(StreamingPipeline.RowSource source, StreamingPipeline.RowSink sink,
+      int width, int height) throws IOException {
+    int stripRows = StreamingPipeline.DEFAULT_STRIP_ROWS;
+    int[] strip = new int[Math.min(stripRows, height) * width];
+    for (int row = 0; row < height; row += stripRows) {
+      int rows = Math.min(stripRows, height - row);
+      source.readRows(strip, 0, rows);
+      sink.writeRows(strip, 0, rows);
+    }
+  }
+
+  /**
+   * Run a streaming pipeline on the pixels of this model and replace them with the result.
+   * 
+   * @param pipeline the pipeline to run
+   * @throws CancellationException if the operation is cancelled
+   */
+  private void stream(StreamingPipeline pipeline) throws CancellationException {
+    MappedPixelStore source = this.requireStore();
+    MappedPixelStore target = this.targetFor(source);
+    try {
+      pipeline.run(source::openRows, target.rowSink());
+    } catch (IOException e) {
+      // The rows of a store are read and written without any I/O that can fail
+      throw new IllegalStateException(e);
+    }
+    this.replaceStore(target);
+  }
+
+  @Override
+  public void applyBlur() {
+    this.stream(new StreamingPipeline(this.operationScheduler).blur());
+  }
+
+  @Override
+  public void applyGaussianBlur(int radius) throws IllegalArgumentException {
+    this.stream(new StreamingPipeline(this.operationScheduler).gaussianBlur(radius));
+  }
+
+  @Override
+  public void applySharpen() {
+    this.stream(new StreamingPipeline(this.operationScheduler).sharpen());
+  }
+
+  @Override
+  public void applyGreyscale() {
+    this.stream(new StreamingPipeline(this.operationScheduler).greyscale());
+  }
+
+  @Override
+  public void applySepia() {
+    this.stream(new StreamingPipeline(this.operationScheduler).sepia());
+  }
+
+  @Override
+  public void applyEdgeDetection() {
+    this.stream(new StreamingPipeline(this.operationScheduler).edgeDetection());
+  }
+
+  /**
+   * Apply the dithering effect to the data in the image model. The error of every pixel is spread
+   * to the rest of its row and to the next row, so only those two rows are kept in the heap.
+   */
+  @Override
+  public void applyDither() {
+    MappedPixelStore source = this.requireStore();
+    int width = source.getWidth();
+    int height = source.getHeight();
+    MappedPixelStore target = this.targetFor(source);
+    PointOperation greyscale = ConcreteImageModel.greyscale();
+    int[] row = new int[width];
+    int[] current = new int[width];
+    int[] next = new int[width];
+    // After the greyscale step the three channels are equal, so the error is diffused on one
+    // channel that is allowed to leave the range of 0 to 255 until it is written back
+    readGrey(source, 0, greyscale, row, next);
+    for (int i = 0; i < height; i++) {
+      int[] swap = current;
+      current = next;
+      next = swap;
+      if (i + 1 < height) {
+        readGrey(source, i + 1, greyscale, row, next);
+      }
+      if (i > 0 && i < height - 1) {
+        for (int j = 1; j < width - 1; j++) {
+          int oldColor = current[j];
+          int newColor = oldColor <= 127 ? 0 : 255;
+          current[j] = newColor;
+          int colorError = oldColor - newColor;
+          current[j + 1] += (int) (colorError * 7.0 / 16.0);
+          next[j - 1] += (int) (colorError * 3.0 / 16.0);
+          next[j] += (int) (colorError * 5.0 / 16.0);
+          next[j + 1] += (int) (colorError * 1.0 / 16.0);
+        }
+      }
+      for (int j = 0; j < width; j++) {
+        row[j] = PixelBuffer.packClamped(current[j], current[j], current[j]);
+      }
+      target.writeRow(0, i, row, 0, width);
+      this.checkpoint(i + 1, height);
+    }
+    this.replaceStore(target);
+  }
+
+  /**
+   * Read the grey values of a row of an image.
+   * 
+   * @param source the pixels of the image
+   * @param y the row
+   * @param greyscale the greyscale color transformation
+   * @param row an array of the width of the image to read the row into
+   * @param grey the array receiving the grey values
+   */
+  private static void readGrey(MappedPixelStore source, int y, PointOperation greyscale,
+      int[] row, int[] grey) {
+    source.readRow(0, y, row, 0, row.length);
+    greyscale.applyToRow(row, 0, row, 0, row.length);
+    for (int j = 0; j < row.length; j++) {
+      grey[j] = PixelBuffer.blue(row[j]);
+    }
+  }
+
+  /**
+   * Apply the mosaic effect to the data in the image model. The seeds are chosen at random, so
+   * every call gives a different mosaic.
+   * 
+   * @param seeds the number of seeds to use in the mosaic
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  @Override
+  public void applyMosaic(int seeds) throws IllegalArgumentException {
+    this.applyMosaic(seeds, new SeedGenerator(ThreadLocalRandom.current().nextLong()));
+  }
+
+  /**
+   * Apply the mosaic effect to the data in the image model with seeds chosen by a generator. The
+   * same generator gives the same mosaic as {@link ConcreteImageModel}.
+   * 
+   * @param seeds the number of seeds to use in the mosaic, reduced to the number of pixels if it
+   *        is larger
+   * @param generator the generator choosing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive or the generator is
+   *         null
+   */
+  public void applyMosaic(int seeds, SeedGenerator generator) throws IllegalArgumentException {
+    if (seeds < 1) {
+      throw new IllegalArgumentException("The number of seeds should be positive.");
+    }
+    if (generator == null) {
+      throw new IllegalArgumentException("The seed generator should not be null.");
+    }
+    MappedPixelStore source = this.requireStore();
+    int width = source.getWidth();
+    int height = source.getHeight();
+    SeedGrid grid = new SeedGrid(width, height, generator.generate(width, height, seeds));
+    int[] seedColors = new int[grid.getSeedCount()];
+    for (int k = 0; k < seedColors.length; k++) {
+      int seed = grid.getSeed(k);
+      seedColors[k] = source.getRGB(seed % width, seed / width);
+    }
+    MappedPixelStore target = this.targetFor(source);
+    this.operationScheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int j = 0; j < width; j++) {
+          row[j] = seedColors[grid.findClosestSeed(j, i)];
+        }
+        target.writeRow(0, i, row, 0, width);
+      }
+    });
+    this.replaceStore(target);
+  }
+
+  /**
+   * Apply greyscale enhancement to this image. The grey values are counted in one pass over the
+   * image and replaced in another.
+   */
+  @Override
+  public void applyGreyscaleEnhancement() {
+    MappedPixelStore source = this.requireStore();
+    int width = source.getWidth();
+    int height = source.getHeight();
+    PointOperation greyscale = ConcreteImageModel.greyscale();
+    int[] histogram = this.operationScheduler.reduceRowBands(width, height,
+        (rowStart, rowEnd) -> {
+          int[] row = new int[width];
+          int[] counts = new int[256];
+          for (int i = rowStart; i < rowEnd; i++) {
+            source.readRow(0, i, row, 0, width);
+            greyscale.applyToRow(row, 0, row, 0, width);
+            for (int rgb : row) {
+              counts[PixelBuffer.red(rgb)]++;
+            }
+          }
+          return counts;
+        }, (first, second) -> {
+          for (int i = 0; i < 256; i++) {
+            first[i] += second[i];
+          }
+          return first;
+        });
+    // Turn the cumulative frequencies of the grey values into the enhanced output values
+    double totalPixels = (double) width * height;
+    int[] enhancedValues = new int[256];
+    double cumulativeFrequency = 0.0;
+    for (int grey = 0; grey < 256; grey++) {
+      if (histogram[grey] > 0) {
+        cumulativeFrequency += histogram[grey] / totalPixels;
+        enhancedValues[grey] = (int) Math.round(cumulativeFrequency * 255);
+      }
+    }
+    PointOperation lookup = new LookupTable(enhancedValues);
+    MappedPixelStore target = this.targetFor(source);
+    this.operationScheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        source.readRow(0, i, row, 0, width);
+        greyscale.applyToRow(row, 0, row, 0, width);
+        lookup.applyToRow(row, 0, row, 0, width);
+        target.writeRow(0, i, row, 0, width);
+      }
+    });
+    this.replaceStore(target);
+  }
+
+  /**
+   * Apply image cropping on the original image.
+   * 
+   * @param x the x coordinate of the upper left point of the cropping rectangle
+   * @param y the y coordinate of the upper left point of the cropping rectangle
+   * @param width the width of the cropping rectangle
+   * @param height the height of the cropping rectangle
+   * @return a new ImageModel holding the cropped image in a store of its own
+   * @throws IllegalArgumentException if the rectangle is not inside the image
+   */
+  @Override
+  public ImageModel applyImageCropping(int x, int y, int width, int height)
+      throws IllegalArgumentException {
+    MappedPixelStore source = this.requireStore();
+    if (x < 0 || y < 0 || width < 1 || height < 1 || (long) x + width > source.getWidth()
+        || (long) y + height > source.getHeight()) {
+      throw new IllegalArgumentException("The rectangle is outside of the image.");
+    }
+    MappedPixelStore cropped = new MappedPixelStore(width, height, this.mappingBytes);
+    this.operationScheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        source.readRow(x, y + i, row, 0, width);
+        cropped.writeRow(0, i, row, 0, width);
+      }
+    });
+    MappedImageModel croppedImage = new MappedImageModel(cropped);
+    croppedImage.storeShared = false;
+    croppedImage.mappingBytes = this.mappingBytes;
+    croppedImage.setTileScheduler(this.scheduler);
+    croppedImage.setOperationContext(this.context);
+    return croppedImage;
+  }
+
+  /**
+   * Return the data of this image model, copied into the heap.
+   * 
+   * @return the data of this image model, or null if no image has been loaded
+   */
+  @Override
+  public int[][][] getImageData() {
+    return this.store == null ? null : this.store.toPixelBuffer().toArray();
+  }
+
+  /**
+   * Return the image of this image model, copied into the heap.
+   * 
+   * @return the image of this model, or null if no image has been loaded
+   */
+  @Override
+  public BufferedImage getImage() {
+    return this.store == null ? null : this.store.toPixelBuffer().toBufferedImage();
+  }
+
+  @Override
+  public int getImageWidth() {
+    return this.store == null ? 0 : this.store.getWidth();
+  }
+
+  @Override
+  public int getImageHeight() {
+    return this.store == null ? 0 : this.store.getHeight();
+  }
+
+  /**
+   * Replace the pixels of this model with an image generated in the heap.
+   * 
+   * @param generator the generator of the image
+   */
+  private void generate(Consumer<ConcreteImageModel> generator) {
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.setEditHistory(new EditHistory(0));
+    model.setTileScheduler(this.scheduler);
+    model.setOperationContext(this.context);
+    generator.accept(model);
+    this.replaceStore(MappedPixelStore.of(model.getPixelBuffer(), this.mappingBytes));
+  }
+
+  @Override
+  public void generateRainbow(int width, int height, int rainbowType) {
+    this.generate(model -> model.generateRainbow(width, height, rainbowType));
+  }
+
+  @Override
+  public void generateCheckerBoard(int totalHeight, int numberOfSquares, int[] firstColor,
+      int[] secondColor) {
+    this.generate(model -> model.generateCheckerBoard(totalHeight, numberOfSquares, firstColor,
+        secondColor));
+  }
+
+  @Override
+  public void generateNationalFlagOfNorway(int width) {
+    this.generate(model -> model.generateNationalFlagOfNorway(width));
+  }
+
+  @Override
+  public void generateNationalFlagOfGreece(int width) {
+    this.generate(model -> model.generateNationalFlagOfGreece(width));
+  }
+
+  @Override
+  public void generateNationalFlagOfSwizerland(int width) {
+    this.generate(model -> model.generateNationalFlagOfSwizerland(width));
+  }
+
+  /**
+   * Do nothing, since the operations of this model cannot be undone.
+   * 
+   * @return false
+   */
+  @Override
+  public boolean undo() {
+    return false;
+  }
+
+  /**
+   * Do nothing, since the operations of this model cannot be undone.
+   * 
+   * @return false
+   */
+  @Override
+  public boolean redo() {
+    return false;
+  }
+}
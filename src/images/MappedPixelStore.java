@@ -0,0 +1,375 @@
+package images;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The packed pixels of an image kept in a scratch file mapped into memory rather than in the heap,
+ * so that an image can be far larger than the heap. The operating system reads the parts of the
+ * file that are used into memory and writes them back when it needs the memory, so only the parts
+ * being worked on take up memory.
+ * 
+ * <p>The pixels are stored in tiles of {@value #TILE_SIZE} x {@value #TILE_SIZE} pixels, one
+ * tile after another, so the pixels around a pixel are on a few pages of the file whichever way
+ * the image is walked, and a strip of {@value #TILE_SIZE} rows is one contiguous part of it. The
+ * tiles are mapped by groups of rows of tiles of up to {@value #DEFAULT_MAPPING_BYTES} bytes
+ * unless another size is given, because a mapping cannot reach 2 GiB.
+ * 
+ * <p>The scratch file is created in the folder named by the system property
+ * {@value #SCRATCH_DIRECTORY_PROPERTY}, or else in the temporary folder, and is deleted as soon as
+ * it is mapped; the space it takes on the disk is given back when the store is garbage collected,
+ * since Java cannot unmap a file explicitly. Different threads may read and write different pixels
+ * at the same time.
+ */
+public final class MappedPixelStore {
+  /**
+   * The name of the system property that sets the folder of the scratch files.
+   */
+  public static final String SCRATCH_DIRECTORY_PROPERTY = "images.scratchDir";
+
+  /**
+   * The width and height of the tiles.
+   */
+  public static final int TILE_SIZE = 64;
+
+  /**
+   * The default largest number of bytes of one mapping.
+   */
+  public static final int DEFAULT_MAPPING_BYTES = 1 << 30;
+
+  private static final int TILE_PIXELS = TILE_SIZE * TILE_SIZE;
+
+  private final int width;
+  private final int height;
+  private final int tilesAcross;
+  private final int bandsPerMapping;
+  private final IntBuffer[] mappings;
+
+  /**
+   * Create a store for an image of the given size, filled with black, mapped by mappings of up to
+   * {@value #DEFAULT_MAPPING_BYTES} bytes.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @throws IllegalArgumentException if the size is not positive, or the scratch file cannot be
+   *         created or mapped
+   */
+  public MappedPixelStore(int width, int height) throws IllegalArgumentException {
+    this(width, height, DEFAULT_MAPPING_BYTES);
+  }
+
+  /**
+   * Create a store for an image of the given size, filled with black.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param mappingBytes the largest number of bytes of one mapping, which must hold at least one
+   *        row of tiles
+   * @throws IllegalArgumentException if the size is not positive, a row of tiles does not fit in
+   *         a mapping, or the scratch file cannot be created or mapped
+   */
+  public MappedPixelStore(int width, int height, int mappingBytes)
+      throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("The width and height should be positive.");
+    }
+    this.width = width;
+    this.height = height;
+    this.tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    long bandBytes = 4L * this.tilesAcross * TILE_PIXELS;
+    if (bandBytes > mappingBytes) {
+      throw new IllegalArgumentException("The image is too wide to be mapped.");
+    }
+    this.bandsPerMapping = (int) (mappingBytes / bandBytes);
+    int bands = (height + TILE_SIZE - 1) / TILE_SIZE;
+    this.mappings = new IntBuffer[(bands + this.bandsPerMapping - 1) / this.bandsPerMapping];
+
+    Path scratch;
+    try {
+      scratch = Files.createTempFile(scratchDirectory(), "image", ".pixels");
+    } catch (IOException | RuntimeException e) {
+      throw new IllegalArgumentException("Cannot create a scratch file for the image: "
+          + e.getMessage());
+    }
+    // The mappings stay valid after the channel is closed, and closing it deletes the file
+    try (FileChannel channel = FileChannel.open(scratch, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+      for (int i = 0; i < this.mappings.length; i++) {
+        long bytes = bandBytes * Math.min(this.bandsPerMapping, bands - i * this.bandsPerMapping);
+        this.mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+            (long) i * this.bandsPerMapping * bandBytes, bytes)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+      }
+    } catch (IOException | RuntimeException e) {
+      throw new IllegalArgumentException("Cannot map the scratch file of the image: "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Return the folder the scratch files are created in.
+   * 
+   * @return the folder named by {@value #SCRATCH_DIRECTORY_PROPERTY}, or the temporary folder if
+   *         the property is not set or does not name a folder
+   */
+  private static Path scratchDirectory() {
+    Path temporary = Paths.get(System.getProperty("java.io.tmpdir"));
+    String property = System.getProperty(SCRATCH_DIRECTORY_PROPERTY);
+    if (property == null) {
+      return temporary;
+    }
+    try {
+      Path directory = Paths.get(property);
+      return Files.isDirectory(directory) ? directory : temporary;
+    } catch (RuntimeException e) {
+      // keep the temporary folder
+      return temporary;
+    }
+  }
+
+  /**
+   * Return a new store holding a copy of the pixels of a buffer.
+   * 
+   * @param pixels the pixels to copy
+   * @return the new store
+   * @throws IllegalArgumentException if the pixels are null or the store cannot be created
+   */
+  public static MappedPixelStore of(PixelBuffer pixels) throws IllegalArgumentException {
+    return of(pixels, DEFAULT_MAPPING_BYTES);
+  }
+
+  /**
+   * Return a new store holding a copy of the pixels of a buffer.
+   * 
+   * @param pixels the pixels to copy
+   * @param mappingBytes the largest number of bytes of one mapping
+   * @return the new store
+   * @throws IllegalArgumentException if the pixels are null or the store cannot be created
+   */
+  public static MappedPixelStore of(PixelBuffer pixels, int mappingBytes)
+      throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("The pixels should not be null.");
+    }
+    MappedPixelStore store =
+        new MappedPixelStore(pixels.getWidth(), pixels.getHeight(), mappingBytes);
+    for (int i = 0; i < pixels.getHeight(); i++) {
+      store.writeRow(0, i, pixels.getData(), pixels.indexOf(0, i), pixels.getWidth());
+    }
+    return store;
+  }
+
+  /**
+   * Return the width of the image.
+   * 
+   * @return the width of the image
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Return the height of the image.
+   * 
+   * @return the height of the image
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Return the number of mappings the pixels are split into.
+   * 
+   * @return the number of mappings
+   */
+  public int getMappingCount() {
+    return this.mappings.length;
+  }
+
+  /**
+   * Return the packed color of a pixel.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the packed color of the pixel
+   */
+  public int getRGB(int x, int y) {
+    return this.mappingOf(y).get(this.indexOf(x, y));
+  }
+
+  /**
+   * Change the packed color of a pixel.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @param rgb the packed color of the pixel
+   */
+  public void setRGB(int x, int y, int rgb) {
+    this.mappingOf(y).put(this.indexOf(x, y), rgb);
+  }
+
+  /**
+   * Copy pixels of a row into an array.
+   * 
+   * @param x the column of the first pixel
+   * @param y the row
+   * @param target the array receiving the pixels
+   * @param offset the index in the array of the first pixel
+   * @param length the number of pixels to copy
+   * @throws IndexOutOfBoundsException if the pixels are not all in the image
+   */
+  public void readRow(int x, int y, int[] target, int offset, int length)
+      throws IndexOutOfBoundsException {
+    this.checkRow(x, y, length);
+    IntBuffer mapping = this.mappingOf(y);
+    while (length > 0) {
+      // Copy up to the end of the tile holding the pixel, where the row jumps to the next tile
+      int count = Math.min(length, TILE_SIZE - x % TILE_SIZE);
+      int index = this.indexOf(x, y);
+      for (int j = 0; j < count; j++) {
+        target[offset + j] = mapping.get(index + j);
+      }
+      x += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Copy pixels from an array into a row.
+   * 
+   * @param x the column of the first pixel
+   * @param y the row
+   * @param source the array holding the pixels
+   * @param offset the index in the array of the first pixel
+   * @param length the number of pixels to copy
+   * @throws IndexOutOfBoundsException if the pixels are not all in the image
+   */
+  public void writeRow(int x, int y, int[] source, int offset, int length)
+      throws IndexOutOfBoundsException {
+    this.checkRow(x, y, length);
+    IntBuffer mapping = this.mappingOf(y);
+    while (length > 0) {
+      int count = Math.min(length, TILE_SIZE - x % TILE_SIZE);
+      int index = this.indexOf(x, y);
+      for (int j = 0; j < count; j++) {
+        mapping.put(index + j, source[offset + j]);
+      }
+      x += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Copy the pixels into a new pixel buffer in the heap.
+   * 
+   * @return the new pixel buffer
+   */
+  public PixelBuffer toPixelBuffer() {
+    PixelBuffer pixels = new PixelBuffer(this.width, this.height);
+    for (int i = 0; i < this.height; i++) {
+      this.readRow(0, i, pixels.getData(), pixels.indexOf(0, i), this.width);
+    }
+    return pixels;
+  }
+
+  /**
+   * Return a source reading the rows of this store from the top. Closing it does nothing.
+   * 
+   * @return the source
+   */
+  public StreamingPipeline.RowSource openRows() {
+    return new StreamingPipeline.RowSource() {
+      private int row;
+
+      @Override
+      public int getWidth() {
+        return width;
+      }
+
+      @Override
+      public int getHeight() {
+        return height;
+      }
+
+      @Override
+      public void readRows(int[] target, int offset, int rows) {
+        for (int i = 0; i < rows; i++, this.row++) {
+          readRow(0, this.row, target, offset + i * width, width);
+        }
+      }
+
+      @Override
+      public void close() {
+        // The store stays usable
+      }
+    };
+  }
+
+  /**
+   * Return a sink writing the rows of this store from the top. Closing it does nothing.
+   * 
+   * @return the sink
+   */
+  public StreamingPipeline.RowSink rowSink() {
+    return new StreamingPipeline.RowSink() {
+      private int row;
+
+      @Override
+      public void writeRows(int[] source, int offset, int rows) {
+        for (int i = 0; i < rows; i++, this.row++) {
+          writeRow(0, this.row, source, offset + i * width, width);
+        }
+      }
+
+      @Override
+      public void close() {
+        // The store stays usable
+      }
+    };
+  }
+
+  /**
+   * Check that pixels of a row are all in the image.
+   * 
+   * @param x the column of the first pixel
+   * @param y the row
+   * @param length the number of pixels
+   * @throws IndexOutOfBoundsException if the pixels are not all in the image
+   */
+  private void checkRow(int x, int y, int length) throws IndexOutOfBoundsException {
+    if (x < 0 || y < 0 || length < 0 || y >= this.height || x + length > this.width) {
+      throw new IndexOutOfBoundsException("The pixels are outside of the image.");
+    }
+  }
+
+  /**
+   * Return the mapping holding a row.
+   * 
+   * @param y the row
+   * @return the mapping holding the row
+   */
+  private IntBuffer mappingOf(int y) {
+    return this.mappings[y / TILE_SIZE / this.bandsPerMapping];
+  }
+
+  /**
+   * Return the index of a pixel in the mapping holding its row.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the index of the pixel
+   */
+  private int indexOf(int x, int y) {
+    int band = y / TILE_SIZE % this.bandsPerMapping;
+    return (band * this.tilesAcross + x / TILE_SIZE) * TILE_PIXELS
+        + y % TILE_SIZE * TILE_SIZE + x % TILE_SIZE;
+  }
+}
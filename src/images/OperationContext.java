@@ -0,0 +1,81 @@
+package images;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The context an image model runs its operations in. It tells a {@link ProgressListener} how far
+ * an operation has got and lets the operation be cancelled. Operations check the context between
+ * small groups of rows, so a cancelled operation stops soon after it is cancelled, and the image
+ * model keeps the image it had before the operation.
+ */
+public class OperationContext {
+  private final ProgressListener listener;
+  private final BooleanSupplier cancellation;
+  private volatile boolean cancelled;
+
+  /**
+   * A constructor for a context that is only cancelled by {@link #cancel()}.
+   * 
+   * @param listener the listener told about the progress of the operations, or null for none
+   */
+  public OperationContext(ProgressListener listener) {
+    this(listener, () -> false);
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param listener the listener told about the progress of the operations, or null for none
+   * @param cancellation the condition telling whether the running operation has been cancelled,
+   *        which may be checked from any of the threads running the bands of rows
+   * @throws IllegalArgumentException if the cancellation condition is null
+   */
+  public OperationContext(ProgressListener listener, BooleanSupplier cancellation)
+      throws IllegalArgumentException {
+    if (cancellation == null) {
+      throw new IllegalArgumentException("The cancellation condition should not be null.");
+    }
+    this.listener = listener;
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * Cancel the operation that is running and every operation run in this context later.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Return whether the running operation has been cancelled.
+   * 
+   * @return true if the running operation has been cancelled
+   */
+  public boolean isCancelled() {
+    return this.cancelled || this.cancellation.getAsBoolean();
+  }
+
+  /**
+   * Stop the running operation if it has been cancelled.
+   * 
+   * @throws CancellationException if the running operation has been cancelled
+   */
+  public void checkpoint() throws CancellationException {
+    if (this.isCancelled()) {
+      throw new CancellationException("The operation was cancelled.");
+    }
+  }
+
+  /**
+   * Tell the listener how far the current pass over the image has got.
+   * 
+   * @param rowsDone the number of rows of the pass that are done
+   * @param totalRows the number of rows of the pass
+   */
+  public void reportProgress(int rowsDone, int totalRows) {
+    if (this.listener != null) {
+      this.listener.progressChanged(rowsDone, totalRows);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+package images;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A registry of the metrics of the image operations. For every operation it keeps a
+ * {@link LatencyHistogram} of how long the operation took, the number of pixels it processed and
+ * the number of times it failed, and for the whole program the number of bytes of image files read
+ * and written. Every metric is updated without locking, so the registry can stay on in production.
+ * 
+ * <p>The metrics can be read through JMX once {@link #registerMBean()} has been called, and printed
+ * every few seconds with {@link #startPeriodicDump(long, PrintStream)}. The image models record
+ * into the registry through {@link InstrumentedImageModel}, and {@link ImageUtilities} records the
+ * files it reads and writes into the default registry.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+  /**
+   * The name of the MBean of the default registry.
+   */
+  public static final String OBJECT_NAME = "images:type=OperationMetrics";
+
+  /**
+   * The name of the system property setting every how many seconds
+   * {@link #installDefault()} prints the metrics. The metrics are not printed when it is not set.
+   */
+  public static final String DUMP_INTERVAL_PROPERTY = "images.metricsInterval";
+
+  private static final OperationMetrics DEFAULT = new OperationMetrics();
+
+  private final ConcurrentMap<String, Stats> operations = new ConcurrentHashMap<>();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private ScheduledExecutorService dumper;
+
+  /**
+   * Return the registry shared by the whole program.
+   * 
+   * @return the default registry
+   */
+  public static OperationMetrics getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Register the default registry as an MBean and, if the system property
+   * {@value #DUMP_INTERVAL_PROPERTY} is set to a positive number of seconds, print its metrics to
+   * the standard error stream at that interval.
+   */
+  public static void installDefault() {
+    DEFAULT.registerMBean();
+    long interval;
+    try {
+      interval = Long.parseLong(System.getProperty(DUMP_INTERVAL_PROPERTY, "0").trim());
+    } catch (NumberFormatException e) {
+      // leave the metrics unprinted
+      interval = 0;
+    }
+    if (interval > 0) {
+      DEFAULT.startPeriodicDump(interval, System.err);
+    }
+  }
+
+  /**
+   * Record a run of an operation that succeeded.
+   * 
+   * @param operation the name of the operation
+   * @param nanos how long the operation took in nanoseconds
+   * @param pixels the number of pixels the operation processed
+   */
+  public void record(String operation, long nanos, long pixels) {
+    Stats stats = this.statsOf(operation);
+    stats.latency.record(nanos);
+    stats.pixels.add(pixels);
+  }
+
+  /**
+   * Record a run of an operation that failed.
+   * 
+   * @param operation the name of the operation
+   */
+  public void recordError(String operation) {
+    this.statsOf(operation).errors.increment();
+  }
+
+  /**
+   * Add bytes to the number of bytes of image files read.
+   * 
+   * @param bytes the number of bytes read
+   */
+  public void addBytesRead(long bytes) {
+    this.bytesRead.add(bytes);
+  }
+
+  /**
+   * Add bytes to the number of bytes of image files written.
+   * 
+   * @param bytes the number of bytes written
+   */
+  public void addBytesWritten(long bytes) {
+    this.bytesWritten.add(bytes);
+  }
+
+  /**
+   * Return the metrics of an operation, adding them the first time the operation is measured.
+   * 
+   * @param operation the name of the operation
+   * @return the metrics of the operation
+   */
+  private Stats statsOf(String operation) {
+    Stats stats = this.operations.get(operation);
+    if (stats == null) {
+      stats = this.operations.computeIfAbsent(operation, name -> new Stats());
+    }
+    return stats;
+  }
+
+  /**
+   * Return the latency histogram of an operation.
+   * 
+   * @param operation the name of the operation
+   * @return the histogram of the operation, or null if it has not been measured
+   */
+  public LatencyHistogram getLatency(String operation) {
+    Stats stats = this.operations.get(operation);
+    return stats == null ? null : stats.latency;
+  }
+
+  @Override
+  public String[] getOperations() {
+    List<String> names = new ArrayList<>(this.operations.keySet());
+    Collections.sort(names);
+    return names.toArray(new String[0]);
+  }
+
+  @Override
+  public long getBytesRead() {
+    return this.bytesRead.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return this.bytesWritten.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    long errors = 0;
+    for (Stats stats : this.operations.values()) {
+      errors += stats.errors.sum();
+    }
+    return errors;
+  }
+
+  @Override
+  public long count(String operation) {
+    Stats stats = this.operations.get(operation);
+    return stats == null ? 0 : stats.latency.getCount();
+  }
+
+  @Override
+  public long errors(String operation) {
+    Stats stats = this.operations.get(operation);
+    return stats == null ? 0 : stats.errors.sum();
+  }
+
+  @Override
+  public double percentileMillis(String operation, double percentile) {
+    Stats stats = this.operations.get(operation);
+    return stats == null ? 0 : stats.latency.getValueAtPercentile(percentile) / 1e6;
+  }
+
+  @Override
+  public double megapixelsPerSecond(String operation) {
+    Stats stats = this.operations.get(operation);
+    if (stats == null) {
+      return 0;
+    }
+    long nanos = stats.latency.getSum();
+    // Pixels per nanosecond are megapixels per millisecond
+    return nanos == 0 ? 0 : stats.pixels.sum() * 1e3 / nanos;
+  }
+
+  @Override
+  public String getReport() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-22s %8s %6s %10s %10s %10s %10s %10s%n", "operation", "count",
+        "errors", "mean ms", "p50 ms", "p99 ms", "max ms", "MP/s"));
+    for (String operation : this.getOperations()) {
+      Stats stats = this.operations.get(operation);
+      if (stats == null) {
+        // The metrics were reset while the report was being written
+        continue;
+      }
+      LatencyHistogram latency = stats.latency;
+      report.append(String.format("%-22s %8d %6d %10.3f %10.3f %10.3f %10.3f %10.2f%n", operation,
+          latency.getCount(), this.errors(operation), latency.getMean() / 1e6,
+          this.percentileMillis(operation, 50), this.percentileMillis(operation, 99),
+          latency.getMax() / 1e6, this.megapixelsPerSecond(operation)));
+    }
+    report.append(String.format("bytes read %d, bytes written %d%n", this.getBytesRead(),
+        this.getBytesWritten()));
+    return report.toString();
+  }
+
+  @Override
+  public void reset() {
+    this.operations.clear();
+    this.bytesRead.reset();
+    this.bytesWritten.reset();
+  }
+
+  /**
+   * Register this registry with the platform MBean server under {@value #OBJECT_NAME}. Registering
+   * it again does nothing.
+   * 
+   * @throws IllegalStateException if the MBean server refuses the registry
+   */
+  public void registerMBean() throws IllegalStateException {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+          new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException e) {
+      // The registry is already registered
+    } catch (JMException e) {
+      throw new IllegalStateException("The metrics cannot be registered: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Print the report of this registry at a fixed interval on a daemon thread, replacing the dump
+   * started before, if any.
+   * 
+   * @param intervalSeconds the number of seconds between two reports
+   * @param out the stream to print to
+   * @throws IllegalArgumentException if the interval is not positive or the stream is null
+   */
+  public synchronized void startPeriodicDump(long intervalSeconds, PrintStream out)
+      throws IllegalArgumentException {
+    if (intervalSeconds < 1 || out == null) {
+      throw new IllegalArgumentException(
+          "The interval should be positive and the stream should not be null.");
+    }
+    this.stopPeriodicDump();
+    this.dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "image-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.dumper.scheduleAtFixedRate(() -> out.print(this.getReport()), intervalSeconds,
+        intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stop printing the report of this registry.
+   */
+  public synchronized void stopPeriodicDump() {
+    if (this.dumper != null) {
+      this.dumper.shutdownNow();
+      this.dumper = null;
+    }
+  }
+
+  /**
+   * The metrics of one operation.
+   */
+  private static class Stats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder pixels = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+  }
+}
@@ -0,0 +1,81 @@
+package images;
+
+/**
+ * The management interface of {@link OperationMetrics}, which shows the metrics of the image
+ * operations in JMX consoles such as JConsole and VisualVM.
+ */
+public interface OperationMetricsMBean {
+
+  /**
+   * Return the names of the operations that have been measured.
+   * 
+   * @return the names of the operations in alphabetical order
+   */
+  public String[] getOperations();
+
+  /**
+   * Return the number of bytes of image files read.
+   * 
+   * @return the number of bytes read
+   */
+  public long getBytesRead();
+
+  /**
+   * Return the number of bytes of image files written.
+   * 
+   * @return the number of bytes written
+   */
+  public long getBytesWritten();
+
+  /**
+   * Return the number of operations that failed, over every operation.
+   * 
+   * @return the number of failed operations
+   */
+  public long getErrorCount();
+
+  /**
+   * Return a text report of every metric, one operation on each line.
+   * 
+   * @return the report
+   */
+  public String getReport();
+
+  /**
+   * Return the number of times an operation succeeded.
+   * 
+   * @param operation the name of the operation
+   * @return the number of times the operation succeeded, or 0 if it has not been measured
+   */
+  public long count(String operation);
+
+  /**
+   * Return the number of times an operation failed.
+   * 
+   * @param operation the name of the operation
+   * @return the number of times the operation failed, or 0 if it has not been measured
+   */
+  public long errors(String operation);
+
+  /**
+   * Return the duration that the given percentage of the runs of an operation did not exceed.
+   * 
+   * @param operation the name of the operation
+   * @param percentile the percentage, from 0 to 100
+   * @return the duration in milliseconds, or 0 if the operation has not been measured
+   */
+  public double percentileMillis(String operation, double percentile);
+
+  /**
+   * Return the number of megapixels an operation processed for every second it ran.
+   * 
+   * @param operation the name of the operation
+   * @return the throughput in megapixels per second, or 0 if the operation has not been measured
+   */
+  public double megapixelsPerSecond(String operation);
+
+  /**
+   * Forget every metric recorded so far.
+   */
+  public void reset();
+}
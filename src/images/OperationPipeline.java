@@ -0,0 +1,168 @@
+package images;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of operations waiting to be applied to an image. Operations are only recorded when they
+ * are added, and running the pipeline first fuses them into as few passes over the image as
+ * possible.
+ * 
+ * <ul>
+ * <li>Neighboring point operations become one operation that runs all of them on a row before
+ * moving on to the next row, and neighboring lookup tables become one table.</li>
+ * <li>Point operations that follow a convolution or an edge detection are run on each row as soon
+ * as the row is filtered, instead of in a pass of their own.</li>
+ * </ul>
+ * 
+ * <p>Color matrices are chained rather than multiplied together, because each of them truncates
+ * and clamps its results, so the fused pipeline gives exactly the same pixels as running every
+ * operation on its own.
+ */
+public class OperationPipeline {
+  private final List<Node> nodes = new ArrayList<Node>();
+
+  /**
+   * Add a point operation to the end of this pipeline.
+   * 
+   * @param operation the point operation
+   */
+  public void addPointOperation(PointOperation operation) {
+    this.nodes.add(new Node(null, false, operation));
+  }
+
+  /**
+   * Add a convolution with a kernel to the end of this pipeline. The filtered values are clamped
+   * to be between 0 and 255.
+   * 
+   * @param kernel the kernel to filter the image with
+   */
+  public void addConvolution(Kernel kernel) {
+    this.nodes.add(new Node(kernel, false, null));
+  }
+
+  /**
+   * Add a Sobel edge detection to the end of this pipeline.
+   * 
+   * @param tail the point operation run on the normalized gradient magnitudes, or null for none
+   */
+  public void addEdgeDetection(PointOperation tail) {
+    this.nodes.add(new Node(null, true, tail));
+  }
+
+  /**
+   * Return whether this pipeline has no operations waiting.
+   * 
+   * @return true if there are no operations in this pipeline
+   */
+  public boolean isEmpty() {
+    return this.nodes.isEmpty();
+  }
+
+  /**
+   * Remove every operation from this pipeline.
+   */
+  public void clear() {
+    this.nodes.clear();
+  }
+
+  /**
+   * Return a new pipeline holding the same operations as this pipeline.
+   * 
+   * @return a copy of this pipeline
+   */
+  OperationPipeline copy() {
+    OperationPipeline copy = new OperationPipeline();
+    copy.nodes.addAll(this.nodes);
+    return copy;
+  }
+
+  /**
+   * Replace the operations of this pipeline with the operations of another pipeline.
+   * 
+   * @param other the pipeline whose operations are kept
+   */
+  void replaceWith(OperationPipeline other) {
+    this.nodes.clear();
+    this.nodes.addAll(other.nodes);
+  }
+
+  /**
+   * Return the number of passes over the image the operations in this pipeline take once they are
+   * fused.
+   * 
+   * @return the number of fused passes
+   */
+  public int countPasses() {
+    return this.fuse().size();
+  }
+
+  /**
+   * Run the operations of this pipeline on an image and remove them from this pipeline.
+   * 
+   * @param source the pixels of the image, which are not changed
+   * @param engine the engine running the convolutions
+   * @param scheduler the scheduler running the bands of rows
+   * @return the resulting pixels, or the source if this pipeline is empty
+   * @throws java.util.concurrent.CancellationException if the context of the scheduler is
+   *         cancelled, in which case the operations are kept in this pipeline
+   */
+  public PixelBuffer execute(PixelBuffer source, ConvolutionEngine engine,
+      TileScheduler scheduler) {
+    PixelBuffer result = source;
+    for (Node stage : this.fuse()) {
+      if (stage.kernel != null) {
+        result = engine.convolve(result, stage.kernel, stage.tail);
+      } else if (stage.edgeDetection) {
+        result = new SobelEdgeDetector(scheduler).detect(result, stage.tail);
+      } else {
+        result = stage.tail.apply(result, scheduler);
+      }
+    }
+    this.nodes.clear();
+    return result;
+  }
+
+  /**
+   * Return the passes the operations of this pipeline fuse into. Every pass is a convolution, an
+   * edge detection or nothing, followed by the point operations that come after it.
+   * 
+   * @return the fused passes
+   */
+  List<Node> fuse() {
+    List<Node> stages = new ArrayList<Node>();
+    for (Node node : this.nodes) {
+      boolean isPointOperation = node.kernel == null && !node.edgeDetection;
+      if (isPointOperation && !stages.isEmpty()) {
+        Node last = stages.get(stages.size() - 1);
+        PointOperation tail = last.tail == null ? node.tail : last.tail.andThen(node.tail);
+        stages.set(stages.size() - 1, new Node(last.kernel, last.edgeDetection, tail));
+      } else {
+        stages.add(node);
+      }
+    }
+    return stages;
+  }
+
+  /**
+   * One operation of a pipeline, or one fused pass of several operations.
+   */
+  static class Node {
+    final Kernel kernel;
+    final boolean edgeDetection;
+    final PointOperation tail;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param kernel the kernel of the convolution, or null if this is not a convolution
+     * @param edgeDetection whether this is an edge detection
+     * @param tail the point operation run after the convolution or the edge detection, or null
+     */
+    Node(Kernel kernel, boolean edgeDetection, PointOperation tail) {
+      this.kernel = kernel;
+      this.edgeDetection = edgeDetection;
+      this.tail = tail;
+    }
+  }
+}
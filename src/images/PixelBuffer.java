@@ -0,0 +1,312 @@
+package images;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * A buffer that stores the pixels of an image in one primitive integer array. Each pixel is packed
+ * into one integer with the red channel in bits 16-23, the green channel in bits 8-15 and the blue
+ * channel in bits 0-7. Rows are laid out one after another and the start of each row is a fixed
+ * number of integers (the stride) after the start of the previous row.
+ */
+public class PixelBuffer {
+  private final int width;
+  private final int height;
+  private final int stride;
+  private final int[] data;
+  private BufferedImage image;
+
+  /**
+   * A constructor that creates a black buffer of the given size.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @throws IllegalArgumentException if the width or the height is not positive
+   */
+  public PixelBuffer(int width, int height) throws IllegalArgumentException {
+    this(width, height, width, null);
+  }
+
+  /**
+   * A constructor that wraps an existing array of packed pixels without copying it.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param stride the number of integers between the start of two consecutive rows
+   * @param data the packed pixels, or null to allocate a new black buffer
+   * @throws IllegalArgumentException if the size is not positive or the array is too small
+   */
+  public PixelBuffer(int width, int height, int stride, int[] data)
+      throws IllegalArgumentException {
+    if (width < 1 || height < 1 || stride < width) {
+      throw new IllegalArgumentException("Invalid size for the pixel buffer.");
+    }
+    long length = (long) stride * (height - 1) + width;
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The image is too large for one pixel buffer.");
+    }
+    if (data == null) {
+      data = new int[stride * height];
+    } else if (data.length < length) {
+      throw new IllegalArgumentException("The array is too small for the pixel buffer.");
+    }
+    this.width = width;
+    this.height = height;
+    this.stride = stride;
+    this.data = data;
+  }
+
+  /**
+   * Return the width of the image.
+   * 
+   * @return the width of the image
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Return the height of the image.
+   * 
+   * @return the height of the image
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Return the number of integers between the start of two consecutive rows.
+   * 
+   * @return the stride of the buffer
+   */
+  public int getStride() {
+    return this.stride;
+  }
+
+  /**
+   * Return the backing array of this buffer. Changes to the array are changes to the buffer.
+   * 
+   * @return the backing array of packed pixels
+   */
+  public int[] getData() {
+    return this.data;
+  }
+
+  /**
+   * Return an image that is backed by the array of this buffer, so no pixels are copied to build
+   * it. The image is created on the first call and changes to this buffer show up in it.
+   * 
+   * @return an image of type TYPE_INT_RGB sharing the pixels of this buffer
+   */
+  public BufferedImage toBufferedImage() {
+    if (this.image == null) {
+      int[] masks = {0xFF0000, 0xFF00, 0xFF};
+      DataBufferInt dataBuffer = new DataBufferInt(this.data, this.data.length);
+      WritableRaster raster =
+          Raster.createPackedRaster(dataBuffer, this.width, this.height, this.stride, masks, null);
+      DirectColorModel colorModel = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+      this.image = new BufferedImage(colorModel, raster, false, null);
+    }
+    return this.image;
+  }
+
+  /**
+   * Return the index in the backing array of the pixel at the given position.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the index of the pixel in the backing array
+   */
+  public int indexOf(int x, int y) {
+    return y * this.stride + x;
+  }
+
+  /**
+   * Return the packed color of the pixel at the given position.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the packed color of the pixel
+   */
+  public int getRGB(int x, int y) {
+    return this.data[y * this.stride + x];
+  }
+
+  /**
+   * Set the packed color of the pixel at the given position.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @param rgb the packed color of the pixel
+   */
+  public void setRGB(int x, int y, int rgb) {
+    this.data[y * this.stride + x] = rgb;
+  }
+
+  /**
+   * Paint every pixel in a rectangle with one color. The rectangle is clipped to the buffer.
+   * 
+   * @param x1 the first column of the rectangle
+   * @param y1 the first row of the rectangle
+   * @param x2 the column after the last column of the rectangle
+   * @param y2 the row after the last row of the rectangle
+   * @param rgb the packed color to paint
+   */
+  public void fill(int x1, int y1, int x2, int y2, int rgb) {
+    x1 = Math.max(0, x1);
+    y1 = Math.max(0, y1);
+    x2 = Math.min(this.width, x2);
+    y2 = Math.min(this.height, y2);
+    for (int y = y1; y < y2; y++) {
+      int offset = y * this.stride;
+      Arrays.fill(this.data, offset + x1, offset + Math.max(x1, x2), rgb);
+    }
+  }
+
+  /**
+   * Return a copy of this buffer whose rows are stored without padding.
+   * 
+   * @return a copy of this buffer
+   */
+  public PixelBuffer copy() {
+    return this.copyRegion(0, 0, this.width, this.height);
+  }
+
+  /**
+   * Return a copy of a rectangle of this buffer.
+   * 
+   * @param x the column of the upper left corner of the rectangle
+   * @param y the row of the upper left corner of the rectangle
+   * @param width the width of the rectangle
+   * @param height the height of the rectangle
+   * @return a new buffer containing the pixels of the rectangle
+   * @throws IllegalArgumentException if the rectangle is not inside this buffer
+   */
+  public PixelBuffer copyRegion(int x, int y, int width, int height)
+      throws IllegalArgumentException {
+    if (x < 0 || y < 0 || width < 1 || height < 1 || x + width > this.width
+        || y + height > this.height) {
+      throw new IllegalArgumentException("The rectangle is outside of the image.");
+    }
+    PixelBuffer region = new PixelBuffer(width, height);
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(this.data, (y + row) * this.stride + x, region.data, row * width, width);
+    }
+    return region;
+  }
+
+  /**
+   * Return a new buffer holding the pixels of a three dimensional array. The first dimension of the
+   * array is the rows, the second is the columns and the third is the red, green and blue values.
+   * Values outside of 0 to 255 are clamped.
+   * 
+   * @param arrayOfImage the three dimensional array of an image
+   * @return a new buffer holding the same pixels
+   * @throws IllegalArgumentException if the array is null or empty
+   */
+  public static PixelBuffer fromArray(int[][][] arrayOfImage) throws IllegalArgumentException {
+    if (arrayOfImage == null || arrayOfImage.length == 0 || arrayOfImage[0].length == 0) {
+      throw new IllegalArgumentException("Invalid image data provided");
+    }
+    int height = arrayOfImage.length;
+    int width = arrayOfImage[0].length;
+    PixelBuffer buffer = new PixelBuffer(width, height);
+    for (int i = 0; i < height; i++) {
+      int offset = i * width;
+      for (int j = 0; j < width; j++) {
+        int[] pixel = arrayOfImage[i][j];
+        buffer.data[offset + j] = packClamped(pixel[0], pixel[1], pixel[2]);
+      }
+    }
+    return buffer;
+  }
+
+  /**
+   * Return a new three dimensional array holding the pixels of this buffer. The first dimension of
+   * the array is the rows, the second is the columns and the third is the red, green and blue
+   * values. This allocates one small array per pixel and is only meant for compatibility.
+   * 
+   * @return a new three dimensional array holding the pixels of this buffer
+   */
+  public int[][][] toArray() {
+    int[][][] arrayOfImage = new int[this.height][this.width][3];
+    for (int i = 0; i < this.height; i++) {
+      int offset = i * this.stride;
+      for (int j = 0; j < this.width; j++) {
+        int rgb = this.data[offset + j];
+        arrayOfImage[i][j][0] = red(rgb);
+        arrayOfImage[i][j][1] = green(rgb);
+        arrayOfImage[i][j][2] = blue(rgb);
+      }
+    }
+    return arrayOfImage;
+  }
+
+  /**
+   * Pack three channel values between 0 and 255 into one integer.
+   * 
+   * @param red the red value
+   * @param green the green value
+   * @param blue the blue value
+   * @return the packed color
+   */
+  public static int pack(int red, int green, int blue) {
+    return (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Clamp three channel values to be between 0 and 255 and pack them into one integer.
+   * 
+   * @param red the red value
+   * @param green the green value
+   * @param blue the blue value
+   * @return the packed color
+   */
+  public static int packClamped(int red, int green, int blue) {
+    return (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+  }
+
+  /**
+   * Clamp a value to be between 0 and 255.
+   * 
+   * @param value the value to be clamped
+   * @return the clamped value
+   */
+  public static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+
+  /**
+   * Return the red value of a packed color.
+   * 
+   * @param rgb the packed color
+   * @return the red value between 0 and 255
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Return the green value of a packed color.
+   * 
+   * @param rgb the packed color
+   * @return the green value between 0 and 255
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Return the blue value of a packed color.
+   * 
+   * @param rgb the packed color
+   * @return the blue value between 0 and 255
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+}
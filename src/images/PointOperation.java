@@ -0,0 +1,79 @@
+package images;
+
+/**
+ * An operation that changes the color of every pixel of an image on its own, without looking at
+ * the pixels around it. Point operations work a row at a time, and a chain of them made with
+ * {@link #andThen(PointOperation)} runs every operation on a row before moving on to the next row,
+ * so the image is read and written only once.
+ */
+public interface PointOperation {
+  /**
+   * Return the color of one pixel after this operation.
+   * 
+   * @param rgb the packed color of the pixel
+   * @return the packed color of the pixel after this operation
+   */
+  int applyToPixel(int rgb);
+
+  /**
+   * Apply this operation to a run of pixels. The source and the target may be the same array at
+   * the same offset.
+   * 
+   * @param source the packed colors of the pixels
+   * @param sourceOffset the index of the first pixel in the source
+   * @param target the array receiving the packed colors after this operation
+   * @param targetOffset the index of the first pixel in the target
+   * @param length the number of pixels
+   */
+  default void applyToRow(int[] source, int sourceOffset, int[] target, int targetOffset,
+      int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = this.applyToPixel(source[sourceOffset + i]);
+    }
+  }
+
+  /**
+   * Return the pixels of an image after this operation. The bands of rows are run by a scheduler
+   * and the source is not changed.
+   * 
+   * @param source the pixels of the image
+   * @param scheduler the scheduler running the bands of rows
+   * @return a new buffer holding the pixels after this operation
+   */
+  default PixelBuffer apply(PixelBuffer source, TileScheduler scheduler) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int[] data = source.getData();
+    PixelBuffer output = new PixelBuffer(width, height);
+    int[] outputData = output.getData();
+    scheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        this.applyToRow(data, source.indexOf(0, i), outputData, i * width, width);
+      }
+    });
+    return output;
+  }
+
+  /**
+   * Return the operation that applies this operation and then another one.
+   * 
+   * @param next the operation applied after this one
+   * @return the combined operation
+   */
+  default PointOperation andThen(PointOperation next) {
+    PointOperation first = this;
+    return new PointOperation() {
+      @Override
+      public int applyToPixel(int rgb) {
+        return next.applyToPixel(first.applyToPixel(rgb));
+      }
+
+      @Override
+      public void applyToRow(int[] source, int sourceOffset, int[] target, int targetOffset,
+          int length) {
+        first.applyToRow(source, sourceOffset, target, targetOffset, length);
+        next.applyToRow(target, targetOffset, target, targetOffset, length);
+      }
+    };
+  }
+}
@@ -0,0 +1,235 @@
+package images;
+
+import java.awt.image.DirectColorModel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Readers and writers of binary PPM files (P6 with a largest value of 255), which store the rows
+ * of an image one after another without compression. Unlike the formats read through ImageIO, a
+ * PPM file can be read and written a few rows at a time, so {@link StreamingPipeline} uses it for
+ * images that do not fit in memory.
+ */
+public class PpmFile {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Open a PPM file for reading its rows from the top.
+   * 
+   * @param filename the name of the file
+   * @return a source of the rows of the file, which must be closed
+   * @throws IOException if the file cannot be read or is not a binary PPM file
+   */
+  public static StreamingPipeline.RowSource openReader(String filename) throws IOException {
+    return new Reader(filename);
+  }
+
+  /**
+   * Create a PPM file and write its header. The rows are written by the returned sink.
+   * 
+   * @param filename the name of the file
+   * @param width the width of the image
+   * @param height the height of the image
+   * @return a sink for the rows of the file, which must be closed
+   * @throws IOException if the file cannot be written
+   */
+  public static StreamingPipeline.RowSink openWriter(String filename, int width, int height)
+      throws IOException {
+    return new Writer(filename, width, height);
+  }
+
+  /**
+   * Read the header of a PPM file. The pixels are not read, and the file is closed before this
+   * method returns.
+   * 
+   * @param filename the name of the file
+   * @return the dimensions of the image, with the color model and bit depth of 8 bit RGB
+   * @throws IOException if the file cannot be read or is not a binary PPM file
+   */
+  static ImageInfo probe(String filename) throws IOException {
+    try (StreamingPipeline.RowSource reader = openReader(filename)) {
+      return new ImageInfo(reader.getWidth(), reader.getHeight(), "ppm",
+          new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF), 24);
+    }
+  }
+
+  /**
+   * Read a whole PPM file into a pixel buffer.
+   * 
+   * @param filename the name of the file
+   * @return the pixels of the file
+   * @throws IOException if the file cannot be read or is not a binary PPM file
+   */
+  public static PixelBuffer read(String filename) throws IOException {
+    try (StreamingPipeline.RowSource reader = openReader(filename)) {
+      PixelBuffer pixels = new PixelBuffer(reader.getWidth(), reader.getHeight());
+      reader.readRows(pixels.getData(), 0, reader.getHeight());
+      return pixels;
+    }
+  }
+
+  /**
+   * Write a pixel buffer to a PPM file.
+   * 
+   * @param pixels the pixels of the image
+   * @param filename the name of the file
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(PixelBuffer pixels, String filename) throws IOException {
+    try (StreamingPipeline.RowSink writer =
+        openWriter(filename, pixels.getWidth(), pixels.getHeight())) {
+      for (int i = 0; i < pixels.getHeight(); i++) {
+        writer.writeRows(pixels.getData(), pixels.indexOf(0, i), 1);
+      }
+    }
+  }
+
+  /**
+   * A source reading the rows of a PPM file.
+   */
+  private static class Reader implements StreamingPipeline.RowSource {
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final byte[] row;
+
+    /**
+     * Open a file and read its header.
+     * 
+     * @param filename the name of the file
+     * @throws IOException if the file cannot be read or is not a binary PPM file
+     */
+    Reader(String filename) throws IOException {
+      this.in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE));
+      try {
+        if (this.in.read() != 'P' || this.in.read() != '6') {
+          throw new IOException("The file is not a binary PPM file.");
+        }
+        this.width = readNumber(this.in);
+        this.height = readNumber(this.in);
+        if (readNumber(this.in) != 255 || this.width < 1 || this.height < 1) {
+          throw new IOException("Only PPM files with 8 bits per channel are supported.");
+        }
+      } catch (IOException e) {
+        this.in.close();
+        throw e;
+      }
+      this.row = new byte[3 * this.width];
+    }
+
+    @Override
+    public int getWidth() {
+      return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+      return this.height;
+    }
+
+    @Override
+    public void readRows(int[] target, int offset, int rows) throws IOException {
+      for (int i = 0; i < rows; i++) {
+        this.in.readFully(this.row);
+        int index = offset + i * this.width;
+        for (int j = 0, k = 0; j < this.width; j++, k += 3) {
+          target[index + j] = PixelBuffer.pack(this.row[k] & 0xFF, this.row[k + 1] & 0xFF,
+              this.row[k + 2] & 0xFF);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.in.close();
+    }
+
+    /**
+     * Read a number of the header, skipping the whitespace and the comments before it and the one
+     * whitespace character after it.
+     * 
+     * @param in the stream of the file
+     * @return the number
+     * @throws IOException if the header ends or holds something else than a number
+     */
+    private static int readNumber(InputStream in) throws IOException {
+      int c = in.read();
+      while (c == '#' || Character.isWhitespace(c)) {
+        if (c == '#') {
+          while (c != '\n' && c != '\r' && c != -1) {
+            c = in.read();
+          }
+        }
+        c = in.read();
+      }
+      if (c == -1) {
+        throw new EOFException("The header of the PPM file is incomplete.");
+      }
+      long number = 0;
+      while (c >= '0' && c <= '9') {
+        number = number * 10 + c - '0';
+        if (number > Integer.MAX_VALUE) {
+          throw new IOException("A number of the PPM header is too large.");
+        }
+        c = in.read();
+      }
+      if (!Character.isWhitespace(c)) {
+        throw new IOException("The header of the PPM file is invalid.");
+      }
+      return (int) number;
+    }
+  }
+
+  /**
+   * A sink writing the rows of a PPM file.
+   */
+  private static class Writer implements StreamingPipeline.RowSink {
+    private final OutputStream out;
+    private final int width;
+    private final byte[] row;
+
+    /**
+     * Create a file and write its header.
+     * 
+     * @param filename the name of the file
+     * @param width the width of the image
+     * @param height the height of the image
+     * @throws IOException if the file cannot be written
+     */
+    Writer(String filename, int width, int height) throws IOException {
+      this.out = new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE);
+      this.width = width;
+      this.row = new byte[3 * width];
+      this.out.write(("P6\n" + width + " " + height + "\n255\n")
+          .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void writeRows(int[] source, int offset, int rows) throws IOException {
+      for (int i = 0; i < rows; i++) {
+        int index = offset + i * this.width;
+        for (int j = 0, k = 0; j < this.width; j++, k += 3) {
+          int rgb = source[index + j];
+          this.row[k] = (byte) PixelBuffer.red(rgb);
+          this.row[k + 1] = (byte) PixelBuffer.green(rgb);
+          this.row[k + 2] = (byte) PixelBuffer.blue(rgb);
+        }
+        this.out.write(this.row);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.out.close();
+    }
+  }
+}
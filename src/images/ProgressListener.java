@@ -0,0 +1,16 @@
+package images;
+
+/**
+ * A listener told how far an operation on an image has got. An operation may take several passes
+ * over the image, and each pass is reported from its first rows to its last rows. The listener is
+ * called from the threads running the bands of rows, so it should return quickly.
+ */
+public interface ProgressListener {
+  /**
+   * Tell the listener that more rows of the current pass over the image are done.
+   * 
+   * @param rowsDone the number of rows of the pass that are done
+   * @param totalRows the number of rows of the pass
+   */
+  void progressChanged(int rowsDone, int totalRows);
+}
@@ -0,0 +1,286 @@
+package images;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * A generator of the distinct seed pixels of a mosaic. The seeds only depend on the random seed
+ * given to the generator, the size of the image and the number of seeds, so a mosaic made with
+ * the same generator can be made again. Every call uses its own {@link SplittableRandom} instead of
+ * a random generator shared by all threads, and duplicates are found with a bit set of the pixels
+ * already taken, so generating the seeds takes time linear in their number.
+ */
+public class SeedGenerator {
+  /**
+   * The ways seeds can be spread over the image.
+   */
+  public enum Mode {
+    /**
+     * Every pixel is equally likely to be a seed.
+     */
+    UNIFORM,
+    /**
+     * The image is split into a grid of about as many cells as seeds and each chosen cell gets one
+     * seed at a random pixel inside it, which keeps seeds from clumping together.
+     */
+    STRATIFIED,
+    /**
+     * No two seeds are closer than a distance chosen from the number of seeds, which gives tiles of
+     * similar sizes.
+     */
+    POISSON_DISC
+  }
+
+  /**
+   * The number of candidates tried around a seed before the seed is given up in the Poisson-disc
+   * mode.
+   */
+  private static final int CANDIDATES_PER_SEED = 30;
+
+  private final long randomSeed;
+  private final Mode mode;
+
+  /**
+   * A constructor that spreads the seeds uniformly.
+   * 
+   * @param randomSeed the seed of the random numbers
+   */
+  public SeedGenerator(long randomSeed) {
+    this(randomSeed, Mode.UNIFORM);
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param randomSeed the seed of the random numbers
+   * @param mode the way the seeds are spread over the image
+   * @throws IllegalArgumentException if the mode is null
+   */
+  public SeedGenerator(long randomSeed, Mode mode) throws IllegalArgumentException {
+    if (mode == null) {
+      throw new IllegalArgumentException("The mode of the seed generator should not be null.");
+    }
+    this.randomSeed = randomSeed;
+    this.mode = mode;
+  }
+
+  /**
+   * Return the seed of the random numbers of this generator.
+   * 
+   * @return the seed of the random numbers
+   */
+  public long getRandomSeed() {
+    return this.randomSeed;
+  }
+
+  /**
+   * Return the way this generator spreads the seeds over the image.
+   * 
+   * @return the mode of this generator
+   */
+  public Mode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * Return distinct seed pixels of an image. An image cannot have more seeds than pixels, so the
+   * number of seeds is reduced to the number of pixels if it is larger.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param count the number of seeds
+   * @return the seeds, each given as the index {@code y * width + x} of its pixel
+   * @throws IllegalArgumentException if the image is empty or the number of seeds is not positive
+   */
+  public int[] generate(int width, int height, int count) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("The image should have at least one pixel.");
+    }
+    if (count < 1) {
+      throw new IllegalArgumentException("The number of seeds should be positive.");
+    }
+    int pixels = Math.toIntExact((long) width * height);
+    count = Math.min(count, pixels);
+    SplittableRandom random = new SplittableRandom(this.randomSeed);
+    switch (this.mode) {
+      case STRATIFIED:
+        return this.generateStratified(width, height, count, random);
+      case POISSON_DISC:
+        return this.generatePoissonDisc(width, height, count, random);
+      default:
+        return this.sampleDistinct(pixels, count, random);
+    }
+  }
+
+  /**
+   * Return distinct numbers between 0 and a bound with Floyd's algorithm, which draws exactly one
+   * random number per result.
+   * 
+   * @param bound the number after the largest number that can be returned
+   * @param count the number of numbers to return, at most the bound
+   * @param random the source of random numbers
+   * @return the distinct numbers
+   */
+  private int[] sampleDistinct(int bound, int count, SplittableRandom random) {
+    BitSet taken = new BitSet(bound);
+    int[] samples = new int[count];
+    int k = 0;
+    for (int j = bound - count; j < bound; j++) {
+      int sample = random.nextInt(j + 1);
+      if (taken.get(sample)) {
+        sample = j;
+      }
+      taken.set(sample);
+      samples[k++] = sample;
+    }
+    return samples;
+  }
+
+  /**
+   * Return seeds with at most one seed in every cell of a grid over the image.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param count the number of seeds
+   * @param random the source of random numbers
+   * @return the seeds
+   */
+  private int[] generateStratified(int width, int height, int count, SplittableRandom random) {
+    int columns = (int) Math.min(width, Math.ceil(Math.sqrt((double) count * width / height)));
+    int rows = Math.min(height, (count + columns - 1) / columns);
+    if ((long) columns * rows < count) {
+      // The grid would need cells smaller than a pixel, so every pixel is its own cell
+      columns = width;
+      rows = height;
+    }
+    int[] cells = this.sampleDistinct(columns * rows, count, random);
+    int[] seeds = new int[count];
+    for (int k = 0; k < count; k++) {
+      int column = cells[k] % columns;
+      int row = cells[k] / columns;
+      int x1 = (int) ((long) column * width / columns);
+      int x2 = (int) ((long) (column + 1) * width / columns);
+      int y1 = (int) ((long) row * height / rows);
+      int y2 = (int) ((long) (row + 1) * height / rows);
+      seeds[k] = (y1 + random.nextInt(y2 - y1)) * width + x1 + random.nextInt(x2 - x1);
+    }
+    return seeds;
+  }
+
+  /**
+   * Return seeds no closer to each other than a minimum distance, grown outward from random seeds
+   * with Bridson's algorithm. The minimum distance is chosen so that the image usually fits more
+   * seeds than needed, and if it does not, the remaining seeds are picked uniformly among the
+   * pixels that are not seeds yet.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param count the number of seeds
+   * @param random the source of random numbers
+   * @return the seeds
+   */
+  private int[] generatePoissonDisc(int width, int height, int count, SplittableRandom random) {
+    int pixels = width * height;
+    double radius = 0.75 * Math.sqrt((double) pixels / count);
+    if (radius < 2) {
+      // Seeds this dense cannot be kept apart by whole pixels
+      return this.generateStratified(width, height, count, random);
+    }
+    double minimumDistance = radius * radius;
+    // A background grid whose cells are small enough to hold at most one seed
+    double cellSize = radius / Math.sqrt(2);
+    int columns = (int) Math.ceil(width / cellSize);
+    int rows = (int) Math.ceil(height / cellSize);
+    int[] grid = new int[columns * rows];
+    Arrays.fill(grid, -1);
+
+    BitSet taken = new BitSet(pixels);
+    int[] seeds = new int[count];
+    int[] active = new int[count];
+    int seedCount = 0;
+    int activeCount = 0;
+    while (seedCount < count) {
+      if (activeCount == 0) {
+        // Start a new region of seeds at a random free pixel
+        int start = random.nextInt(pixels);
+        if (taken.get(start) || !this.isFarFromSeeds(start % width, start / width, seeds, grid,
+            columns, rows, cellSize, minimumDistance, width)) {
+          break;
+        }
+        seeds[seedCount] = start;
+        taken.set(start);
+        grid[(int) ((start / width) / cellSize) * columns + (int) ((start % width) / cellSize)] =
+            seedCount;
+        active[activeCount++] = seedCount++;
+        continue;
+      }
+      int a = random.nextInt(activeCount);
+      int parent = seeds[active[a]];
+      boolean found = false;
+      for (int t = 0; t < CANDIDATES_PER_SEED && !found; t++) {
+        double angle = random.nextDouble(2 * Math.PI);
+        double distance = radius * (1 + random.nextDouble());
+        int x = (int) Math.floor(parent % width + distance * Math.cos(angle));
+        int y = (int) Math.floor(parent / width + distance * Math.sin(angle));
+        if (x < 0 || x >= width || y < 0 || y >= height || taken.get(y * width + x)) {
+          continue;
+        }
+        if (this.isFarFromSeeds(x, y, seeds, grid, columns, rows, cellSize, minimumDistance,
+            width)) {
+          seeds[seedCount] = y * width + x;
+          taken.set(y * width + x);
+          grid[(int) (y / cellSize) * columns + (int) (x / cellSize)] = seedCount;
+          active[activeCount++] = seedCount++;
+          found = true;
+        }
+      }
+      if (!found) {
+        active[a] = active[--activeCount];
+      }
+    }
+    // Fill up the seeds that did not fit with uniformly chosen free pixels
+    while (seedCount < count) {
+      int pixel = random.nextInt(pixels);
+      if (!taken.get(pixel)) {
+        taken.set(pixel);
+        seeds[seedCount++] = pixel;
+      }
+    }
+    return seeds;
+  }
+
+  /**
+   * Return whether a pixel is at least the minimum distance away from every seed in the
+   * background grid.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @param seeds the seeds found so far
+   * @param grid the background grid holding the position of the seed in each cell, or -1
+   * @param columns the number of columns of the grid
+   * @param rows the number of rows of the grid
+   * @param cellSize the size of the cells of the grid
+   * @param minimumDistance the square of the minimum distance between seeds
+   * @param width the width of the image
+   * @return true if no seed is closer than the minimum distance
+   */
+  private boolean isFarFromSeeds(int x, int y, int[] seeds, int[] grid, int columns, int rows,
+      double cellSize, double minimumDistance, int width) {
+    int cellX = (int) (x / cellSize);
+    int cellY = (int) (y / cellSize);
+    for (int j = Math.max(0, cellY - 2); j <= Math.min(rows - 1, cellY + 2); j++) {
+      for (int i = Math.max(0, cellX - 2); i <= Math.min(columns - 1, cellX + 2); i++) {
+        int seed = grid[j * columns + i];
+        if (seed >= 0) {
+          long dx = seeds[seed] % width - x;
+          long dy = seeds[seed] / width - y;
+          if (dx * dx + dy * dy < minimumDistance) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+}
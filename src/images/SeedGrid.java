@@ -0,0 +1,147 @@
+package images;
+
+/**
+ * A uniform grid over the seeds of a mosaic that finds the closest seed of a pixel without
+ * comparing the pixel with every seed. The grid has about one seed per cell, and a search visits
+ * the cells around the pixel in growing square rings until no farther cell can hold a closer seed.
+ * 
+ * <p>Distances are compared as squared integers, and when two seeds are equally close the one that
+ * comes first in the list of seeds wins, which is the seed a scan over the whole list would pick.
+ */
+public class SeedGrid {
+  private final int width;
+  private final int[] seeds;
+  private final int cellSize;
+  private final int columns;
+  private final int rows;
+  private final int[] cellStart;
+  private final int[] cellSeeds;
+  private final int[] cellSeedX;
+  private final int[] cellSeedY;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param seeds the seeds, each given as the index {@code y * width + x} of its pixel
+   * @throws IllegalArgumentException if there are no seeds or a seed is outside of the image
+   */
+  public SeedGrid(int width, int height, int[] seeds) throws IllegalArgumentException {
+    if (width < 1 || height < 1 || seeds == null || seeds.length == 0) {
+      throw new IllegalArgumentException("The mosaic needs an image and at least one seed.");
+    }
+    long pixels = (long) width * height;
+    for (int seed : seeds) {
+      if (seed < 0 || seed >= pixels) {
+        throw new IllegalArgumentException("Every seed should be a pixel of the image.");
+      }
+    }
+    this.width = width;
+    this.seeds = seeds.clone();
+    this.cellSize = (int) Math.max(1, Math.sqrt((double) pixels / seeds.length));
+    this.columns = (width + this.cellSize - 1) / this.cellSize;
+    this.rows = (height + this.cellSize - 1) / this.cellSize;
+
+    // Sort the seeds into the cells with a counting sort, which keeps the seeds of each cell in
+    // the order of the list
+    this.cellStart = new int[this.columns * this.rows + 1];
+    for (int seed : this.seeds) {
+      this.cellStart[this.cellOf(seed) + 1]++;
+    }
+    for (int i = 0; i < this.columns * this.rows; i++) {
+      this.cellStart[i + 1] += this.cellStart[i];
+    }
+    int[] next = this.cellStart.clone();
+    this.cellSeeds = new int[this.seeds.length];
+    this.cellSeedX = new int[this.seeds.length];
+    this.cellSeedY = new int[this.seeds.length];
+    for (int i = 0; i < this.seeds.length; i++) {
+      int k = next[this.cellOf(this.seeds[i])]++;
+      this.cellSeeds[k] = i;
+      this.cellSeedX[k] = this.seeds[i] % width;
+      this.cellSeedY[k] = this.seeds[i] / width;
+    }
+  }
+
+  /**
+   * Return the number of seeds in this grid.
+   * 
+   * @return the number of seeds
+   */
+  public int getSeedCount() {
+    return this.seeds.length;
+  }
+
+  /**
+   * Return the pixel of a seed.
+   * 
+   * @param seed the position of the seed in the list of seeds
+   * @return the index {@code y * width + x} of the pixel of the seed
+   */
+  public int getSeed(int seed) {
+    return this.seeds[seed];
+  }
+
+  /**
+   * Find the seed closest to a pixel.
+   * 
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the position in the list of seeds of the closest seed
+   */
+  public int findClosestSeed(int x, int y) {
+    int cellX = x / this.cellSize;
+    int cellY = y / this.cellSize;
+    long bestDistance = Long.MAX_VALUE;
+    int bestSeed = -1;
+    for (int ring = 0; ; ring++) {
+      if (ring > 0) {
+        // The closest pixel of the ring is just outside of the square of the rings before it
+        long bound = Math.min(Math.min(x - (cellX - ring + 1) * this.cellSize + 1,
+            (cellX + ring) * this.cellSize - x), Math.min(
+            y - (cellY - ring + 1) * this.cellSize + 1, (cellY + ring) * this.cellSize - y));
+        if (bound * bound > bestDistance) {
+          return bestSeed;
+        }
+        if (cellX - ring < 0 && cellY - ring < 0 && cellX + ring >= this.columns
+            && cellY + ring >= this.rows) {
+          return bestSeed;
+        }
+      }
+      int top = cellY - ring;
+      int bottom = cellY + ring;
+      for (int j = Math.max(0, top); j <= Math.min(this.rows - 1, bottom); j++) {
+        // The top and bottom rows of the ring are whole, the other rows only have their two ends
+        int step = (j == top || j == bottom) ? 1 : Math.max(1, 2 * ring);
+        for (int i = cellX - ring; i <= cellX + ring; i += step) {
+          if (i < 0 || i >= this.columns) {
+            continue;
+          }
+          int cell = j * this.columns + i;
+          for (int k = this.cellStart[cell]; k < this.cellStart[cell + 1]; k++) {
+            long dx = this.cellSeedX[k] - x;
+            long dy = this.cellSeedY[k] - y;
+            long distance = dx * dx + dy * dy;
+            if (distance < bestDistance
+                || (distance == bestDistance && this.cellSeeds[k] < bestSeed)) {
+              bestDistance = distance;
+              bestSeed = this.cellSeeds[k];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the cell that holds a seed.
+   * 
+   * @param seed the index of the pixel of the seed
+   * @return the index of the cell
+   */
+  private int cellOf(int seed) {
+    return (seed / this.width / this.cellSize) * this.columns
+        + (seed % this.width) / this.cellSize;
+  }
+}
@@ -0,0 +1,156 @@
+package images;
+
+/**
+ * An edge detector that finds the gradient magnitude of every pixel with the Sobel kernels in two
+ * passes over the image. The first pass reads the 3 x 3 neighborhood of every pixel once, computes
+ * the horizontal and vertical gradients and their magnitude in integers, stores the magnitude in a
+ * short per channel and keeps the smallest and largest magnitude of every channel. The second pass
+ * stretches the magnitudes to the range of 0 to 255 and runs a point operation, such as greyscale,
+ * on every row while it is still in the cache.
+ * 
+ * <p>Pixels on the border of the image have no full neighborhood and get a magnitude of 0, which
+ * also counts towards the smallest magnitude.
+ */
+public class SobelEdgeDetector {
+  private final TileScheduler scheduler;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param scheduler the scheduler running the bands of rows
+   * @throws IllegalArgumentException if the scheduler is null
+   */
+  public SobelEdgeDetector(TileScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("The scheduler should not be null.");
+    }
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Return the normalized gradient magnitudes of an image after a point operation.
+   * 
+   * @param source the pixels of the image
+   * @param tail the point operation run on the normalized magnitudes, or null for none
+   * @return a new buffer holding the result
+   */
+  public PixelBuffer detect(PixelBuffer source, PointOperation tail) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    short[][] magnitudes = new short[3][width * height];
+    int[] extremeValues = this.scheduler.reduceRowBands(width, height,
+        (rowStart, rowEnd) -> computeMagnitudes(source, magnitudes, rowStart, rowEnd),
+        SobelEdgeDetector::mergeMaxAndMin);
+
+    PixelBuffer output = new PixelBuffer(width, height);
+    int[] outputData = output.getData();
+    this.scheduler.forEachRowBand(width, height, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        int offset = i * width;
+        normalizeRow(magnitudes, offset, extremeValues, outputData, offset, width);
+        if (tail != null) {
+          tail.applyToRow(outputData, offset, outputData, offset, width);
+        }
+      }
+    });
+    return output;
+  }
+
+  /**
+   * Stretch the magnitudes of one row to the range of 0 to 255.
+   * 
+   * @param magnitudes the red, green and blue magnitudes
+   * @param index the index of the first magnitude of the row
+   * @param extremeValues the largest red, green and blue magnitudes of the image followed by the
+   *        smallest ones
+   * @param output the array receiving the packed pixels of the row
+   * @param offset the index of the first pixel of the row in the output
+   * @param width the width of the image
+   */
+  static void normalizeRow(short[][] magnitudes, int index, int[] extremeValues, int[] output,
+      int offset, int width) {
+    int redRange = extremeValues[0] - extremeValues[3];
+    int greenRange = extremeValues[1] - extremeValues[4];
+    int blueRange = extremeValues[2] - extremeValues[5];
+    for (int j = 0; j < width; j++) {
+      int red = redRange == 0 ? 0 : (magnitudes[0][index + j] - extremeValues[3]) * 255 / redRange;
+      int green =
+          greenRange == 0 ? 0 : (magnitudes[1][index + j] - extremeValues[4]) * 255 / greenRange;
+      int blue =
+          blueRange == 0 ? 0 : (magnitudes[2][index + j] - extremeValues[5]) * 255 / blueRange;
+      output[offset + j] = PixelBuffer.pack(red, green, blue);
+    }
+  }
+
+  /**
+   * Compute the gradient magnitudes of a band of rows and return their extremes.
+   * 
+   * @param source the pixels of the image
+   * @param magnitudes the red, green and blue magnitudes of every pixel, filled in by this method
+   * @param rowStart the first row of the band
+   * @param rowEnd the row after the last row of the band
+   * @return the largest red, green and blue magnitudes of the band followed by the smallest ones
+   */
+  static int[] computeMagnitudes(PixelBuffer source, short[][] magnitudes, int rowStart,
+      int rowEnd) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int[] data = source.getData();
+    int[] extremeValues = new int[] {0, 0, 0, 255, 255, 255};
+    if (rowStart < rowEnd) {
+      // Every row has a border pixel whose magnitude is 0
+      extremeValues[3] = 0;
+      extremeValues[4] = 0;
+      extremeValues[5] = 0;
+    }
+    for (int i = Math.max(1, rowStart); i < Math.min(height - 1, rowEnd); i++) {
+      int above = source.indexOf(0, i - 1);
+      int middle = source.indexOf(0, i);
+      int below = source.indexOf(0, i + 1);
+      for (int j = 1; j < width - 1; j++) {
+        int topLeft = data[above + j - 1];
+        int top = data[above + j];
+        int topRight = data[above + j + 1];
+        int left = data[middle + j - 1];
+        int right = data[middle + j + 1];
+        int bottomLeft = data[below + j - 1];
+        int bottom = data[below + j];
+        int bottomRight = data[below + j + 1];
+        int index = i * width + j;
+        for (int shift = 16, c = 0; c < 3; shift -= 8, c++) {
+          int gx = ((topLeft >> shift) & 0xFF) + 2 * ((left >> shift) & 0xFF)
+              + ((bottomLeft >> shift) & 0xFF) - ((topRight >> shift) & 0xFF)
+              - 2 * ((right >> shift) & 0xFF) - ((bottomRight >> shift) & 0xFF);
+          int gy = ((topLeft >> shift) & 0xFF) + 2 * ((top >> shift) & 0xFF)
+              + ((topRight >> shift) & 0xFF) - ((bottomLeft >> shift) & 0xFF)
+              - 2 * ((bottom >> shift) & 0xFF) - ((bottomRight >> shift) & 0xFF);
+          int magnitude = (int) Math.sqrt(gx * gx + gy * gy);
+          magnitudes[c][index] = (short) magnitude;
+          if (magnitude > extremeValues[c]) {
+            extremeValues[c] = magnitude;
+          }
+          if (magnitude < extremeValues[c + 3]) {
+            extremeValues[c + 3] = magnitude;
+          }
+        }
+      }
+    }
+    return extremeValues;
+  }
+
+  /**
+   * Merge the largest and smallest magnitudes of two bands of rows.
+   * 
+   * @param first the largest and smallest magnitudes of the first band
+   * @param second the largest and smallest magnitudes of the second band
+   * @return the largest and smallest magnitudes of both bands
+   */
+  static int[] mergeMaxAndMin(int[] first, int[] second) {
+    int[] extremeValues = new int[6];
+    for (int c = 0; c < 3; c++) {
+      extremeValues[c] = Math.max(first[c], second[c]);
+      extremeValues[c + 3] = Math.min(first[c + 3], second[c + 3]);
+    }
+    return extremeValues;
+  }
+}
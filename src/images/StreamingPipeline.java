@@ -0,0 +1,593 @@
+package images;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A chain of operations that runs on an image a strip of rows at a time, so that images far
+ * larger than the memory can be filtered. The operations are the ones of {@link ConcreteImageModel}
+ * that only need the rows around each row: blur, sharpen, greyscale, sepia and edge detection, and
+ * they give the same pixels as the model.
+ * 
+ * <p>The rows read from the source flow through the operations one strip at a time. A convolution
+ * keeps a window of the strip and of the rows above and below it that its kernel reaches, and
+ * hands its filtered rows to the next operation as soon as the rows they need have arrived. The
+ * finished rows are written to the sink strip by strip, so the memory used is proportional to the
+ * width of the image times the height of a strip and of the kernels, whatever the height of the
+ * image. Like in {@link OperationPipeline}, the point operations run on the rows of the convolution
+ * before them.
+ * 
+ * <p>Edge detection stretches the gradient magnitudes by the smallest and largest magnitude of the
+ * whole image, so every edge detection adds a pass over the source that only finds them; the
+ * source is opened again for every pass.
+ */
+public class StreamingPipeline {
+  /**
+   * The default number of rows read from the source at a time.
+   */
+  public static final int DEFAULT_STRIP_ROWS = 64;
+
+  private final OperationPipeline operations = new OperationPipeline();
+  private final TileScheduler scheduler;
+  private final ConvolutionEngine engine;
+  private int stripRows = DEFAULT_STRIP_ROWS;
+
+  /**
+   * A constructor that filters every strip on the default scheduler.
+   */
+  public StreamingPipeline() {
+    this(TileScheduler.getDefault());
+  }
+
+  /**
+   * A constructor that takes the scheduler filtering the rows of every strip in parallel.
+   * 
+   * @param scheduler the scheduler running the bands of rows of a strip
+   * @throws IllegalArgumentException if the scheduler is null
+   */
+  public StreamingPipeline(TileScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("The scheduler should not be null.");
+    }
+    this.scheduler = scheduler;
+    this.engine = new ConvolutionEngine(scheduler);
+  }
+
+  /**
+   * Add an operation by the name used in scripts: blur, sharpen, greyscale, sepia or
+   * edgeDetection, in any case.
+   * 
+   * @param operation the name of the operation
+   * @return this pipeline
+   * @throws IllegalArgumentException if the operation cannot be streamed
+   */
+  public StreamingPipeline add(String operation) throws IllegalArgumentException {
+    switch (operation == null ? "" : operation.toUpperCase()) {
+      case "BLUR":
+        return this.blur();
+      case "SHARPEN":
+        return this.sharpen();
+      case "GREYSCALE":
+        return this.greyscale();
+      case "SEPIA":
+        return this.sepia();
+      case "EDGEDETECTION":
+        return this.edgeDetection();
+      default:
+        throw new IllegalArgumentException("The operation " + operation
+            + " cannot be streamed. Use blur, sharpen, greyscale, sepia or edgeDetection.");
+    }
+  }
+
+  /**
+   * Add the blur filter.
+   * 
+   * @return this pipeline
+   */
+  public StreamingPipeline blur() {
+    this.operations.addConvolution(ConcreteImageModel.blurKernel());
+    return this;
+  }
+
+  /**
+   * Add a Gaussian blur.
+   * 
+   * @param radius the number of pixels on each side of a pixel that are blurred into it
+   * @return this pipeline
+   * @throws IllegalArgumentException if the radius is not between 1 and
+   *         {@value Kernel#MAX_GAUSSIAN_RADIUS}
+   */
+  public StreamingPipeline gaussianBlur(int radius) throws IllegalArgumentException {
+    this.operations.addConvolution(Kernel.gaussian(radius));
+    return this;
+  }
+
+  /**
+   * Add the sharpen filter.
+   * 
+   * @return this pipeline
+   */
+  public StreamingPipeline sharpen() {
+    this.operations.addConvolution(ConcreteImageModel.sharpenKernel());
+    return this;
+  }
+
+  /**
+   * Add the greyscale color transformation.
+   * 
+   * @return this pipeline
+   */
+  public StreamingPipeline greyscale() {
+    this.operations.addPointOperation(ConcreteImageModel.greyscale());
+    return this;
+  }
+
+  /**
+   * Add the sepia color transformation.
+   * 
+   * @return this pipeline
+   */
+  public StreamingPipeline sepia() {
+    this.operations.addPointOperation(ConcreteImageModel.sepia());
+    return this;
+  }
+
+  /**
+   * Add edge detection, which adds a pass over the source.
+   * 
+   * @return this pipeline
+   */
+  public StreamingPipeline edgeDetection() {
+    this.operations.addEdgeDetection(ConcreteImageModel.greyscale());
+    return this;
+  }
+
+  /**
+   * Set the number of rows read from the source at a time. Taller strips give the scheduler more
+   * rows to split between its threads and take more memory.
+   * 
+   * @param rows the number of rows of a strip
+   * @throws IllegalArgumentException if the number of rows is not positive
+   */
+  public void setStripRows(int rows) throws IllegalArgumentException {
+    if (rows < 1) {
+      throw new IllegalArgumentException("The strips should have at least one row.");
+    }
+    this.stripRows = rows;
+  }
+
+  /**
+   * Return the number of times the source is read, which is one more than the number of edge
+   * detections.
+   * 
+   * @return the number of passes over the source
+   */
+  public int countPasses() {
+    int passes = 1;
+    for (OperationPipeline.Node node : this.operations.fuse()) {
+      if (node.edgeDetection) {
+        passes++;
+      }
+    }
+    return passes;
+  }
+
+  /**
+   * Run the operations on a PPM file and write the result to another PPM file.
+   * 
+   * @param inputFile the name of the PPM file to read
+   * @param outputFile the name of the PPM file to write, which must not be the input file
+   * @throws IllegalArgumentException if a file name is invalid or if something goes wrong
+   *         reading or writing the files
+   */
+  public void run(String inputFile, String outputFile) throws IllegalArgumentException {
+    if (inputFile == null || outputFile == null || inputFile.equals(outputFile)) {
+      throw new IllegalArgumentException("Two different file names should be provided.");
+    }
+    int[] size = new int[2];
+    try (RowSource source = PpmFile.openReader(inputFile)) {
+      size[0] = source.getWidth();
+      size[1] = source.getHeight();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Something went wrong reading the image file: "
+          + e.getMessage());
+    }
+    RowSink sink;
+    try {
+      sink = PpmFile.openWriter(outputFile, size[0], size[1]);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error occurred writing the data to the file");
+    }
+    try (RowSink output = sink) {
+      this.run(() -> PpmFile.openReader(inputFile), output);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Something went wrong streaming the image: "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Run the operations on the rows of a source and write the resulting rows to a sink, which is
+   * not closed.
+   * 
+   * @param input the opener of the source, called once for every pass
+   * @param output the sink receiving the resulting rows from the top
+   * @throws IOException if the source cannot be read or the sink cannot be written
+   * @throws IllegalArgumentException if an argument is null or the passes see different sizes
+   */
+  public void run(SourceOpener input, RowSink output)
+      throws IOException, IllegalArgumentException {
+    if (input == null || output == null) {
+      throw new IllegalArgumentException("The source and the sink should not be null.");
+    }
+    List<OperationPipeline.Node> nodes = this.operations.fuse();
+    int[][] extremeValues = new int[nodes.size()][];
+    int[] size = null;
+    for (int pass = 0; pass <= nodes.size(); pass++) {
+      if (pass < nodes.size() && !nodes.get(pass).edgeDetection) {
+        continue;
+      }
+      try (RowSource source = input.open()) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (size != null && (size[0] != width || size[1] != height)) {
+          throw new IllegalArgumentException("The source changed size between two passes.");
+        }
+        size = new int[] {width, height};
+        // A pass for an edge detection ends with the edge detection collecting its extremes
+        Stage last = pass < nodes.size()
+            ? new EdgeStage(width, height, null, null) : new SinkStage(output);
+        Stage first = last;
+        for (int i = pass - 1; i >= 0; i--) {
+          first = this.stageOf(nodes.get(i), width, height, extremeValues[i], first);
+        }
+        int[] strip = new int[Math.min(this.stripRows, height) * width];
+        for (int row = 0; row < height; row += this.stripRows) {
+          int rows = Math.min(this.stripRows, height - row);
+          source.readRows(strip, 0, rows);
+          first.push(strip, 0, rows);
+        }
+        first.finish();
+        if (pass < nodes.size()) {
+          extremeValues[pass] = ((EdgeStage) last).collected;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the stage running one fused pass of the operations.
+   * 
+   * @param node the fused pass
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param extremeValues the extremes of an edge detection found by an earlier pass
+   * @param next the stage receiving the rows of this stage
+   * @return the stage
+   */
+  private Stage stageOf(OperationPipeline.Node node, int width, int height, int[] extremeValues,
+      Stage next) {
+    if (node.kernel != null) {
+      return new ConvolutionStage(width, height, node.kernel, node.tail, next);
+    } else if (node.edgeDetection) {
+      return new EdgeStage(width, height, extremeValues, node.tail, next);
+    } else {
+      return new PointStage(width, node.tail, next);
+    }
+  }
+
+  /**
+   * A source of the rows of an image, read from the top.
+   */
+  public interface RowSource extends Closeable {
+    /**
+     * Return the width of the image.
+     * 
+     * @return the width of the image
+     */
+    int getWidth();
+
+    /**
+     * Return the height of the image.
+     * 
+     * @return the height of the image
+     */
+    int getHeight();
+
+    /**
+     * Read the next rows of the image as packed pixels.
+     * 
+     * @param target the array receiving the rows one after another
+     * @param offset the index in the array of the first pixel of the first row
+     * @param rows the number of rows to read
+     * @throws IOException if the rows cannot be read
+     */
+    void readRows(int[] target, int offset, int rows) throws IOException;
+  }
+
+  /**
+   * A sink receiving the rows of an image from the top.
+   */
+  public interface RowSink extends Closeable {
+    /**
+     * Write the next rows of the image.
+     * 
+     * @param source the array holding the rows one after another as packed pixels
+     * @param offset the index in the array of the first pixel of the first row
+     * @param rows the number of rows to write
+     * @throws IOException if the rows cannot be written
+     */
+    void writeRows(int[] source, int offset, int rows) throws IOException;
+  }
+
+  /**
+   * An opener of a new source of the same image for every pass.
+   */
+  public interface SourceOpener {
+    /**
+     * Open a source reading the image from the top.
+     * 
+     * @return a new source, which the pipeline closes
+     * @throws IOException if the source cannot be opened
+     */
+    RowSource open() throws IOException;
+  }
+
+  /**
+   * A step of the chain, which receives the rows of the image in order and hands its own rows to
+   * the next step.
+   */
+  private abstract static class Stage {
+    /**
+     * Receive the next rows of the image. The array may be reused once this returns.
+     * 
+     * @param rows the array holding the rows one after another
+     * @param offset the index of the first pixel of the first row
+     * @param count the number of rows
+     * @throws IOException if the rows cannot be written
+     */
+    abstract void push(int[] rows, int offset, int count) throws IOException;
+
+    /**
+     * Hand on the rows kept back after the last row of the image has arrived.
+     * 
+     * @throws IOException if the rows cannot be written
+     */
+    abstract void finish() throws IOException;
+  }
+
+  /**
+   * The last step, which writes the rows to the sink.
+   */
+  private static class SinkStage extends Stage {
+    private final RowSink sink;
+
+    SinkStage(RowSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    void push(int[] rows, int offset, int count) throws IOException {
+      this.sink.writeRows(rows, offset, count);
+    }
+
+    @Override
+    void finish() {
+      // The caller closes the sink
+    }
+  }
+
+  /**
+   * A step running a point operation on the rows in place.
+   */
+  private class PointStage extends Stage {
+    private final int width;
+    private final PointOperation operation;
+    private final Stage next;
+
+    PointStage(int width, PointOperation operation, Stage next) {
+      this.width = width;
+      this.operation = operation;
+      this.next = next;
+    }
+
+    @Override
+    void push(int[] rows, int offset, int count) throws IOException {
+      scheduler.forEachRowBand(this.width, count, (rowStart, rowEnd) -> {
+        int start = offset + rowStart * this.width;
+        this.operation.applyToRow(rows, start, rows, start, (rowEnd - rowStart) * this.width);
+      });
+      this.next.push(rows, offset, count);
+    }
+
+    @Override
+    void finish() throws IOException {
+      this.next.finish();
+    }
+  }
+
+  /**
+   * A step that needs the rows up to a radius above and below each row. It keeps a window of the
+   * rows it has received, starting with the rows above the first row it has not handed on, and
+   * filters the rows whose neighbors have all arrived. The window is a buffer of its own, so the
+   * rows closer to the top or the bottom of the window than the radius look like the border of
+   * an image to the filters; the window always starts at least a radius above the rows filtered
+   * and ends at least a radius below them, except at the real border of the image.
+   */
+  private abstract class WindowStage extends Stage {
+    final int width;
+    final int height;
+    final int radius;
+    final Stage next;
+    private final int[] window;
+    private final int[] output;
+    private int windowFirst;
+    private int windowCount;
+    private int emitted;
+
+    WindowStage(int width, int height, int radius, Stage next) {
+      this.width = width;
+      this.height = height;
+      this.radius = radius;
+      this.next = next;
+      int capacity = Math.min(height, stripRows + 2 * radius);
+      this.window = new int[capacity * width];
+      this.output = new int[capacity * width];
+    }
+
+    @Override
+    void push(int[] rows, int offset, int count) throws IOException {
+      int capacity = this.window.length / this.width;
+      while (count > 0) {
+        int added = Math.min(count, capacity - this.windowCount);
+        System.arraycopy(rows, offset, this.window, this.windowCount * this.width,
+            added * this.width);
+        this.windowCount += added;
+        offset += added * this.width;
+        count -= added;
+        this.drain(false);
+      }
+    }
+
+    @Override
+    void finish() throws IOException {
+      this.drain(true);
+      if (this.next != null) {
+        this.next.finish();
+      }
+    }
+
+    /**
+     * Filter and hand on every row whose neighbors have arrived, and drop the rows of the window
+     * that no later row needs.
+     * 
+     * @param last whether the last row of the image has arrived
+     * @throws IOException if the rows cannot be written
+     */
+    private void drain(boolean last) throws IOException {
+      int limit = last ? this.height
+          : Math.min(this.height, this.windowFirst + this.windowCount - this.radius);
+      if (limit > this.emitted) {
+        PixelBuffer view = new PixelBuffer(this.width, this.windowCount, this.width, this.window);
+        this.filter(view, this.emitted - this.windowFirst, limit - this.windowFirst, this.output);
+        if (this.next != null) {
+          this.next.push(this.output, 0, limit - this.emitted);
+        }
+        this.emitted = limit;
+      }
+      int dropped = Math.max(0, this.emitted - this.radius - this.windowFirst);
+      if (dropped > 0) {
+        this.windowCount -= dropped;
+        System.arraycopy(this.window, dropped * this.width, this.window, 0,
+            this.windowCount * this.width);
+        this.windowFirst += dropped;
+      }
+    }
+
+    /**
+     * Return whether a row of the window is on the real border of the image.
+     * 
+     * @param localRow the row of the window
+     * @return true if the row is closer to the top or bottom of the image than the radius
+     */
+    boolean isBorder(int localRow) {
+      int row = this.windowFirst + localRow;
+      return row < this.radius || row >= this.height - this.radius;
+    }
+
+    /**
+     * Filter rows of the window.
+     * 
+     * @param view the rows of the window
+     * @param rowStart the first row of the window to filter
+     * @param rowEnd the row after the last row of the window to filter
+     * @param output the array receiving the filtered rows, starting with the first one
+     */
+    abstract void filter(PixelBuffer view, int rowStart, int rowEnd, int[] output);
+  }
+
+  /**
+   * A step running a convolution followed by a point operation.
+   */
+  private class ConvolutionStage extends WindowStage {
+    private final Kernel kernel;
+    private final PointOperation tail;
+
+    ConvolutionStage(int width, int height, Kernel kernel, PointOperation tail, Stage next) {
+      super(width, height, kernel.getRadius(), next);
+      this.kernel = kernel;
+      this.tail = tail;
+    }
+
+    @Override
+    void filter(PixelBuffer view, int rowStart, int rowEnd, int[] output) {
+      scheduler.forEachRowBand(this.width, rowEnd - rowStart, (bandStart, bandEnd) -> {
+        engine.filterRows(view, this.kernel, rowStart + bandStart, rowStart + bandEnd,
+            (row, red, green, blue) -> {
+              int offset = (row - rowStart) * this.width;
+              for (int j = 0; j < this.width; j++) {
+                output[offset + j] = PixelBuffer.packClamped(red[j], green[j], blue[j]);
+              }
+              if (this.tail != null) {
+                this.tail.applyToRow(output, offset, output, offset, this.width);
+              }
+            });
+      });
+    }
+  }
+
+  /**
+   * A step running an edge detection followed by a point operation. Without the extremes of the
+   * gradient magnitudes it only collects them, and hands on no rows.
+   */
+  private class EdgeStage extends WindowStage {
+    private final int[] extremeValues;
+    private final PointOperation tail;
+    private final short[][] magnitudes;
+    private int[] collected;
+
+    EdgeStage(int width, int height, int[] extremeValues, PointOperation tail) {
+      this(width, height, extremeValues, tail, null);
+    }
+
+    EdgeStage(int width, int height, int[] extremeValues, PointOperation tail, Stage next) {
+      super(width, height, 1, next);
+      this.extremeValues = extremeValues;
+      this.tail = tail;
+      int capacity = Math.min(height, stripRows + 2);
+      this.magnitudes = new short[3][capacity * width];
+    }
+
+    @Override
+    void filter(PixelBuffer view, int rowStart, int rowEnd, int[] output) {
+      // The magnitudes of the border rows are never computed, so they are cleared
+      for (int i = rowStart; i < rowEnd; i++) {
+        if (this.isBorder(i)) {
+          for (short[] channel : this.magnitudes) {
+            java.util.Arrays.fill(channel, i * this.width, (i + 1) * this.width, (short) 0);
+          }
+        }
+      }
+      int[] extremes = scheduler.reduceRowBands(this.width, rowEnd - rowStart,
+          (bandStart, bandEnd) -> SobelEdgeDetector.computeMagnitudes(view, this.magnitudes,
+              rowStart + bandStart, rowStart + bandEnd),
+          SobelEdgeDetector::mergeMaxAndMin);
+      if (this.extremeValues == null) {
+        this.collected = this.collected == null ? extremes
+            : SobelEdgeDetector.mergeMaxAndMin(this.collected, extremes);
+        return;
+      }
+      scheduler.forEachRowBand(this.width, rowEnd - rowStart, (bandStart, bandEnd) -> {
+        for (int i = rowStart + bandStart; i < rowStart + bandEnd; i++) {
+          int offset = (i - rowStart) * this.width;
+          SobelEdgeDetector.normalizeRow(this.magnitudes, i * this.width, this.extremeValues,
+              output, offset, this.width);
+          if (this.tail != null) {
+            this.tail.applyToRow(output, offset, output, offset, this.width);
+          }
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package images;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+
+/**
+ * A scheduler that splits the rows of an image into bands and runs an operation on the bands in
+ * parallel on a fork/join pool. Every band only writes its own rows, and operations that need
+ * neighboring rows read them from a source image that is not written while the operation runs,
+ * so the result does not depend on how the rows are split or how many threads are used.
+ * 
+ * <p>A scheduler bound to an {@link OperationContext} runs every band a few rows at a time, checks
+ * whether the operation has been cancelled before each group of rows and reports the rows done.
+ */
+public class TileScheduler {
+  /**
+   * The name of the system property that sets the parallelism of the default scheduler.
+   */
+  public static final String PARALLELISM_PROPERTY = "images.parallelism";
+
+  /**
+   * The smallest number of pixels worth giving to a band of its own.
+   */
+  private static final int MINIMUM_PIXELS_PER_BAND = 1 << 14;
+
+  /**
+   * The number of bands created for each thread, so that threads finishing early can steal work.
+   */
+  private static final int BANDS_PER_THREAD = 4;
+
+  private static TileScheduler defaultScheduler;
+
+  private final int parallelism;
+  private final ForkJoinPool pool;
+  private final OperationContext context;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param parallelism the number of threads to run the bands on, where 1 runs every operation on
+   *        the calling thread
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public TileScheduler(int parallelism) throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism should be positive.");
+    }
+    this.parallelism = parallelism;
+    if (parallelism == 1) {
+      this.pool = null;
+    } else if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+      this.pool = ForkJoinPool.commonPool();
+    } else {
+      this.pool = new ForkJoinPool(parallelism);
+    }
+    this.context = null;
+  }
+
+  /**
+   * A constructor for a scheduler sharing the threads of another scheduler.
+   * 
+   * @param scheduler the scheduler whose threads are shared
+   * @param context the context of the operations run by this scheduler
+   */
+  private TileScheduler(TileScheduler scheduler, OperationContext context) {
+    this.parallelism = scheduler.parallelism;
+    this.pool = scheduler.pool;
+    this.context = context;
+  }
+
+  /**
+   * Return the scheduler shared by the image models that are not given one. Its parallelism is
+   * read from the system property {@value #PARALLELISM_PROPERTY} and defaults to the number of
+   * available processors.
+   * 
+   * @return the default scheduler
+   */
+  public static synchronized TileScheduler getDefault() {
+    if (defaultScheduler == null) {
+      int parallelism = Runtime.getRuntime().availableProcessors();
+      try {
+        parallelism = Integer.parseInt(
+            System.getProperty(PARALLELISM_PROPERTY, Integer.toString(parallelism)));
+      } catch (NumberFormatException e) {
+        // keep the number of available processors
+      }
+      defaultScheduler = new TileScheduler(Math.max(1, parallelism));
+    }
+    return defaultScheduler;
+  }
+
+  /**
+   * Return the number of threads the bands are run on.
+   * 
+   * @return the parallelism of this scheduler
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Return a scheduler that runs the bands on the same threads as this scheduler and checks a
+   * context between groups of rows.
+   * 
+   * @param context the context of the operations
+   * @return a scheduler bound to the context
+   * @throws IllegalArgumentException if the context is null
+   */
+  public TileScheduler withContext(OperationContext context) throws IllegalArgumentException {
+    if (context == null) {
+      throw new IllegalArgumentException("The context should not be null.");
+    }
+    return new TileScheduler(this, context);
+  }
+
+  /**
+   * Run an operation on every band of rows of an image and wait for all of them to finish.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param operation the operation to run on each band
+   * @throws java.util.concurrent.CancellationException if the context of this scheduler is
+   *         cancelled while the operation runs
+   */
+  public void forEachRowBand(int width, int height, RowBandOperation operation) {
+    if (this.context != null) {
+      operation = this.checkpointed(width, height, operation);
+    }
+    int bandHeight = this.bandHeight(width, height);
+    if (this.pool == null || bandHeight >= height) {
+      operation.run(0, height);
+      return;
+    }
+    this.pool.invoke(new BandAction(operation, 0, height, bandHeight));
+  }
+
+  /**
+   * Compute a result for every band of rows of an image and merge the results. Results are merged
+   * in the order of the bands, so an operation whose merge is associative gives the same result
+   * however the rows are split.
+   * 
+   * @param <T> the type of the results
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param function the function computing the result of one band
+   * @param merge the function merging the results of two neighboring bands
+   * @return the merged result of all bands
+   * @throws java.util.concurrent.CancellationException if the context of this scheduler is
+   *         cancelled while the function runs
+   */
+  public <T> T reduceRowBands(int width, int height, RowBandFunction<T> function,
+      BinaryOperator<T> merge) {
+    if (this.context != null) {
+      function = this.checkpointed(width, height, function, merge);
+    }
+    int bandHeight = this.bandHeight(width, height);
+    if (this.pool == null || bandHeight >= height) {
+      return function.apply(0, height);
+    }
+    return this.pool.invoke(new BandTask<T>(function, merge, 0, height, bandHeight));
+  }
+
+  /**
+   * Return an operation that runs another operation on a band a few rows at a time, checking the
+   * context of this scheduler before each group of rows.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param operation the operation to run on each group of rows
+   * @return the checked operation
+   */
+  private RowBandOperation checkpointed(int width, int height, RowBandOperation operation) {
+    int groupHeight = Math.max(1, MINIMUM_PIXELS_PER_BAND / Math.max(1, width));
+    AtomicInteger rowsDone = new AtomicInteger();
+    return (rowStart, rowEnd) -> {
+      int row = rowStart;
+      do {
+        this.context.checkpoint();
+        int groupEnd = Math.min(row + groupHeight, rowEnd);
+        operation.run(row, groupEnd);
+        this.context.reportProgress(rowsDone.addAndGet(groupEnd - row), height);
+        row = groupEnd;
+      } while (row < rowEnd);
+    };
+  }
+
+  /**
+   * Return a function that computes another function on a band a few rows at a time, checking the
+   * context of this scheduler before each group of rows and merging the results in order.
+   * 
+   * @param <T> the type of the results
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param function the function computing the result of each group of rows
+   * @param merge the function merging the results of two neighboring groups
+   * @return the checked function
+   */
+  private <T> RowBandFunction<T> checkpointed(int width, int height, RowBandFunction<T> function,
+      BinaryOperator<T> merge) {
+    int groupHeight = Math.max(1, MINIMUM_PIXELS_PER_BAND / Math.max(1, width));
+    AtomicInteger rowsDone = new AtomicInteger();
+    return (rowStart, rowEnd) -> {
+      T result = null;
+      int row = rowStart;
+      do {
+        this.context.checkpoint();
+        int groupEnd = Math.min(row + groupHeight, rowEnd);
+        T groupResult = function.apply(row, groupEnd);
+        result = result == null ? groupResult : merge.apply(result, groupResult);
+        this.context.reportProgress(rowsDone.addAndGet(groupEnd - row), height);
+        row = groupEnd;
+      } while (row < rowEnd);
+      return result;
+    };
+  }
+
+  /**
+   * Return the number of rows in each band of an image.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @return the number of rows in each band
+   */
+  private int bandHeight(int width, int height) {
+    int minimumRows = Math.max(1, MINIMUM_PIXELS_PER_BAND / Math.max(1, width));
+    int rowsForEveryThread = height / (this.parallelism * BANDS_PER_THREAD);
+    return Math.max(minimumRows, rowsForEveryThread);
+  }
+
+  /**
+   * An operation run on one band of rows.
+   */
+  public interface RowBandOperation {
+    /**
+     * Run the operation on a band of rows.
+     * 
+     * @param rowStart the first row of the band
+     * @param rowEnd the row after the last row of the band
+     */
+    void run(int rowStart, int rowEnd);
+  }
+
+  /**
+   * A function computing a result for one band of rows.
+   * 
+   * @param <T> the type of the result
+   */
+  public interface RowBandFunction<T> {
+    /**
+     * Compute the result of a band of rows.
+     * 
+     * @param rowStart the first row of the band
+     * @param rowEnd the row after the last row of the band
+     * @return the result of the band
+     */
+    T apply(int rowStart, int rowEnd);
+  }
+
+  /**
+   * A task that splits a range of rows in half until it is no taller than one band.
+   */
+  private static class BandAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final RowBandOperation operation;
+    private final int rowStart;
+    private final int rowEnd;
+    private final int bandHeight;
+
+    BandAction(RowBandOperation operation, int rowStart, int rowEnd, int bandHeight) {
+      this.operation = operation;
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.bandHeight = bandHeight;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.rowEnd - this.rowStart <= this.bandHeight) {
+        this.operation.run(this.rowStart, this.rowEnd);
+        return;
+      }
+      int middle = splitPoint(this.rowStart, this.rowEnd, this.bandHeight);
+      invokeAll(new BandAction(this.operation, this.rowStart, middle, this.bandHeight),
+          new BandAction(this.operation, middle, this.rowEnd, this.bandHeight));
+    }
+  }
+
+  /**
+   * A task that splits a range of rows like {@link BandAction} and merges the results of the two
+   * halves in order.
+   * 
+   * @param <T> the type of the results
+   */
+  private static class BandTask<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final RowBandFunction<T> function;
+    private final BinaryOperator<T> merge;
+    private final int rowStart;
+    private final int rowEnd;
+    private final int bandHeight;
+
+    BandTask(RowBandFunction<T> function, BinaryOperator<T> merge, int rowStart, int rowEnd,
+        int bandHeight) {
+      this.function = function;
+      this.merge = merge;
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.bandHeight = bandHeight;
+    }
+
+    @Override
+    protected T compute() {
+      if (this.rowEnd - this.rowStart <= this.bandHeight) {
+        return this.function.apply(this.rowStart, this.rowEnd);
+      }
+      int middle = splitPoint(this.rowStart, this.rowEnd, this.bandHeight);
+      BandTask<T> upper =
+          new BandTask<T>(this.function, this.merge, this.rowStart, middle, this.bandHeight);
+      BandTask<T> lower =
+          new BandTask<T>(this.function, this.merge, middle, this.rowEnd, this.bandHeight);
+      lower.fork();
+      T upperResult = upper.compute();
+      return this.merge.apply(upperResult, lower.join());
+    }
+  }
+
+  /**
+   * Return the row at which a range of rows is split, so that the upper half holds a whole number
+   * of bands.
+   * 
+   * @param rowStart the first row of the range
+   * @param rowEnd the row after the last row of the range
+   * @param bandHeight the number of rows in each band
+   * @return the first row of the lower half
+   */
+  private static int splitPoint(int rowStart, int rowEnd, int bandHeight) {
+    int bands = (rowEnd - rowStart + bandHeight - 1) / bandHeight;
+    return rowStart + (bands / 2) * bandHeight;
+  }
+}
@@ -0,0 +1,275 @@
+package imageview;
+
+import images.OperationContext;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A runner that applies the operations of the controllers on a worker and publishes their results
+ * on the thread that updates the view, so that a long operation does not freeze the view. The
+ * worker has to run one task at a time, in the order the tasks were submitted, because every task
+ * changes the same model.
+ * 
+ * <p>While tasks are waiting or running, the view shows a progress indicator. Cancelling skips the
+ * tasks that have not started yet, and a task that is already running can check
+ * {@link #isCancelled()} to stop early. The {@link OperationContext} of this runner lets the image
+ * models stop a cancelled operation between groups of rows and fills in the progress bar of the
+ * view. A task submitted with
+ * {@link #submitCoalesced(String, Callable, Consumer)} is dropped if the same task is already
+ * waiting, so holding down a keyboard shortcut does not queue the operation many times.
+ * 
+ * <p>A runner made with the none-argument constructor runs every task and its result right away
+ * on the calling thread.
+ */
+public class BackgroundTaskRunner {
+  private final Executor worker;
+  private final Executor viewUpdater;
+  private final AtomicInteger generation = new AtomicInteger();
+  private final AtomicInteger queuedTasks = new AtomicInteger();
+  private final AtomicInteger progressPercent = new AtomicInteger(-1);
+  private final OperationContext operationContext =
+      new OperationContext(this::progressChanged, this::isCancelled);
+  private volatile int runningGeneration = -1;
+  private volatile ImageView view;
+  private Task<?> lastQueuedTask;
+  private int pendingTasks;
+  private volatile boolean progressShown;
+
+  /**
+   * Constructor for this class that runs every task on the calling thread.
+   */
+  public BackgroundTaskRunner() {
+    this(Runnable::run, Runnable::run);
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param worker the executor running the tasks one at a time
+   * @param viewUpdater the executor running the updates of the view, such as
+   *        SwingUtilities::invokeLater
+   * @throws IllegalArgumentException if any of the executors is null
+   */
+  public BackgroundTaskRunner(Executor worker, Executor viewUpdater)
+      throws IllegalArgumentException {
+    if (worker == null || viewUpdater == null) {
+      throw new IllegalArgumentException(
+          "The arguments passed to the BackgroundTaskRunner constructor are invalid.");
+    }
+    this.worker = worker;
+    this.viewUpdater = viewUpdater;
+  }
+
+  /**
+   * Set the view showing the progress indicator and the errors of the tasks.
+   * 
+   * @param v the view to use
+   */
+  public void setView(ImageView v) {
+    this.view = v;
+  }
+
+  /**
+   * Run a task on the worker and hand its result to a callback on the thread that updates the
+   * view. The callback is not run if the task is cancelled before it starts.
+   * 
+   * @param <T> the type of the result of the task
+   * @param description the description of the task shown with the progress indicator
+   * @param task the task to run
+   * @param onDone the callback receiving the result of the task, or null for none
+   */
+  public <T> void submit(String description, Callable<T> task, Consumer<T> onDone) {
+    this.enqueue(new Task<T>(description, task, onDone), false);
+  }
+
+  /**
+   * Run a task like {@link #submit(String, Callable, Consumer)}, unless the last task submitted has
+   * the same description and has not started yet, in which case the new task is dropped.
+   * 
+   * @param <T> the type of the result of the task
+   * @param description the description of the task, which tells which tasks are the same
+   * @param task the task to run
+   * @param onDone the callback receiving the result of the task, or null for none
+   */
+  public <T> void submitCoalesced(String description, Callable<T> task, Consumer<T> onDone) {
+    this.enqueue(new Task<T>(description, task, onDone), true);
+  }
+
+  /**
+   * Run an update of the view on the thread that updates the view. Tasks use this to show messages
+   * while they are running.
+   * 
+   * @param update the update of the view
+   */
+  public void runOnView(Runnable update) {
+    this.viewUpdater.execute(update);
+  }
+
+  /**
+   * Cancel every task that has been submitted so far. The tasks that have not started are
+   * skipped, and the running task sees {@link #isCancelled()} return true, which stops an operation
+   * of an image model run in the operation context of this runner.
+   */
+  public void cancel() {
+    this.generation.incrementAndGet();
+  }
+
+  /**
+   * Return whether the running task has been cancelled. This can be called from any thread, such
+   * as the threads running the bands of rows of an operation.
+   * 
+   * @return true if the running task has been cancelled, or false if no task is running
+   */
+  public boolean isCancelled() {
+    int running = this.runningGeneration;
+    return running >= 0 && running != this.generation.get();
+  }
+
+  /**
+   * Return the context to run the operations of the image models in, so that they stop when their
+   * task is cancelled and report their progress to the view.
+   * 
+   * @return the operation context of this runner
+   */
+  public OperationContext getOperationContext() {
+    return this.operationContext;
+  }
+
+  /**
+   * Show the progress of the running operation on the view, if the progress indicator is shown.
+   * The view is only updated when the percentage changes.
+   * 
+   * @param rowsDone the number of rows of the current pass that are done
+   * @param totalRows the number of rows of the current pass
+   */
+  private void progressChanged(int rowsDone, int totalRows) {
+    int percent = (int) (100L * rowsDone / Math.max(1, totalRows));
+    if (this.progressShown && this.progressPercent.getAndSet(percent) != percent) {
+      this.viewUpdater.execute(() -> {
+        if (this.view != null) {
+          this.view.updateProgress(percent);
+        }
+      });
+    }
+  }
+
+  /**
+   * Return whether no task is waiting behind the running task. Tasks use this to skip rendering a
+   * preview that the next task would replace right away.
+   * 
+   * @return true if no task is waiting to start
+   */
+  public boolean isLastTask() {
+    return this.queuedTasks.get() == 0;
+  }
+
+  /**
+   * Queue a task on the worker and show the progress indicator if it does not finish right away.
+   * 
+   * @param task the task to queue
+   * @param coalesce whether to drop the task if the same task is waiting
+   */
+  private void enqueue(Task<?> task, boolean coalesce) {
+    synchronized (this) {
+      if (coalesce && this.lastQueuedTask != null
+          && this.lastQueuedTask.description.equals(task.description)) {
+        return;
+      }
+      this.lastQueuedTask = task;
+      this.pendingTasks++;
+    }
+    this.queuedTasks.incrementAndGet();
+    this.worker.execute(task);
+    synchronized (this) {
+      if (this.pendingTasks > 0 && !this.progressShown && this.view != null) {
+        this.progressShown = true;
+        this.progressPercent.set(-1);
+        this.view.showProgress(task.description);
+      }
+    }
+  }
+
+  /**
+   * Mark a task as finished on the thread that updates the view, and hide the progress indicator
+   * once no task is left.
+   */
+  private synchronized void finish() {
+    this.pendingTasks--;
+    if (this.pendingTasks == 0 && this.progressShown) {
+      this.progressShown = false;
+      if (this.view != null) {
+        this.view.hideProgress();
+      }
+    }
+  }
+
+  /**
+   * A task submitted to this runner.
+   * 
+   * @param <T> the type of the result of the task
+   */
+  private class Task<T> implements Runnable {
+    private final String description;
+    private final Callable<T> callable;
+    private final Consumer<T> onDone;
+    private final int taskGeneration;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param description the description of the task
+     * @param callable the work of the task
+     * @param onDone the callback receiving the result of the task, or null for none
+     */
+    Task(String description, Callable<T> callable, Consumer<T> onDone) {
+      this.description = description;
+      this.callable = callable;
+      this.onDone = onDone;
+      this.taskGeneration = generation.get();
+    }
+
+    @Override
+    public void run() {
+      synchronized (BackgroundTaskRunner.this) {
+        if (lastQueuedTask == this) {
+          lastQueuedTask = null;
+        }
+      }
+      queuedTasks.decrementAndGet();
+      if (this.taskGeneration != generation.get()) {
+        viewUpdater.execute(BackgroundTaskRunner.this::finish);
+        return;
+      }
+      T result;
+      runningGeneration = this.taskGeneration;
+      try {
+        result = this.callable.call();
+      } catch (CancellationException e) {
+        // The model keeps the image it had before the cancelled operation
+        viewUpdater.execute(BackgroundTaskRunner.this::finish);
+        return;
+      } catch (Exception e) {
+        viewUpdater.execute(() -> {
+          finish();
+          if (view == null) {
+            throw e instanceof RuntimeException ? (RuntimeException) e
+                : new IllegalStateException(e);
+          }
+          view.showMessage("Error Message", e.getMessage());
+        });
+        return;
+      } finally {
+        runningGeneration = -1;
+      }
+      viewUpdater.execute(() -> {
+        finish();
+        if (this.onDone != null) {
+          this.onDone.accept(result);
+        }
+      });
+    }
+  }
+}
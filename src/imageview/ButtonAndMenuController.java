@@ -1,18 +1,20 @@
 package imageview;
 
 import images.ImageModel;
-import images.ImageUtilities;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.Stack;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * An implementation of the ButtonAndMenuFeatures interface.
+ * An implementation of the ButtonAndMenuFeatures interface. The dialogs are shown on the calling
+ * thread, while the model is only used by the tasks of a background task runner, so that the view
+ * stays responsive while an operation is applied.
  */
 public class ButtonAndMenuController implements ButtonAndMenuFeatures {
-  private ImageModel model;
+  private volatile ImageModel model;
   private ImageView view;
-  private Stack<ImageModel> modelStack;
+  private BackgroundTaskRunner runner = new BackgroundTaskRunner();
 
   /**
    * None-argument constructor for this class.
@@ -31,7 +33,7 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
           "The argument passed to the controller constructor is invalid.");
     }
     this.model = model;
-    modelStack = new Stack<ImageModel>();
+    this.model.setOperationContext(runner.getOperationContext());
   }
 
   /**
@@ -65,9 +67,38 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
     }
     this.view = v;
     this.view.setButtonAndMenuFeatures(this);
+    runner.setView(v);
     view.resetFocus();
   }
 
+  /**
+   * Set the runner applying the operations of this controller. By default every operation is
+   * applied on the calling thread.
+   * 
+   * @param runner the runner to use
+   * @throws IllegalArgumentException if the input runner is null
+   */
+  public void setTaskRunner(BackgroundTaskRunner runner) throws IllegalArgumentException {
+    if (runner == null) {
+      throw new IllegalArgumentException(
+          "The argument passed to the setTaskRunner method is invalid.");
+    }
+    this.runner = runner;
+    runner.setView(view);
+    if (model != null) {
+      model.setOperationContext(runner.getOperationContext());
+    }
+  }
+
+  /**
+   * Cancel the operations that are waiting to be applied and stop the operation that is running.
+   * The image is left as it was before the stopped operation.
+   */
+  @Override
+  public void cancel() {
+    runner.cancel();
+  }
+
   /**
    * Tell the view to provide a JFileChooser to the user for file path, ask the model to load the
    * image and ask the view to show the loaded image.
@@ -81,8 +112,10 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
     }
     String imageFilePath = view.getOpenImageFilePath();
     if (!("".equals(imageFilePath))) {
-      model.loadImage(imageFilePath);
-      view.showImage(ImageUtilities.convertImage(model.getImageData()));
+      runner.submit("Loading " + imageFilePath, () -> {
+        model.loadImage(imageFilePath);
+        return model.getImage();
+      }, image -> view.showImage(image));
     }
   }
 
@@ -97,14 +130,19 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
     if (view == null) {
       return;
     }
-    if (model.getImageData() == null) {
-      view.showMessage("Error Message", "Please load the image first.");
-      return;
-    }
-    String imageFilePath = view.getSaveImageFilePath();
-    if (!("".equals(imageFilePath))) {
-      ImageUtilities.writeImage(model.getImageData(), imageFilePath);
-    }
+    runner.submit("Saving", () -> model.getImageWidth() > 0, loaded -> {
+      if (!loaded) {
+        view.showMessage("Error Message", "Please load the image first.");
+        return;
+      }
+      String imageFilePath = view.getSaveImageFilePath();
+      if (!("".equals(imageFilePath))) {
+        runner.submit("Saving " + imageFilePath, () -> {
+          model.saveImage(imageFilePath);
+          return null;
+        }, null);
+      }
+    });
   }
 
   /**
@@ -121,39 +159,97 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
    */
   @Override
   public void applyImageCropping() {
-    if (model.getImageData() == null) {
-      view.showMessage("Oops", "Please load an image first.");
-      return;
-    }
-    modelStack.push(model);
+    runner.submit("Cropping", () -> {
+      int width = model.getImageWidth();
+      return width == 0 ? null : new int[] {width, model.getImageHeight()};
+    }, size -> {
+      if (size == null) {
+        view.showMessage("Oops", "Please load an image first.");
+        return;
+      }
+      this.cropToSelection(size[0], size[1]);
+    });
+  }
+
+  /**
+   * Crop the image to the rectangle selected on the view, show the cropped image and ask the user
+   * whether to keep it.
+   * 
+   * @param imageWidth the width of the image
+   * @param imageHeight the height of the image
+   */
+  private void cropToSelection(int imageWidth, int imageHeight) {
     // Allow cropping using any two points on the image by setting x, y as the upper left corner of
     // the rectangle
-    int x1 = Math.max(0, Math.min(view.getX1(), model.getImageData()[0].length));
-    int y1 = Math.max(0, Math.min(view.getY1(), model.getImageData().length));
-    int x2 = Math.max(0, Math.min(view.getX2(), model.getImageData()[0].length));
-    int y2 = Math.max(0, Math.min(view.getY2(), model.getImageData().length));
+    int x1 = Math.max(0, Math.min(view.getX1(), imageWidth));
+    int y1 = Math.max(0, Math.min(view.getY1(), imageHeight));
+    int x2 = Math.max(0, Math.min(view.getX2(), imageWidth));
+    int y2 = Math.max(0, Math.min(view.getY2(), imageHeight));
     int x = Math.min(x1, x2);
     int y = Math.min(y1, y2);
     int width = Math.abs(x2 - x1);
     int height = Math.abs(y2 - y1);
 
-    if (width != 0 && height != 0) {
-      model = model.applyImageCropping(x, y, width, height);
-    } else {
+    if (width == 0 || height == 0) {
       view.showMessage("Oops", "Zero cropping width or height. Please try again.");
       return;
     }
 
-    if (model.getImageData() != null) {
-      view.showImage(ImageUtilities.convertImage(model.getImageData()));
-    }
+    AtomicReference<ImageModel> uncropped = new AtomicReference<ImageModel>();
+    runner.submit("Cropping", () -> {
+      uncropped.set(model);
+      model = model.applyImageCropping(x, y, width, height);
+      return this.currentImage();
+    }, image -> {
+      if (image != null) {
+        view.showImage(image);
+      }
+      int option = view.showConfirmDialog("Are you sure you want to crop?");
+      if (option != 0) {
+        // Put back the model from before the crop, which still holds the whole image and its
+        // history, rather than undoing a step the history may not have kept
+        runner.submit("Restoring", () -> {
+          model = uncropped.get();
+          return model.getImage();
+        }, previous -> view.showImage(previous));
+      }
+    });
+  }
 
-    int option = view.showConfirmDialog("Are you sure you want to crop?");
-    if (option != 0) {
-      model = null;
-      model = modelStack.pop();
-      view.showImage(ImageUtilities.convertImage(model.getImageData()));
-    }
+  /**
+   * Undo the last operation applied to the image and show the previous image.
+   */
+  @Override
+  public void undo() {
+    runner.submitCoalesced("Undoing", () -> {
+      if (!model.undo()) {
+        runner.runOnView(() -> view.showMessage("Oops", "There is nothing to undo."));
+        return null;
+      }
+      return this.currentImage();
+    }, image -> {
+      if (image != null) {
+        view.showImage(image);
+      }
+    });
+  }
+
+  /**
+   * Apply again the last operation that was undone and show the image.
+   */
+  @Override
+  public void redo() {
+    runner.submitCoalesced("Redoing", () -> {
+      if (!model.redo()) {
+        runner.runOnView(() -> view.showMessage("Oops", "There is nothing to redo."));
+        return null;
+      }
+      return this.currentImage();
+    }, image -> {
+      if (image != null) {
+        view.showImage(image);
+      }
+    });
   }
 
   /**
@@ -165,73 +261,34 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
   public void applyOperations(String operationCommand) {
     switch (operationCommand) {
       case "blur":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applyBlur();
+        this.applyToLoadedImage(operationCommand, () -> model.applyBlur());
         break;
 
       case "sharpen":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applySharpen();
+        this.applyToLoadedImage(operationCommand, () -> model.applySharpen());
         break;
 
       case "greyscale":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applyGreyscale();
+        this.applyToLoadedImage(operationCommand, () -> model.applyGreyscale());
         break;
 
       case "sepia":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applySepia();
+        this.applyToLoadedImage(operationCommand, () -> model.applySepia());
         break;
 
       case "dither":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applyDither();
+        this.applyToLoadedImage(operationCommand, () -> model.applyDither());
         break;
 
       case "mosaic":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        boolean validInput1 = false;
-        String message1 = "Input the number of seeds: ";
-        String title1 = "Number of seeds: ";
-        // if the user inputs a valid number and clicks the "Confirm" button, apply this mosaic
-        // operation; otherwise, do nothing.
-        while (!validInput1) {
-          String userInput = view.getUserInput(message1, title1);
-          if (userInput == null) {
-            validInput1 = true;
+        runner.submit(operationCommand, () -> model.getImageWidth() > 0, loaded -> {
+          if (!loaded) {
+            view.showMessage("Oops", "Please load an image first.");
           } else {
-            try {
-              int seeds = Integer.parseInt(userInput);
-              if (seeds > 0) {
-                validInput1 = true;
-                model.applyMosaic(seeds);
-              }
-            } catch (NumberFormatException e) {
-              message1 = "The number of seeds should be a positive integer: ";
-            }
+            this.applyMosaic();
           }
-        }
+        });
         break;
-
       case "rainbowH":
         // If the user clicks "Confirm" on the dialog, get a width from the user until the width
         // is valid. If the user clicks "Cancel" on the dialog, do nothing.
@@ -275,7 +332,10 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
                 heightOfRainbowH = Integer.parseInt(inputHeightOfRainbowH);
                 if (heightOfRainbowH >= 7 && widthOfRainbowH >= 1) {
                   validHeightOfRainbowH = true;
-                  model.generateRainbow(widthOfRainbowH, heightOfRainbowH, 0);
+                  int width = widthOfRainbowH;
+                  int height = heightOfRainbowH;
+                  this.applyWhenReady(operationCommand,
+                      () -> model.generateRainbow(width, height, 0));
                 } else {
                   message3 = "Height should be an integer(>6)";
                 }
@@ -328,7 +388,10 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
                 heightOfRainbowV = Integer.parseInt(userInputHeight);
                 if (heightOfRainbowV >= 7 && widthOfRainbowV >= 1) {
                   validInput5 = true;
-                  model.generateRainbow(widthOfRainbowV, heightOfRainbowV, 1);
+                  int width = widthOfRainbowV;
+                  int height = heightOfRainbowV;
+                  this.applyWhenReady(operationCommand,
+                      () -> model.generateRainbow(width, height, 1));
                 } else {
                   message5 = "Height should be an integer(>6)";
                 }
@@ -344,7 +407,6 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
         // If the user clicks "Confirm" on the dialog, get a height from the user until the height
         // is valid. If the user clicks "Cancel" on the dialog, do nothing.
         int[] firstColor = new int[3];
-        int[] secondColor = new int[3];
         int heightOfCheckBoard = 0;
         int numberOfSquares = 0;
         String inputHeightOfCheckBoard = null;
@@ -403,10 +465,13 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
           Color secondColorChosenByUser =
               view.getColorFromUser("Choose the second color for the checkboard");
           if (secondColorChosenByUser != null) {
-            secondColor = new int[] {secondColorChosenByUser.getRed(),
+            int[] firstColorOfBoard = firstColor;
+            int[] secondColorOfBoard = new int[] {secondColorChosenByUser.getRed(),
                 secondColorChosenByUser.getGreen(), secondColorChosenByUser.getBlue()};
-            model.generateCheckerBoard(heightOfCheckBoard, numberOfSquares, firstColor,
-                secondColor);
+            int height = heightOfCheckBoard;
+            int squares = numberOfSquares;
+            this.applyWhenReady(operationCommand, () -> model.generateCheckerBoard(height,
+                squares, firstColorOfBoard, secondColorOfBoard));
           }
         }
         break;
@@ -429,7 +494,9 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
               widthOfNorwayFlag = Integer.parseInt(inputWidthOfNorwayFlag);
               if (widthOfNorwayFlag >= 22) {
                 validWidthOfNorwayFlag = true;
-                model.generateNationalFlagOfNorway(widthOfNorwayFlag);
+                int width = widthOfNorwayFlag;
+                this.applyWhenReady(operationCommand,
+                    () -> model.generateNationalFlagOfNorway(width));
               } else {
                 message8 = "Width should be an integer(>=22). Try again: ";
               }
@@ -458,7 +525,9 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
               widthOfGreeceFlag = Integer.parseInt(inputWidthOfGreeceFlag);
               if (widthOfGreeceFlag >= 27) {
                 validWidthOfGreeceFlag = true;
-                model.generateNationalFlagOfGreece(widthOfGreeceFlag);
+                int width = widthOfGreeceFlag;
+                this.applyWhenReady(operationCommand,
+                    () -> model.generateNationalFlagOfGreece(width));
               } else {
                 message9 = "Width should be an integer(>=27). Try again: ";
               }
@@ -487,7 +556,9 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
               widthOfSwizerlandFlag = Integer.parseInt(inputWidthOfSwizerlandFlag);
               if (widthOfSwizerlandFlag >= 32) {
                 validWidthOfSwizerlandFlag = true;
-                model.generateNationalFlagOfSwizerland(widthOfSwizerlandFlag);
+                int width = widthOfSwizerlandFlag;
+                this.applyWhenReady(operationCommand,
+                    () -> model.generateNationalFlagOfSwizerland(width));
               } else {
                 message10 = "Width should be an integer(>=32). Try again: ";
               }
@@ -499,26 +570,95 @@ public class ButtonAndMenuController implements ButtonAndMenuFeatures {
         break;
 
       case "edgeDetection":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applyEdgeDetection();
+        this.applyToLoadedImage(operationCommand, () -> model.applyEdgeDetection());
         break;
 
       case "greyscaleEnhancement":
-        if (model.getImageData() == null) {
-          view.showMessage("Oops", "Please load an image first.");
-          break;
-        }
-        model.applyGreyscaleEnhancement();
+        this.applyToLoadedImage(operationCommand, () -> model.applyGreyscaleEnhancement());
         break;
 
       default:
         // do nothing here
     }
-    if (model.getImageData() != null) {
-      view.showImage(ImageUtilities.convertImage(model.getImageData()));
+  }
+
+  /**
+   * Ask the user for the number of seeds and apply mosaic to the loaded image.
+   */
+  private void applyMosaic() {
+    boolean validInput1 = false;
+    String message1 = "Input the number of seeds: ";
+    String title1 = "Number of seeds: ";
+    // if the user inputs a valid number and clicks the "Confirm" button, apply this mosaic
+    // operation; otherwise, do nothing.
+    while (!validInput1) {
+      String userInput = view.getUserInput(message1, title1);
+      if (userInput == null) {
+        validInput1 = true;
+      } else {
+        try {
+          int seeds = Integer.parseInt(userInput);
+          if (seeds > 0) {
+            validInput1 = true;
+            this.applyWhenReady("mosaic", () -> model.applyMosaic(seeds));
+          }
+        } catch (NumberFormatException e) {
+          message1 = "The number of seeds should be a positive integer: ";
+        }
+      }
+    }
+  }
+
+  /**
+   * Apply an operation that needs a loaded image and show the changed image. The operation is
+   * dropped if the same operation is already waiting to be applied.
+   * 
+   * @param operationCommand the name of the operation
+   * @param operation the operation to apply to the model
+   */
+  private void applyToLoadedImage(String operationCommand, Runnable operation) {
+    runner.submitCoalesced(operationCommand, () -> {
+      if (model.getImageWidth() == 0) {
+        runner.runOnView(() -> view.showMessage("Oops", "Please load an image first."));
+        return null;
+      }
+      operation.run();
+      return this.currentImage();
+    }, image -> {
+      if (image != null) {
+        view.showImage(image);
+      }
+    });
+  }
+
+  /**
+   * Apply an operation whose arguments have been entered by the user and show the changed image.
+   * 
+   * @param operationCommand the name of the operation
+   * @param operation the operation to apply to the model
+   */
+  private void applyWhenReady(String operationCommand, Runnable operation) {
+    runner.submit(operationCommand, () -> {
+      operation.run();
+      return this.currentImage();
+    }, image -> {
+      if (image != null) {
+        view.showImage(image);
+      }
+    });
+  }
+
+  /**
+   * Return the image of the model to show on the view, or null if there is no image or if another
+   * operation is waiting and would replace the image right away.
+   * 
+   * @return the image to show, or null
+   */
+  private BufferedImage currentImage() {
+    // Only the image that is shown is copied out of the model
+    if (runner.isLastTask() && model.getImageWidth() > 0) {
+      return model.getImage();
     }
+    return null;
   }
 }
@@ -61,4 +61,19 @@ public interface ButtonAndMenuFeatures {
    * @param a batch of operation commands to be applied
    */
   void applyOperations(String operationCommand);
+
+  /**
+   * Undo the last operation applied to the image.
+   */
+  void undo();
+
+  /**
+   * Apply again the last operation that was undone.
+   */
+  void redo();
+
+  /**
+   * Cancel the operations that are waiting to be applied and stop the operation that is running.
+   */
+  void cancel();
 }
@@ -26,6 +26,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SwingConstants;
@@ -45,6 +46,8 @@ public class ConcreteImageView extends JFrame implements ImageView {
   private JMenuItem saveImage;
 
   // Menu items shown under the "Edit" menu
+  private JMenuItem undoMenuItem;
+  private JMenuItem redoMenuItem;
   private JMenuItem blurMenuItem;
   private JMenuItem sharpenMenuItem;
   private JMenuItem greyscaleMenuItem;
@@ -80,6 +83,11 @@ public class ConcreteImageView extends JFrame implements ImageView {
   private JLabel imageLabel;
   private JTextArea textArea;
   private JButton applyScriptButton;
+
+  // Progress of the operations applied in the background
+  private JLabel progressLabel;
+  private JProgressBar progressBar;
+  private JButton cancelButton;
   // Keep track of the status of mouse
   private boolean mouseDragged = false;
   private boolean croppingDone = false;
@@ -115,6 +123,14 @@ public class ConcreteImageView extends JFrame implements ImageView {
     JMenu editMenu = new JMenu("Edit");
     menuBar.add(editMenu);
 
+    undoMenuItem =
+        new JMenuItem("Undo                                                     Ctrl+Z");
+    editMenu.add(undoMenuItem);
+
+    redoMenuItem =
+        new JMenuItem("Redo                                                      Ctrl+Y");
+    editMenu.add(redoMenuItem);
+
     blurMenuItem =
         new JMenuItem("Blur                                                      Ctrl+Shift+B");
     blurMenuItem.setHorizontalTextPosition(SwingConstants.RIGHT);
@@ -250,6 +266,17 @@ public class ConcreteImageView extends JFrame implements ImageView {
     applyScriptButton = new JButton("Apply script");
     buttonPanel2.add(applyScriptButton);
 
+    // Create the progress bar and the "Cancel" button, which are only shown while operations are
+    // applied in the background
+    progressLabel = new JLabel();
+    buttonPanel2.add(progressLabel);
+    progressBar = new JProgressBar();
+    progressBar.setIndeterminate(true);
+    buttonPanel2.add(progressBar);
+    cancelButton = new JButton("Cancel");
+    buttonPanel2.add(cancelButton);
+    this.hideProgress();
+
     setVisible(true);
   }
 
@@ -341,6 +368,8 @@ public class ConcreteImageView extends JFrame implements ImageView {
       }
     });
 
+    undoMenuItem.addActionListener(l -> f.undo());
+    redoMenuItem.addActionListener(l -> f.redo());
     blurMenuItem.addActionListener(l -> f.applyOperations("blur"));
     sharpenMenuItem.addActionListener(l -> f.applyOperations("sharpen"));
     greyscaleMenuItem.addActionListener(l -> f.applyOperations("greyscale"));
@@ -424,6 +453,7 @@ public class ConcreteImageView extends JFrame implements ImageView {
     edgeDetectionButton.addActionListener(l -> f.applyOperations("edgeDetection"));
     greyscaleEnhancementButton.addActionListener(l -> f.applyOperations("greyscaleEnhancement"));
     exitButton.addActionListener(l -> f.exit());
+    cancelButton.addActionListener(l -> f.cancel());
 
     imageCroppingButton.addActionListener(l -> {
       mouseDragged = false;
@@ -492,6 +522,20 @@ public class ConcreteImageView extends JFrame implements ImageView {
 
       @Override
       public void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+          f.cancel();
+        }
+
+        if ((e.getKeyCode() == KeyEvent.VK_Z) && (e.isControlDown() == true)
+            && (e.isShiftDown() == false)) {
+          f.undo();
+        }
+
+        if ((e.getKeyCode() == KeyEvent.VK_Y) && (e.isControlDown() == true)
+            && (e.isShiftDown() == false)) {
+          f.redo();
+        }
+
         if ((e.getKeyCode() == KeyEvent.VK_S) && (e.isControlDown() == true)) {
           try {
             f.saveImage();
@@ -671,7 +715,7 @@ public class ConcreteImageView extends JFrame implements ImageView {
   public String getOpenImageFilePath() {
     JFileChooser imageFilePath = new JFileChooser();
     FileNameExtensionFilter filter =
-        new FileNameExtensionFilter("Images", "jpg", "png", "gif", "bmp");
+        new FileNameExtensionFilter("Images", "jpg", "png", "gif", "bmp", "ppm");
     imageFilePath.setFileFilter(filter);
     int returnState = imageFilePath.showOpenDialog(this);
     if (returnState == JFileChooser.APPROVE_OPTION) {
@@ -712,4 +756,39 @@ public class ConcreteImageView extends JFrame implements ImageView {
   public int showConfirmDialog(String message) {
     return JOptionPane.showConfirmDialog(this, message);
   }
+
+  /**
+   * Show the progress bar and the "Cancel" button while an operation is applied.
+   * 
+   * @param message the description of the operation
+   */
+  @Override
+  public void showProgress(String message) {
+    progressBar.setIndeterminate(true);
+    progressLabel.setText(message);
+    progressLabel.setVisible(true);
+    progressBar.setVisible(true);
+    cancelButton.setVisible(true);
+  }
+
+  /**
+   * Fill the progress bar up to the part of the running operation that is done.
+   * 
+   * @param percent the percentage of the current pass over the image that is done
+   */
+  @Override
+  public void updateProgress(int percent) {
+    progressBar.setIndeterminate(false);
+    progressBar.setValue(percent);
+  }
+
+  /**
+   * Hide the progress bar and the "Cancel" button.
+   */
+  @Override
+  public void hideProgress() {
+    progressLabel.setVisible(false);
+    progressBar.setVisible(false);
+    cancelButton.setVisible(false);
+  }
 }
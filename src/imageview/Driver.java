@@ -2,6 +2,10 @@ package imageview;
 
 import images.ConcreteImageModel;
 import images.ImageModel;
+import images.InstrumentedImageModel;
+import images.OperationMetrics;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
 import script.ScriptController;
 
 /**
@@ -14,10 +18,20 @@ public class Driver {
    * @param args not used
    */
   public static void main(String[] args) {
-    ImageModel model = new ConcreteImageModel();
+    OperationMetrics.installDefault();
+    ImageModel model = new InstrumentedImageModel(new ConcreteImageModel());
     ImageView view = new ConcreteImageView("Image Processor");
     ButtonAndMenuController buttonAndMenuController = new ButtonAndMenuController(model);
     ScriptController textController = new ScriptController(model);
+    // Both controllers share one worker, so the operations and the scripts change the model one at
+    // a time, and the results are shown on the event dispatch thread
+    BackgroundTaskRunner runner = new BackgroundTaskRunner(Executors.newSingleThreadExecutor(r -> {
+      Thread worker = new Thread(r, "image-worker");
+      worker.setDaemon(true);
+      return worker;
+    }), SwingUtilities::invokeLater);
+    buttonAndMenuController.setTaskRunner(runner);
+    textController.setTaskRunner(runner);
     buttonAndMenuController.setView(view);
     textController.setView(view);
   }
@@ -0,0 +1,220 @@
+package imageview;
+
+import images.ConcreteImageModel;
+import images.EditHistory;
+import images.ImageModel;
+import images.InstrumentedImageModel;
+import images.MappedImageModel;
+import images.OperationMetrics;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import script.CompiledScript;
+import script.ParallelScriptExecutor;
+import script.ScriptCompiler;
+import script.ScriptController;
+import script.ScriptExecutionException;
+import script.ScriptListener;
+import script.ScriptSyntaxException;
+
+/**
+ * Main program that applies a script file without a graphical user interface, so that scripts can
+ * run on machines without a display. No preview of the image is rendered. The time taken by every
+ * line is printed, and the program exits with one of the following codes.
+ * 
+ * <ul>
+ * <li>0 if every line of the script was applied.</li>
+ * <li>1 if a line of the script is invalid or names an image that cannot be loaded.</li>
+ * <li>2 if the arguments of the program are invalid.</li>
+ * <li>3 if the script file cannot be read.</li>
+ * <li>4 if applying a line failed, for example because the image could not be saved.</li>
+ * </ul>
+ * 
+ * <p>The arguments are the name of the script file, optionally followed by "--lazy" to record the
+ * operations and only run them when the image is needed. In that case the time of an operation is
+ * counted in the line that needs its result, such as the next save. The parts of the script that
+ * start with a load or a generator are applied at the same time, on as many threads as there are
+ * processors unless "--jobs" is followed by another number. The lines are still reported, and the
+ * files still saved, in the order of the script, so a failing line leaves the same files as it
+ * does with "--jobs 1". With "--mapped" the images are kept in memory-mapped scratch files
+ * instead of the heap, so that images larger than the heap can be processed, and "--lazy" has no
+ * effect.
+ */
+public class HeadlessDriver {
+  /**
+   * The exit code when every line of the script was applied.
+   */
+  public static final int EXIT_SUCCESS = 0;
+
+  /**
+   * The exit code when a line of the script is invalid.
+   */
+  public static final int EXIT_SCRIPT_ERROR = 1;
+
+  /**
+   * The exit code when the arguments of the program are invalid.
+   */
+  public static final int EXIT_USAGE_ERROR = 2;
+
+  /**
+   * The exit code when the script file cannot be read.
+   */
+  public static final int EXIT_READ_ERROR = 3;
+
+  /**
+   * The exit code when applying a line failed.
+   */
+  public static final int EXIT_EXECUTION_ERROR = 4;
+
+  /**
+   * Starting method for applying a script without a graphical user interface.
+   * 
+   * @param args the name of the script file, optionally followed by "--lazy", "--mapped" and
+   *        "--jobs" with the number of segments to apply at the same time
+   */
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    OperationMetrics.installDefault();
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Apply the script file named by the arguments and return the exit code.
+   * 
+   * @param args the name of the script file, optionally followed by "--lazy", "--mapped" and
+   *        "--jobs" with the number of segments to apply at the same time
+   * @param out the stream the timings are printed to
+   * @param err the stream the errors are printed to
+   * @return the exit code
+   */
+  public static int run(String[] args, PrintStream out, PrintStream err) {
+    String scriptFile = null;
+    boolean lazy = false;
+    boolean mapped = false;
+    int jobs = Runtime.getRuntime().availableProcessors();
+    boolean valid = args.length > 0;
+    for (int i = 0; i < args.length && valid; i++) {
+      if ("--lazy".equals(args[i])) {
+        lazy = true;
+      } else if ("--mapped".equals(args[i])) {
+        mapped = true;
+      } else if ("--jobs".equals(args[i]) && i + 1 < args.length) {
+        try {
+          jobs = Integer.parseInt(args[++i]);
+          valid = jobs > 0;
+        } catch (NumberFormatException e) {
+          valid = false;
+        }
+      } else if (scriptFile == null && !args[i].startsWith("--")) {
+        scriptFile = args[i];
+      } else {
+        valid = false;
+      }
+    }
+    if (!valid || scriptFile == null) {
+      err.println("Usage: java imageview.HeadlessDriver script_file [--lazy] [--mapped] "
+          + "[--jobs number]");
+      return EXIT_USAGE_ERROR;
+    }
+
+    String script;
+    try {
+      script = new String(Files.readAllBytes(Paths.get(scriptFile)), StandardCharsets.UTF_8);
+    } catch (IOException | RuntimeException e) {
+      err.println("Cannot read the script file " + scriptFile + ": " + e.getMessage());
+      return EXIT_READ_ERROR;
+    }
+
+    TimingListener listener = new TimingListener(out, err);
+    CompiledScript compiledScript;
+    try {
+      compiledScript = ScriptCompiler.compile(script);
+    } catch (ScriptSyntaxException e) {
+      listener.scriptStopped(e.getLineNumber(), e.getTitle(), e.getMessage());
+      return EXIT_SCRIPT_ERROR;
+    }
+
+    boolean lazyModels = lazy;
+    boolean mappedModels = mapped;
+    long startTime = System.nanoTime();
+    try {
+      if (jobs == 1) {
+        ScriptController controller = new ScriptController(createModel(lazyModels, mappedModels));
+        controller.setScriptListener(listener);
+        controller.applyScript(compiledScript);
+      } else {
+        new ParallelScriptExecutor(() -> createModel(lazyModels, mappedModels), jobs,
+            Runtime.getRuntime().maxMemory() / 2).execute(compiledScript, listener);
+      }
+    } catch (ScriptExecutionException e) {
+      err.println("Failed on line " + e.getLineNumber() + ": " + e.getMessage());
+      return EXIT_EXECUTION_ERROR;
+    } catch (RuntimeException e) {
+      err.println("Failed: " + e.getMessage());
+      return EXIT_EXECUTION_ERROR;
+    }
+    if (!listener.finished) {
+      return EXIT_SCRIPT_ERROR;
+    }
+    out.println(String.format("%d lines applied in %.3f ms", listener.lineCount,
+        (System.nanoTime() - startTime) / 1e6));
+    return EXIT_SUCCESS;
+  }
+
+  /**
+   * Return a new image model for applying a script. A script cannot be undone without a display,
+   * so the model keeps no history, and its operations are measured in the default metrics.
+   * 
+   * @param lazy whether the model records its operations and runs them when the image is needed
+   * @param mapped whether the model keeps its image in a memory-mapped scratch file
+   * @return the new image model
+   */
+  private static ImageModel createModel(boolean lazy, boolean mapped) {
+    if (mapped) {
+      return new InstrumentedImageModel(new MappedImageModel());
+    }
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.setLazy(lazy);
+    model.setEditHistory(new EditHistory(0));
+    return new InstrumentedImageModel(model);
+  }
+
+  /**
+   * A script listener that prints the time taken by every line and the errors.
+   */
+  private static class TimingListener implements ScriptListener {
+    private final PrintStream out;
+    private final PrintStream err;
+    private boolean finished;
+    private int lineCount;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param out the stream the timings are printed to
+     * @param err the stream the errors are printed to
+     */
+    TimingListener(PrintStream out, PrintStream err) {
+      this.out = out;
+      this.err = err;
+    }
+
+    @Override
+    public void lineApplied(int lineNumber, String line, long elapsedNanos) {
+      out.println(String.format("%4d  %10.3f ms  %s", lineNumber, elapsedNanos / 1e6, line));
+    }
+
+    @Override
+    public void scriptStopped(int lineNumber, String title, String message) {
+      err.println(title + ": " + message);
+    }
+
+    @Override
+    public void scriptFinished(int lineCount) {
+      this.finished = true;
+      this.lineCount = lineCount;
+    }
+  }
+}
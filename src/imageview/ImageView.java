@@ -109,6 +109,25 @@ public interface ImageView {
    */
   public int showConfirmDialog(String message);
 
+  /**
+   * Show that an operation is being applied in the background.
+   * 
+   * @param message the description of the operation
+   */
+  public void showProgress(String message);
+
+  /**
+   * Show how far the running operation has got.
+   * 
+   * @param percent the percentage of the current pass over the image that is done
+   */
+  public void updateProgress(int percent);
+
+  /**
+   * Hide the progress shown by showProgress once no operation is left.
+   */
+  public void hideProgress();
+
   /**
    * Make the frame focusable and make request that this frame gets the focus.
    */
@@ -0,0 +1,95 @@
+package imageview;
+
+import images.StreamingPipeline;
+import java.io.PrintStream;
+
+/**
+ * Main program that filters an image too large for the memory, reading and writing it a strip of
+ * rows at a time. The image is read from a binary PPM file and written to another one, and the
+ * operations are blur, sharpen, greyscale, sepia and edgeDetection, applied in the order given.
+ * The program exits with one of the following codes.
+ * 
+ * <ul>
+ * <li>0 if the image was written.</li>
+ * <li>2 if the arguments of the program are invalid.</li>
+ * <li>4 if the image could not be read or written.</li>
+ * </ul>
+ * 
+ * <p>The arguments are the names of the input and output files followed by the operations, and
+ * optionally by "--strip" with the number of rows read at a time.
+ */
+public class StreamingDriver {
+  /**
+   * The exit code when the image was written.
+   */
+  public static final int EXIT_SUCCESS = 0;
+
+  /**
+   * The exit code when the arguments of the program are invalid.
+   */
+  public static final int EXIT_USAGE_ERROR = 2;
+
+  /**
+   * The exit code when the image could not be read or written.
+   */
+  public static final int EXIT_EXECUTION_ERROR = 4;
+
+  /**
+   * Starting method for filtering an image a strip at a time.
+   * 
+   * @param args the names of the input and output files, the operations, and optionally
+   *        "--strip" with the number of rows read at a time
+   */
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Filter the image named by the arguments and return the exit code.
+   * 
+   * @param args the names of the input and output files, the operations, and optionally
+   *        "--strip" with the number of rows read at a time
+   * @param out the stream the time taken is printed to
+   * @param err the stream the errors are printed to
+   * @return the exit code
+   */
+  public static int run(String[] args, PrintStream out, PrintStream err) {
+    StreamingPipeline pipeline = new StreamingPipeline();
+    String inputFile = null;
+    String outputFile = null;
+    boolean valid = true;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if ("--strip".equals(args[i]) && i + 1 < args.length) {
+          pipeline.setStripRows(Integer.parseInt(args[++i]));
+        } else if (inputFile == null) {
+          inputFile = args[i];
+        } else if (outputFile == null) {
+          outputFile = args[i];
+        } else {
+          pipeline.add(args[i]);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      valid = false;
+    }
+    if (!valid || outputFile == null) {
+      err.println("Usage: java imageview.StreamingDriver input.ppm output.ppm operation... "
+          + "[--strip rows]");
+      return EXIT_USAGE_ERROR;
+    }
+
+    long startTime = System.nanoTime();
+    try {
+      pipeline.run(inputFile, outputFile);
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      return EXIT_EXECUTION_ERROR;
+    }
+    out.println(String.format("%s written in %.3f ms with %d passes over %s", outputFile,
+        (System.nanoTime() - startTime) / 1e6, pipeline.countPasses(), inputFile));
+    return EXIT_SUCCESS;
+  }
+}
@@ -0,0 +1,44 @@
+package script;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A script that has been parsed and checked, held as a list of commands. A compiled script cannot
+ * be changed, so it can be kept and applied again to as many images as needed.
+ */
+public class CompiledScript {
+  private final List<ScriptCommand> commands;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param commands the commands of the script in the order of their lines
+   * @throws IllegalArgumentException if the commands or one of them are null
+   */
+  public CompiledScript(List<ScriptCommand> commands) throws IllegalArgumentException {
+    if (commands == null || commands.contains(null)) {
+      throw new IllegalArgumentException("The commands of a script should not be null.");
+    }
+    this.commands = Collections.unmodifiableList(new ArrayList<ScriptCommand>(commands));
+  }
+
+  /**
+   * Return the commands of this script.
+   * 
+   * @return the commands in the order of their lines, which cannot be changed
+   */
+  public List<ScriptCommand> getCommands() {
+    return commands;
+  }
+
+  /**
+   * Return the number of commands in this script.
+   * 
+   * @return the number of commands
+   */
+  public int size() {
+    return commands.size();
+  }
+}
@@ -0,0 +1,484 @@
+package script;
+
+import images.ImageInfo;
+import images.ImageModel;
+import images.ImageUtilities;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * An executor that applies the independent parts of a compiled script at the same time. A script
+ * is split into segments that start with a command replacing the whole image, that is a load or a
+ * generator, and every segment is applied to its own image model on a pool with a fixed number of
+ * threads.
+ * 
+ * <ul>
+ * <li>A segment saves its images to files next to the ones named by the script, and they are only
+ * renamed to the names of the script once every earlier segment is done, so files are written in
+ * the order of the script.</li>
+ * <li>A segment that loads a file saved by an earlier segment waits until that file is renamed.
+ * </li>
+ * <li>A segment only starts when the memory it is estimated to use fits in the memory budget
+ * together with the segments already running. A segment larger than the budget runs alone.</li>
+ * <li>The listener is told about the lines in the order of the script, as if the segments ran one
+ * after another. The first segment that fails stops the script, and the segments after it that
+ * have not started yet are skipped. As with a script applied line by line, the files saved before
+ * the failing line are kept and none of the files saved after it are, even by segments that were
+ * already running.</li>
+ * </ul>
+ */
+public class ParallelScriptExecutor {
+  /**
+   * The number of bytes of memory a pixel is estimated to need while a segment runs, which covers
+   * the pixels of the image, the result of an operation and the scratch memory of the operation.
+   */
+  private static final long BYTES_PER_PIXEL = 16;
+
+  private final Supplier<ImageModel> modelFactory;
+  private final int threads;
+  private final long memoryBudget;
+  private long memoryInUse;
+
+  /**
+   * A constructor that uses one thread per available processor and half of the maximum memory of
+   * the virtual machine.
+   * 
+   * @param modelFactory the factory creating the image model of every segment
+   * @throws IllegalArgumentException if the factory is null
+   */
+  public ParallelScriptExecutor(Supplier<ImageModel> modelFactory)
+      throws IllegalArgumentException {
+    this(modelFactory, Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().maxMemory() / 2);
+  }
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param modelFactory the factory creating the image model of every segment
+   * @param threads the largest number of segments applied at the same time
+   * @param memoryBudget the number of bytes the segments applied at the same time may use
+   * @throws IllegalArgumentException if the factory is null or the threads or the budget are not
+   *         positive
+   */
+  public ParallelScriptExecutor(Supplier<ImageModel> modelFactory, int threads,
+      long memoryBudget) throws IllegalArgumentException {
+    if (modelFactory == null || threads < 1 || memoryBudget < 1) {
+      throw new IllegalArgumentException(
+          "The arguments passed to the ParallelScriptExecutor constructor are invalid.");
+    }
+    this.modelFactory = modelFactory;
+    this.threads = threads;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Split a compiled script into segments that each start with a load or a generator. Commands
+   * before the first load or generator form a segment of their own.
+   * 
+   * @param script the compiled script
+   * @return the segments in the order of the script
+   * @throws IllegalArgumentException if the script is null
+   */
+  public static List<CompiledScript> split(CompiledScript script) throws IllegalArgumentException {
+    if (script == null) {
+      throw new IllegalArgumentException("The argument passed to the split method is invalid.");
+    }
+    List<CompiledScript> segments = new ArrayList<CompiledScript>();
+    List<ScriptCommand> segment = new ArrayList<ScriptCommand>();
+    for (ScriptCommand command : script.getCommands()) {
+      if (startsSegment(command) && !segment.isEmpty()) {
+        segments.add(new CompiledScript(segment));
+        segment = new ArrayList<ScriptCommand>();
+      }
+      segment.add(command);
+    }
+    if (!segment.isEmpty()) {
+      segments.add(new CompiledScript(segment));
+    }
+    return segments;
+  }
+
+  /**
+   * Apply a compiled script and tell a listener about its lines in the order of the script.
+   * 
+   * @param script the compiled script
+   * @param listener the listener told about the lines, or null for none
+   * @throws IllegalArgumentException if the script is null
+   * @throws RuntimeException if applying a line threw an exception, which is thrown again after
+   *         the lines before it are reported
+   */
+  public void execute(CompiledScript script, ScriptListener listener)
+      throws IllegalArgumentException {
+    List<CompiledScript> segments = split(script);
+    List<Future<RecordingListener>> results = new ArrayList<Future<RecordingListener>>();
+    List<CountDownLatch> renamed = new ArrayList<CountDownLatch>();
+    AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+    try {
+      for (int k = 0; k < segments.size(); k++) {
+        List<CountDownLatch> dependencies = new ArrayList<CountDownLatch>();
+        for (int j = 0; j < k; j++) {
+          if (dependsOn(segments.get(k), segments.get(j))) {
+            dependencies.add(renamed.get(j));
+          }
+        }
+        int index = k;
+        CompiledScript segment = stage(segments.get(k));
+        renamed.add(new CountDownLatch(1));
+        results.add(executor.submit(
+            () -> this.applySegment(index, segment, dependencies, firstFailure)));
+      }
+
+      for (int k = 0; k < results.size(); k++) {
+        RecordingListener recording;
+        try {
+          recording = results.get(k).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("A segment of the script failed.", e.getCause());
+        }
+        rename(segments.get(k), recording);
+        renamed.get(k).countDown();
+        if (!recording.replay(listener)) {
+          return;
+        }
+      }
+      if (listener != null) {
+        listener.scriptFinished(script.size());
+      }
+    } finally {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // Only the files of the lines that were reported have been renamed
+      for (CompiledScript segment : segments) {
+        for (ScriptCommand command : segment.getCommands()) {
+          if (command.getType() == ScriptCommand.Type.SAVE) {
+            try {
+              Files.deleteIfExists(stagedFile(command));
+            } catch (IOException e) {
+              // the file is left behind, which does not change the result of the script
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Apply one segment of a script to a new image model once the segments it depends on are done
+   * and its memory fits in the budget.
+   * 
+   * @param index the index of the segment
+   * @param segment the commands of the segment
+   * @param dependencies the signals that the files this segment loads have been renamed
+   * @param firstFailure the index of the first segment that failed so far
+   * @return the lines applied by the segment and how it ended
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  private RecordingListener applySegment(int index, CompiledScript segment,
+      List<CountDownLatch> dependencies, AtomicInteger firstFailure)
+      throws InterruptedException {
+    RecordingListener recording = new RecordingListener();
+    for (CountDownLatch dependency : dependencies) {
+      // A failure before the dependency stops the script, which interrupts this wait
+      dependency.await();
+    }
+    if (firstFailure.get() < index) {
+      return recording;
+    }
+
+    long bytes = Math.min(estimateMemory(segment.getCommands().get(0)), memoryBudget);
+    this.acquireMemory(bytes);
+    try {
+      ScriptController controller = new ScriptController(modelFactory.get());
+      controller.setScriptListener(recording);
+      controller.applyScript(segment);
+    } catch (RuntimeException e) {
+      recording.exception = e;
+    } finally {
+      this.releaseMemory(bytes);
+    }
+    if (recording.exception != null || recording.stopped) {
+      firstFailure.accumulateAndGet(index, Math::min);
+    }
+    return recording;
+  }
+
+  /**
+   * Wait until a number of bytes fits in the memory budget and reserve them.
+   * 
+   * @param bytes the number of bytes to reserve
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  private synchronized void acquireMemory(long bytes) throws InterruptedException {
+    while (memoryInUse > 0 && memoryInUse + bytes > memoryBudget) {
+      this.wait();
+    }
+    memoryInUse += bytes;
+  }
+
+  /**
+   * Give back a number of reserved bytes.
+   * 
+   * @param bytes the number of bytes to give back
+   */
+  private synchronized void releaseMemory(long bytes) {
+    memoryInUse -= bytes;
+    this.notifyAll();
+  }
+
+  /**
+   * Return whether a command replaces the whole image and so starts a new segment.
+   * 
+   * @param command the command
+   * @return true if the command is a load or a generator
+   */
+  private static boolean startsSegment(ScriptCommand command) {
+    switch (command.getType()) {
+      case LOAD:
+      case HORIZONTAL_RAINBOW:
+      case VERTICAL_RAINBOW:
+      case CHECKERBOARD:
+      case NORWAY:
+      case GREECE:
+      case SWIZERLAND:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Return whether a segment has to wait for an earlier segment because it loads a file the
+   * earlier one saves. Saves need no waiting, because the saved files are renamed in the order of
+   * the script, after the earlier segments have loaded their files.
+   * 
+   * @param later the later segment
+   * @param earlier the earlier segment
+   * @return true if the later segment has to wait
+   */
+  private static boolean dependsOn(CompiledScript later, CompiledScript earlier) {
+    Set<Path> earlierSaves = files(earlier, ScriptCommand.Type.SAVE);
+    for (Path path : files(later, ScriptCommand.Type.LOAD)) {
+      if (earlierSaves.contains(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return a copy of a segment that saves its images to the staged files of its saves.
+   * 
+   * @param segment the segment
+   * @return the segment with its saves redirected
+   */
+  private static CompiledScript stage(CompiledScript segment) {
+    List<ScriptCommand> commands = new ArrayList<ScriptCommand>();
+    for (ScriptCommand command : segment.getCommands()) {
+      if (command.getType() == ScriptCommand.Type.SAVE) {
+        commands.add(new ScriptCommand(command.getType(), command.getLineNumber(),
+            command.getLine(), stagedFile(command).toString()));
+      } else {
+        commands.add(command);
+      }
+    }
+    return new CompiledScript(commands);
+  }
+
+  /**
+   * Rename the staged files of the saves a segment applied to the files named by the script, in
+   * the order of the lines.
+   * 
+   * @param segment the segment, with the files named by the script
+   * @param recording the lines applied by the segment
+   * @throws ScriptExecutionException if a file cannot be renamed
+   */
+  private static void rename(CompiledScript segment, RecordingListener recording)
+      throws ScriptExecutionException {
+    Set<Integer> applied = new HashSet<Integer>();
+    for (AppliedLine line : recording.lines) {
+      applied.add(line.lineNumber);
+    }
+    for (ScriptCommand command : segment.getCommands()) {
+      if (command.getType() == ScriptCommand.Type.SAVE
+          && applied.contains(command.getLineNumber())) {
+        try {
+          Files.move(stagedFile(command), Paths.get(command.getFileName()),
+              StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+          throw new ScriptExecutionException(command.getLineNumber(),
+              new IllegalArgumentException("The file " + command.getFileName()
+                  + " could not be written."));
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the file a save is written to before it is renamed. It is next to the file named by
+   * the script, so that renaming it does not copy it, and it ends with the same extension, so that
+   * it is written in the same format.
+   * 
+   * @param save the save command
+   * @return the staged file
+   */
+  private static Path stagedFile(ScriptCommand save) {
+    Path path = Paths.get(save.getFileName()).toAbsolutePath().normalize();
+    return path.resolveSibling("." + save.getLineNumber() + "." + path.getFileName());
+  }
+
+  /**
+   * Return the files a segment loads or saves.
+   * 
+   * @param segment the segment
+   * @param type LOAD for the files it loads or SAVE for the files it saves
+   * @return the absolute paths of the files
+   */
+  private static Set<Path> files(CompiledScript segment, ScriptCommand.Type type) {
+    Set<Path> paths = new HashSet<Path>();
+    for (ScriptCommand command : segment.getCommands()) {
+      if (command.getType() == type) {
+        paths.add(Paths.get(command.getFileName()).toAbsolutePath().normalize());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Return the number of bytes a segment is estimated to use from its first command. The image
+   * only gets smaller after that, when it is cropped.
+   * 
+   * @param command the first command of the segment
+   * @return the estimated number of bytes, or 0 if the segment has no image to start with
+   */
+  private static long estimateMemory(ScriptCommand command) {
+    long pixels;
+    switch (command.getType()) {
+      case LOAD:
+        try {
+          ImageInfo info = ImageUtilities.probe(Paths.get(command.getFileName()));
+          pixels = (long) info.getWidth() * info.getHeight();
+        } catch (IllegalArgumentException e) {
+          // The load is going to fail and report the missing file
+          pixels = 0;
+        }
+        break;
+      case HORIZONTAL_RAINBOW:
+      case VERTICAL_RAINBOW:
+        pixels = (long) command.getArgument(0) * command.getArgument(1);
+        break;
+      case CHECKERBOARD:
+      case NORWAY:
+      case GREECE:
+      case SWIZERLAND:
+        // These images are at most as tall as they are wide, and rounding their size to a whole
+        // number of squares makes them at most half as wide again
+        long side = command.getArgument(0) * 3L / 2;
+        pixels = side * side;
+        break;
+      default:
+        pixels = 0;
+        break;
+    }
+    return pixels * BYTES_PER_PIXEL;
+  }
+
+  /**
+   * A script listener that records the lines applied by a segment so that they can be reported
+   * later in the order of the script.
+   */
+  private static class RecordingListener implements ScriptListener {
+    private final List<AppliedLine> lines = new ArrayList<AppliedLine>();
+    private boolean stopped;
+    private int stopLine;
+    private String stopTitle;
+    private String stopMessage;
+    private RuntimeException exception;
+
+    @Override
+    public void lineApplied(int lineNumber, String line, long elapsedNanos) {
+      lines.add(new AppliedLine(lineNumber, line, elapsedNanos));
+    }
+
+    @Override
+    public void scriptStopped(int lineNumber, String title, String message) {
+      this.stopped = true;
+      this.stopLine = lineNumber;
+      this.stopTitle = title;
+      this.stopMessage = message;
+    }
+
+    @Override
+    public void scriptFinished(int lineCount) {
+      // the whole script is finished only when every segment is
+    }
+
+    /**
+     * Tell a listener about the recorded lines and how the segment ended.
+     * 
+     * @param listener the listener, or null for none
+     * @return true if the segment applied all of its lines
+     * @throws RuntimeException if applying a line of the segment threw an exception
+     */
+    boolean replay(ScriptListener listener) {
+      if (listener != null) {
+        for (AppliedLine line : lines) {
+          listener.lineApplied(line.lineNumber, line.line, line.elapsedNanos);
+        }
+        if (stopped) {
+          listener.scriptStopped(stopLine, stopTitle, stopMessage);
+        }
+      }
+      if (exception != null) {
+        throw exception;
+      }
+      return !stopped;
+    }
+  }
+
+  /**
+   * A line applied by a segment and the time it took.
+   */
+  private static class AppliedLine {
+    private final int lineNumber;
+    private final String line;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor for this class.
+     * 
+     * @param lineNumber the number of the line
+     * @param line the text of the line
+     * @param elapsedNanos the time taken to apply the line, in nanoseconds
+     */
+    AppliedLine(int lineNumber, String line, long elapsedNanos) {
+      this.lineNumber = lineNumber;
+      this.line = line;
+      this.elapsedNanos = elapsedNanos;
+    }
+  }
+}
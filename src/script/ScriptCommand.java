@@ -0,0 +1,103 @@
+package script;
+
+/**
+ * One command of a compiled script. A command keeps the number and the text of the line it was
+ * compiled from, so that errors found while it is applied can point back to the script.
+ */
+public class ScriptCommand {
+  /**
+   * The kinds of commands a script can contain.
+   */
+  public enum Type {
+    LOAD, SAVE, BLUR, GAUSSIAN_BLUR, SHARPEN, GREYSCALE, SEPIA, DITHER, MOSAIC, EDGE_DETECTION,
+    GREYSCALE_ENHANCEMENT, IMAGE_CROPPING, HORIZONTAL_RAINBOW, VERTICAL_RAINBOW, CHECKERBOARD,
+    NORWAY, GREECE, SWIZERLAND
+  }
+
+  private final Type type;
+  private final int lineNumber;
+  private final String line;
+  private final String fileName;
+  private final int[] arguments;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param type the kind of this command
+   * @param lineNumber the number of the line this command was compiled from, starting from 1
+   * @param line the text of the line this command was compiled from
+   * @param fileName the name of the file this command loads or saves, or null for none
+   * @param arguments the integer arguments of this command
+   * @throws IllegalArgumentException if the type, the line or the arguments are null
+   */
+  public ScriptCommand(Type type, int lineNumber, String line, String fileName, int... arguments)
+      throws IllegalArgumentException {
+    if (type == null || line == null || arguments == null) {
+      throw new IllegalArgumentException("The type, line and arguments should not be null.");
+    }
+    this.type = type;
+    this.lineNumber = lineNumber;
+    this.line = line;
+    this.fileName = fileName;
+    this.arguments = arguments.clone();
+  }
+
+  /**
+   * Return the kind of this command.
+   * 
+   * @return the kind of this command
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Return the number of the line this command was compiled from.
+   * 
+   * @return the number of the line, starting from 1
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Return the text of the line this command was compiled from.
+   * 
+   * @return the text of the line
+   */
+  public String getLine() {
+    return line;
+  }
+
+  /**
+   * Return the name of the file this command loads or saves.
+   * 
+   * @return the name of the file, or null if this command does not load or save
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Return the number of integer arguments of this command.
+   * 
+   * @return the number of integer arguments
+   */
+  public int getArgumentCount() {
+    return arguments.length;
+  }
+
+  /**
+   * Return one integer argument of this command.
+   * 
+   * @param index the index of the argument, starting from 0
+   * @return the argument
+   * @throws IllegalArgumentException if the index is out of range
+   */
+  public int getArgument(int index) throws IllegalArgumentException {
+    if (index < 0 || index >= arguments.length) {
+      throw new IllegalArgumentException("The command has no argument " + index + ".");
+    }
+    return arguments[index];
+  }
+}
@@ -0,0 +1,276 @@
+package script;
+
+import images.Kernel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * A compiler that parses a whole script into a list of checked commands before any of them is
+ * applied, so that a mistake on any line is reported before an image is changed. Every number is
+ * parsed once, and the commands keep the line they came from.
+ * 
+ * <p>Checks that depend on the image, such as whether a cropping rectangle fits inside the image,
+ * can only be made when the command is applied.
+ */
+public class ScriptCompiler {
+  private static final String CHECKERBOARD_FORMAT = "checkboard height(positive integer>0) "
+      + "number_of_squares(positive integer>0) " + "red_value_of_first_color(0-255) "
+      + "green_value_of_first_color(0-255) " + "blue_value_of_first_color(0-255) "
+      + "red_value_of_second_color(0-255) " + "green_value_of_second_color(0-255) "
+      + "blue_value_of_second_color(0-255)";
+
+  /**
+   * Compile a script into a list of commands.
+   * 
+   * @param script the text of the script, one command per line
+   * @return the compiled script
+   * @throws ScriptSyntaxException if the script is empty or a line of the script is invalid
+   */
+  public static CompiledScript compile(String script) throws ScriptSyntaxException {
+    if (script == null || "".equals(script)) {
+      throw new ScriptSyntaxException(0, "Error message", "The script is empty.");
+    }
+
+    List<ScriptCommand> commands = new ArrayList<ScriptCommand>();
+    int lineCount = 0;
+    try (Scanner in = new Scanner(script)) {
+      while (in.hasNext()) {
+        lineCount++;
+        commands.add(compileLine(lineCount, in.nextLine()));
+      }
+    }
+    return new CompiledScript(commands);
+  }
+
+  /**
+   * Compile one line of a script into a command.
+   * 
+   * @param lineNumber the number of the line, starting from 1
+   * @param line the text of the line
+   * @return the command of the line
+   * @throws ScriptSyntaxException if the line is invalid
+   */
+  private static ScriptCommand compileLine(int lineNumber, String line)
+      throws ScriptSyntaxException {
+    String[] words = line.split(" ");
+    switch (words[0].toUpperCase()) {
+      case "LOAD":
+        if (words.length != 2) {
+          throw error(lineNumber, "Should be: load filename");
+        }
+        if (!hasImageExtension(words[1])) {
+          throw error(lineNumber,
+              "Format of the image should be \"jpg\" or \"png\" or \"gif\" or \"bmp\" or \"ppm\"");
+        }
+        return new ScriptCommand(ScriptCommand.Type.LOAD, lineNumber, line, words[1]);
+
+      case "SAVE":
+        if (words.length != 2 || !hasImageExtension(words[1])) {
+          throw error(lineNumber, "Should be: save filename(example.jpg)");
+        }
+        return new ScriptCommand(ScriptCommand.Type.SAVE, lineNumber, line, words[1]);
+
+      case "BLUR":
+        return compileOperation(ScriptCommand.Type.BLUR, lineNumber, line, words, "blur");
+
+      case "GAUSSIANBLUR": {
+        String format = "Should be: gaussianBlur radius(an integer from 1 to "
+            + Kernel.MAX_GAUSSIAN_RADIUS + ")";
+        int[] arguments = parseArguments(lineNumber, words, 2, format);
+        if (arguments[0] < 1 || arguments[0] > Kernel.MAX_GAUSSIAN_RADIUS) {
+          throw error(lineNumber, format);
+        }
+        return new ScriptCommand(ScriptCommand.Type.GAUSSIAN_BLUR, lineNumber, line, null,
+            arguments);
+      }
+
+      case "SHARPEN":
+        return compileOperation(ScriptCommand.Type.SHARPEN, lineNumber, line, words, "sharpen");
+
+      case "GREYSCALE":
+        return compileOperation(ScriptCommand.Type.GREYSCALE, lineNumber, line, words,
+            "greyscale");
+
+      case "SEPIA":
+        return compileOperation(ScriptCommand.Type.SEPIA, lineNumber, line, words, "sepia");
+
+      case "DITHER":
+        return compileOperation(ScriptCommand.Type.DITHER, lineNumber, line, words, "dither");
+
+      case "EDGEDETECTION":
+        return compileOperation(ScriptCommand.Type.EDGE_DETECTION, lineNumber, line, words,
+            "edge detection");
+
+      case "GREYSCALEENHANCEMENT":
+        return compileOperation(ScriptCommand.Type.GREYSCALE_ENHANCEMENT, lineNumber, line, words,
+            "greyscale enhancement");
+
+      case "MOSAIC": {
+        String format = "Should be: mosaic number_of_seeds(a positive integer)";
+        int[] arguments = parseArguments(lineNumber, words, 2, format);
+        if (arguments[0] < 1) {
+          throw error(lineNumber, format);
+        }
+        return new ScriptCommand(ScriptCommand.Type.MOSAIC, lineNumber, line, null, arguments);
+      }
+
+      case "RAINBOWH": {
+        if (words.length != 3) {
+          throw error(lineNumber,
+              "Should be: rainbowH width(positive integer) height(positive integer)");
+        }
+        String format = "Should be: rainbowH width(positive integer) height(positive integer>6)";
+        int[] arguments = parseArguments(lineNumber, words, 3, format);
+        if (arguments[0] < 1 || arguments[1] < 7) {
+          throw error(lineNumber, format);
+        }
+        return new ScriptCommand(ScriptCommand.Type.HORIZONTAL_RAINBOW, lineNumber, line, null,
+            arguments);
+      }
+
+      case "RAINBOWV": {
+        String format = "Should be: rainbowV width(positive integer>6) height(positive integer)";
+        int[] arguments = parseArguments(lineNumber, words, 3, format);
+        if (arguments[0] < 7 || arguments[1] < 1) {
+          throw error(lineNumber, format);
+        }
+        return new ScriptCommand(ScriptCommand.Type.VERTICAL_RAINBOW, lineNumber, line, null,
+            arguments);
+      }
+
+      case "CHECKBOARD": {
+        String format = "Should be: " + CHECKERBOARD_FORMAT;
+        int[] arguments = parseArguments(lineNumber, words, 9, format);
+        if (arguments[0] < 1 || arguments[1] < 1) {
+          throw error(lineNumber, format);
+        }
+        for (int i = 2; i < 8; i++) {
+          if (arguments[i] < 0 || arguments[i] > 255) {
+            throw error(lineNumber, format);
+          }
+        }
+        return new ScriptCommand(ScriptCommand.Type.CHECKERBOARD, lineNumber, line, null,
+            arguments);
+      }
+
+      case "NORWAY":
+        return compileFlag(ScriptCommand.Type.NORWAY, lineNumber, line, words, "norway", 22);
+
+      case "GREECE":
+        return compileFlag(ScriptCommand.Type.GREECE, lineNumber, line, words, "greece", 27);
+
+      case "SWIZERLAND":
+        return compileFlag(ScriptCommand.Type.SWIZERLAND, lineNumber, line, words, "swizerland",
+            32);
+
+      case "IMAGECROPPING": {
+        int[] arguments =
+            parseArguments(lineNumber, words, 5, "Should be: imagecropping x y width height");
+        for (int argument : arguments) {
+          if (argument < 0) {
+            throw error(lineNumber, "x, y, width and height should be > 0");
+          }
+        }
+        return new ScriptCommand(ScriptCommand.Type.IMAGE_CROPPING, lineNumber, line, null,
+            arguments);
+      }
+
+      default:
+        throw new ScriptSyntaxException(lineNumber, "Error Message",
+            "Invalid input on line " + lineNumber + ".");
+    }
+  }
+
+  /**
+   * Compile a line holding an operation without arguments.
+   * 
+   * @param type the kind of the command
+   * @param lineNumber the number of the line
+   * @param line the text of the line
+   * @param words the words of the line
+   * @param format the expected form of the line
+   * @return the command of the line
+   * @throws ScriptSyntaxException if the operation is followed by anything
+   */
+  private static ScriptCommand compileOperation(ScriptCommand.Type type, int lineNumber,
+      String line, String[] words, String format) throws ScriptSyntaxException {
+    if (words.length != 1) {
+      throw error(lineNumber, "Should be: " + format);
+    }
+    return new ScriptCommand(type, lineNumber, line, null);
+  }
+
+  /**
+   * Compile a line generating a national flag.
+   * 
+   * @param type the kind of the command
+   * @param lineNumber the number of the line
+   * @param line the text of the line
+   * @param words the words of the line
+   * @param keyword the keyword of the command
+   * @param minimumWidth the smallest width of the flag
+   * @return the command of the line
+   * @throws ScriptSyntaxException if the width is missing, not an integer or too small
+   */
+  private static ScriptCommand compileFlag(ScriptCommand.Type type, int lineNumber, String line,
+      String[] words, String keyword, int minimumWidth) throws ScriptSyntaxException {
+    String format =
+        "Should be: " + keyword + " width(positive integer>=" + minimumWidth + ")";
+    int[] arguments = parseArguments(lineNumber, words, 2, format);
+    if (arguments[0] < minimumWidth) {
+      throw error(lineNumber, format);
+    }
+    return new ScriptCommand(type, lineNumber, line, null, arguments);
+  }
+
+  /**
+   * Parse the words after the keyword of a line as integers.
+   * 
+   * @param lineNumber the number of the line
+   * @param words the words of the line
+   * @param wordCount the number of words the line should have, including the keyword
+   * @param format the expected form of the line
+   * @return the integers of the line
+   * @throws ScriptSyntaxException if the line has a different number of words or a word is not an
+   *         integer
+   */
+  private static int[] parseArguments(int lineNumber, String[] words, int wordCount,
+      String format) throws ScriptSyntaxException {
+    if (words.length != wordCount) {
+      throw error(lineNumber, format);
+    }
+    int[] arguments = new int[wordCount - 1];
+    try {
+      for (int i = 1; i < wordCount; i++) {
+        arguments[i - 1] = Integer.parseInt(words[i]);
+      }
+    } catch (NumberFormatException e) {
+      throw error(lineNumber, format);
+    }
+    return arguments;
+  }
+
+  /**
+   * Return whether a file name has one of the supported image formats.
+   * 
+   * @param fileName the name of the file
+   * @return true if the name contains ".jpg", ".png", ".gif", ".bmp" or ".ppm"
+   */
+  private static boolean hasImageExtension(String fileName) {
+    return fileName.contains(".jpg") || fileName.contains(".png") || fileName.contains(".gif")
+        || fileName.contains(".bmp") || fileName.contains(".ppm");
+  }
+
+  /**
+   * Return the exception for an invalid line.
+   * 
+   * @param lineNumber the number of the line
+   * @param description what is wrong with the line
+   * @return the exception
+   */
+  private static ScriptSyntaxException error(int lineNumber, String description) {
+    return new ScriptSyntaxException(lineNumber, "Error Message",
+        "Check line " + lineNumber + ". " + description);
+  }
+}
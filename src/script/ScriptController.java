@@ -1,17 +1,22 @@
 package script;
 
 import images.ImageModel;
-import images.ImageUtilities;
+import imageview.BackgroundTaskRunner;
 import imageview.ImageView;
-import java.util.Scanner;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
 
 /**
  * An implementation of the ScriptFeatures interface.
  */
 public class ScriptController implements ScriptFeatures {
-  private ImageModel model;
+  private volatile ImageModel model;
   private ImageView view;
+  private ScriptListener listener;
+  private BackgroundTaskRunner runner = new BackgroundTaskRunner();
   private String input;
+  private String compiledInput;
+  private CompiledScript compiledScript;
 
   /**
    * Constructor for this class.
@@ -30,6 +35,7 @@ public class ScriptController implements ScriptFeatures {
           "The argument passed to the controller constructor is invalid.");
     }
     this.model = model;
+    this.model.setOperationContext(runner.getOperationContext());
   }
 
   /**
@@ -84,6 +90,39 @@ public class ScriptController implements ScriptFeatures {
     this.view.setScriptFeatures(this);
   }
 
+  /**
+   * Set the listener told about the progress of the script. A controller without a view reports
+   * its errors only to this listener.
+   * 
+   * @param listener the listener to use
+   * @throws IllegalArgumentException if the input listener is null
+   */
+  public void setScriptListener(ScriptListener listener) throws IllegalArgumentException {
+    if (listener == null) {
+      throw new IllegalArgumentException(
+          "The argument passed to the setScriptListener method is invalid.");
+    }
+    this.listener = listener;
+  }
+
+  /**
+   * Set the runner applying the scripts of this controller. By default a script is applied on the
+   * calling thread.
+   * 
+   * @param runner the runner to use
+   * @throws IllegalArgumentException if the input runner is null
+   */
+  public void setTaskRunner(BackgroundTaskRunner runner) throws IllegalArgumentException {
+    if (runner == null) {
+      throw new IllegalArgumentException(
+          "The argument passed to the setTaskRunner method is invalid.");
+    }
+    this.runner = runner;
+    if (model != null) {
+      model.setOperationContext(runner.getOperationContext());
+    }
+  }
+
   /**
    * Set the script as the input for the controller.
    * 
@@ -107,7 +146,7 @@ public class ScriptController implements ScriptFeatures {
    */
   @Override
   public void loadImage(String fileName) throws IllegalArgumentException {
-    if (view == null) {
+    if (model == null) {
       return;
     }
     if (fileName == null || "".equals(fileName)) {
@@ -125,7 +164,7 @@ public class ScriptController implements ScriptFeatures {
    */
   @Override
   public void saveImage(String fileName) throws IllegalArgumentException {
-    if (view == null) {
+    if (model == null) {
       return;
     }
     if (fileName == null || "".equals(fileName)) {
@@ -136,350 +175,191 @@ public class ScriptController implements ScriptFeatures {
 
   /**
    * Ask the view to get the text script, ask the model to apply the commands and ask the view to
-   * show the changed image.
+   * show the changed image. The whole script is compiled first, so nothing is applied if any line
+   * is invalid. The compiled script is kept until the input changes, and it is applied by the
+   * task runner of this controller.
    */
   @Override
   public void applyScript() {
-    // Check if the input is empty
-    if ("".equals(input)) {
-      view.showMessage("Error message", "The script is empty.");
-      return;
+    if (compiledScript == null || !compiledInput.equals(input)) {
+      try {
+        compiledScript = ScriptCompiler.compile(input);
+        compiledInput = input;
+      } catch (ScriptSyntaxException e) {
+        this.stop(e.getLineNumber(), e.getTitle(), e.getMessage());
+        return;
+      }
     }
+    CompiledScript script = compiledScript;
+    runner.submit("Applying script", () -> {
+      this.applyScript(script);
+      return null;
+    }, null);
+  }
 
-    int lineCount = 0;
-    try (Scanner in = new Scanner(input)) {
-      while (in.hasNext()) {
-        lineCount++;
-        String currentLine = in.nextLine();
-        String[] currentWords = currentLine.split(" ");
-        String option = currentWords[0].toUpperCase();
-        switch (option) {
-          case "LOAD":
-            // Confirm that the format of loading is correct
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: load filename");
-              return;
-            }
-            // Confirm that the format of the image is correct
-            if (currentWords[1].contains(".jpg") || currentWords[1].contains(".png")
-                || currentWords[1].contains(".gif") || currentWords[1].contains(".bmp")) {
-              try {
-                this.loadImage(currentWords[1]);
-              } catch (IllegalArgumentException e) {
-                view.showMessage("Oops", "The file " + currentWords[1]
-                    + " does not exist! Please check line" + lineCount);
-                return;
-              }
-            } else {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Format of the image should be \"jpg\" or \"png\" or \"gif\" or \"bmp\"");
+  /**
+   * Ask the model to apply the commands of a compiled script and ask the view to show the changed
+   * image after every command. The same compiled script can be applied to any number of models.
+   * When the script is applied by a task runner that is cancelled, the script stops before the next
+   * line.
+   * 
+   * @param script the compiled script
+   * @throws IllegalArgumentException if the script is null
+   * @throws ScriptExecutionException if a line fails, with the number of that line
+   */
+  public void applyScript(CompiledScript script) throws IllegalArgumentException {
+    if (script == null) {
+      throw new IllegalArgumentException(
+          "The argument passed to the applyScript method is invalid.");
+    }
+    for (ScriptCommand command : script.getCommands()) {
+      int lineCount = command.getLineNumber();
+      if (runner.isCancelled()) {
+        this.stop(lineCount, "Cancelled", "The script was cancelled before line " + lineCount);
+        return;
+      }
+      long startTime = System.nanoTime();
+      ScriptLineEvent event = new ScriptLineEvent();
+      event.begin();
+      boolean applied = false;
+      try {
+        switch (command.getType()) {
+          case LOAD:
+            try {
+              this.loadImage(command.getFileName());
+            } catch (IllegalArgumentException e) {
+              this.stop(lineCount, "Oops", "The file " + command.getFileName()
+                  + " does not exist! Please check line" + lineCount);
               return;
             }
             break;
 
-          case "BLUR":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message", "Check line " + lineCount + ". Should be: blur");
-              return;
-            }
+          case SAVE:
+            this.saveImage(command.getFileName());
+            break;
+
+          case BLUR:
             model.applyBlur();
             break;
 
-          case "SHARPEN":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message", "Check line " + lineCount + ". Should be: sharpen");
-              return;
-            }
+          case GAUSSIAN_BLUR:
+            model.applyGaussianBlur(command.getArgument(0));
+            break;
+
+          case SHARPEN:
             model.applySharpen();
             break;
 
-          case "GREYSCALE":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: greyscale");
-              return;
-            }
+          case GREYSCALE:
             model.applyGreyscale();
             break;
 
-          case "SEPIA":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message", "Check line " + lineCount + ". Should be: sepia");
-              return;
-            }
+          case SEPIA:
             model.applySepia();
             break;
 
-          case "DITHER":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message", "Check line " + lineCount + ". Should be: dither");
-              return;
-            }
+          case DITHER:
             model.applyDither();
             break;
 
-          case "MOSAIC":
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: mosaic number_of_seeds(a positive integer)");
-              return;
-            }
-            try {
-              Integer.parseInt(currentWords[1]);
-            } catch (NumberFormatException e) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: mosaic number_of_seeds(a positive integer)");
-              return;
-            }
-            model.applyMosaic(Integer.parseInt(currentWords[1]));
-            break;
-
-          case "RAINBOWH":
-            if (currentWords.length != 3) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: rainbowH width(positive integer) height(positive integer)");
-              return;
-            }
-            for (int i = 1; i < 3; i++) {
-              try {
-                Integer.parseInt(currentWords[i]);
-              } catch (NumberFormatException e) {
-                view.showMessage("Error Message", "Check line " + lineCount
-                    + ". Should be: rainbowH width(positive integer) height(positive integer>6)");
-                return;
-              }
-            }
-            if (Integer.parseInt(currentWords[1]) < 1 || Integer.parseInt(currentWords[2]) < 7) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: rainbowH width(positive integer) height(positive integer>6)");
-              return;
-            }
-            model.generateRainbow(Integer.parseInt(currentWords[1]),
-                Integer.parseInt(currentWords[2]), 0);
+          case MOSAIC:
+            model.applyMosaic(command.getArgument(0));
             break;
 
-          case "RAINBOWV":
-            if (currentWords.length != 3) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: rainbowV width(positive integer>6) height(positive integer)");
-              return;
-            }
-            for (int i = 1; i < 3; i++) {
-              try {
-                Integer.parseInt(currentWords[i]);
-              } catch (NumberFormatException e) {
-                view.showMessage("Error Message", "Check line " + lineCount
-                    + ". Should be: rainbowV width(positive integer>6) height(positive integer)");
-                return;
-              }
-            }
-            if (Integer.parseInt(currentWords[1]) < 7 || Integer.parseInt(currentWords[2]) < 1) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: rainbowV width(positive integer>6) height(positive integer)");
-              return;
-            }
-            model.generateRainbow(Integer.parseInt(currentWords[1]),
-                Integer.parseInt(currentWords[2]), 1);
+          case EDGE_DETECTION:
+            model.applyEdgeDetection();
             break;
 
-          case "CHECKBOARD":
-            if (currentWords.length != 9) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: checkboard height(positive integer>0) "
-                      + "number_of_squares(positive integer>0) "
-                      + "red_value_of_first_color(0-255) " + "green_value_of_first_color(0-255) "
-                      + "blue_value_of_first_color(0-255) " + "red_value_of_second_color(0-255) "
-                      + "green_value_of_second_color(0-255) "
-                      + "blue_value_of_second_color(0-255)");
-              return;
-            }
-            for (int i = 1; i < 9; i++) {
-              try {
-                Integer.parseInt(currentWords[i]);
-              } catch (NumberFormatException e) {
-                view.showMessage("Error Message", "Check line " + lineCount
-                    + ". Should be: checkboard height(positive integer>0) "
-                    + "number_of_squares(positive integer>0) " + "red_value_of_first_color(0-255) "
-                    + "green_value_of_first_color(0-255) " + "blue_value_of_first_color(0-255) "
-                    + "red_value_of_second_color(0-255) " + "green_value_of_second_color(0-255) "
-                    + "blue_value_of_second_color(0-255)");
-                return;
-              }
-            }
-            if (Integer.parseInt(currentWords[1]) < 1 || Integer.parseInt(currentWords[2]) < 1) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: checkboard height(positive integer>0) "
-                      + "number_of_squares(positive integer>0) "
-                      + "red_value_of_first_color(0-255) " + "green_value_of_first_color(0-255) "
-                      + "blue_value_of_first_color(0-255) " + "red_value_of_second_color(0-255) "
-                      + "green_value_of_second_color(0-255) "
-                      + "blue_value_of_second_color(0-255)");
-              return;
-            }
-            for (int i = 3; i < 9; i++) {
-              if (Integer.parseInt(currentWords[i]) < 0
-                  || Integer.parseInt(currentWords[i]) > 255) {
-                view.showMessage("Error Message", "Check line " + lineCount
-                    + ". Should be: checkboard height(positive integer>0) "
-                    + "number_of_squares(positive integer>0) " + "red_value_of_first_color(0-255) "
-                    + "green_value_of_first_color(0-255) " + "blue_value_of_first_color(0-255) "
-                    + "red_value_of_second_color(0-255) " + "green_value_of_second_color(0-255) "
-                    + "blue_value_of_second_color(0-255)");
-                return;
-              }
-            }
-            int[] firstColor = new int[] {Integer.parseInt(currentWords[3]),
-                Integer.parseInt(currentWords[4]), Integer.parseInt(currentWords[5])};
-            int[] secondColor = new int[] {Integer.parseInt(currentWords[6]),
-                Integer.parseInt(currentWords[7]), Integer.parseInt(currentWords[8])};;
-            model.generateCheckerBoard(Integer.parseInt(currentWords[1]),
-                Integer.parseInt(currentWords[2]), firstColor, secondColor);
+          case GREYSCALE_ENHANCEMENT:
+            model.applyGreyscaleEnhancement();
             break;
 
-          case "NORWAY":
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: norway width(positive integer>=22)");
-              return;
-            }
-            try {
-              Integer.parseInt(currentWords[1]);
-            } catch (NumberFormatException e) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: norway width(positive integer>=22)");
+          case IMAGE_CROPPING:
+            // The size of the image is only known once the commands before this one have run
+            if (command.getArgument(0) + command.getArgument(2) > model.getImageWidth()) {
+              this.stop(lineCount, "Error Message",
+                  "Check line " + lineCount + ". x + width should be <= image width");
               return;
             }
-            if (Integer.parseInt(currentWords[1]) < 22) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: norway width(positive integer>=22)");
+            if (command.getArgument(1) + command.getArgument(3) > model.getImageHeight()) {
+              this.stop(lineCount, "Error Message",
+                  "Check line " + lineCount + ". y + height should be <= image height");
               return;
             }
-            model.generateNationalFlagOfNorway(Integer.parseInt(currentWords[1]));
+            model = model.applyImageCropping(command.getArgument(0), command.getArgument(1),
+                command.getArgument(2), command.getArgument(3));
             break;
 
-          case "GREECE":
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: greece width(positive integer>=27)");
-              return;
-            }
-            try {
-              Integer.parseInt(currentWords[1]);
-            } catch (NumberFormatException e) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: greece width(positive integer>=27)");
-              return;
-            }
-            if (Integer.parseInt(currentWords[1]) < 27) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: greece width(positive integer>=27)");
-              return;
-            }
-            model.generateNationalFlagOfGreece(Integer.parseInt(currentWords[1]));
+          case HORIZONTAL_RAINBOW:
+            model.generateRainbow(command.getArgument(0), command.getArgument(1), 0);
             break;
 
-          case "SWIZERLAND":
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: swizerland width(positive integer>=32)");
-              return;
-            }
-            try {
-              Integer.parseInt(currentWords[1]);
-            } catch (NumberFormatException e) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: swizerland width(positive integer>=32)");
-              return;
-            }
-            if (Integer.parseInt(currentWords[1]) < 32) {
-              view.showMessage("Error Message", "Check line " + lineCount
-                  + ". Should be: swizerland width(positive integer>=32)");
-              return;
-            }
-            model.generateNationalFlagOfSwizerland(Integer.parseInt(currentWords[1]));
+          case VERTICAL_RAINBOW:
+            model.generateRainbow(command.getArgument(0), command.getArgument(1), 1);
             break;
 
-          case "EDGEDETECTION":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: edge detection");
-              return;
-            }
-            model.applyEdgeDetection();
+          case CHECKERBOARD:
+            int[] firstColor = new int[] {command.getArgument(2), command.getArgument(3),
+                command.getArgument(4)};
+            int[] secondColor = new int[] {command.getArgument(5), command.getArgument(6),
+                command.getArgument(7)};
+            model.generateCheckerBoard(command.getArgument(0), command.getArgument(1), firstColor,
+                secondColor);
             break;
 
-          case "GREYSCALEENHANCEMENT":
-            if (currentWords.length != 1) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: greyscale enhancement");
-              return;
-            }
-            model.applyGreyscaleEnhancement();
+          case NORWAY:
+            model.generateNationalFlagOfNorway(command.getArgument(0));
             break;
 
-          case "IMAGECROPPING":
-            if (currentWords.length != 5) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: imagecropping x y width height");
-              return;
-            }
-            for (int i = 1; i < 5; i++) {
-              try {
-                Integer.parseInt(currentWords[i]);
-              } catch (NumberFormatException e) {
-                view.showMessage("Error Message",
-                    "Check line " + lineCount + ". Should be: imagecropping x y width height");
-                return;
-              }
-            }
-            for (int i = 1; i < 5; i++) {
-              if (Integer.parseInt(currentWords[i]) < 0) {
-                view.showMessage("Error Message",
-                    "Check line " + lineCount + ". x, y, width and height should be > 0");
-                return;
-              }
-            }
-            if (Integer.parseInt(currentWords[1])
-                + Integer.parseInt(currentWords[3]) > model.getImageData()[0].length) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". x + width should be <= image width");
-              return;
-            }
-            if (Integer.parseInt(currentWords[2])
-                + Integer.parseInt(currentWords[4]) > model.getImageData().length) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". y + height should be <= image height");
-              return;
-            }
-            model = model.applyImageCropping(Integer.parseInt(currentWords[1]),
-                Integer.parseInt(currentWords[2]), Integer.parseInt(currentWords[3]),
-                Integer.parseInt(currentWords[4]));
+          case GREECE:
+            model.generateNationalFlagOfGreece(command.getArgument(0));
             break;
 
-          case "SAVE":
-            if (currentWords.length != 2) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: save filename(example.jpg)");
-              return;
-            }
-            if (!(currentWords[1].contains(".jpg") || currentWords[1].contains(".png")
-                || currentWords[1].contains(".bmp") || currentWords[1].contains(".gif"))) {
-              view.showMessage("Error Message",
-                  "Check line " + lineCount + ". Should be: save filename(example.jpg)");
-              return;
-            }
-
-            this.saveImage(currentWords[1]);
+          case SWIZERLAND:
+            model.generateNationalFlagOfSwizerland(command.getArgument(0));
             break;
-
-          default:
-            view.showMessage("Error Message", "Invalid input on line " + lineCount + ".");
-            return;
         }
-        view.showImage(ImageUtilities.convertImage(model.getImageData()));
+        applied = true;
+      } catch (CancellationException e) {
+        // The model keeps the image it had before the stopped operation
+        this.stop(lineCount, "Cancelled", "The script was cancelled on line " + lineCount);
+        return;
+      } catch (RuntimeException e) {
+        throw new ScriptExecutionException(lineCount, e);
+      } finally {
+        event.finish(command, applied);
       }
+      if (listener != null) {
+        listener.lineApplied(lineCount, command.getLine(), System.nanoTime() - startTime);
+      }
+      // Without a view there is nobody to show a preview to, so the image is not rendered
+      if (view != null && runner.isLastTask()) {
+        BufferedImage image = model.getImage();
+        runner.runOnView(() -> view.showImage(image));
+      }
+    }
+    if (view != null) {
+      runner.runOnView(() -> view.showMessage("Done", "Script commands successfully applied!"));
+    }
+    if (listener != null) {
+      listener.scriptFinished(script.size());
+    }
+  }
+
+  /**
+   * Stop applying the script because of an error, and show the error on the view and tell the
+   * listener about it.
+   * 
+   * @param lineNumber the number of the line with the error, or 0 if the error is not on a line
+   * @param title the title of the error
+   * @param message the description of the error
+   */
+  private void stop(int lineNumber, String title, String message) {
+    if (view != null) {
+      runner.runOnView(() -> view.showMessage(title, message));
+    }
+    if (listener != null) {
+      listener.scriptStopped(lineNumber, title, message);
     }
-    view.showMessage("Done", "Script commands successfully applied!");
   }
 }
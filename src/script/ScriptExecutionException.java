@@ -0,0 +1,31 @@
+package script;
+
+/**
+ * The exception thrown when a line of a compiled script fails while it is applied. It keeps the
+ * number of the failing line, and its message and cause are the ones of the original error.
+ */
+public class ScriptExecutionException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final int lineNumber;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param lineNumber the number of the line that failed
+   * @param cause the error the line failed with
+   */
+  public ScriptExecutionException(int lineNumber, RuntimeException cause) {
+    super(cause.getMessage(), cause);
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Return the number of the line that failed.
+   * 
+   * @return the number of the line
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+}
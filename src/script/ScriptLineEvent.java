@@ -0,0 +1,53 @@
+package script;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for a line of a script applied by {@link ScriptController}. The events
+ * of the image operations the line runs happen inside it. The event is disabled unless the
+ * recording enables it, for example with the settings in res/images.jfc.
+ */
+@Name("images.ScriptLine")
+@Label("Script Line")
+@Category({"Image Processor"})
+@Description("A line of a script applied to an image model")
+@Enabled(false)
+@StackTrace(false)
+public class ScriptLineEvent extends Event {
+  @Label("Line Number")
+  int lineNumber;
+
+  @Label("Command")
+  String command;
+
+  @Label("Line")
+  String line;
+
+  @Label("Applied")
+  @Description("Whether the line was applied, as opposed to stopping the script")
+  boolean applied;
+
+  /**
+   * End this event and commit it if the recording wants it.
+   * 
+   * @param scriptCommand the command of the line
+   * @param wasApplied whether the line was applied
+   */
+  void finish(ScriptCommand scriptCommand, boolean wasApplied) {
+    this.end();
+    if (!this.shouldCommit()) {
+      return;
+    }
+    this.lineNumber = scriptCommand.getLineNumber();
+    this.command = scriptCommand.getType().name();
+    this.line = scriptCommand.getLine();
+    this.applied = wasApplied;
+    this.commit();
+  }
+}
@@ -0,0 +1,33 @@
+package script;
+
+/**
+ * A listener told about the progress of a script while a script controller applies it. It lets a
+ * caller without a view, such as a batch runner, follow the script line by line.
+ */
+public interface ScriptListener {
+  /**
+   * Tell the listener that a line of the script has been applied.
+   * 
+   * @param lineNumber the number of the line, starting from 1
+   * @param line the text of the line
+   * @param elapsedNanos the time taken to apply the line, in nanoseconds
+   */
+  void lineApplied(int lineNumber, String line, long elapsedNanos);
+
+  /**
+   * Tell the listener that the script stopped because of an error. The lines after the line with
+   * the error are not applied.
+   * 
+   * @param lineNumber the number of the line with the error, or 0 if the error is not on a line
+   * @param title the title of the error
+   * @param message the description of the error
+   */
+  void scriptStopped(int lineNumber, String title, String message);
+
+  /**
+   * Tell the listener that every line of the script has been applied.
+   * 
+   * @param lineCount the number of lines applied
+   */
+  void scriptFinished(int lineCount);
+}
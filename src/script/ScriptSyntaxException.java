@@ -0,0 +1,43 @@
+package script;
+
+/**
+ * The exception thrown when a script cannot be compiled. It keeps the number of the line with the
+ * error and the title of the message to show for it.
+ */
+public class ScriptSyntaxException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  private final int lineNumber;
+  private final String title;
+
+  /**
+   * Constructor for this class.
+   * 
+   * @param lineNumber the number of the line with the error, or 0 if the error is not on a line
+   * @param title the title of the message to show for the error
+   * @param message the description of the error
+   */
+  public ScriptSyntaxException(int lineNumber, String title, String message) {
+    super(message);
+    this.lineNumber = lineNumber;
+    this.title = title;
+  }
+
+  /**
+   * Return the number of the line with the error.
+   * 
+   * @return the number of the line, or 0 if the error is not on a line
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Return the title of the message to show for the error.
+   * 
+   * @return the title of the message
+   */
+  public String getTitle() {
+    return title;
+  }
+}
@@ -1,7 +1,11 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import images.ConcreteImageModel;
+import images.EditHistory;
 import images.ImageModel;
+import images.PixelBuffer;
 import imageview.ButtonAndMenuController;
 import imageview.ImageView;
 import org.junit.Before;
@@ -101,7 +105,7 @@ public class ButtonAndMenuControllerTest {
     controller.loadImage();
 
     String expectedModelLog = "Loading image: " + "G6H7I8..." + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -134,8 +138,8 @@ public class ButtonAndMenuControllerTest {
   public void testSaveImageWithModelNotEmpty() {
     controller.saveImage();
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Saving image: "
+        + "J9K10L11...." + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -152,9 +156,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "blur";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Applying blur"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Applying blur"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -170,9 +174,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "sharpen";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -188,9 +192,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "greyscale";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Applying greyscale"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Applying greyscale"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -206,9 +210,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "sepia";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Applying sepia"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Applying sepia"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -224,9 +228,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "dither";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Applying dither"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator() + "Applying dither"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -242,9 +246,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "mosaic";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator()
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
         + "Applying mosaic with the number of seeds at 321" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
+        + "Getting image width" + System.lineSeparator() + "Getting image"
         + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
@@ -264,8 +268,8 @@ public class ButtonAndMenuControllerTest {
     controller.applyOperations(operationCommand);
 
     String expectedModelLog = "Generating rainbow: width = 321 height = 321 rainbow type = 0"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -285,8 +289,8 @@ public class ButtonAndMenuControllerTest {
     controller.applyOperations(operationCommand);
 
     String expectedModelLog = "Generating rainbow: width = 321 height = 321 rainbow type = 1"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -307,8 +311,8 @@ public class ButtonAndMenuControllerTest {
 
     String expectedModelLog = "Generating checkerboard total height = 321 bumberOfSquares = 321 "
         + "first color = 0 255 0 second color = 0 255 0" + System.lineSeparator() 
-        + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -332,8 +336,8 @@ public class ButtonAndMenuControllerTest {
     controller.applyOperations(operationCommand);
 
     String expectedModelLog = "Generating a national flag of Norway with width at 321"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -352,8 +356,8 @@ public class ButtonAndMenuControllerTest {
     controller.applyOperations(operationCommand);
 
     String expectedModelLog = "Generating a national flag of Greece with width at 321"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -372,8 +376,8 @@ public class ButtonAndMenuControllerTest {
     controller.applyOperations(operationCommand);
 
     String expectedModelLog = "Generating a national flag of Swizerland with width at 321"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog =
@@ -391,9 +395,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "edgeDetection";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator()
-        + "Applying edge detection" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
+        + "Applying edge detection" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -409,9 +413,9 @@ public class ButtonAndMenuControllerTest {
     String operationCommand = "greyscaleEnhancement";
     controller.applyOperations(operationCommand);
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator()
-        + "Applying greyscale enhancement" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
+        + "Applying greyscale enhancement" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -426,12 +430,11 @@ public class ButtonAndMenuControllerTest {
   public void testApplyImageCropping() {
     controller.applyImageCropping();
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Applying image cropping x = 101 y = 104 width = 6 height = 6"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
+        + "Getting image height" + System.lineSeparator()
+        + "Applying image cropping x = 101 y = 104 width = 6 height = 6"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
@@ -442,6 +445,42 @@ public class ButtonAndMenuControllerTest {
     assertEquals(expectedViewLog, viewLog.toString());
   }
 
+  /**
+   * Test that giving up a crop puts back the model from before it, with its whole image, even when
+   * the history of the model keeps no step to undo.
+   */
+  @Test
+  public void testRejectedCropping() {
+    PixelBuffer pixels = new PixelBuffer(120, 130);
+    for (int i = 0; i < pixels.getData().length; i++) {
+      pixels.getData()[i] = i * 7919 & 0xFFFFFF;
+    }
+    ConcreteImageModel original = new ConcreteImageModel(pixels.copy());
+    original.setEditHistory(new EditHistory(0));
+    ButtonAndMenuController controller = new ButtonAndMenuController(original);
+    controller.setView(new MockImageView(new StringBuilder()) {
+      @Override
+      public int showConfirmDialog(String message) {
+        super.showConfirmDialog(message);
+        return 1;
+      }
+    });
+    controller.applyImageCropping();
+
+    assertTrue(controller.getModel() == original);
+    assertEquals(120, original.getImage().getWidth());
+    assertEquals(130, original.getImage().getHeight());
+    assertArrayEquals(pixels.getData(), original.getPixelBuffer().getData());
+
+    // The model put back keeps its own history, so its last operation can still be undone
+    original.setEditHistory(new EditHistory(EditHistory.DEFAULT_CAPACITY));
+    original.applyGreyscale();
+    controller.applyImageCropping();
+    assertTrue(controller.getModel() == original);
+    assertTrue(original.undo());
+    assertArrayEquals(pixels.getData(), original.getPixelBuffer().getData());
+  }
+
   /**
    * Test applying a batch of commands.
    */
@@ -466,52 +505,50 @@ public class ButtonAndMenuControllerTest {
     controller.saveImage();
 
     String expectedModelLog = "Loading image: G6H7I8..." + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Applying blur" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
+        + "Getting image" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Applying blur" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Getting image width"
         + System.lineSeparator() + "Applying greyscale" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator() + "Applying sepia"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Applying dither" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator() + "Getting image"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator() + "Applying sepia"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Applying dither" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator()
         + "Applying mosaic with the number of seeds at 321" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
+        + "Getting image width" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Generating rainbow: width = 321 height = 321 rainbow type = 0"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 321 height = 321 rainbow type = 1" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
+        + "Getting image width" + System.lineSeparator() + "Getting image"
         + System.lineSeparator()
         + "Generating checkerboard total height = 321 bumberOfSquares = 321 first color = 0 255 0 "
         + "second color = 0 255 0"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating a national flag of Norway with width at 321" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
+        + "Getting image width" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Generating a national flag of Greece with width at 321"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating a national flag of Swizerland with width at 321" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Applying edge detection" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying greyscale enhancement"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator() + "Getting image"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Applying edge detection" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Getting image width" + System.lineSeparator() + "Applying greyscale enhancement"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Getting image height" + System.lineSeparator()
         + "Applying image cropping x = 101 y = 104 width = 6 height = 6" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image width" + System.lineSeparator() + "Getting image"
+        + System.lineSeparator() + "Getting image width" + System.lineSeparator()
+        + "Saving image: J9K10L11...." + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ButtonAndMenuFeatures: " + System.lineSeparator()
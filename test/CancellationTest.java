@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import images.ConcreteImageModel;
+import images.OperationContext;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import images.TileScheduler;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for cancelling the operations of the ConcreteImageModel, checking that a cancelled
+ * operation leaves the pixels of the model as they were.
+ */
+public class CancellationTest {
+  private static final int WIDTH = 512;
+  private static final int HEIGHT = 384;
+
+  /**
+   * Return a context that is cancelled once a number of groups of rows have been reported.
+   * 
+   * @param reports the number of reports before the context is cancelled
+   * @return the context
+   */
+  private static OperationContext cancelledAfter(int reports) {
+    AtomicInteger count = new AtomicInteger();
+    OperationContext[] context = new OperationContext[1];
+    context[0] = new OperationContext((rowsDone, totalRows) -> {
+      if (count.incrementAndGet() >= reports) {
+        context[0].cancel();
+      }
+    });
+    return context[0];
+  }
+
+  /**
+   * Check that cancelling an operation part of the way through leaves the pixels unchanged, and
+   * that the operation gives the same pixels as on a new model once it is run again.
+   * 
+   * @param operation the operation to cancel
+   */
+  private static void assertCancelledLeavesPixels(Consumer<ConcreteImageModel> operation) {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 18);
+    ConcreteImageModel expected = new ConcreteImageModel(pixels.copy());
+    operation.accept(expected);
+    for (int reports : new int[] {1, 3}) {
+      ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+      model.setTileScheduler(new TileScheduler(4));
+      model.setOperationContext(cancelledAfter(reports));
+      try {
+        operation.accept(model);
+        fail("The operation should have been cancelled.");
+      } catch (CancellationException e) {
+        // this is expected
+      }
+      assertArrayEquals(pixels.getData(), model.getPixelBuffer().getData());
+      model.setOperationContext(new OperationContext(null));
+      operation.accept(model);
+      assertArrayEquals(expected.getPixelBuffer().getData(), model.getPixelBuffer().getData());
+    }
+  }
+
+  /**
+   * Test cancelling the filters.
+   */
+  @Test
+  public void testFilters() {
+    assertCancelledLeavesPixels(ConcreteImageModel::applyBlur);
+    assertCancelledLeavesPixels(ConcreteImageModel::applySharpen);
+  }
+
+  /**
+   * Test cancelling the color transforms, which change the pixels in place.
+   */
+  @Test
+  public void testColorTransforms() {
+    assertCancelledLeavesPixels(ConcreteImageModel::applyGreyscale);
+    assertCancelledLeavesPixels(ConcreteImageModel::applySepia);
+  }
+
+  /**
+   * Test cancelling the operations that take several passes over the image.
+   */
+  @Test
+  public void testSeveralPasses() {
+    assertCancelledLeavesPixels(ConcreteImageModel::applyEdgeDetection);
+    assertCancelledLeavesPixels(ConcreteImageModel::applyGreyscaleEnhancement);
+    assertCancelledLeavesPixels(model -> model.applyMosaic(300, new SeedGenerator(18)));
+  }
+
+  /**
+   * Test cancelling dithering, which runs on one thread and checks after every row.
+   */
+  @Test
+  public void testDither() {
+    assertCancelledLeavesPixels(ConcreteImageModel::applyDither);
+  }
+
+  /**
+   * Test that cancelling the recorded operations of a lazy model while they run keeps them
+   * recorded, so they run once the model is given a new context.
+   */
+  @Test
+  public void testLazyOperations() {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 18);
+    ConcreteImageModel expected = new ConcreteImageModel(pixels.copy());
+    expected.applyBlur();
+    expected.applySepia();
+
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    model.setLazy(true);
+    model.applyBlur();
+    model.applySepia();
+    model.setOperationContext(cancelledAfter(2));
+    try {
+      model.getPixelBuffer();
+      fail("The recorded operations should have been cancelled.");
+    } catch (CancellationException e) {
+      // this is expected
+    }
+    model.setOperationContext(new OperationContext(null));
+    assertArrayEquals(expected.getPixelBuffer().getData(), model.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test that a context cancelled before an operation starts stops it before it changes anything.
+   */
+  @Test
+  public void testCancelledBeforeStarting() {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 18);
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    OperationContext context = new OperationContext(null);
+    context.cancel();
+    assertTrue(context.isCancelled());
+    model.setOperationContext(context);
+    try {
+      model.applySharpen();
+      fail("The operation should have been cancelled.");
+    } catch (CancellationException e) {
+      // this is expected
+    }
+    model.setOperationContext(null);
+    assertArrayEquals(pixels.getData(), model.getPixelBuffer().getData());
+  }
+}
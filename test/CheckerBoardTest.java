@@ -0,0 +1,63 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the check boards generated by the ConcreteImageModel.
+ */
+public class CheckerBoardTest {
+  private static final int[] RED = {255, 0, 0};
+  private static final int[] BLUE = {0, 0, 255};
+
+  /**
+   * Test that the squares alternate and that their height is rounded.
+   */
+  @Test
+  public void testSquares() {
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.generateCheckerBoard(40, 4, RED, BLUE);
+    PixelBuffer pixels = model.getPixelBuffer();
+    assertEquals(40, pixels.getWidth());
+    assertEquals(40, pixels.getHeight());
+    assertEquals(0xFF0000, pixels.getRGB(0, 0));
+    assertEquals(0x0000FF, pixels.getRGB(10, 0));
+    assertEquals(0x0000FF, pixels.getRGB(9, 10));
+    assertEquals(0xFF0000, pixels.getRGB(39, 39));
+
+    // 10 / 3 rounds to squares of 3 pixels
+    model.generateCheckerBoard(10, 3, RED, BLUE);
+    assertEquals(9, model.getPixelBuffer().getHeight());
+    // 2 / 3 rounds up to squares of 1 pixel
+    model.generateCheckerBoard(2, 3, RED, BLUE);
+    assertEquals(3, model.getPixelBuffer().getHeight());
+  }
+
+  /**
+   * Test that a board whose squares round to no pixel is rejected, as are the other invalid
+   * arguments, and that the image is left as it was.
+   */
+  @Test
+  public void testInvalidBoards() {
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.generateCheckerBoard(40, 4, RED, BLUE);
+    int[][] sizes = {{1, 3}, {4, 9}, {0, 2}, {5, 0}};
+    for (int[] size : sizes) {
+      try {
+        model.generateCheckerBoard(size[0], size[1], RED, BLUE);
+        fail("The board " + size[0] + " " + size[1] + " should be rejected.");
+      } catch (IllegalArgumentException e) {
+        // this is expected
+      }
+    }
+    try {
+      model.generateCheckerBoard(40, 4, null, BLUE);
+      fail("A null color should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+    assertEquals(40, model.getPixelBuffer().getHeight());
+  }
+}
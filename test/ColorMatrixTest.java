@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+
+import images.ColorMatrix;
+import images.PixelBuffer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the ColorMatrix, checking the fixed point sums against the floating point sums
+ * of the original color transforms for every one of the 2^24 colors.
+ */
+public class ColorMatrixTest {
+  private static final int COLORS = 1 << 24;
+  private static final int ROW = 4096;
+
+  /**
+   * Return the color given by a matrix to a color the way the original color transforms computed
+   * it, in floating point.
+   * 
+   * @param matrix the weights of the matrix
+   * @param rgb the packed color
+   * @return the new packed color
+   */
+  private static int transformLikeOriginal(double[][] matrix, int rgb) {
+    int red = PixelBuffer.red(rgb);
+    int green = PixelBuffer.green(rgb);
+    int blue = PixelBuffer.blue(rgb);
+    int[] values = new int[3];
+    for (int c = 0; c < 3; c++) {
+      values[c] = (int) (red * matrix[c][0] + green * matrix[c][1] + blue * matrix[c][2]);
+    }
+    return PixelBuffer.packClamped(values[0], values[1], values[2]);
+  }
+
+  /**
+   * Check that a matrix gives every color the color of the floating point sums, both a row at a
+   * time and a pixel at a time.
+   * 
+   * @param matrix the weights of the matrix
+   */
+  private static void assertEveryColorExact(double[][] matrix) {
+    ColorMatrix operation = new ColorMatrix(matrix);
+    int[] source = new int[ROW];
+    int[] target = new int[ROW + 1];
+    for (int start = 0; start < COLORS; start += ROW) {
+      for (int i = 0; i < ROW; i++) {
+        source[i] = start + i;
+      }
+      operation.applyToRow(source, 0, target, 1, ROW);
+      for (int i = 0; i < ROW; i++) {
+        int expected = transformLikeOriginal(matrix, source[i]);
+        if (target[i + 1] != expected) {
+          assertEquals("color " + Integer.toHexString(source[i]), expected, target[i + 1]);
+        }
+      }
+      // Check a pixel at a time on a spread of the colors, which takes the same path
+      int rgb = start + start / ROW % ROW;
+      assertEquals(transformLikeOriginal(matrix, rgb), operation.applyToPixel(rgb));
+    }
+  }
+
+  /**
+   * Test the greyscale matrix, whose three rows are the same.
+   */
+  @Test
+  public void testGreyscale() {
+    assertEveryColorExact(
+        new double[][] {{0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722},
+            {0.2126, 0.7152, 0.0722}});
+  }
+
+  /**
+   * Test the sepia matrix, whose sums go above 255 and are clamped.
+   */
+  @Test
+  public void testSepia() {
+    assertEveryColorExact(
+        new double[][] {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+  }
+
+  /**
+   * Test a matrix of thirds and negative weights, whose sums often land on or just below a whole
+   * number and are computed again in floating point.
+   */
+  @Test
+  public void testSumsCloseToWholeNumbers() {
+    assertEveryColorExact(new double[][] {{1.0 / 3.0, 1.0 / 3.0, 1.0 / 3.0},
+        {0.5, -0.25, 0.75}, {-1.0 / 3.0, 2.0 / 3.0, 1.0}});
+  }
+
+  /**
+   * Test a matrix with weights too large for fixed point, which is computed in floating point.
+   */
+  @Test
+  public void testLargeWeights() {
+    assertEveryColorExact(
+        new double[][] {{5000.5, -4999.25, 0.1}, {0, 1, 0}, {-1e6, 1e6, 1e6}});
+  }
+
+  /**
+   * Test that a matrix that is not 3 x 3 is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotThreeByThree() {
+    new ColorMatrix(new double[][] {{1, 0, 0}, {0, 1, 0}, {0, 0}});
+  }
+}
@@ -0,0 +1,174 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.ConcreteImageModel;
+import images.ConvolutionEngine;
+import images.Kernel;
+import images.PixelBuffer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the ConvolutionEngine, checking that blur and sharpen give the pixels of the
+ * original filters of the program.
+ */
+public class ConvolutionEngineTest {
+
+  /**
+   * Filter an image the way the original filters of the program did, truncating every product of
+   * a weight and a channel and leaving the border at 0.
+   * 
+   * @param image the red, green and blue values of the image, by row and column
+   * @param kernel the weights of the kernel
+   * @return the red, green and blue values of the filtered image
+   */
+  private static int[][][] filterLikeOriginal(int[][][] image, double[][] kernel) {
+    int height = image.length;
+    int width = image[0].length;
+    int radius = kernel.length / 2;
+    int[][][] filtered = new int[height][width][3];
+    for (int i = radius; i < height - radius; i++) {
+      for (int j = radius; j < width - radius; j++) {
+        for (int k1 = 0; k1 < kernel.length; k1++) {
+          for (int k2 = 0; k2 < kernel.length; k2++) {
+            int[] correspondingPixel = image[i - radius + k1][j - radius + k2];
+            for (int c = 0; c < 3; c++) {
+              filtered[i][j][c] += (int) (correspondingPixel[c] * kernel[k1][k2]);
+            }
+          }
+        }
+        for (int c = 0; c < 3; c++) {
+          filtered[i][j][c] = Math.max(0, Math.min(255, filtered[i][j][c]));
+        }
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Return the weights of the sharpen kernel of the program.
+   * 
+   * @return the weights of the sharpen kernel
+   */
+  private static double[][] sharpenWeights() {
+    double[][] kernel = new double[5][5];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        boolean border = i == 0 || j == 0 || i == 4 || j == 4;
+        kernel[i][j] = border ? -1.0 / 8.0 : 1.0 / 4.0;
+      }
+    }
+    kernel[2][2] = 1.0;
+    return kernel;
+  }
+
+  /**
+   * Test that blur gives the pixels of the original blur filter.
+   */
+  @Test
+  public void testBlurMatchesOriginal() {
+    PixelBuffer pixels = TestImages.randomImage(97, 61, 5);
+    double[][] blur = {{1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0}, {1.0 / 8.0, 1.0 / 4.0, 1.0 / 8.0},
+        {1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0}};
+    int[][][] expected = filterLikeOriginal(pixels.toArray(), blur);
+    ConcreteImageModel model = new ConcreteImageModel(pixels);
+    model.applyBlur();
+    assertArrayEquals(expected, model.getPixelBuffer().toArray());
+  }
+
+  /**
+   * Test that sharpen gives the pixels of the original sharpen filter.
+   */
+  @Test
+  public void testSharpenMatchesOriginal() {
+    PixelBuffer pixels = TestImages.randomImage(97, 61, 6);
+    int[][][] expected = filterLikeOriginal(pixels.toArray(), sharpenWeights());
+    ConcreteImageModel model = new ConcreteImageModel(pixels);
+    model.applySharpen();
+    assertArrayEquals(expected, model.getPixelBuffer().toArray());
+  }
+
+  /**
+   * Test the blurred center of a flat image against a value worked out by hand: the corners give
+   * (int) (15 / 16) = 0, the sides (int) (15 / 8) = 1 and the center (int) (15 / 4) = 3, so the
+   * center becomes 7 rather than 15.
+   */
+  @Test
+  public void testBlurTruncatesEveryProduct() {
+    PixelBuffer pixels = new PixelBuffer(3, 3);
+    pixels.fill(0, 0, 3, 3, PixelBuffer.pack(15, 15, 15));
+    ConcreteImageModel model = new ConcreteImageModel(pixels);
+    model.applyBlur();
+    PixelBuffer blurred = model.getPixelBuffer();
+    assertEquals(PixelBuffer.pack(7, 7, 7), blurred.getRGB(1, 1));
+    assertEquals(0, blurred.getRGB(0, 0));
+    assertEquals(0, blurred.getRGB(2, 1));
+  }
+
+  /**
+   * Test that the Gaussian blur of the image model uses a separable kernel whose weights add up
+   * to 1, so it leaves a flat image flat away from the borders, and that its radius is checked.
+   */
+  @Test
+  public void testGaussianBlur() {
+    Kernel kernel = Kernel.gaussian(5);
+    assertTrue(kernel.isSeparable());
+    assertEquals(11, kernel.getSize());
+    double total = 0;
+    for (int i = 0; i < 11; i++) {
+      for (int j = 0; j < 11; j++) {
+        total += kernel.getWeight(i, j);
+      }
+    }
+    assertEquals(1, total, 1e-9);
+
+    PixelBuffer pixels = new PixelBuffer(30, 20);
+    pixels.fill(0, 0, 30, 20, PixelBuffer.pack(200, 100, 50));
+    ConcreteImageModel model = new ConcreteImageModel(pixels);
+    model.applyGaussianBlur(5);
+    for (int i = 5; i < 15; i++) {
+      for (int j = 5; j < 25; j++) {
+        int rgb = model.getPixelBuffer().getRGB(j, i);
+        assertTrue(Math.abs(PixelBuffer.red(rgb) - 200) <= 1);
+        assertTrue(Math.abs(PixelBuffer.blue(rgb) - 50) <= 1);
+      }
+    }
+    for (int radius : new int[] {0, Kernel.MAX_GAUSSIAN_RADIUS + 1}) {
+      try {
+        model.applyGaussianBlur(radius);
+        throw new AssertionError("The radius " + radius + " should be rejected.");
+      } catch (IllegalArgumentException e) {
+        // this is expected
+      }
+    }
+  }
+
+  /**
+   * Test that a kernel given as a matrix is applied in one pass and that a kernel built from two
+   * vectors is applied in two passes, whose weighted sum is truncated once.
+   */
+  @Test
+  public void testSeparableKernelTruncatesOnce() {
+    assertFalse(new Kernel(new double[][] {{1}}).isSeparable());
+    double[] thirds = {1.0 / 3.0, 1.0 / 3.0, 1.0 / 3.0};
+    Kernel box = Kernel.separable(thirds, thirds);
+    assertTrue(box.isSeparable());
+
+    PixelBuffer pixels = TestImages.randomImage(23, 17, 7);
+    PixelBuffer filtered = new ConvolutionEngine().convolve(pixels, box);
+    for (int i = 1; i < 16; i++) {
+      for (int j = 1; j < 22; j++) {
+        int sum = 0;
+        for (int k1 = -1; k1 <= 1; k1++) {
+          for (int k2 = -1; k2 <= 1; k2++) {
+            sum += PixelBuffer.green(pixels.getRGB(j + k2, i + k1));
+          }
+        }
+        // Ninths are not exact, so the sum may land just below a whole number
+        int actual = PixelBuffer.green(filtered.getRGB(j, i));
+        assertTrue(actual == sum / 9 || actual == sum / 9 - 1 && sum % 9 == 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import images.ConcreteImageModel;
+import images.DecodedImageCache;
+import images.ImageSnapshot;
+import images.ImageUtilities;
+import images.PixelBuffer;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the DecodedImageCache, checking that the pixels handed out by the image models
+ * reading through it can be changed without changing the cached image.
+ */
+public class DecodedImageCacheTest {
+  private Path file;
+  private int[] original;
+  private DecodedImageCache cache;
+
+  /**
+   * Write an image of random colors to a temporary file.
+   * 
+   * @throws IOException if the file cannot be created
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.file = Files.createTempFile("cache", ".png");
+    PixelBuffer pixels = TestImages.randomImage(23, 17, 15);
+    ImageUtilities.writeImage(pixels, this.file.toString());
+    this.original = pixels.getData().clone();
+    this.cache = new DecodedImageCache(1 << 20);
+  }
+
+  /**
+   * Delete the temporary file.
+   * 
+   * @throws IOException if the file cannot be deleted
+   */
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * Load the file into a new image model reading through the cache.
+   * 
+   * @return the image model
+   */
+  private ConcreteImageModel load() {
+    ConcreteImageModel model = new ConcreteImageModel();
+    model.setImageCache(this.cache);
+    model.loadImage(this.file.toString());
+    return model;
+  }
+
+  /**
+   * Test that the second load of a file is a hit and gives the pixels of the file.
+   */
+  @Test
+  public void testHit() {
+    assertArrayEquals(this.original, this.load().getPixelBuffer().getData());
+    assertEquals(1, this.cache.getMissCount());
+    assertArrayEquals(this.original, this.load().getPixelBuffer().getData());
+    assertEquals(1, this.cache.getHitCount());
+    assertEquals(1, this.cache.getEntryCount());
+  }
+
+  /**
+   * Test that drawing on the image of a model does not change the image loaded again.
+   */
+  @Test
+  public void testChangingTheImage() {
+    ConcreteImageModel first = this.load();
+    BufferedImage image = first.getImage();
+    image.setRGB(0, 0, 0x123456);
+    image.setRGB(5, 7, 0x654321);
+    assertEquals(0x123456, first.getPixelBuffer().getRGB(0, 0));
+
+    ConcreteImageModel second = this.load();
+    assertEquals(1, this.cache.getHitCount());
+    assertArrayEquals(this.original, second.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test that changing the pixels of a model does not change the pixels loaded again, both after
+   * a miss and after a hit.
+   */
+  @Test
+  public void testChangingThePixels() {
+    PixelBuffer missed = this.load().getPixelBuffer();
+    missed.fill(0, 0, 23, 17, 0xFFFFFF);
+    PixelBuffer hit = this.load().getPixelBuffer();
+    assertArrayEquals(this.original, hit.getData());
+    hit.setRGB(3, 3, 0);
+    assertArrayEquals(this.original, this.load().getPixelBuffer().getData());
+    assertEquals(2, this.cache.getHitCount());
+  }
+
+  /**
+   * Test that a hit hands out the cached snapshot itself, and that a model loading it starts from
+   * that snapshot and takes a new one once its pixels change, leaving the cached one as it was.
+   */
+  @Test
+  public void testHitSharesSnapshot() {
+    ImageSnapshot cached = this.cache.load(this.file.toString());
+    assertSame(cached, this.cache.load(this.file.toString()));
+    assertEquals(4L * ImageSnapshot.TILE_SIZE * ImageSnapshot.TILE_SIZE, this.cache.getSize());
+
+    ConcreteImageModel model = this.load();
+    assertSame(cached, model.getSnapshot());
+    model.getPixelBuffer().setRGB(0, 0, 0xFFFFFF);
+    ImageSnapshot changed = model.getSnapshot();
+    assertEquals(0xFFFFFF, changed.getRGB(0, 0));
+    assertArrayEquals(this.original, cached.toPixelBuffer().getData());
+    assertArrayEquals(this.original, this.load().getPixelBuffer().getData());
+  }
+
+  /**
+   * Test that a file written by a model is decoded again when it is loaded.
+   */
+  @Test
+  public void testSavingInvalidates() {
+    ConcreteImageModel model = this.load();
+    model.applySepia();
+    model.saveImage(this.file.toString());
+    int[] sepia = model.getPixelBuffer().getData().clone();
+    assertArrayEquals(sepia, this.load().getPixelBuffer().getData());
+    assertEquals(2, this.cache.getMissCount());
+  }
+
+  /**
+   * Test that a negative capacity is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCapacity() {
+    new DecodedImageCache(-1);
+  }
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.ConcreteImageModel;
+import images.EditHistory;
+import images.PixelBuffer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the EditHistory, checking that the last operation can be undone even when its
+ * step takes more than the capacity of the history.
+ */
+public class EditHistoryTest {
+
+  /**
+   * Test undoing and redoing greyscale on a large image whose step does not fit in the history.
+   */
+  @Test
+  public void testUndoLargeStep() {
+    PixelBuffer pixels = TestImages.randomImage(1024, 768, 19);
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    EditHistory history = new EditHistory(1024);
+    model.setEditHistory(history);
+    model.applyGreyscale();
+    int[] grey = model.getPixelBuffer().getData().clone();
+    assertEquals(1, history.getUndoCount());
+    assertTrue(history.getSize() > history.getCapacity());
+
+    assertTrue(model.undo());
+    assertArrayEquals(pixels.getData(), model.getPixelBuffer().getData());
+    assertFalse(model.undo());
+    assertTrue(model.redo());
+    assertArrayEquals(grey, model.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test that a new step which does not fit forgets the older steps but not itself.
+   */
+  @Test
+  public void testNewestStepKept() {
+    PixelBuffer pixels = TestImages.randomImage(1024, 768, 19);
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    EditHistory history = new EditHistory(1024);
+    model.setEditHistory(history);
+    model.applySepia();
+    int[] sepia = model.getPixelBuffer().getData().clone();
+    model.applyBlur();
+    assertEquals(1, history.getUndoCount());
+
+    assertTrue(model.undo());
+    assertArrayEquals(sepia, model.getPixelBuffer().getData());
+    assertFalse(model.undo());
+  }
+
+  /**
+   * Test that a history with a capacity of 0 records nothing.
+   */
+  @Test
+  public void testNoCapacity() {
+    ConcreteImageModel model = new ConcreteImageModel(TestImages.randomImage(40, 30, 19));
+    model.setEditHistory(new EditHistory(0));
+    model.applyGreyscale();
+    assertFalse(model.undo());
+  }
+}
@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.TileScheduler;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the greyscale enhancement, checking that the histogram of 256 counts gives the
+ * pixels of the original enhancement built on sorted maps.
+ */
+public class GreyscaleEnhancementTest {
+
+  /**
+   * Enhance a greyscale image the way the original enhancement did, with a sorted map from every
+   * grey value to its count and cumulative frequency.
+   * 
+   * @param grey the pixels of a greyscale image
+   * @return the enhanced pixels
+   */
+  private static int[] enhanceLikeOriginal(PixelBuffer grey) {
+    int[] data = grey.getData();
+    TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+    for (int rgb : data) {
+      counts.merge(PixelBuffer.red(rgb), 1, Integer::sum);
+    }
+    TreeMap<Integer, Integer> enhanced = new TreeMap<Integer, Integer>();
+    double cumulativeFrequency = 0.0;
+    for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+      cumulativeFrequency += ((double) entry.getValue()) / data.length;
+      enhanced.put(entry.getKey(), (int) Math.round(cumulativeFrequency * 255));
+    }
+    int[] result = new int[data.length];
+    for (int i = 0; i < data.length; i++) {
+      int value = enhanced.get(PixelBuffer.red(data[i]));
+      result[i] = PixelBuffer.pack(value, value, value);
+    }
+    return result;
+  }
+
+  /**
+   * Check that enhancing an image gives the pixels of the original enhancement of its greyscale
+   * version.
+   * 
+   * @param pixels the pixels of the image
+   * @param parallelism the number of threads of the model
+   */
+  private static void assertLikeOriginal(PixelBuffer pixels, int parallelism) {
+    ConcreteImageModel grey = new ConcreteImageModel(pixels.copy());
+    grey.applyGreyscale();
+    int[] expected = enhanceLikeOriginal(grey.getPixelBuffer());
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    model.setTileScheduler(new TileScheduler(parallelism));
+    model.applyGreyscaleEnhancement();
+    assertArrayEquals(expected, model.getPixelBuffer().getData());
+  }
+
+  /**
+   * Return an image whose channels are random values in a range.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param low the smallest value of a channel
+   * @param range the number of values a channel can take
+   * @param seed the seed of the values
+   * @return the image
+   */
+  private static PixelBuffer randomImage(int width, int height, int low, int range, long seed) {
+    Random random = new Random(seed);
+    PixelBuffer pixels = new PixelBuffer(width, height);
+    for (int i = 0; i < pixels.getData().length; i++) {
+      pixels.getData()[i] = PixelBuffer.pack(low + random.nextInt(range),
+          low + random.nextInt(range), low + random.nextInt(range));
+    }
+    return pixels;
+  }
+
+  /**
+   * Test an image using every grey value, on one thread and on several.
+   */
+  @Test
+  public void testRandomImage() {
+    assertLikeOriginal(randomImage(61, 43, 0, 256, 9), 1);
+    assertLikeOriginal(randomImage(400, 300, 0, 256, 10), 4);
+  }
+
+  /**
+   * Test an image of low contrast, whose few grey values are stretched over the whole range.
+   */
+  @Test
+  public void testLowContrastImage() {
+    assertLikeOriginal(randomImage(400, 300, 100, 20, 11), 4);
+  }
+
+  /**
+   * Test images of a single color and of a single pixel, whose one grey value becomes white.
+   */
+  @Test
+  public void testSingleGreyValue() {
+    assertLikeOriginal(randomImage(30, 20, 77, 1, 12), 1);
+    assertLikeOriginal(randomImage(1, 1, 0, 256, 13), 1);
+  }
+}
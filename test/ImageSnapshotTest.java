@@ -0,0 +1,100 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import images.ConcreteImageModel;
+import images.ImageSnapshot;
+import images.PixelBuffer;
+import images.TileScheduler;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the ImageSnapshot, checking that snapshots never change and that they share
+ * the tiles whose pixels are the same.
+ */
+public class ImageSnapshotTest {
+  private static final int WIDTH = 200;
+  private static final int HEIGHT = 150;
+
+  /**
+   * Test that a snapshot holds the pixels of its buffer, including the tiles on the right and
+   * bottom edges, and that changing the buffer does not change it.
+   */
+  @Test
+  public void testPixels() {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 26);
+    int[] original = pixels.getData().clone();
+    ImageSnapshot snapshot = ImageSnapshot.of(pixels);
+    assertEquals(WIDTH, snapshot.getWidth());
+    assertEquals(HEIGHT, snapshot.getHeight());
+    assertEquals(4 * 3, snapshot.getTileCount());
+    assertEquals(pixels.getRGB(WIDTH - 1, HEIGHT - 1), snapshot.getRGB(WIDTH - 1, HEIGHT - 1));
+
+    pixels.fill(0, 0, WIDTH, HEIGHT, 0);
+    assertArrayEquals(original, snapshot.toPixelBuffer().getData());
+    PixelBuffer copy = snapshot.toPixelBuffer();
+    copy.setRGB(3, 4, 0xFFFFFF);
+    assertArrayEquals(original, snapshot.toPixelBuffer().getData());
+  }
+
+  /**
+   * Test that an editor copies only the tiles it writes to and leaves the original snapshot as it
+   * was.
+   */
+  @Test
+  public void testEditorCopiesWrittenTiles() {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 27);
+    ImageSnapshot original = ImageSnapshot.of(pixels);
+    ImageSnapshot.Editor editor = original.edit();
+    editor.setRGB(10, 10, 0x123456);
+    editor.fill(60, 60, 70, 70, 0xABCDEF);
+    ImageSnapshot edited = editor.build();
+
+    // The pixel and the square touch the first tile and the four tiles around (64, 64)
+    assertEquals(original.getTileCount() - 4, edited.countSharedTiles(original));
+    assertEquals(0x123456, edited.getRGB(10, 10));
+    assertEquals(0xABCDEF, edited.getRGB(69, 69));
+    assertArrayEquals(pixels.getData(), original.toPixelBuffer().getData());
+
+    // Writing again after building does not change the built snapshot
+    editor.setRGB(10, 10, 0);
+    assertEquals(0x123456, edited.getRGB(10, 10));
+  }
+
+  /**
+   * Test that a snapshot taken from a changed buffer shares the unchanged tiles with the previous
+   * snapshot.
+   */
+  @Test
+  public void testSharesUnchangedTiles() {
+    PixelBuffer pixels = TestImages.randomImage(WIDTH, HEIGHT, 28);
+    ImageSnapshot first = ImageSnapshot.of(pixels);
+    pixels.setRGB(WIDTH - 1, HEIGHT - 1, pixels.getRGB(WIDTH - 1, HEIGHT - 1) ^ 0xFFFFFF);
+    ImageSnapshot second = ImageSnapshot.of(pixels, first, new TileScheduler(4));
+    assertEquals(first.getTileCount() - 1, second.countSharedTiles(first));
+    assertArrayEquals(pixels.getData(), second.toPixelBuffer().getData());
+  }
+
+  /**
+   * Test that an image model builds its snapshot again only after its pixels may have changed, and
+   * that the new snapshot shares the tiles whose pixels did not change.
+   */
+  @Test
+  public void testModelSnapshot() {
+    ConcreteImageModel model = new ConcreteImageModel(TestImages.randomImage(WIDTH, HEIGHT, 29));
+    ImageSnapshot first = model.getSnapshot();
+    assertSame(first, model.getSnapshot());
+
+    model.getPixelBuffer().fill(0, 0, 5, 5, 0);
+    ImageSnapshot second = model.getSnapshot();
+    assertNotSame(first, second);
+    assertEquals(first.getTileCount() - 1, second.countSharedTiles(first));
+    assertEquals(0, second.getRGB(4, 4));
+
+    ConcreteImageModel copy = new ConcreteImageModel(second);
+    assertSame(second, copy.getSnapshot());
+    copy.applyGreyscale();
+    assertEquals(0, copy.getSnapshot().countSharedTiles(second));
+  }
+}
@@ -0,0 +1,231 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import images.ImageInfo;
+import images.ImageUtilities;
+import images.PixelBuffer;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the ImageUtilities.
+ */
+public class ImageUtilitiesTest {
+
+  /**
+   * Fill an image with random colors and check that its pixel buffer holds the colors returned by
+   * the image itself, whichever way the layout of the image is copied.
+   * 
+   * @param image the image to fill and convert
+   */
+  private static void assertConvertedLikeGetRgb(BufferedImage image) {
+    Random random = new Random(image.getType() * 31 + image.getWidth());
+    for (int i = 0; i < image.getHeight(); i++) {
+      for (int j = 0; j < image.getWidth(); j++) {
+        image.setRGB(j, i, random.nextInt());
+      }
+    }
+    PixelBuffer pixels = ImageUtilities.toPixelBuffer(image);
+    assertEquals(image.getWidth(), pixels.getWidth());
+    assertEquals(image.getHeight(), pixels.getHeight());
+    for (int i = 0; i < image.getHeight(); i++) {
+      for (int j = 0; j < image.getWidth(); j++) {
+        assertEquals("pixel " + j + ", " + i + " of type " + image.getType(),
+            image.getRGB(j, i) & 0xFFFFFF, pixels.getRGB(j, i));
+      }
+    }
+  }
+
+  /**
+   * Test packed integer RGB images, which are copied out of the data buffer.
+   */
+  @Test
+  public void testIntRgb() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_INT_RGB));
+  }
+
+  /**
+   * Test packed integer ARGB images, whose alpha is dropped.
+   */
+  @Test
+  public void testIntArgb() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_INT_ARGB));
+  }
+
+  /**
+   * Test premultiplied ARGB images, which go through the color model.
+   */
+  @Test
+  public void testIntArgbPremultiplied() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_INT_ARGB_PRE));
+  }
+
+  /**
+   * Test packed integer BGR images, whose masks are not the ones copied directly.
+   */
+  @Test
+  public void testIntBgr() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_INT_BGR));
+  }
+
+  /**
+   * Test interleaved byte BGR images.
+   */
+  @Test
+  public void testThreeByteBgr() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_3BYTE_BGR));
+  }
+
+  /**
+   * Test interleaved byte ABGR images.
+   */
+  @Test
+  public void testFourByteAbgr() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_4BYTE_ABGR));
+  }
+
+  /**
+   * Test 8-bit grey images, whose linear grey levels are converted to sRGB.
+   */
+  @Test
+  public void testByteGrey() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_GRAY));
+  }
+
+  /**
+   * Test 16-bit grey images, which go through the color model.
+   */
+  @Test
+  public void testShortGrey() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_USHORT_GRAY));
+  }
+
+  /**
+   * Test images with 16-bit packed pixels, which go through the color model.
+   */
+  @Test
+  public void testShort565() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_USHORT_565_RGB));
+  }
+
+  /**
+   * Test indexed images with one byte per pixel.
+   */
+  @Test
+  public void testByteIndexed() {
+    assertConvertedLikeGetRgb(new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_INDEXED));
+  }
+
+  /**
+   * Test indexed images with 1, 2 and 4 bits per pixel, several of which are packed into each
+   * byte. The odd width leaves unused bits at the end of every row.
+   */
+  @Test
+  public void testPackedIndexed() {
+    for (int bits : new int[] {1, 2, 4}) {
+      int size = 1 << bits;
+      byte[] red = new byte[size];
+      byte[] green = new byte[size];
+      byte[] blue = new byte[size];
+      for (int i = 0; i < size; i++) {
+        red[i] = (byte) (i * 255 / (size - 1));
+        green[i] = (byte) (255 - i * 40);
+        blue[i] = (byte) (i * 17);
+      }
+      IndexColorModel colorModel = new IndexColorModel(bits, size, red, green, blue);
+      assertConvertedLikeGetRgb(
+          new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_BINARY, colorModel));
+    }
+  }
+
+  /**
+   * Test an image that is part of a larger image, whose raster starts inside the data buffer.
+   */
+  @Test
+  public void testSubimage() {
+    BufferedImage image = new BufferedImage(40, 20, BufferedImage.TYPE_3BYTE_BGR);
+    assertConvertedLikeGetRgb(image);
+    BufferedImage part = image.getSubimage(3, 5, 30, 10);
+    PixelBuffer pixels = ImageUtilities.toPixelBuffer(part);
+    for (int i = 0; i < part.getHeight(); i++) {
+      for (int j = 0; j < part.getWidth(); j++) {
+        assertEquals(part.getRGB(j, i) & 0xFFFFFF, pixels.getRGB(j, i));
+      }
+    }
+  }
+
+  /**
+   * Test that a null image cannot be converted.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    ImageUtilities.toPixelBuffer(null);
+  }
+
+  /**
+   * Test that the header of every format read by the program gives the size of the image.
+   * 
+   * @throws IOException if the temporary files cannot be written
+   */
+  @Test
+  public void testProbeEveryFormat() throws IOException {
+    String[][] formats = {{"png", "png"}, {"jpg", "jpeg"}, {"gif", "gif"}, {"bmp", "bmp"}};
+    for (String[] format : formats) {
+      Path file = Files.createTempFile("probe", "." + format[0]);
+      try {
+        BufferedImage image = new BufferedImage(53, 29, BufferedImage.TYPE_3BYTE_BGR);
+        assertTrue(ImageIO.write(image, format[0], file.toFile()));
+        ImageInfo info = ImageUtilities.probe(file);
+        assertEquals(53, info.getWidth());
+        assertEquals(29, info.getHeight());
+        assertEquals(format[1], info.getFormatName());
+        assertTrue(info.getBitDepth() > 0);
+        assertEquals(53, ImageUtilities.getWidth(file.toString()));
+        assertEquals(29, ImageUtilities.getHeight(file.toString()));
+      } finally {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Test that probing the sample images gives the size of the decoded images.
+   * 
+   * @throws IOException if a sample image cannot be read
+   */
+  @Test
+  public void testProbeSampleImages() throws IOException {
+    File[] samples = new File(".").listFiles((directory, name) -> name.endsWith(".png"));
+    assertTrue(samples.length > 0);
+    for (File sample : samples) {
+      BufferedImage image = ImageIO.read(sample);
+      ImageInfo info = ImageUtilities.probe(sample.toPath());
+      assertEquals(sample.getName(), image.getWidth(), info.getWidth());
+      assertEquals(sample.getName(), image.getHeight(), info.getHeight());
+    }
+  }
+
+  /**
+   * Test that a file without an image cannot be probed.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testProbeNotAnImage() {
+    ImageUtilities.probe(Paths.get("input.txt"));
+  }
+
+  /**
+   * Test that a missing file cannot be probed.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testProbeMissingFile() {
+    ImageUtilities.probe(Paths.get("missing-image.png"));
+  }
+}
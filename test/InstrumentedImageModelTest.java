@@ -0,0 +1,166 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import images.ConcreteImageModel;
+import images.ImageModel;
+import images.InstrumentedImageModel;
+import images.OperationContext;
+import images.OperationMetrics;
+import images.PixelBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the InstrumentedImageModel.
+ */
+public class InstrumentedImageModelTest {
+  private List<Long> pixels;
+  private OperationMetrics metrics;
+
+  /**
+   * Create a registry remembering the pixels of every run it records.
+   */
+  @Before
+  public void setUp() {
+    this.pixels = new ArrayList<Long>();
+    this.metrics = new OperationMetrics() {
+      @Override
+      public void record(String operation, long nanos, long pixelCount) {
+        super.record(operation, nanos, pixelCount);
+        pixels.add(pixelCount);
+      }
+    };
+  }
+
+  /**
+   * Return a measured image model holding an image of one color.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @return the measured model
+   */
+  private InstrumentedImageModel measured(int width, int height) {
+    PixelBuffer buffer = new PixelBuffer(width, height);
+    buffer.fill(0, 0, width, height, 0x336699);
+    return new InstrumentedImageModel(new ConcreteImageModel(buffer), this.metrics);
+  }
+
+  /**
+   * Test that null arguments are rejected.
+   */
+  @Test
+  public void testInvalidArguments() {
+    try {
+      new InstrumentedImageModel(null, this.metrics);
+      fail("A null model should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+    try {
+      new InstrumentedImageModel(new ConcreteImageModel(), null);
+      fail("A null registry should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+  }
+
+  /**
+   * Test that an operation that succeeds is recorded with the pixels of the image and changes the
+   * image like the measured model alone does.
+   */
+  @Test
+  public void testOperation() {
+    InstrumentedImageModel model = this.measured(30, 20);
+    model.applySepia();
+    model.applySepia();
+    assertEquals(2, this.metrics.count("sepia"));
+    assertEquals(0, this.metrics.errors("sepia"));
+    assertEquals(2, this.metrics.getLatency("sepia").getCount());
+    assertEquals(600L, (long) this.pixels.get(1));
+
+    ConcreteImageModel expected = new ConcreteImageModel(new PixelBuffer(30, 20));
+    expected.getPixelBuffer().fill(0, 0, 30, 20, 0x336699);
+    expected.applySepia();
+    expected.applySepia();
+    assertArrayEquals(expected.getImageData(), model.getImageData());
+  }
+
+  /**
+   * Test that an operation that fails is counted as an error, is not timed, and still throws.
+   */
+  @Test
+  public void testError() {
+    InstrumentedImageModel model = new InstrumentedImageModel(new ConcreteImageModel(),
+        this.metrics);
+    try {
+      model.loadImage("missing-file-of-the-instrumented-model-test.png");
+      fail("Loading a missing file should fail.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+    assertEquals(1, this.metrics.errors("load"));
+    assertEquals(0, this.metrics.count("load"));
+    assertEquals(1, this.metrics.getErrorCount());
+  }
+
+  /**
+   * Test that a cancelled operation is neither timed nor counted as an error.
+   */
+  @Test
+  public void testCancelled() {
+    InstrumentedImageModel model = this.measured(30, 20);
+    OperationContext context = new OperationContext(null);
+    context.cancel();
+    model.setOperationContext(context);
+    try {
+      model.applyBlur();
+      fail("The operation should have been cancelled.");
+    } catch (CancellationException e) {
+      // this is expected
+    }
+    assertEquals(0, this.metrics.count("blur"));
+    assertEquals(0, this.metrics.errors("blur"));
+  }
+
+  /**
+   * Test that cropping counts the pixels of the cropped image and returns a measured model that
+   * records into the same registry.
+   */
+  @Test
+  public void testCropping() {
+    InstrumentedImageModel model = this.measured(30, 20);
+    ImageModel cropped = model.applyImageCropping(5, 4, 10, 6);
+    assertTrue(cropped instanceof InstrumentedImageModel);
+    ImageModel delegate = ((InstrumentedImageModel) cropped).getDelegate();
+    assertTrue(delegate instanceof ConcreteImageModel);
+    assertEquals(10, delegate.getImage().getWidth());
+    assertEquals(6, delegate.getImage().getHeight());
+    assertEquals(1, this.metrics.count("crop"));
+    assertEquals(60L, (long) this.pixels.get(0));
+
+    cropped.applyGreyscale();
+    assertEquals(1, this.metrics.count("greyscale"));
+    assertEquals(60L, (long) this.pixels.get(1));
+  }
+
+  /**
+   * Test that a crop outside the image is counted as an error and still throws.
+   */
+  @Test
+  public void testCroppingError() {
+    InstrumentedImageModel model = this.measured(30, 20);
+    try {
+      model.applyImageCropping(25, 0, 10, 6);
+      fail("A crop outside the image should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+    assertEquals(1, this.metrics.errors("crop"));
+    assertEquals(0, this.metrics.count("crop"));
+  }
+}
@@ -0,0 +1,152 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import images.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+  private static final long LARGE = 1L << 61;
+
+  /**
+   * Return the value the histogram gives for a single recorded value, which is the largest value
+   * of its bucket. A much larger value is recorded as well, so the result is not cut down to the
+   * largest value recorded.
+   * 
+   * @param value the value to record
+   * @return the largest value of the bucket holding the value
+   */
+  private static long bucketTop(long value) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(value);
+    histogram.record(LARGE);
+    return histogram.getValueAtPercentile(50);
+  }
+
+  /**
+   * Test that the small values have a bucket each.
+   */
+  @Test
+  public void testLinearBuckets() {
+    for (long value = 0; value < 2 * LatencyHistogram.SUB_BUCKETS; value++) {
+      assertEquals(value, bucketTop(value));
+    }
+  }
+
+  /**
+   * Test the bounds of the buckets around powers of two: every bucket ends just before the next
+   * one starts, and it is at most a thirty-second of its values wide.
+   */
+  @Test
+  public void testBucketBounds() {
+    assertEquals(65, bucketTop(64));
+    assertEquals(65, bucketTop(65));
+    assertEquals(67, bucketTop(66));
+    assertEquals(127, bucketTop(126));
+    assertEquals(131, bucketTop(128));
+    for (int power = 7; power < 61; power++) {
+      long start = 1L << power;
+      long width = start / LatencyHistogram.SUB_BUCKETS;
+      assertEquals(start - 1, bucketTop(start - 1));
+      assertEquals(start + width - 1, bucketTop(start));
+      assertEquals(start + width - 1, bucketTop(start + width - 1));
+      assertEquals(start + 2 * width - 1, bucketTop(start + width));
+    }
+    Random random = new Random(22);
+    for (int k = 0; k < 10000; k++) {
+      long value = random.nextLong() >>> (3 + random.nextInt(60));
+      long top = bucketTop(value);
+      assertTrue(value <= top);
+      assertTrue(top - value <= value / LatencyHistogram.SUB_BUCKETS);
+      assertEquals(top, bucketTop(top));
+      assertTrue(bucketTop(top + 1) > top);
+    }
+  }
+
+  /**
+   * Test the percentiles of the values 1 to 1000, which are known to within their buckets.
+   */
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1000; value >= 1; value--) {
+      histogram.record(value);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500, histogram.getSum());
+    assertEquals(500.5, histogram.getMean(), 1e-9);
+    assertEquals(1000, histogram.getMax());
+    assertEquals(1, histogram.getValueAtPercentile(0));
+    assertEquals(1, histogram.getValueAtPercentile(0.1));
+    assertEquals(503, histogram.getValueAtPercentile(50));
+    assertEquals(991, histogram.getValueAtPercentile(99));
+    // The top bucket holds values up to 1023, but none above the largest value recorded
+    assertEquals(1000, histogram.getValueAtPercentile(100));
+  }
+
+  /**
+   * Test an empty histogram, negative values and resetting.
+   */
+  @Test
+  public void testEmptyAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0, histogram.getMean(), 0);
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(100));
+    histogram.record(12345);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getSum());
+    assertEquals(0, histogram.getMax());
+  }
+
+  /**
+   * Test that percentages outside 0 to 100 are rejected.
+   */
+  @Test
+  public void testInvalidPercentile() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (double percentile : new double[] {-1, 100.5, Double.NaN}) {
+      try {
+        histogram.getValueAtPercentile(percentile);
+        throw new AssertionError("The percentile " + percentile + " should be rejected.");
+      } catch (IllegalArgumentException e) {
+        // this is expected
+      }
+    }
+  }
+
+  /**
+   * Test that values recorded from several threads at once are all counted.
+   * 
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void testConcurrentRecording() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      long offset = t * 1000;
+      Thread thread = new Thread(() -> {
+        for (long value = 1; value <= 10000; value++) {
+          histogram.record(offset + value);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, histogram.getCount());
+    assertEquals(4 * 50005000L + 10000L * (0 + 1000 + 2000 + 3000), histogram.getSum());
+    assertEquals(13000, histogram.getMax());
+  }
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import images.TileScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the lazy mode of the ConcreteImageModel, checking that recording and fusing
+ * the operations gives the pixels of running every operation when it is applied.
+ */
+public class LazyModeTest {
+  private static final List<String> NAMES = Arrays.asList("blur", "gaussianBlur", "sharpen",
+      "greyscale", "sepia", "edgeDetection", "greyscaleEnhancement", "dither", "mosaic");
+
+  /**
+   * Return the operation of the image model with the given name.
+   * 
+   * @param name the name of the operation
+   * @return the operation
+   */
+  private static Consumer<ConcreteImageModel> operation(String name) {
+    switch (name) {
+      case "blur":
+        return ConcreteImageModel::applyBlur;
+      case "gaussianBlur":
+        return model -> model.applyGaussianBlur(3);
+      case "sharpen":
+        return ConcreteImageModel::applySharpen;
+      case "greyscale":
+        return ConcreteImageModel::applyGreyscale;
+      case "sepia":
+        return ConcreteImageModel::applySepia;
+      case "edgeDetection":
+        return ConcreteImageModel::applyEdgeDetection;
+      case "greyscaleEnhancement":
+        return ConcreteImageModel::applyGreyscaleEnhancement;
+      case "dither":
+        return ConcreteImageModel::applyDither;
+      default:
+        return model -> model.applyMosaic(40, new SeedGenerator(12));
+    }
+  }
+
+  /**
+   * Check that a chain of operations gives the same pixels in lazy mode and in eager mode.
+   * 
+   * @param pixels the pixels of the image
+   * @param chain the names of the operations in the order they are applied
+   */
+  private static void assertLazyLikeEager(PixelBuffer pixels, List<String> chain) {
+    ConcreteImageModel eager = new ConcreteImageModel(pixels.copy());
+    ConcreteImageModel lazy = new ConcreteImageModel(pixels.copy());
+    lazy.setTileScheduler(new TileScheduler(3));
+    lazy.setLazy(true);
+    assertTrue(lazy.isLazy());
+    for (String name : chain) {
+      operation(name).accept(eager);
+      operation(name).accept(lazy);
+    }
+    assertArrayEquals(chain.toString(), eager.getPixelBuffer().getData(),
+        lazy.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test the chains of a convolution followed by color transforms, which are fused into one pass.
+   */
+  @Test
+  public void testConvolutionAndColorChains() {
+    PixelBuffer pixels = TestImages.randomImage(83, 59, 1);
+    assertLazyLikeEager(pixels, Arrays.asList("blur", "greyscale"));
+    assertLazyLikeEager(pixels, Arrays.asList("sharpen", "sepia", "greyscale"));
+    assertLazyLikeEager(pixels, Arrays.asList("greyscale", "blur", "sepia"));
+    assertLazyLikeEager(pixels, Arrays.asList("blur", "blur", "sharpen", "sepia"));
+    assertLazyLikeEager(pixels, Arrays.asList("sepia", "sepia", "sepia"));
+    assertLazyLikeEager(pixels, Arrays.asList("gaussianBlur", "sepia", "blur"));
+  }
+
+  /**
+   * Test chains with edge detection, whose normalization needs every magnitude first.
+   */
+  @Test
+  public void testEdgeDetectionChains() {
+    PixelBuffer pixels = TestImages.randomImage(83, 59, 2);
+    assertLazyLikeEager(pixels, Arrays.asList("edgeDetection"));
+    assertLazyLikeEager(pixels, Arrays.asList("blur", "edgeDetection", "sepia"));
+    assertLazyLikeEager(pixels, Arrays.asList("sepia", "edgeDetection", "blur", "greyscale"));
+  }
+
+  /**
+   * Test random chains of every operation on images of several sizes, some of them thinner than
+   * the kernels.
+   */
+  @Test
+  public void testRandomChains() {
+    Random random = new Random(3);
+    int[][] sizes = {{1, 1}, {4, 3}, {29, 2}, {83, 59}, {300, 220}};
+    for (int[] size : sizes) {
+      for (int k = 0; k < 8; k++) {
+        List<String> chain = new ArrayList<String>();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+          chain.add(NAMES.get(random.nextInt(NAMES.size())));
+        }
+        assertLazyLikeEager(TestImages.randomImage(size[0], size[1], random.nextLong()), chain);
+      }
+    }
+  }
+
+  /**
+   * Test that leaving lazy mode runs the recorded operations.
+   */
+  @Test
+  public void testLeavingLazyMode() {
+    PixelBuffer pixels = TestImages.randomImage(40, 30, 4);
+    ConcreteImageModel eager = new ConcreteImageModel(pixels.copy());
+    eager.applyBlur();
+    eager.applySepia();
+    ConcreteImageModel lazy = new ConcreteImageModel(pixels.copy());
+    lazy.setLazy(true);
+    lazy.applyBlur();
+    lazy.applySepia();
+    lazy.setLazy(false);
+    assertFalse(lazy.isLazy());
+    assertArrayEquals(eager.getPixelBuffer().getData(), lazy.getPixelBuffer().getData());
+  }
+}
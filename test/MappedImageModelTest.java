@@ -0,0 +1,141 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import images.ConcreteImageModel;
+import images.ImageModel;
+import images.MappedImageModel;
+import images.MappedPixelStore;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import images.TileScheduler;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the MappedImageModel, checking that it gives the pixels of the
+ * ConcreteImageModel on images crossing the borders of the tiles and split into several mappings.
+ */
+public class MappedImageModelTest {
+  // Mappings of 128 KiB hold two rows of tiles of the images up to 192 pixels wide, and one row
+  // of tiles of the images up to 512 pixels wide
+  private static final int MAPPING_BYTES = 1 << 17;
+  private static final int[][] SIZES = {{1, 1}, {64, 64}, {65, 129}, {150, 200}, {257, 70}};
+
+  /**
+   * Return a mapped image model holding a copy of an image in small mappings.
+   * 
+   * @param pixels the pixels of the image
+   * @return the mapped model
+   */
+  private static MappedImageModel mapped(PixelBuffer pixels) {
+    MappedImageModel model = new MappedImageModel(MappedPixelStore.of(pixels, MAPPING_BYTES));
+    model.setMappingBytes(MAPPING_BYTES);
+    model.setTileScheduler(new TileScheduler(3));
+    return model;
+  }
+
+  /**
+   * Check that an operation gives the pixels of the ConcreteImageModel on every size. It is
+   * applied three times, so that the last time it writes to a store an earlier time replaced.
+   * 
+   * @param concrete the operation on the ConcreteImageModel
+   * @param mapped the same operation on the MappedImageModel
+   */
+  private static void assertLikeConcrete(Consumer<ConcreteImageModel> concrete,
+      Consumer<MappedImageModel> mapped) {
+    for (int[] size : SIZES) {
+      PixelBuffer pixels = TestImages.randomImage(size[0], size[1], 25);
+      ConcreteImageModel expected = new ConcreteImageModel(pixels.copy());
+      MappedImageModel model = mapped(pixels);
+      MappedPixelStore original = model.getStore();
+      for (int k = 0; k < 3; k++) {
+        concrete.accept(expected);
+        mapped.accept(model);
+        assertArrayEquals(size[0] + "x" + size[1], expected.getImageData(),
+            model.getImageData());
+      }
+      // The store handed to the model is never written
+      assertArrayEquals(pixels.getData(), original.toPixelBuffer().getData());
+    }
+  }
+
+  /**
+   * Test that the images are split into several mappings.
+   */
+  @Test
+  public void testSeveralMappings() {
+    PixelBuffer narrow = TestImages.randomImage(150, 200, 25);
+    assertEquals(2, MappedPixelStore.of(narrow, MAPPING_BYTES).getMappingCount());
+    PixelBuffer wide = TestImages.randomImage(257, 200, 25);
+    MappedPixelStore store = MappedPixelStore.of(wide, MAPPING_BYTES);
+    assertEquals(4, store.getMappingCount());
+    assertEquals(1, MappedPixelStore.of(wide).getMappingCount());
+    assertArrayEquals(wide.getData(), store.toPixelBuffer().getData());
+  }
+
+  /**
+   * Test the convolutions and the color transformations.
+   */
+  @Test
+  public void testStreamedOperations() {
+    assertLikeConcrete(ConcreteImageModel::applyBlur, MappedImageModel::applyBlur);
+    assertLikeConcrete(model -> model.applyGaussianBlur(9), model -> model.applyGaussianBlur(9));
+    assertLikeConcrete(ConcreteImageModel::applySharpen, MappedImageModel::applySharpen);
+    assertLikeConcrete(ConcreteImageModel::applyGreyscale, MappedImageModel::applyGreyscale);
+    assertLikeConcrete(ConcreteImageModel::applySepia, MappedImageModel::applySepia);
+    assertLikeConcrete(ConcreteImageModel::applyEdgeDetection,
+        MappedImageModel::applyEdgeDetection);
+  }
+
+  /**
+   * Test dithering, the mosaic with the same seeds and greyscale enhancement.
+   */
+  @Test
+  public void testStoreOperations() {
+    assertLikeConcrete(ConcreteImageModel::applyDither, MappedImageModel::applyDither);
+    assertLikeConcrete(model -> model.applyMosaic(50, new SeedGenerator(25)),
+        model -> model.applyMosaic(50, new SeedGenerator(25)));
+    assertLikeConcrete(ConcreteImageModel::applyGreyscaleEnhancement,
+        MappedImageModel::applyGreyscaleEnhancement);
+  }
+
+  /**
+   * Test cropping rectangles across the borders of the tiles and of the mappings, and filtering
+   * the cropped image.
+   */
+  @Test
+  public void testCropping() {
+    PixelBuffer pixels = TestImages.randomImage(257, 200, 25);
+    int[][] rectangles = {{0, 0, 1, 1}, {63, 63, 2, 2}, {37, 50, 150, 100}, {0, 0, 257, 200},
+        {256, 199, 1, 1}};
+    for (int[] r : rectangles) {
+      ImageModel expected = new ConcreteImageModel(pixels.copy())
+          .applyImageCropping(r[0], r[1], r[2], r[3]);
+      MappedImageModel source = mapped(pixels);
+      ImageModel cropped = source.applyImageCropping(r[0], r[1], r[2], r[3]);
+      assertEquals(r[2], cropped.getImageWidth());
+      assertEquals(r[3], cropped.getImageHeight());
+      assertArrayEquals(expected.getImageData(), cropped.getImageData());
+      expected.applyBlur();
+      cropped.applyBlur();
+      assertArrayEquals(expected.getImageData(), cropped.getImageData());
+      assertEquals(257, source.getImageWidth());
+    }
+  }
+
+  /**
+   * Test that a crop outside the image is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCroppingOutside() {
+    mapped(TestImages.randomImage(65, 65, 25)).applyImageCropping(10, 10, 56, 10);
+  }
+
+  /**
+   * Test that a mapping smaller than a tile is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMappingTooSmall() {
+    new MappedImageModel().setMappingBytes(1000);
+  }
+}
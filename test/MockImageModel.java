@@ -1,4 +1,6 @@
 import images.ImageModel;
+import images.OperationContext;
+import java.awt.image.BufferedImage;
 
 /**
  * A mock class for the model of the image processing program.
@@ -52,6 +54,16 @@ public class MockImageModel implements ImageModel {
     this.modelLog.append("Applying blur" + System.lineSeparator());
   }
 
+  /**
+   * Mocks applying a Gaussian blur to the data in the image model.
+   * 
+   * @param radius the radius of the blur
+   */
+  @Override
+  public void applyGaussianBlur(int radius) {
+    this.modelLog.append("Applying gaussian blur with radius " + radius + System.lineSeparator());
+  }
+
   /**
    * Mocks applying the sharpen filter to the data in the image model.
    */
@@ -105,6 +117,33 @@ public class MockImageModel implements ImageModel {
     return new int[199][301][3];
   }
 
+  /**
+   * Mocks getting an image showing the data of this model.
+   */
+  @Override
+  public BufferedImage getImage() {
+    this.modelLog.append("Getting image" + System.lineSeparator());
+    return new BufferedImage(301, 199, BufferedImage.TYPE_INT_RGB);
+  }
+
+  /**
+   * Mocks getting the width of the image of this model.
+   */
+  @Override
+  public int getImageWidth() {
+    this.modelLog.append("Getting image width" + System.lineSeparator());
+    return 301;
+  }
+
+  /**
+   * Mocks getting the height of the image of this model.
+   */
+  @Override
+  public int getImageHeight() {
+    this.modelLog.append("Getting image height" + System.lineSeparator());
+    return 199;
+  }
+
   /**
    * Mocks generating a rainbow.
    * 
@@ -197,4 +236,36 @@ public class MockImageModel implements ImageModel {
     this.modelLog.append(
         "Generating a national flag of Swizerland with width at " + width + System.lineSeparator());
   }
+
+  /**
+   * Mocks undoing the last operation.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean undo() {
+    this.modelLog.append("Undoing" + System.lineSeparator());
+    return true;
+  }
+
+  /**
+   * Mocks redoing the last operation that was undone.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean redo() {
+    this.modelLog.append("Redoing" + System.lineSeparator());
+    return true;
+  }
+
+  /**
+   * Mocks setting the context of the operations.
+   * 
+   * @param context the context of the operations
+   */
+  @Override
+  public void setOperationContext(OperationContext context) {
+    // the mock does not run any operation
+  }
 }
@@ -173,4 +173,32 @@ public class MockImageView implements ImageView {
     this.viewLog.append("Showing confimation dialog and the message shown is " + message);
     return 0;
   }
+
+  /**
+   * Mocks showing the progress of an operation.
+   * 
+   * @param message the description of the operation
+   */
+  @Override
+  public void showProgress(String message) {
+    this.viewLog.append("Showing progress: " + message + System.lineSeparator());
+  }
+
+  /**
+   * Mocks showing how far an operation has got.
+   * 
+   * @param percent the percentage that is done
+   */
+  @Override
+  public void updateProgress(int percent) {
+    this.viewLog.append("Updating progress: " + percent + System.lineSeparator());
+  }
+
+  /**
+   * Mocks hiding the progress of an operation.
+   */
+  @Override
+  public void hideProgress() {
+    this.viewLog.append("Hiding progress" + System.lineSeparator());
+  }
 }
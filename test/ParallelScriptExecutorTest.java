@@ -0,0 +1,307 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import images.ConcreteImageModel;
+import images.ImageModel;
+import images.ImageUtilities;
+import images.PixelBuffer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import script.CompiledScript;
+import script.ParallelScriptExecutor;
+import script.ScriptCompiler;
+import script.ScriptExecutionException;
+import script.ScriptListener;
+import script.ScriptSyntaxException;
+
+/**
+ * A JUnit test for the ParallelScriptExecutor.
+ */
+public class ParallelScriptExecutorTest {
+  private static final String CHECKERBOARD = "checkboard 40 4 255 0 0 0 0 255";
+
+  private Path directory;
+
+  /**
+   * A listener recording what it is told as lines of text.
+   */
+  private static class RecordingListener implements ScriptListener {
+    private final List<String> events = new ArrayList<String>();
+
+    @Override
+    public synchronized void lineApplied(int lineNumber, String line, long elapsedNanos) {
+      events.add("applied " + lineNumber);
+    }
+
+    @Override
+    public synchronized void scriptStopped(int lineNumber, String title, String message) {
+      events.add("stopped " + lineNumber);
+    }
+
+    @Override
+    public synchronized void scriptFinished(int lineCount) {
+      events.add("finished " + lineCount);
+    }
+  }
+
+  /**
+   * Create a temporary folder for the images of the scripts.
+   * 
+   * @throws IOException if the folder cannot be created
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("scripts");
+  }
+
+  /**
+   * Delete the temporary folder and the images in it.
+   * 
+   * @throws IOException if a file cannot be deleted
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(this.directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Return the path of an image in the temporary folder.
+   * 
+   * @param name the name of the image
+   * @return the path of the image
+   */
+  private String file(String name) {
+    return this.directory.resolve(name).toString();
+  }
+
+  /**
+   * Return a factory of image models that wait before loading or saving a file, so that the
+   * segments overtake each other unless they wait for each other.
+   * 
+   * @param delayedLoad the name of the file whose loads wait, or null for none
+   * @param delayedSave the name of the file whose saves wait, or null for none
+   * @return the factory
+   */
+  private static Supplier<ImageModel> slowModels(String delayedLoad, String delayedSave) {
+    return () -> new ConcreteImageModel() {
+      @Override
+      public void loadImage(String filename) {
+        pause(filename.equals(delayedLoad));
+        super.loadImage(filename);
+      }
+
+      @Override
+      public void saveImage(String filename) {
+        pause(filename.equals(delayedSave));
+        super.saveImage(filename);
+      }
+
+      private void pause(boolean delayed) {
+        if (delayed) {
+          try {
+            Thread.sleep(150);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Apply a script with a parallel executor and return what its listener was told.
+   * 
+   * @param script the text of the script
+   * @param models the factory of the image models
+   * @param threads the number of threads of the executor
+   * @return the events told to the listener
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  private static List<String> execute(String script, Supplier<ImageModel> models, int threads)
+      throws ScriptSyntaxException {
+    RecordingListener listener = new RecordingListener();
+    new ParallelScriptExecutor(models, threads, Long.MAX_VALUE)
+        .execute(ScriptCompiler.compile(script), listener);
+    return listener.events;
+  }
+
+  /**
+   * Test that a script is split before every load and generator.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testSplit() throws ScriptSyntaxException {
+    CompiledScript script = ScriptCompiler.compile("blur\n" + "load a.png\n" + "sepia\n"
+        + "save b.png\n" + "rainbowH 10 7\n" + "norway 44\n" + "dither\n" + "load c.png");
+    List<CompiledScript> segments = ParallelScriptExecutor.split(script);
+    assertEquals(5, segments.size());
+    int[] sizes = {1, 3, 1, 2, 1};
+    int[] firstLines = {1, 2, 5, 6, 8};
+    for (int k = 0; k < segments.size(); k++) {
+      assertEquals(sizes[k], segments.get(k).size());
+      assertEquals(firstLines[k], segments.get(k).getCommands().get(0).getLineNumber());
+    }
+  }
+
+  /**
+   * Test that a segment loading a file saved by an earlier segment waits until it is saved.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testLoadWaitsForSave() throws ScriptSyntaxException {
+    String script = CHECKERBOARD + "\n" + "save " + file("first.png") + "\n" + "load "
+        + file("first.png") + "\n" + "greyscale\n" + "save " + file("second.png");
+    List<String> events = execute(script, slowModels(null, file("first.png")), 4);
+    assertEquals("finished 5", events.get(events.size() - 1));
+
+    ConcreteImageModel expected = new ConcreteImageModel(
+        ImageUtilities.readPixels(file("first.png")));
+    expected.applyGreyscale();
+    PixelBuffer second = ImageUtilities.readPixels(file("second.png"));
+    assertArrayEquals(expected.getPixelBuffer().getData(), second.getData());
+  }
+
+  /**
+   * Test that a segment saving a file loaded by an earlier segment only replaces it once it is
+   * loaded, and that two segments saving the same file save it in the order of the script.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testSaveWaitsForLoadAndSave() throws ScriptSyntaxException {
+    PixelBuffer original = new PixelBuffer(12, 8);
+    original.fill(0, 0, 12, 8, 0x336699);
+    ImageUtilities.writeImage(original, file("shared.png"));
+    String script = "load " + file("shared.png") + "\n" + "save " + file("copy.png") + "\n"
+        + "rainbowH 12 7\n" + "save " + file("shared.png") + "\n" + "norway 44\n" + "save "
+        + file("shared.png");
+    execute(script, slowModels(file("shared.png"), file("shared.png")), 4);
+
+    assertArrayEquals(original.getData(),
+        ImageUtilities.readPixels(file("copy.png")).getData());
+    ConcreteImageModel norway = new ConcreteImageModel();
+    norway.generateNationalFlagOfNorway(44);
+    assertArrayEquals(norway.getPixelBuffer().getData(),
+        ImageUtilities.readPixels(file("shared.png")).getData());
+  }
+
+  /**
+   * Test that the lines are reported in the order of the script even when later segments finish
+   * first.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testLinesReportedInOrder() throws ScriptSyntaxException {
+    String script = CHECKERBOARD + "\n" + "save " + file("slow.png") + "\n" + "rainbowV 9 9\n"
+        + "sepia\n" + "norway 44\n" + "blur\n" + "greece 54";
+    List<String> events = execute(script, slowModels(null, file("slow.png")), 4);
+    List<String> expected = new ArrayList<String>();
+    for (int line = 1; line <= 7; line++) {
+      expected.add("applied " + line);
+    }
+    expected.add("finished 7");
+    assertEquals(expected, events);
+  }
+
+  /**
+   * Test that a failing segment stops the script: the lines after it are not reported and the
+   * segments after it that have not started are not applied.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testFailureStopsLaterSegments() throws ScriptSyntaxException {
+    String script = CHECKERBOARD + "\n" + "save " + file("before.png") + "\n" + "load "
+        + file("missing.png") + "\n" + "blur\n" + "norway 44\n" + "save " + file("after.png");
+    List<String> events = execute(script, slowModels(null, null), 1);
+    assertEquals(3, events.size());
+    assertEquals("applied 1", events.get(0));
+    assertEquals("applied 2", events.get(1));
+    assertEquals("stopped 3", events.get(2));
+    assertTrue(Files.exists(this.directory.resolve("before.png")));
+    assertFalse(Files.exists(this.directory.resolve("after.png")));
+
+    events = execute(script, slowModels(null, file("before.png")), 4);
+    assertEquals("stopped 3", events.get(events.size() - 1));
+    assertFalse(events.contains("applied 5"));
+  }
+
+  /**
+   * Test that a line failing in the model of a later segment is reported with its own number,
+   * not the number of the line after the last one applied.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testFailingLineIsReported() throws ScriptSyntaxException {
+    Supplier<ImageModel> models = () -> new ConcreteImageModel() {
+      @Override
+      public void applySharpen() {
+        throw new IllegalStateException("No image to sharpen");
+      }
+    };
+    String script = CHECKERBOARD + "\n" + "blur\n" + "norway 44\n" + "sepia\n" + "sharpen\n"
+        + "save " + file("after.png");
+    for (int threads : new int[] {1, 4}) {
+      try {
+        execute(script, models, threads);
+        fail("The failing line should be reported");
+      } catch (ScriptExecutionException e) {
+        assertEquals(5, e.getLineNumber());
+        assertEquals("No image to sharpen", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Test that a failing line keeps the files saved before it and none of the files saved after
+   * it, even by a later segment that finished first, and that no staged file is left behind.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   * @throws IOException if the folder cannot be listed
+   */
+  @Test
+  public void testFailureDiscardsLaterSaves() throws ScriptSyntaxException, IOException {
+    Supplier<ImageModel> models = () -> new ConcreteImageModel() {
+      @Override
+      public void applySharpen() {
+        try {
+          Thread.sleep(150);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("No image to sharpen");
+      }
+    };
+    String script = "rainbowH 12 7\n" + "save " + file("before.png") + "\n" + "sharpen\n"
+        + "save " + file("failed.png") + "\n" + "norway 44\n" + "save " + file("after.png");
+    try {
+      execute(script, models, 4);
+      fail("The failing line should be reported");
+    } catch (ScriptExecutionException e) {
+      assertEquals(3, e.getLineNumber());
+    }
+    try (Stream<Path> files = Files.list(this.directory)) {
+      assertArrayEquals(new Object[] {this.directory.resolve("before.png")}, files.toArray());
+    }
+  }
+}
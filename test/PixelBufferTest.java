@@ -0,0 +1,150 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import images.PixelBuffer;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the PixelBuffer.
+ */
+public class PixelBufferTest {
+
+  /**
+   * Test that packing and unpacking the channels gives them back.
+   */
+  @Test
+  public void testPackAndUnpack() {
+    int rgb = PixelBuffer.pack(12, 34, 255);
+    assertEquals(0x0C22FF, rgb);
+    assertEquals(12, PixelBuffer.red(rgb));
+    assertEquals(34, PixelBuffer.green(rgb));
+    assertEquals(255, PixelBuffer.blue(rgb));
+    // The bits above the blue, green and red channels are ignored
+    assertEquals(34, PixelBuffer.green(0xFF0C22FF));
+    assertEquals(12, PixelBuffer.red(0xFF0C22FF));
+  }
+
+  /**
+   * Test that values outside of 0 to 255 are clamped before they are packed.
+   */
+  @Test
+  public void testClamp() {
+    assertEquals(0, PixelBuffer.clamp(-1));
+    assertEquals(0, PixelBuffer.clamp(Integer.MIN_VALUE));
+    assertEquals(128, PixelBuffer.clamp(128));
+    assertEquals(255, PixelBuffer.clamp(256));
+    assertEquals(255, PixelBuffer.clamp(Integer.MAX_VALUE));
+    assertEquals(PixelBuffer.pack(0, 255, 7), PixelBuffer.packClamped(-20, 300, 7));
+  }
+
+  /**
+   * Test that a buffer with a stride wider than the image reads and writes the right pixels.
+   */
+  @Test
+  public void testStride() {
+    int[] data = new int[5 * 2 + 3];
+    PixelBuffer buffer = new PixelBuffer(3, 3, 5, data);
+    assertEquals(5, buffer.getStride());
+    assertEquals(11, buffer.indexOf(1, 2));
+    buffer.setRGB(1, 2, 0x123456);
+    assertEquals(0x123456, data[11]);
+    assertEquals(0x123456, buffer.getRGB(1, 2));
+
+    buffer.fill(-1, 1, 10, 2, 0xABCDEF);
+    assertArrayEquals(new int[] {0xABCDEF, 0xABCDEF, 0xABCDEF, 0, 0},
+        Arrays.copyOfRange(data, 5, 10));
+
+    PixelBuffer copy = buffer.copy();
+    assertEquals(3, copy.getStride());
+    assertEquals(0xABCDEF, copy.getRGB(2, 1));
+    assertEquals(0x123456, copy.getRGB(1, 2));
+    int[][][] array = buffer.toArray();
+    assertEquals(0x12, array[2][1][0]);
+    assertEquals(0x34, array[2][1][1]);
+    assertEquals(0x56, array[2][1][2]);
+  }
+
+  /**
+   * Test that a copied region holds the pixels of the rectangle.
+   */
+  @Test
+  public void testCopyRegion() {
+    PixelBuffer buffer = new PixelBuffer(4, 3);
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        buffer.setRGB(j, i, i * 10 + j);
+      }
+    }
+    PixelBuffer region = buffer.copyRegion(1, 1, 3, 2);
+    assertArrayEquals(new int[] {11, 12, 13, 21, 22, 23}, region.getData());
+  }
+
+  /**
+   * Test that a rectangle reaching outside of the image cannot be copied.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCopyRegionOutside() {
+    new PixelBuffer(4, 3).copyRegion(2, 0, 3, 1);
+  }
+
+  /**
+   * Test that an array too small for the stride is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testArrayTooSmall() {
+    new PixelBuffer(3, 3, 5, new int[12]);
+  }
+
+  /**
+   * Test that a stride narrower than the image is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testStrideTooSmall() {
+    new PixelBuffer(3, 3, 2, new int[9]);
+  }
+
+  /**
+   * Test that converting from and to arrays clamps the channels and keeps every pixel.
+   */
+  @Test
+  public void testFromArrayAndToArray() {
+    int[][][] array = {{{1, 2, 3}, {300, -4, 255}}};
+    PixelBuffer buffer = PixelBuffer.fromArray(array);
+    assertEquals(2, buffer.getWidth());
+    assertEquals(1, buffer.getHeight());
+    assertEquals(PixelBuffer.pack(255, 0, 255), buffer.getRGB(1, 0));
+    int[][][] back = buffer.toArray();
+    assertArrayEquals(new int[] {1, 2, 3}, back[0][0]);
+    assertArrayEquals(new int[] {255, 0, 255}, back[0][1]);
+  }
+
+  /**
+   * Test that the image of a buffer shares its pixels.
+   */
+  @Test
+  public void testBufferedImageSharesPixels() {
+    PixelBuffer buffer = new PixelBuffer(2, 2, 3, new int[6]);
+    buffer.setRGB(1, 1, 0x102030);
+    BufferedImage image = buffer.toBufferedImage();
+    assertSame(image, buffer.toBufferedImage());
+    assertEquals(0x102030, image.getRGB(1, 1) & 0xFFFFFF);
+    image.setRGB(0, 1, 0x405060);
+    assertEquals(0x405060, buffer.getRGB(0, 1));
+  }
+
+  /**
+   * Test that a copy has the same pixels in its own array.
+   */
+  @Test
+  public void testCopy() {
+    PixelBuffer buffer = new PixelBuffer(2, 2);
+    buffer.setRGB(1, 0, 0x123456);
+    PixelBuffer copy = buffer.copy();
+    assertNotSame(buffer.getData(), copy.getData());
+    assertArrayEquals(buffer.getData(), copy.getData());
+  }
+}
@@ -0,0 +1,143 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import images.ImageInfo;
+import images.ImageUtilities;
+import images.PixelBuffer;
+import images.PpmFile;
+import images.StreamingPipeline;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the PpmFile readers and writers.
+ */
+public class PpmFileTest {
+  private Path file;
+
+  /**
+   * Create a temporary PPM file.
+   * 
+   * @throws IOException if the file cannot be created
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.file = Files.createTempFile("image", ".ppm");
+  }
+
+  /**
+   * Delete the temporary file.
+   * 
+   * @throws IOException if the file cannot be deleted
+   */
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * Test that writing an image and reading it back gives the same pixels, with PpmFile and with
+   * the image utilities, which read and write PPM files through it.
+   * 
+   * @throws IOException if the file cannot be read or written
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    int[][] sizes = {{1, 1}, {1, 5}, {7, 1}, {123, 45}};
+    for (int[] size : sizes) {
+      PixelBuffer pixels = TestImages.randomImage(size[0], size[1], 24);
+      PpmFile.write(pixels, this.file.toString());
+      String header = "P6\n" + size[0] + " " + size[1] + "\n255\n";
+      assertEquals(header.length() + 3L * size[0] * size[1], Files.size(this.file));
+      PixelBuffer read = PpmFile.read(this.file.toString());
+      assertEquals(size[0], read.getWidth());
+      assertEquals(size[1], read.getHeight());
+      assertArrayEquals(pixels.getData(), read.getData());
+
+      ImageUtilities.writeImage(pixels, this.file.toString());
+      assertArrayEquals(pixels.getData(), ImageUtilities.readPixels(this.file.toString())
+          .getData());
+    }
+  }
+
+  /**
+   * Test reading the rows of a file a few at a time, with comments in the header.
+   * 
+   * @throws IOException if the file cannot be read
+   */
+  @Test
+  public void testCommentsAndRows() throws IOException {
+    byte[] header = "P6\n# a comment\n3 # another one\n2\n255\n"
+        .getBytes(StandardCharsets.US_ASCII);
+    byte[] content = new byte[header.length + 18];
+    System.arraycopy(header, 0, content, 0, header.length);
+    for (int i = 0; i < 18; i++) {
+      content[header.length + i] = (byte) (i * 15);
+    }
+    Files.write(this.file, content);
+    try (StreamingPipeline.RowSource reader = PpmFile.openReader(this.file.toString())) {
+      assertEquals(3, reader.getWidth());
+      assertEquals(2, reader.getHeight());
+      int[] rows = new int[6];
+      reader.readRows(rows, 0, 1);
+      reader.readRows(rows, 3, 1);
+      assertEquals(0x000F1E, rows[0]);
+      assertEquals(PixelBuffer.pack(225, 240, 255), rows[5]);
+    }
+  }
+
+  /**
+   * Test that the header of a PPM file is probed without reading the pixels.
+   * 
+   * @throws IOException if the file cannot be read or written
+   */
+  @Test
+  public void testProbe() throws IOException {
+    PpmFile.write(TestImages.randomImage(41, 17, 24), this.file.toString());
+    ImageInfo info = ImageUtilities.probe(this.file);
+    assertEquals(41, info.getWidth());
+    assertEquals(17, info.getHeight());
+    assertEquals("ppm", info.getFormatName());
+    assertEquals(41, ImageUtilities.getWidth(this.file.toString()));
+    assertEquals(17, ImageUtilities.getHeight(this.file.toString()));
+  }
+
+  /**
+   * Test that files that are not binary PPM files with 8 bits per channel are rejected.
+   * 
+   * @throws IOException if the file cannot be written
+   */
+  @Test
+  public void testInvalidFiles() throws IOException {
+    String[] headers = {"P3\n2 2\n255\n", "P6\n2 2\n65535\n", "P6\n0 2\n255\n", "P6\n2",
+        "P6\n2x 2\n255\n"};
+    for (String header : headers) {
+      Files.write(this.file, header.getBytes(StandardCharsets.US_ASCII));
+      try {
+        PpmFile.read(this.file.toString());
+        fail("The header " + header + " should be rejected.");
+      } catch (IOException e) {
+        // this is expected
+      }
+      try {
+        ImageUtilities.probe(this.file);
+        fail("The header " + header + " should be rejected.");
+      } catch (IllegalArgumentException e) {
+        // this is expected
+      }
+    }
+    try {
+      ImageUtilities.probe(Paths.get(this.file.toString() + ".missing.ppm"));
+      fail("A missing file should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
+  }
+}
@@ -1,4 +1,5 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -6,7 +7,10 @@ import images.ImageModel;
 import imageview.ImageView;
 import org.junit.Before;
 import org.junit.Test;
+import script.ScriptCompiler;
 import script.ScriptController;
+import script.ScriptExecutionException;
+import script.ScriptSyntaxException;
 
 /**
  * A JUnit test for the ScriptController.
@@ -255,7 +259,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -279,7 +283,7 @@ public class ScriptControllerTest {
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 1. Format of the image should be \"jpg\" or"
-        + " \"png\" or \"gif\" or \"bmp\"" + System.lineSeparator();
+        + " \"png\" or \"gif\" or \"bmp\" or \"ppm\"" + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
 
@@ -294,7 +298,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -333,8 +337,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -354,8 +358,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -374,13 +378,31 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator() + "Showing message: Error Message. Invalid input on line 2."
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Invalid input on line 2."
+        + System.lineSeparator();
+    assertEquals(expectedViewLog, viewLog.toString());
+  }
+
+  /**
+   * Test that an invalid line stops the script before any of the lines before it is applied.
+   */
+  @Test
+  public void testInvalidLineStopsScriptBeforeAnyCommand() {
+    String input = "load Birds-at-fleetwood-park.png" + System.lineSeparator() + "blur"
+        + System.lineSeparator() + "sharpen" + System.lineSeparator() + "blur 2"
         + System.lineSeparator();
+    controller.setInput(input);
+    controller.applyScript();
+
+    String expectedModelLog = "";
+    assertEquals(expectedModelLog, modelLog.toString());
+
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Check line 4. Should be: blur" + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
 
@@ -395,8 +417,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -416,8 +438,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -436,12 +458,11 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator() + "Showing message: Error Message. Invalid input on line 2."
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Invalid input on line 2."
         + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
@@ -457,8 +478,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying greyscale"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying greyscale"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -478,8 +499,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying greyscale"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying greyscale"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -498,12 +519,11 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator() + "Showing message: Error Message. Invalid input on line 2."
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Invalid input on line 2."
         + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
@@ -519,8 +539,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -540,8 +560,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -560,12 +580,11 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator() + "Showing message: Error Message. Invalid input on line 2."
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Invalid input on line 2."
         + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
@@ -581,8 +600,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -602,8 +621,8 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -622,12 +641,11 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator() + "Showing message: Error Message. Invalid input on line 2."
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
+        + "Showing message: Error Message. Invalid input on line 2."
         + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
   }
@@ -643,9 +661,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog =
-        "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator() + "Getting image data"
+        "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator() + "Getting image"
             + System.lineSeparator() + "Applying mosaic with the number of seeds at 5000"
-            + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+            + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -654,6 +672,66 @@ public class ScriptControllerTest {
     assertEquals(expectedViewLog, viewLog.toString());
   }
 
+  /**
+   * Test applying a Gaussian blur with the applyScript method.
+   */
+  @Test
+  public void testGaussianBlurWithApplyScriptMethod() {
+    String input = "load Birds-at-fleetwood-park.png" + System.lineSeparator() + "GaussianBlur 6"
+        + System.lineSeparator();
+    controller.setInput(input);
+    controller.applyScript();
+
+    String expectedModelLog =
+        "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator() + "Getting image"
+            + System.lineSeparator() + "Applying gaussian blur with radius 6"
+            + System.lineSeparator() + "Getting image" + System.lineSeparator();
+    assertEquals(expectedModelLog, modelLog.toString());
+  }
+
+  /**
+   * Test when the radius of a Gaussian blur is missing or out of range.
+   */
+  @Test
+  public void testGaussianBlurWithInvalidRadius() {
+    for (String radius : new String[] {"", " 0", " 101", " two"}) {
+      modelLog.setLength(0);
+      viewLog.setLength(0);
+      controller.setInput("load Birds-at-fleetwood-park.png" + System.lineSeparator()
+          + "gaussianBlur" + radius + System.lineSeparator());
+      controller.applyScript();
+      assertEquals("", modelLog.toString());
+      assertEquals("Showing message: Error Message. Check line 2. Should be: gaussianBlur "
+          + "radius(an integer from 1 to 100)" + System.lineSeparator(), viewLog.toString());
+    }
+  }
+
+  /**
+   * Test that a line failing in the model is reported with its own number and message.
+   * 
+   * @throws ScriptSyntaxException if the script is invalid
+   */
+  @Test
+  public void testFailingLineIsReported() throws ScriptSyntaxException {
+    ScriptController failing = new ScriptController(new MockImageModel(modelLog) {
+      @Override
+      public void applySharpen() {
+        throw new IllegalStateException("No image to sharpen");
+      }
+    });
+    try {
+      failing.applyScript(ScriptCompiler.compile("load Birds-at-fleetwood-park.png"
+          + System.lineSeparator() + "blur" + System.lineSeparator() + "sharpen"
+          + System.lineSeparator() + "sepia"));
+      fail("The failing line should be reported");
+    } catch (ScriptExecutionException e) {
+      assertEquals(3, e.getLineNumber());
+      assertEquals("No image to sharpen", e.getMessage());
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertFalse(modelLog.toString().contains("sepia"));
+  }
+
   /**
    * Test if the keyword "mosaic" is truly case insensitive in the applyScript method.
    */
@@ -665,9 +743,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog =
-        "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator() + "Getting image data"
+        "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator() + "Getting image"
             + System.lineSeparator() + "Applying mosaic with the number of seeds at 5000"
-            + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+            + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -686,12 +764,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator()
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 2. Should be: mosaic number_of_seeds"
         + "(a positive integer)" + System.lineSeparator();
     assertEquals(expectedViewLog, viewLog.toString());
@@ -707,12 +783,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator()
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 2. "
         + "Should be: rainbowH width(positive integer) height(positive integer)"
         + System.lineSeparator();
@@ -729,12 +803,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator()
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 2. "
         + "Should be: rainbowH width(positive integer) height(positive integer>6)"
         + System.lineSeparator();
@@ -752,9 +824,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 500 height = 300 rainbow type = 0" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -774,9 +846,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 500 height = 300 rainbow type = 0" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -795,12 +867,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator()
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 2. "
         + "Should be: rainbowV width(positive integer>6) height(positive integer)"
         + System.lineSeparator();
@@ -817,12 +887,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "";
     assertEquals(expectedModelLog, modelLog.toString());
 
-    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
-        + System.lineSeparator()
+    String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator()
         + "Showing message: Error Message. Check line 2. "
         + "Should be: rainbowV width(positive integer>6) height(positive integer)"
         + System.lineSeparator();
@@ -840,9 +908,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 500 height = 300 rainbow type = 1" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -862,9 +930,9 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 500 height = 300 rainbow type = 1" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -910,7 +978,7 @@ public class ScriptControllerTest {
 
     String expectedModelLog =
         "Generating checkerboard total height = 500 bumberOfSquares = 50 first color = 255 255 255 "
-        + "second color = 0 0 0" + System.lineSeparator() + "Getting image data" 
+        + "second color = 0 0 0" + System.lineSeparator() + "Getting image" 
         + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
@@ -931,7 +999,7 @@ public class ScriptControllerTest {
 
     String expectedModelLog =
         "Generating checkerboard total height = 500 bumberOfSquares = 50 first color = 255 255 255 "
-        + "second color = 0 0 0" + System.lineSeparator() + "Getting image data" 
+        + "second color = 0 0 0" + System.lineSeparator() + "Getting image" 
         + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
@@ -970,7 +1038,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Norway with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -989,7 +1057,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Norway with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1028,7 +1096,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Greece with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1047,7 +1115,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Greece with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1085,7 +1153,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Swizerland with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1104,7 +1172,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Generating a national flag of Swizerland with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1141,7 +1209,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Applying edge detection" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1160,7 +1228,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Applying edge detection" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1197,7 +1265,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Applying greyscale enhancement" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1216,7 +1284,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Applying greyscale enhancement" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1252,9 +1320,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Applying image cropping x = 0 y = 0 width = 100 height = 150"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
+        + "Getting image height" + System.lineSeparator()
+        + "Applying image cropping x = 0 y = 0 width = 100 height = 150"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1272,9 +1341,10 @@ public class ScriptControllerTest {
     controller.setInput(input);
     controller.applyScript();
 
-    String expectedModelLog = "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Applying image cropping x = 0 y = 0 width = 100 height = 150"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+    String expectedModelLog = "Getting image width" + System.lineSeparator()
+        + "Getting image height" + System.lineSeparator()
+        + "Applying image cropping x = 0 y = 0 width = 100 height = 150"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1294,7 +1364,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Saving image: Birds-at-fleetwood-park-mosaic-5000.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1314,7 +1384,7 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Saving image: Birds-at-fleetwood-park-mosaic-5000.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
@@ -1382,83 +1452,83 @@ public class ScriptControllerTest {
     controller.applyScript();
 
     String expectedModelLog = "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-blurred-1.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying blur" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-blurred-2.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-sharpen-1.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sharpen"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying sharpen"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-sharpen-2.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying greyscale"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying greyscale"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-greyscale.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying sepia" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-sepia.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Applying dither" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-dither.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Applying mosaic with the number of seeds at 4000" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-mosaic-4000.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Applying mosaic with the number of seeds at 8000" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-mosaic-8000.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Loading image: Birds-at-fleetwood-park.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Applying mosaic with the number of seeds at 15000" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Saving image: Birds-at-fleetwood-park-mosaic-15000.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 500 height = 300 rainbow type = 0" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Saving image: rainbowH.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Saving image: rainbowH.png"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
         + "Generating rainbow: width = 200 height = 500 rainbow type = 1" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Saving image: rainbowV.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Saving image: rainbowV.png"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
         + "Generating checkerboard total height = 500 bumberOfSquares = 25 "
         + "first color = 255 255 255 second color = 0 0 0"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Saving image: checkboard.png" + System.lineSeparator() + "Getting image data"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Saving image: checkboard.png" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Generating a national flag of Norway with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Saving image: norway.png" + System.lineSeparator() + "Getting image data"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Saving image: norway.png" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Generating a national flag of Greece with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Saving image: greece.png" + System.lineSeparator() + "Getting image data"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Saving image: greece.png" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Generating a national flag of Swizerland with width at 300"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Saving image: swizerland.png" + System.lineSeparator() + "Getting image data"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Saving image: swizerland.png" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Applying edge detection" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Saving image: edgeDetection.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
-        + "Applying greyscale enhancement" + System.lineSeparator() + "Getting image data"
+        + "Getting image" + System.lineSeparator() + "Saving image: edgeDetection.png"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator()
+        + "Applying greyscale enhancement" + System.lineSeparator() + "Getting image"
         + System.lineSeparator() + "Saving image: greyscaleEnhancement.png" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Getting image data"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator()
+        + "Getting image" + System.lineSeparator() + "Getting image width"
+        + System.lineSeparator() + "Getting image height" + System.lineSeparator()
         + "Applying image cropping x = 0 y = 0 width = 120 height = 100" + System.lineSeparator()
-        + "Getting image data" + System.lineSeparator() + "Saving image: imageCropping.png"
-        + System.lineSeparator() + "Getting image data" + System.lineSeparator();
+        + "Getting image" + System.lineSeparator() + "Saving image: imageCropping.png"
+        + System.lineSeparator() + "Getting image" + System.lineSeparator();
     assertEquals(expectedModelLog, modelLog.toString());
 
     String expectedViewLog = "Setting ScriptFeatures: " + System.lineSeparator() + "Showing image: "
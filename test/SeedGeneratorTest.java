@@ -0,0 +1,103 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the SeedGenerator.
+ */
+public class SeedGeneratorTest {
+
+  /**
+   * Check that seeds are distinct pixels of an image.
+   * 
+   * @param seeds the seeds
+   * @param pixels the number of pixels of the image
+   */
+  private static void assertDistinctPixels(int[] seeds, int pixels) {
+    BitSet taken = new BitSet(pixels);
+    for (int seed : seeds) {
+      assertTrue(seed >= 0 && seed < pixels);
+      assertFalse("seed " + seed + " is taken twice", taken.get(seed));
+      taken.set(seed);
+    }
+  }
+
+  /**
+   * Test that every mode gives the same seeds for the same random seed, and distinct pixels.
+   */
+  @Test
+  public void testReproducible() {
+    for (SeedGenerator.Mode mode : SeedGenerator.Mode.values()) {
+      int[] seeds = new SeedGenerator(42, mode).generate(123, 77, 300);
+      assertArrayEquals(mode.toString(), seeds,
+          new SeedGenerator(42, mode).generate(123, 77, 300));
+      assertTrue(mode.toString(), seeds.length > 0 && seeds.length <= 300);
+      assertDistinctPixels(seeds, 123 * 77);
+      assertFalse(mode.toString(),
+          Arrays.equals(seeds, new SeedGenerator(43, mode).generate(123, 77, 300)));
+    }
+  }
+
+  /**
+   * Test that the uniform and stratified modes give exactly as many seeds as asked for.
+   */
+  @Test
+  public void testCount() {
+    assertEquals(300, new SeedGenerator(1).generate(123, 77, 300).length);
+    assertEquals(300,
+        new SeedGenerator(1, SeedGenerator.Mode.STRATIFIED).generate(123, 77, 300).length);
+  }
+
+  /**
+   * Test that asking for more seeds than pixels gives every pixel once.
+   */
+  @Test
+  public void testMoreSeedsThanPixels() {
+    int[] seeds = new SeedGenerator(3).generate(5, 4, 50);
+    assertEquals(20, seeds.length);
+    assertDistinctPixels(seeds, 20);
+    assertEquals(1, new SeedGenerator(3).generate(1, 1, 10).length);
+  }
+
+  /**
+   * Test that a mosaic made twice with the same generator gives the same image.
+   */
+  @Test
+  public void testMosaicReproducible() {
+    Random random = new Random(8);
+    PixelBuffer pixels = new PixelBuffer(90, 70);
+    for (int i = 0; i < pixels.getData().length; i++) {
+      pixels.getData()[i] = random.nextInt() & 0xFFFFFF;
+    }
+    ConcreteImageModel first = new ConcreteImageModel(pixels.copy());
+    first.applyMosaic(150, new SeedGenerator(9, SeedGenerator.Mode.POISSON_DISC));
+    ConcreteImageModel second = new ConcreteImageModel(pixels.copy());
+    second.applyMosaic(150, new SeedGenerator(9, SeedGenerator.Mode.POISSON_DISC));
+    assertArrayEquals(first.getPixelBuffer().getData(), second.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test that a number of seeds below 1 is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCountNotPositive() {
+    new SeedGenerator(1).generate(10, 10, 0);
+  }
+
+  /**
+   * Test that a generator without a mode is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullMode() {
+    new SeedGenerator(1, null);
+  }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertEquals;
+
+import images.SeedGrid;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the SeedGrid, checking it against a scan over every seed.
+ */
+public class SeedGridTest {
+
+  /**
+   * Find the seed closest to a pixel by comparing it with every seed, keeping the first of the
+   * seeds that are equally close.
+   * 
+   * @param width the width of the image
+   * @param seeds the seeds, each given as the index of its pixel
+   * @param x the column of the pixel
+   * @param y the row of the pixel
+   * @return the position in the list of seeds of the closest seed
+   */
+  private static int scan(int width, int[] seeds, int x, int y) {
+    long bestDistance = Long.MAX_VALUE;
+    int bestSeed = -1;
+    for (int i = 0; i < seeds.length; i++) {
+      long dx = seeds[i] % width - x;
+      long dy = seeds[i] / width - y;
+      long distance = dx * dx + dy * dy;
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        bestSeed = i;
+      }
+    }
+    return bestSeed;
+  }
+
+  /**
+   * Check the closest seed of every pixel of an image against the scan.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param seeds the seeds, each given as the index of its pixel
+   */
+  private static void assertLikeScan(int width, int height, int[] seeds) {
+    SeedGrid grid = new SeedGrid(width, height, seeds);
+    assertEquals(seeds.length, grid.getSeedCount());
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals("pixel " + x + ", " + y, scan(width, seeds, x, y),
+            grid.findClosestSeed(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test random seeds on images of several sizes and numbers of seeds.
+   */
+  @Test
+  public void testRandomSeeds() {
+    Random random = new Random(7);
+    int[][] sizes = {{1, 1}, {1, 40}, {40, 1}, {37, 23}, {64, 64}, {101, 57}};
+    for (int[] size : sizes) {
+      for (int count : new int[] {1, 2, 5, 30, 200}) {
+        int[] seeds = new int[count];
+        for (int i = 0; i < count; i++) {
+          seeds[i] = random.nextInt(size[0] * size[1]);
+        }
+        assertLikeScan(size[0], size[1], seeds);
+      }
+    }
+  }
+
+  /**
+   * Test seeds on a regular lattice, where many pixels are equally close to several seeds and the
+   * first of them in the list should win whichever order they are given in.
+   */
+  @Test
+  public void testTies() {
+    int width = 48;
+    int height = 36;
+    int[] seeds = new int[24];
+    int k = 0;
+    for (int y = 3; y < height; y += 6) {
+      for (int x = 6; x < width; x += 12) {
+        seeds[k++] = y * width + x;
+      }
+    }
+    assertLikeScan(width, height, seeds);
+    int[] reversed = new int[seeds.length];
+    for (int i = 0; i < seeds.length; i++) {
+      reversed[i] = seeds[seeds.length - 1 - i];
+    }
+    assertLikeScan(width, height, reversed);
+  }
+
+  /**
+   * Test that the same pixel given twice as a seed always gives the first of the two.
+   */
+  @Test
+  public void testDuplicateSeeds() {
+    int[] seeds = {5, 17, 5, 17, 40};
+    SeedGrid grid = new SeedGrid(9, 6, seeds);
+    assertEquals(0, grid.findClosestSeed(5, 0));
+    assertEquals(1, grid.findClosestSeed(8, 1));
+    assertLikeScan(9, 6, seeds);
+  }
+
+  /**
+   * Test seeds on the corners and edges of the image, at the ends of the outer cells of the grid.
+   */
+  @Test
+  public void testSeedsOnTheBorder() {
+    int width = 50;
+    int height = 31;
+    int[] seeds = {0, width - 1, (height - 1) * width, height * width - 1, width / 2,
+        (height - 1) * width + width / 3, 15 * width, 20 * width + width - 1};
+    assertLikeScan(width, height, seeds);
+    assertEquals(3, new SeedGrid(width, height, seeds).findClosestSeed(width - 1, height - 1));
+  }
+
+  /**
+   * Test that a seed outside of the image is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeedOutside() {
+    new SeedGrid(4, 4, new int[] {16});
+  }
+
+  /**
+   * Test that a grid without seeds is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoSeeds() {
+    new SeedGrid(4, 4, new int[0]);
+  }
+}
@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.SobelEdgeDetector;
+import images.TileScheduler;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the SobelEdgeDetector, checking it against the original edge detection, which
+ * filtered the image with the two Sobel kernels separately and then looked for the extremes.
+ */
+public class SobelEdgeDetectorTest {
+
+  /**
+   * Return the gradient magnitudes of an image stretched to 0 to 255 the way the original edge
+   * detection computed them, before its greyscale step.
+   * 
+   * @param pixels the pixels of the image
+   * @return the stretched magnitudes as packed pixels
+   */
+  private static int[] detectLikeOriginal(PixelBuffer pixels) {
+    int[][] kx = {{1, 0, -1}, {2, 0, -2}, {1, 0, -1}};
+    int[][] ky = {{1, 2, 1}, {0, 0, 0}, {-1, -2, -1}};
+    int[][][] data = pixels.toArray();
+    int height = data.length;
+    int width = data[0].length;
+    int[][][] gxy = new int[height][width][3];
+    for (int i = 1; i < height - 1; i++) {
+      for (int j = 1; j < width - 1; j++) {
+        for (int c = 0; c < 3; c++) {
+          int gx = 0;
+          int gy = 0;
+          for (int k1 = 0; k1 < 3; k1++) {
+            for (int k2 = 0; k2 < 3; k2++) {
+              gx += data[i - 1 + k1][j - 1 + k2][c] * kx[k1][k2];
+              gy += data[i - 1 + k1][j - 1 + k2][c] * ky[k1][k2];
+            }
+          }
+          gxy[i][j][c] = (int) Math.sqrt(gx * gx + gy * gy);
+        }
+      }
+    }
+    int[] maximumValues = {0, 0, 0};
+    int[] minimumValues = {255, 255, 255};
+    for (int[][] row : gxy) {
+      for (int[] pixel : row) {
+        for (int c = 0; c < 3; c++) {
+          maximumValues[c] = Math.max(maximumValues[c], pixel[c]);
+          minimumValues[c] = Math.min(minimumValues[c], pixel[c]);
+        }
+      }
+    }
+    int[] result = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int[] values = new int[3];
+        for (int c = 0; c < 3; c++) {
+          int range = maximumValues[c] - minimumValues[c];
+          values[c] = range == 0 ? 0 : (gxy[i][j][c] - minimumValues[c]) * 255 / range;
+        }
+        result[i * width + j] = PixelBuffer.pack(values[0], values[1], values[2]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Check that the detector gives the magnitudes of the original edge detection on one thread and
+   * on several, and that the image model then turns them grey like the original did.
+   * 
+   * @param pixels the pixels of the image
+   */
+  private static void assertLikeOriginal(PixelBuffer pixels) {
+    int[] expected = detectLikeOriginal(pixels);
+    for (int parallelism : new int[] {1, 4}) {
+      SobelEdgeDetector detector = new SobelEdgeDetector(new TileScheduler(parallelism));
+      assertArrayEquals(expected, detector.detect(pixels, null).getData());
+    }
+    ConcreteImageModel grey = new ConcreteImageModel(new PixelBuffer(pixels.getWidth(),
+        pixels.getHeight(), pixels.getWidth(), expected.clone()));
+    grey.applyGreyscale();
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    model.setTileScheduler(new TileScheduler(4));
+    model.applyEdgeDetection();
+    assertArrayEquals(grey.getPixelBuffer().getData(), model.getPixelBuffer().getData());
+  }
+
+  /**
+   * Test random images, small and large enough to be split into several bands.
+   */
+  @Test
+  public void testRandomImages() {
+    assertLikeOriginal(TestImages.randomImage(17, 11, 11));
+    assertLikeOriginal(TestImages.randomImage(400, 300, 12));
+  }
+
+  /**
+   * Test an image of stripes and a flat square, whose magnitudes reach their largest value.
+   */
+  @Test
+  public void testStrongEdges() {
+    PixelBuffer pixels = new PixelBuffer(64, 48);
+    for (int i = 0; i < 48; i++) {
+      for (int j = 0; j < 64; j++) {
+        pixels.setRGB(j, i, (j / 2 + i / 3) % 2 == 0 ? 0xFFFFFF : 0x000000);
+      }
+    }
+    pixels.fill(10, 10, 30, 30, 0x808080);
+    assertLikeOriginal(pixels);
+  }
+
+  /**
+   * Test images whose magnitudes are all the same, which become black instead of dividing by 0,
+   * and images with no pixel away from the border.
+   */
+  @Test
+  public void testNoEdges() {
+    PixelBuffer flat = new PixelBuffer(20, 10);
+    flat.fill(0, 0, 20, 10, 0x336699);
+    assertArrayEquals(new int[200],
+        new SobelEdgeDetector(new TileScheduler(1)).detect(flat, null).getData());
+    assertArrayEquals(new int[4],
+        new SobelEdgeDetector(new TileScheduler(1)).detect(TestImages.randomImage(2, 2, 13), null)
+            .getData());
+    assertArrayEquals(new int[1],
+        new SobelEdgeDetector(new TileScheduler(1)).detect(TestImages.randomImage(1, 1, 14), null)
+            .getData());
+  }
+}
@@ -0,0 +1,181 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.StreamingPipeline;
+import images.TileScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the StreamingPipeline, checking that streaming a chain of operations gives the
+ * pixels of applying it to a ConcreteImageModel, whatever the size of the image and of the strips.
+ */
+public class StreamingPipelineTest {
+  private static final List<String> NAMES =
+      Arrays.asList("blur", "gaussianBlur", "sharpen", "greyscale", "sepia", "edgeDetection");
+  private static final int[][] SIZES = {{1, 1}, {1, 7}, {6, 1}, {2, 3}, {37, 29}, {160, 130}};
+  private static final int[] STRIP_ROWS = {1, 2, 7, StreamingPipeline.DEFAULT_STRIP_ROWS};
+
+  /**
+   * Return a source reading the rows of an image from memory.
+   * 
+   * @param pixels the pixels of the image
+   * @return the source
+   */
+  private static StreamingPipeline.RowSource sourceOf(PixelBuffer pixels) {
+    return new StreamingPipeline.RowSource() {
+      private int row;
+
+      @Override
+      public int getWidth() {
+        return pixels.getWidth();
+      }
+
+      @Override
+      public int getHeight() {
+        return pixels.getHeight();
+      }
+
+      @Override
+      public void readRows(int[] target, int offset, int rows) {
+        System.arraycopy(pixels.getData(), pixels.indexOf(0, this.row), target, offset,
+            rows * pixels.getWidth());
+        this.row += rows;
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  /**
+   * Apply a chain of operations to an image with a ConcreteImageModel.
+   * 
+   * @param pixels the pixels of the image
+   * @param chain the names of the operations in the order they are applied
+   * @return the resulting pixels
+   */
+  private static int[] applyWithModel(PixelBuffer pixels, List<String> chain) {
+    ConcreteImageModel model = new ConcreteImageModel(pixels.copy());
+    for (String name : chain) {
+      switch (name) {
+        case "blur":
+          model.applyBlur();
+          break;
+        case "gaussianBlur":
+          model.applyGaussianBlur(4);
+          break;
+        case "sharpen":
+          model.applySharpen();
+          break;
+        case "greyscale":
+          model.applyGreyscale();
+          break;
+        case "sepia":
+          model.applySepia();
+          break;
+        default:
+          model.applyEdgeDetection();
+          break;
+      }
+    }
+    return model.getPixelBuffer().getData();
+  }
+
+  /**
+   * Check that streaming a chain of operations gives the pixels of the image model for every
+   * height of the strips.
+   * 
+   * @param pixels the pixels of the image
+   * @param chain the names of the operations in the order they are applied
+   * @throws Exception if the pipeline fails
+   */
+  private static void assertStreamedLikeModel(PixelBuffer pixels, List<String> chain)
+      throws Exception {
+    int[] expected = applyWithModel(pixels, chain);
+    for (int stripRows : STRIP_ROWS) {
+      StreamingPipeline pipeline = new StreamingPipeline(new TileScheduler(3));
+      for (String name : chain) {
+        if (name.equals("gaussianBlur")) {
+          pipeline.gaussianBlur(4);
+        } else {
+          pipeline.add(name);
+        }
+      }
+      pipeline.setStripRows(stripRows);
+      PixelBuffer output = new PixelBuffer(pixels.getWidth(), pixels.getHeight());
+      int[] written = new int[1];
+      pipeline.run(() -> sourceOf(pixels), new StreamingPipeline.RowSink() {
+        @Override
+        public void writeRows(int[] source, int offset, int rows) {
+          System.arraycopy(source, offset, output.getData(), output.indexOf(0, written[0]),
+              rows * pixels.getWidth());
+          written[0] += rows;
+        }
+
+        @Override
+        public void close() {}
+      });
+      assertArrayEquals(chain + " " + pixels.getWidth() + "x" + pixels.getHeight() + " strips of "
+          + stripRows, expected, output.getData());
+    }
+  }
+
+  /**
+   * Test every operation alone on every size.
+   * 
+   * @throws Exception if the pipeline fails
+   */
+  @Test
+  public void testSingleOperations() throws Exception {
+    for (int[] size : SIZES) {
+      for (String name : NAMES) {
+        assertStreamedLikeModel(TestImages.randomImage(size[0], size[1], size[0] * 31 + size[1]),
+            Arrays.asList(name));
+      }
+    }
+  }
+
+  /**
+   * Test chains mixing convolutions, color transforms and edge detections, which need passes of
+   * their own.
+   * 
+   * @throws Exception if the pipeline fails
+   */
+  @Test
+  public void testChains() throws Exception {
+    List<List<String>> chains = Arrays.asList(Arrays.asList("blur", "sharpen", "sepia"),
+        Arrays.asList("greyscale", "blur", "blur"),
+        Arrays.asList("sharpen", "edgeDetection", "blur", "greyscale"),
+        Arrays.asList("edgeDetection", "edgeDetection"),
+        Arrays.asList("sepia", "sepia", "edgeDetection", "sharpen"));
+    for (int[] size : SIZES) {
+      for (List<String> chain : chains) {
+        assertStreamedLikeModel(TestImages.randomImage(size[0], size[1], chain.hashCode()), chain);
+      }
+    }
+  }
+
+  /**
+   * Test random chains of every operation on images of random sizes.
+   * 
+   * @throws Exception if the pipeline fails
+   */
+  @Test
+  public void testRandomChains() throws Exception {
+    Random random = new Random(24);
+    for (int k = 0; k < 20; k++) {
+      List<String> chain = new ArrayList<String>();
+      int length = 1 + random.nextInt(5);
+      for (int i = 0; i < length; i++) {
+        chain.add(NAMES.get(random.nextInt(NAMES.size())));
+      }
+      assertStreamedLikeModel(TestImages.randomImage(1 + random.nextInt(90), 1 + random.nextInt(90),
+          random.nextLong()), chain);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+import images.PixelBuffer;
+import java.util.Random;
+
+/**
+ * Images shared by the tests.
+ */
+public final class TestImages {
+
+  /**
+   * This class only has static methods.
+   */
+  private TestImages() {}
+
+  /**
+   * Return an image filled with random colors. The same size and seed always give the same image,
+   * so a failing test can be run again on the image it failed on.
+   * 
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param seed the seed of the colors
+   * @return the image
+   */
+  public static PixelBuffer randomImage(int width, int height, long seed) {
+    Random random = new Random(seed);
+    PixelBuffer pixels = new PixelBuffer(width, height);
+    for (int i = 0; i < pixels.getData().length; i++) {
+      pixels.getData()[i] = random.nextInt() & 0xFFFFFF;
+    }
+    return pixels;
+  }
+}
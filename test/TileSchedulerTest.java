@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import images.ConcreteImageModel;
+import images.PixelBuffer;
+import images.SeedGenerator;
+import images.TileScheduler;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+/**
+ * A JUnit test for the TileScheduler, checking that the operations of an image model give the
+ * same pixels on one thread and on several threads.
+ */
+public class TileSchedulerTest {
+  private static final int WIDTH = 512;
+  private static final int HEIGHT = 384;
+
+  /**
+   * Apply an operation with a scheduler of the given parallelism and return the pixels.
+   * 
+   * @param parallelism the number of threads of the scheduler
+   * @param operation the operation to apply
+   * @return the pixels of the image after the operation
+   */
+  private static int[] apply(int parallelism, Consumer<ConcreteImageModel> operation) {
+    ConcreteImageModel model = new ConcreteImageModel(TestImages.randomImage(WIDTH, HEIGHT, 6));
+    model.setTileScheduler(new TileScheduler(parallelism));
+    operation.accept(model);
+    return model.getPixelBuffer().getData();
+  }
+
+  /**
+   * Check that an operation gives the same pixels on one thread and on four threads.
+   * 
+   * @param operation the operation to apply
+   */
+  private static void assertSameOnEveryParallelism(Consumer<ConcreteImageModel> operation) {
+    int[] expected = apply(1, operation);
+    assertArrayEquals(expected, apply(4, operation));
+    assertArrayEquals(expected, apply(3, operation));
+  }
+
+  /**
+   * Test that every row of an image is given to exactly one band.
+   */
+  @Test
+  public void testEveryRowOnce() {
+    AtomicIntegerArray counts = new AtomicIntegerArray(HEIGHT);
+    new TileScheduler(4).forEachRowBand(WIDTH, HEIGHT, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        counts.incrementAndGet(i);
+      }
+    });
+    for (int i = 0; i < HEIGHT; i++) {
+      assertEquals("row " + i, 1, counts.get(i));
+    }
+  }
+
+  /**
+   * Test that the results of the bands are merged in the order of the rows.
+   */
+  @Test
+  public void testReduceInOrder() {
+    String rows = new TileScheduler(4).reduceRowBands(WIDTH, HEIGHT, (rowStart, rowEnd) -> {
+      StringBuilder builder = new StringBuilder();
+      for (int i = rowStart; i < rowEnd; i++) {
+        builder.append(i).append(',');
+      }
+      return builder.toString();
+    }, String::concat);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < HEIGHT; i++) {
+      expected.append(i).append(',');
+    }
+    assertEquals(expected.toString(), rows);
+  }
+
+  /**
+   * Test that a parallelism below 1 is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParallelismNotPositive() {
+    new TileScheduler(0);
+  }
+
+  /**
+   * Test blur and sharpen, whose bands read the rows around them.
+   */
+  @Test
+  public void testConvolutions() {
+    assertSameOnEveryParallelism(ConcreteImageModel::applyBlur);
+    assertSameOnEveryParallelism(ConcreteImageModel::applySharpen);
+  }
+
+  /**
+   * Test the color transforms, which work on each pixel alone.
+   */
+  @Test
+  public void testColorTransforms() {
+    assertSameOnEveryParallelism(ConcreteImageModel::applyGreyscale);
+    assertSameOnEveryParallelism(ConcreteImageModel::applySepia);
+  }
+
+  /**
+   * Test edge detection, whose normalization needs the extremes of every band.
+   */
+  @Test
+  public void testEdgeDetection() {
+    assertSameOnEveryParallelism(ConcreteImageModel::applyEdgeDetection);
+  }
+
+  /**
+   * Test greyscale enhancement, whose histogram is merged from every band.
+   */
+  @Test
+  public void testGreyscaleEnhancement() {
+    assertSameOnEveryParallelism(ConcreteImageModel::applyGreyscaleEnhancement);
+  }
+
+  /**
+   * Test dithering, whose errors spread across the rows, and a mosaic with seeded seeds.
+   */
+  @Test
+  public void testDitherAndMosaic() {
+    assertSameOnEveryParallelism(ConcreteImageModel::applyDither);
+    assertSameOnEveryParallelism(model -> model.applyMosaic(500, new SeedGenerator(7)));
+  }
+}